@@ -20,17 +20,24 @@ import android.arch.persistence.room.Room;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 @RunWith(AndroidJUnit4.class)
@@ -39,7 +46,7 @@ public class GoalsDaoTest {
     private long A_DAY_AGO = System.currentTimeMillis() - (DAY_IN_MS);
     private long A_WEEK_AGO = System.currentTimeMillis() - (7 * DAY_IN_MS);
 
-    private String ID = "12345booya";
+    private String ID = "0123abcd-4567-89ef-fedc-ba9876543210";
     private String TITLE = "eat a bucket of candy";
     private String TITLE2 = "shit a bucket of candy";
     private boolean POLARITY = false;
@@ -67,7 +74,9 @@ public class GoalsDaoTest {
         // using an in-memory database because the information stored here disappears when the
         // process is killed
         mDatabase = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getContext(),
-                SelfCareDatabase.class).build();
+                SelfCareDatabase.class)
+                .addCallback(SelfCareDatabase.SEARCH_INDEX_CALLBACK)
+                .build();
     }
 
     @After
@@ -81,7 +90,7 @@ public class GoalsDaoTest {
         mDatabase.goalDao().insertGoal(GOAL);
 
         // When getting the goal by id from the database
-        Goal loaded = mDatabase.goalDao().getGoalById(GOAL.getId());
+        Goal loaded = mDatabase.goalDao().getGoalById(GOAL.getGoalId());
 
         // The loaded data contains the expected values
         assertGoal(loaded, ID, TITLE, INTERVAL, POLARITY, ARCHIVED, TOUCHED);
@@ -103,7 +112,7 @@ public class GoalsDaoTest {
 
         mDatabase.goalDao().insertGoal(newGoal);
         // When getting the goal by id from the database
-        Goal loaded = mDatabase.goalDao().getGoalById(GOAL.getId());
+        Goal loaded = mDatabase.goalDao().getGoalById(GOAL.getGoalId());
 
         // The loaded data contains the expected values
         assertGoal(loaded, ID, TITLE2, INTERVAL2, POLARITY2, ARCHIVED2, TOUCHED2);
@@ -140,7 +149,7 @@ public class GoalsDaoTest {
         mDatabase.goalDao().updateGoal(updatedGoal);
 
         // When getting the goal by id from the database
-        Goal loaded = mDatabase.goalDao().getGoalById(ID);
+        Goal loaded = mDatabase.goalDao().getGoalById(GOAL.getGoalId());
 
         // The loaded data contains the expected values
         assertGoal(loaded, ID, TITLE2, INTERVAL2, POLARITY2, ARCHIVED2, TOUCHED2);
@@ -152,10 +161,10 @@ public class GoalsDaoTest {
         mDatabase.goalDao().insertGoal(GOAL);
 
         // When the goal is updated
-        mDatabase.goalDao().updateArchived(GOAL.getId(), true);
+        mDatabase.goalDao().updateArchived(GOAL.getGoalId(), true);
 
         // When getting the goal by id from the database
-        Goal loaded = mDatabase.goalDao().getGoalById(ID);
+        Goal loaded = mDatabase.goalDao().getGoalById(GOAL.getGoalId());
 
         // The loaded data contains the expected values
         assertGoal(loaded, GOAL.getId(), GOAL.getTitle(), GOAL.getInterval(), GOAL.getPolarity(), true, GOAL.getTouched());
@@ -167,7 +176,7 @@ public class GoalsDaoTest {
         mDatabase.goalDao().insertGoal(GOAL);
 
         //When deleting a goal by id
-        mDatabase.goalDao().deleteGoalById(GOAL.getId());
+        mDatabase.goalDao().deleteGoalById(GOAL.getGoalId());
 
         //When getting the goals
         List<Goal> goals = mDatabase.goalDao().getGoals();
@@ -207,6 +216,343 @@ public class GoalsDaoTest {
         assertThat(goals.size(), is(0));
     }
 
+    @Test
+    public void syncGoalsAppliesInsertsUpdatesAndDeletes() {
+        // Given two goals in the database
+        Goal staleGoal = new Goal.Builder().setTitle(TITLE2).setInterval(INTERVAL2).build();
+        mDatabase.goalDao().insertGoal(GOAL);
+        mDatabase.goalDao().insertGoal(staleGoal);
+
+        // When syncing to a set that changes one goal, drops the other and adds a new one
+        Goal updatedGoal = new Goal.Builder(GOAL).setTouched(TOUCHED2).build();
+        Goal newGoal = new Goal.Builder().setTitle(TITLE2).setInterval(INTERVAL).build();
+        mDatabase.goalDao().syncGoals(Arrays.asList(updatedGoal, newGoal));
+
+        // Then the table holds exactly the synced set
+        List<Goal> goals = mDatabase.goalDao().getGoals();
+        assertThat(goals.size(), is(2));
+        assertGoal(mDatabase.goalDao().getGoalById(GOAL.getGoalId()), ID, TITLE, INTERVAL,
+                POLARITY, ARCHIVED, TOUCHED2);
+        assertThat(mDatabase.goalDao().getGoalById(newGoal.getGoalId()), notNullValue());
+        assertThat(mDatabase.goalDao().getGoalById(staleGoal.getGoalId()), nullValue());
+    }
+
+    @Test
+    public void insertGoalsAndUpdateArchivedInBulk() {
+        // Given two goals inserted as a batch
+        Goal otherGoal = new Goal.Builder().setTitle(TITLE2).setInterval(INTERVAL2).build();
+        mDatabase.goalDao().insertGoals(Arrays.asList(GOAL, otherGoal));
+
+        // When both are archived in one call
+        mDatabase.goalDao().updateArchived(
+                Arrays.asList(GOAL.getGoalId(), otherGoal.getGoalId()), true);
+
+        // Then both goals are archived
+        assertThat(mDatabase.goalDao().getGoalById(GOAL.getGoalId()).isArchived(), is(true));
+        assertThat(mDatabase.goalDao().getGoalById(otherGoal.getGoalId()).isArchived(), is(true));
+    }
+
+    @Test
+    public void deleteGoalsByIdsAndGettingGoals() {
+        // Given two goals inserted as a batch
+        Goal otherGoal = new Goal.Builder().setTitle(TITLE2).setInterval(INTERVAL2).build();
+        mDatabase.goalDao().insertGoals(Arrays.asList(GOAL, otherGoal));
+
+        // When deleting both by id
+        int deleted = mDatabase.goalDao().deleteGoalsByIds(
+                Arrays.asList(GOAL.getGoalId(), otherGoal.getGoalId()));
+
+        // The list is empty
+        assertThat(deleted, is(2));
+        assertThat(mDatabase.goalDao().getGoals().size(), is(0));
+    }
+
+    @Test
+    public void getGoalsByArchivedReturnsOnlyMatchingGoals() {
+        // Given one active and one archived goal
+        Goal archivedGoal = new Goal.Builder().setTitle(TITLE2).setInterval(INTERVAL2)
+                .setArchived(true).build();
+        mDatabase.goalDao().insertGoals(Arrays.asList(GOAL, archivedGoal));
+
+        // When getting the goals by archived state
+        List<Goal> active = mDatabase.goalDao().getGoalsByArchived(false);
+        List<Goal> archived = mDatabase.goalDao().getGoalsByArchived(true);
+
+        // Each query only sees its own goal, and the count covers both
+        assertThat(active.size(), is(1));
+        assertThat(active.get(0).getId(), is(ID));
+        assertThat(archived.size(), is(1));
+        assertThat(archived.get(0).getId(), is(archivedGoal.getId()));
+        assertThat(mDatabase.goalDao().countGoals(), is(2));
+    }
+
+    @Test
+    public void getGoalsAfterPagesInIdOrder() {
+        // Given five active goals and one archived goal, inserted out of id order
+        List<Goal> goals = new ArrayList<>();
+        for (String id : Arrays.asList("c0", "a0", "e0", "b0", "d0")) {
+            goals.add(new Goal.Builder(pagingId(id)).setTitle(TITLE).setInterval(INTERVAL).build());
+        }
+        goals.add(new Goal.Builder(pagingId("bb")).setTitle(TITLE).setArchived(true).build());
+        mDatabase.goalDao().insertGoals(goals);
+
+        // When paging through the active goals two at a time
+        List<Goal> first = mDatabase.goalDao().getGoalsByArchivedAt(false, 0, 2);
+        List<Goal> second = mDatabase.goalDao().getGoalsByArchivedAfter(false,
+                first.get(1).getGoalId(), 2);
+
+        // Then the pages follow id order and skip the archived goal
+        assertThat(first.get(0).getId(), is(pagingId("a0")));
+        assertThat(first.get(1).getId(), is(pagingId("b0")));
+        assertThat(second.get(0).getId(), is(pagingId("c0")));
+        assertThat(second.get(1).getId(), is(pagingId("d0")));
+
+        // And seeking by offset lands on the same page
+        assertThat(mDatabase.goalDao().getGoalsByArchivedAt(false, 2, 2).get(0).getId(),
+                is(pagingId("c0")));
+        assertThat(mDatabase.goalDao().countGoalsByArchived(false), is(5));
+    }
+
+    @Test
+    public void getGoalsInDueOrderPutsMostOverdueFirst() {
+        // Given goals that fall due at different times, one of them archived, and one to avoid
+        mDatabase.goalDao().insertGoals(Arrays.asList(
+                dueGoal("a0", 10, 3, false),
+                dueGoal("b0", 2, 1, false),
+                dueGoal("c0", 5, 7, false),
+                dueGoal("d0", 0, 1, true),
+                new Goal.Builder(dueGoal("e0", 0, 1, false)).setPolarity(false).build()));
+
+        // When reading them in due order
+        List<Goal> all = mDatabase.goalDao().getGoalsInDueOrderAt(0, 10);
+        List<Goal> active = mDatabase.goalDao().getGoalsByArchivedInDueOrderAt(false, 1, 10);
+
+        // Then the goal that fell due first comes first
+        assertThat(all.get(0).getId(), is(pagingId("d0")));
+        assertThat(all.get(1).getId(), is(pagingId("b0")));
+        assertThat(all.get(2).getId(), is(pagingId("c0")));
+        assertThat(all.get(3).getId(), is(pagingId("a0")));
+        assertThat(all.get(1).getDueAt(), is(3 * DAY_IN_MS));
+
+        // And the goal to avoid is never due, so it comes last
+        assertThat(all.get(4).getId(), is(pagingId("e0")));
+
+        // And the active ones skip the archived goal
+        assertThat(active.size(), is(3));
+        assertThat(active.get(0).getId(), is(pagingId("c0")));
+    }
+
+    @Test
+    public void searchGoalsFollowsInsertsReplacesAndDeletes() {
+        // Given two goals, one of them archived
+        mDatabase.goalDao().insertGoal(GOAL);
+        Goal archived = new Goal.Builder(pagingId("a0"))
+                .setTitle("Water the plants")
+                .setArchived(true)
+                .build();
+        mDatabase.goalDao().insertGoal(archived);
+
+        // Then words are matched by prefix, and archived goals can be left out
+        assertThat(mDatabase.goalDao().searchGoals("buck* cand*", 10).size(), is(1));
+        assertThat(mDatabase.goalDao().searchGoals("wat*", 10).size(), is(1));
+        assertThat(mDatabase.goalDao().searchGoalsByArchived(false, "wat*", 10).size(), is(0));
+
+        // When the first goal is replaced with a new title
+        mDatabase.goalDao().insertGoal(new Goal.Builder(GOAL).setTitle(TITLE2).build());
+
+        // Then only the new title matches
+        assertThat(mDatabase.goalDao().searchGoals("eat*", 10).size(), is(0));
+        assertThat(mDatabase.goalDao().searchGoals("shi*", 10).get(0).getId(), is(ID));
+
+        // When the archived goal is deleted, it is not found any more
+        mDatabase.goalDao().deleteGoalById(archived.getGoalId());
+        assertThat(mDatabase.goalDao().searchGoals("wat*", 10).size(), is(0));
+    }
+
+    @Test
+    public void getTouchesReadsOneGoalWithinTheWindow() {
+        // Given touches of two goals
+        mDatabase.goalDao().insertGoal(GOAL);
+        GoalId otherId = GoalId.fromString(pagingId("a0"));
+        mDatabase.goalDao().insertTouches(Arrays.asList(
+                new GoalTouch(GOAL.getGoalId(), 30),
+                new GoalTouch(GOAL.getGoalId(), 10),
+                new GoalTouch(otherId, 20),
+                new GoalTouch(GOAL.getGoalId(), 20),
+                new GoalTouch(GOAL.getGoalId(), 40)));
+
+        // When a touch is recorded twice, it is kept once
+        mDatabase.goalDao().insertTouches(Arrays.asList(new GoalTouch(GOAL.getGoalId(), 10)));
+
+        // Then the window holds the touches of the goal from its start to its end, oldest first
+        List<GoalTouch> touches = mDatabase.goalDao().getTouches(GOAL.getGoalId(), 10, 40);
+        assertThat(touches, is(Arrays.asList(
+                new GoalTouch(GOAL.getGoalId(), 10),
+                new GoalTouch(GOAL.getGoalId(), 20),
+                new GoalTouch(GOAL.getGoalId(), 30))));
+    }
+
+    @Test
+    public void compactTouchesThinsOldDaysAndDropsExpiredAndOrphanedTouches() {
+        // Given a goal touched three times on each of three days, and a touch of a deleted goal
+        mDatabase.goalDao().insertGoal(GOAL);
+        List<GoalTouch> touches = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            for (int hour = 1; hour <= 3; hour++) {
+                touches.add(new GoalTouch(GOAL.getGoalId(), day * DAY_IN_MS + hour * 3600000L));
+            }
+        }
+        touches.add(new GoalTouch(GoalId.fromString(pagingId("a0")), 2 * DAY_IN_MS));
+        mDatabase.goalDao().insertTouches(touches);
+
+        // When touches before the last day are thinned and those before the first are dropped
+        int deleted = mDatabase.goalDao().compactTouches(2 * DAY_IN_MS, DAY_IN_MS);
+
+        // Then the first day is gone, the second keeps its first touch and the last is untouched
+        assertThat(deleted, is(6));
+        List<GoalTouch> left = mDatabase.goalDao().getTouches(GOAL.getGoalId(), 0, 3 * DAY_IN_MS);
+        assertThat(left.size(), is(4));
+        assertThat(left.get(0).getTouchedAt(), is(DAY_IN_MS + 3600000L));
+        assertThat(left.get(1).getTouchedAt(), is(2 * DAY_IN_MS + 3600000L));
+    }
+
+    @Test
+    public void appendTouchesKeepsTheStatsARebuildProduces() {
+        // Given a goal due every 2 days, touched in two batches
+        Goal goal = new Goal.Builder(GOAL).setPolarity(true).setInterval(2).build();
+        mDatabase.goalDao().insertGoal(goal);
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(goal.getGoalId(), 2 * DAY_IN_MS),
+                new GoalTouch(goal.getGoalId(), 0)));
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(goal.getGoalId(), 5 * DAY_IN_MS),
+                new GoalTouch(goal.getGoalId(), 5 * DAY_IN_MS + 1000)));
+
+        // Then the stats count every day touched
+        GoalStats stats = mDatabase.goalDao().getGoalStats(goal.getGoalId());
+        List<DailyStats> dailyStats = mDatabase.goalDao().getDailyStats(0, 10);
+        assertThat(stats.getDaysTouched(), is(3));
+        assertThat(stats.getOnTime(), is(1));
+        assertThat(dailyStats.size(), is(3));
+
+        // And rebuilding them from the history gives the same stats
+        mDatabase.goalDao().rebuildStats();
+        assertThat(mDatabase.goalDao().getGoalStats(goal.getGoalId()), is(stats));
+        assertThat(mDatabase.goalDao().getDailyStats(0, 10), is(dailyStats));
+    }
+
+    @Test
+    public void appendTouchOnAnEarlierDayRebuildsTheStats() {
+        // Given a goal touched on day 5
+        mDatabase.goalDao().insertGoal(GOAL);
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(GOAL.getGoalId(), 5 * DAY_IN_MS)));
+
+        // When a touch from day 1 arrives late
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(GOAL.getGoalId(), DAY_IN_MS)));
+
+        // Then it is counted as the first touch
+        GoalStats stats = mDatabase.goalDao().getGoalStats(GOAL.getGoalId());
+        assertThat(stats.getDaysTouched(), is(2));
+        assertThat(stats.getLastTouchedDay(), is(5L));
+        assertThat(mDatabase.goalDao().hasTouchesWithoutStats(), is(false));
+    }
+
+    @Test
+    public void appendTouchOnAnEarlierDayRecountsOnlyItsGoal() {
+        // Given two goals touched on day 5
+        Goal other = dueGoal("b0", 0, 1, false);
+        mDatabase.goalDao().insertGoal(GOAL);
+        mDatabase.goalDao().insertGoal(other);
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(GOAL.getGoalId(), 5 * DAY_IN_MS),
+                new GoalTouch(other.getGoalId(), 5 * DAY_IN_MS)));
+        GoalStats otherStats = mDatabase.goalDao().getGoalStats(other.getGoalId());
+
+        // When a touch of the first from day 1 arrives late, with a new touch of the other
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(GOAL.getGoalId(), DAY_IN_MS),
+                new GoalTouch(other.getGoalId(), 6 * DAY_IN_MS)));
+
+        // Then the other goal counts its new touch on top of its stats
+        GoalStats stats = mDatabase.goalDao().getGoalStats(GOAL.getGoalId());
+        GoalStats newOtherStats = mDatabase.goalDao().getGoalStats(other.getGoalId());
+        List<DailyStats> dailyStats = mDatabase.goalDao().getDailyStats(0, 10);
+        assertThat(newOtherStats.getDaysTouched(), is(otherStats.getDaysTouched() + 1));
+        assertThat(dailyStats.size(), is(3));
+
+        // And rebuilding them from the history gives the same stats
+        mDatabase.goalDao().rebuildStats();
+        assertThat(mDatabase.goalDao().getGoalStats(GOAL.getGoalId()), is(stats));
+        assertThat(mDatabase.goalDao().getGoalStats(other.getGoalId()), is(newOtherStats));
+        assertThat(mDatabase.goalDao().getDailyStats(0, 10), is(dailyStats));
+    }
+
+    @Test
+    public void compactTouchesKeepsTheStatsARebuildProduces() {
+        // Given a goal due every day, touched on each of six days
+        Goal goal = new Goal.Builder(GOAL).setPolarity(true).setInterval(1).build();
+        mDatabase.goalDao().insertGoal(goal);
+        List<GoalTouch> touches = new ArrayList<>();
+        for (int day = 0; day < 6; day++) {
+            touches.add(new GoalTouch(goal.getGoalId(), day * DAY_IN_MS));
+        }
+        mDatabase.goalDao().appendTouches(touches);
+        GoalStats stats = mDatabase.goalDao().getGoalStats(goal.getGoalId());
+        List<DailyStats> dailyStats = mDatabase.goalDao().getDailyStats(0, 10);
+
+        // When the touches of the first three days are dropped
+        mDatabase.goalDao().compactTouches(3 * DAY_IN_MS, 3 * DAY_IN_MS);
+
+        // Then rebuilding the stats still counts them
+        mDatabase.goalDao().rebuildStats();
+        assertThat(mDatabase.goalDao().getGoalStats(goal.getGoalId()), is(stats));
+        assertThat(mDatabase.goalDao().getDailyStats(0, 10), is(dailyStats));
+
+        // And so does counting a new touch, the same way with or without a rebuild
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(goal.getGoalId(), 6 * DAY_IN_MS)));
+        stats = mDatabase.goalDao().getGoalStats(goal.getGoalId());
+        dailyStats = mDatabase.goalDao().getDailyStats(0, 10);
+        assertThat(stats.getCurrentStreak(), is(7));
+        mDatabase.goalDao().rebuildStats();
+        assertThat(mDatabase.goalDao().getGoalStats(goal.getGoalId()), is(stats));
+        assertThat(mDatabase.goalDao().getDailyStats(0, 10), is(dailyStats));
+    }
+
+    @Test
+    public void deleteGoalByIdKeepsItsDaysInTheDailyStats() {
+        // Given a goal touched on two days
+        mDatabase.goalDao().insertGoal(GOAL);
+        mDatabase.goalDao().appendTouches(Arrays.asList(
+                new GoalTouch(GOAL.getGoalId(), DAY_IN_MS),
+                new GoalTouch(GOAL.getGoalId(), 2 * DAY_IN_MS)));
+        List<DailyStats> dailyStats = mDatabase.goalDao().getDailyStats(0, 10);
+
+        // When the goal is deleted and the stats rebuilt
+        mDatabase.goalDao().deleteGoalById(GOAL.getGoalId());
+        mDatabase.goalDao().rebuildStats();
+
+        // Then its stats are gone but the days it was touched on are still counted
+        assertThat(mDatabase.goalDao().getGoalStats(GOAL.getGoalId()), nullValue());
+        assertThat(mDatabase.goalDao().getDailyStats(0, 10), is(dailyStats));
+    }
+
+    private Goal dueGoal(String lastDigits, int touchedDay, int interval, boolean archived) {
+        return new Goal.Builder(pagingId(lastDigits))
+                .setTitle(TITLE)
+                .setPolarity(true)
+                .setTouched(touchedDay * DAY_IN_MS)
+                .setInterval(interval)
+                .setArchived(archived)
+                .build();
+    }
+
+    private static String pagingId(String lastDigits) {
+        return "00000000-0000-0000-0000-0000000000" + lastDigits;
+    }
+
     private void assertGoal(Goal goal,
                             String id,
                             String title,
@@ -23,6 +23,8 @@ import android.support.test.runner.AndroidJUnit4;
 
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+import com.beatboxchad.android.selfcaredashboard.util.QueuedDiskExecutors;
 import com.beatboxchad.android.selfcaredashboard.util.SingleExecutors;
 
 import org.junit.After;
@@ -30,6 +32,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.core.Is.is;
@@ -53,7 +58,7 @@ public class GoalsLocalDataSourceTest {
     private long A_DAY_AGO = System.currentTimeMillis() - (1 * DAY_IN_MS);
     private long A_WEEK_AGO = System.currentTimeMillis() - (7 * DAY_IN_MS);
 
-    private String ID = "12345booya";
+    private String ID = "0123abcd-4567-89ef-fedc-ba9876543210";
 
     private final static String TITLE = "mTitle";
 
@@ -259,4 +264,48 @@ public class GoalsLocalDataSourceTest {
             }
         });
     }
+
+    @Test
+    public void pageRead_waitsForTheSyncBeforeIt_whileGoalReadsPassIt() {
+        // Given a saved goal, and disk work queued until run
+        final Goal goal = new Goal.Builder().setTitle(TITLE).setInterval(1).setPolarity(true)
+                .build();
+        mLocalDataSource.saveGoal(goal);
+        QueuedDiskExecutors executors = new QueuedDiskExecutors();
+        GoalsLocalDataSource.clearInstance();
+        GoalsLocalDataSource dataSource =
+                GoalsLocalDataSource.getInstance(executors, mDatabase.goalDao());
+
+        // When a sync renaming it is queued, then the goal and the first page are read
+        dataSource.syncGoals(Collections.singletonList(
+                new Goal.Builder(goal).setTitle(TITLE2).build()));
+        final List<String> read = new ArrayList<>();
+        dataSource.getGoal(goal.getId(), new GoalsDataSource.GetGoalCallback() {
+            @Override
+            public void onGoalLoaded(Goal loaded) {
+                read.add("goal:" + loaded.getTitle());
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                fail();
+            }
+        });
+        dataSource.getGoalsPageAt(GoalsFilterType.ALL_GOALS, 0, 10,
+                new GoalsDataSource.LoadGoalsCallback() {
+            @Override
+            public void onGoalsLoaded(List<Goal> goals) {
+                read.add("page:" + goals.get(0).getTitle());
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                fail();
+            }
+        });
+        executors.runDiskIO();
+
+        // Then the goal read passed the sync, and the page saw it
+        assertThat(read, is(Arrays.asList("goal:" + TITLE, "page:" + TITLE2)));
+    }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source.local;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.arch.persistence.room.Room;
+import android.arch.persistence.room.testing.MigrationTestHelper;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Migrates databases created from the exported schemas and checks the result against the schema
+ * of the version migrated to.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SelfCareDatabaseMigrationTest {
+
+    private static final String TEST_DB = "migration-test.db";
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final String UUID_ID = "0123abcd-4567-89ef-fedc-ba9876543210";
+
+    private static final String LEGACY_ID = "goal-1";
+
+    private static final long TOUCHED = 1500000000000L;
+
+    @Rule
+    public MigrationTestHelper mHelper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            SelfCareDatabase.class.getCanonicalName(),
+            new FrameworkSQLiteOpenHelperFactory());
+
+    @Test
+    public void migrate4To5_copiesGoalsAndConvertsTheirIds() {
+        SupportSQLiteDatabase database = mHelper.createDatabase(TEST_DB, 4);
+        insertGoal(database, UUID_ID, "uuid", 3, TOUCHED, false);
+        insertGoal(database, LEGACY_ID, "legacy", 7, TOUCHED + 1, true);
+        database.close();
+
+        database = mHelper.runMigrationsAndValidate(TEST_DB, 5, true,
+                SelfCareDatabase.MIGRATION_4_5);
+
+        Cursor cursor = database.query("SELECT `entryid`, `title`, `interval`, `touched`,"
+                + " `archived` FROM `goals` ORDER BY `touched`");
+        try {
+            assertThat(cursor.getCount(), is(2));
+
+            cursor.moveToNext();
+            assertThat(GoalId.fromBytes(cursor.getBlob(0)), is(GoalId.fromString(UUID_ID)));
+            assertThat(cursor.getString(1), is("uuid"));
+            assertThat(cursor.getInt(2), is(3));
+            assertThat(cursor.getLong(3), is(TOUCHED));
+            assertThat(cursor.getInt(4), is(0));
+
+            cursor.moveToNext();
+            GoalId legacyId = GoalId.fromUuid(
+                    UUID.nameUUIDFromBytes(LEGACY_ID.getBytes(Charset.forName("UTF-8"))));
+            assertThat(GoalId.fromBytes(cursor.getBlob(0)), is(legacyId));
+            assertThat(cursor.getString(1), is("legacy"));
+            assertThat(cursor.getInt(4), is(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrate5To6_backfillsTheDueTime() {
+        SupportSQLiteDatabase database = mHelper.createDatabase(TEST_DB, 5);
+        insertGoal(database, GoalId.fromString(UUID_ID).toBytes(), true, 3, TOUCHED);
+        insertGoal(database, GoalId.random().toBytes(), false, 3, TOUCHED);
+        insertGoal(database, GoalId.random().toBytes(), true, -1, TOUCHED);
+        database.close();
+
+        database = mHelper.runMigrationsAndValidate(TEST_DB, 6, true,
+                SelfCareDatabase.MIGRATION_5_6);
+
+        // Goals without a positive interval come first and goals to avoid last
+        Cursor cursor = database.query("SELECT `polarity`, `interval`, `due_at` FROM `goals`"
+                + " ORDER BY `due_at`");
+        try {
+            assertThat(cursor.getCount(), is(3));
+
+            cursor.moveToNext();
+            assertThat(cursor.getInt(1), is(-1));
+            assertThat(cursor.getLong(2), is(TOUCHED));
+
+            cursor.moveToNext();
+            assertThat(cursor.getLong(2), is(TOUCHED + 3 * DAY_MILLIS));
+
+            cursor.moveToNext();
+            assertThat(cursor.getInt(0), is(0));
+            assertThat(cursor.getLong(2), is(Long.MAX_VALUE));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrate6To7_keysTheSearchIndexByGoalId() {
+        SupportSQLiteDatabase database = mHelper.createDatabase(TEST_DB, 6);
+        ContentValues values = new ContentValues();
+        values.put("entryid", GoalId.fromString(UUID_ID).toBytes());
+        values.put("title", "water the plants");
+        values.put("polarity", 1);
+        values.put("interval", 3);
+        values.put("touched", TOUCHED);
+        values.put("archived", 0);
+        values.put("due_at", TOUCHED + 3 * DAY_MILLIS);
+        database.insert("goals", SQLiteDatabase.CONFLICT_REPLACE, values);
+        database.close();
+
+        database = mHelper.runMigrationsAndValidate(TEST_DB, 7, true,
+                SelfCareDatabase.MIGRATION_6_7);
+
+        // The goal is indexed, and replacing it leaves a single entry with the new title
+        assertThat(countMatches(database, "wat*"), is(1));
+        values.put("title", "water the lawn");
+        database.insert("goals", SQLiteDatabase.CONFLICT_REPLACE, values);
+        assertThat(countMatches(database, "pla*"), is(0));
+        assertThat(countMatches(database, "law*"), is(1));
+        database.execSQL("VACUUM");
+        assertThat(countMatches(database, "law*"), is(1));
+    }
+
+    @Test
+    public void migrate8To9_createsTheStatsAndTheirBaselines() {
+        mHelper.createDatabase(TEST_DB, 8).close();
+
+        SupportSQLiteDatabase database = mHelper.runMigrationsAndValidate(TEST_DB, 9, true,
+                SelfCareDatabase.MIGRATION_8_9);
+
+        Cursor cursor = database.query("SELECT COUNT(*) FROM `daily_stats_baseline`");
+        try {
+            assertThat(cursor.moveToNext(), is(true));
+            assertThat(cursor.getInt(0), is(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void migrateAll_keepsGoalsReadableByRoom() {
+        SupportSQLiteDatabase database = mHelper.createDatabase(TEST_DB, 2);
+        insertGoal(database, LEGACY_ID, "legacy", 7, TOUCHED, false);
+        database.close();
+
+        SelfCareDatabase selfCareDatabase = Room.databaseBuilder(
+                InstrumentationRegistry.getTargetContext(), SelfCareDatabase.class, TEST_DB)
+                .addMigrations(SelfCareDatabase.MIGRATION_2_3, SelfCareDatabase.MIGRATION_3_4,
+                        SelfCareDatabase.MIGRATION_4_5, SelfCareDatabase.MIGRATION_5_6,
+                        SelfCareDatabase.MIGRATION_6_7, SelfCareDatabase.MIGRATION_7_8,
+                        SelfCareDatabase.MIGRATION_8_9)
+                .addCallback(SelfCareDatabase.SEARCH_INDEX_CALLBACK)
+                .build();
+        mHelper.closeWhenFinished(selfCareDatabase);
+
+        GoalId legacyId = GoalId.fromUuid(
+                UUID.nameUUIDFromBytes(LEGACY_ID.getBytes(Charset.forName("UTF-8"))));
+        Goal goal = selfCareDatabase.goalDao().getGoalById(legacyId);
+        assertThat(goal, notNullValue());
+        assertThat(goal.getTitle(), is("legacy"));
+        assertThat(goal.getDueAt(), is(TOUCHED + 7 * DAY_MILLIS));
+        assertThat(selfCareDatabase.goalDao().searchGoals("legacy*", 10).size(), is(1));
+        assertThat(selfCareDatabase.goalDao().getTouches(legacyId, 0, Long.MAX_VALUE).size(),
+                is(1));
+    }
+
+    private static int countMatches(SupportSQLiteDatabase database, String match) {
+        Cursor cursor = database.query("SELECT `goals`.`entryid` FROM `goals_fts`"
+                + " JOIN `goals_fts_keys` ON `goals_fts_keys`.`docid` = `goals_fts`.`docid`"
+                + " JOIN `goals` ON `goals`.`entryid` = `goals_fts_keys`.`goal_id`"
+                + " WHERE `goals_fts` MATCH ?", new Object[]{match});
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void insertGoal(SupportSQLiteDatabase database, byte[] id, boolean polarity,
+            int interval, long touched) {
+        ContentValues values = new ContentValues();
+        values.put("entryid", id);
+        values.put("title", "title");
+        values.put("polarity", polarity ? 1 : 0);
+        values.put("interval", interval);
+        values.put("touched", touched);
+        values.put("archived", 0);
+        database.insert("goals", SQLiteDatabase.CONFLICT_REPLACE, values);
+    }
+
+    private static void insertGoal(SupportSQLiteDatabase database, String id, String title,
+            int interval, long touched, boolean archived) {
+        ContentValues values = new ContentValues();
+        values.put("entryid", id);
+        values.put("title", title);
+        values.put("polarity", 1);
+        values.put("interval", interval);
+        values.put("touched", touched);
+        values.put("archived", archived ? 1 : 0);
+        database.insert("goals", SQLiteDatabase.CONFLICT_REPLACE, values);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Ticker;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Queues disk work on a {@link DiskIOThreadExecutor} until {@link #runDiskIO()}, so tests can
+ * check the order it picks. Other work runs instantly.
+ */
+public class QueuedDiskExecutors extends AppExecutors {
+
+    private static final Executor INSTANT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Queue<Runnable> mDiskQueue;
+
+    public QueuedDiskExecutors() {
+        this(new ArrayDeque<Runnable>());
+    }
+
+    private QueuedDiskExecutors(final Queue<Runnable> diskQueue) {
+        super(new DiskIOThreadExecutor(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                diskQueue.add(command);
+            }
+        }, Ticker.systemTicker()), INSTANT, INSTANT, INSTANT);
+        mDiskQueue = diskQueue;
+    }
+
+    /**
+     * Runs the queued disk work, including any it queues in turn.
+     */
+    public void runDiskIO() {
+        while (!mDiskQueue.isEmpty()) {
+            mDiskQueue.remove().run();
+        }
+    }
+}
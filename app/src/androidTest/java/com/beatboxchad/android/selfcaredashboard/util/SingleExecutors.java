@@ -34,6 +34,6 @@ public class SingleExecutors extends AppExecutors {
     };
 
     public SingleExecutors() {
-        super(instant, instant, instant);
+        super(instant, instant, instant, instant);
     }
 }
@@ -24,11 +24,12 @@ import android.databinding.ObservableField;
 import android.support.annotation.Nullable;
 
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsRepository;
+import com.beatboxchad.android.selfcaredashboard.util.TouchedDateFormatter;
 
-import java.sql.Date;
-import java.text.SimpleDateFormat;
+import java.util.Collections;
 
 
 /**
@@ -55,6 +56,12 @@ public abstract class GoalViewModel extends BaseObservable
 
     private boolean mIsDataLoading;
 
+    @Nullable
+    private GoalsDataSource.Subscription mGoalSubscription;
+
+    @Nullable
+    private String mObservedGoalId;
+
     public GoalViewModel(Context context, GoalsRepository goalsRepository) {
         mContext = context.getApplicationContext(); // Force use of Application Context.
         mGoalsRepository = goalsRepository;
@@ -76,15 +83,38 @@ public abstract class GoalViewModel extends BaseObservable
         });
     }
 
+    /**
+     * Starts observing the goal, so edits made anywhere else show up without reloading it.
+     */
     public void start(String goalId) {
-        if (goalId != null) {
-            mIsDataLoading = true;
-            mGoalsRepository.getGoal(goalId, this);
+        if (goalId == null || (mGoalSubscription != null && goalId.equals(mObservedGoalId))) {
+            // Nothing to load, or already observing this goal.
+            return;
+        }
+        stop();
+        mIsDataLoading = true;
+        mObservedGoalId = goalId;
+        mGoalSubscription = mGoalsRepository.observeGoal(goalId, this);
+    }
+
+    /**
+     * Stops observing the goal.
+     */
+    public void stop() {
+        if (mGoalSubscription != null) {
+            mGoalSubscription.unsubscribe();
+            mGoalSubscription = null;
+            mObservedGoalId = null;
         }
     }
 
+    /**
+     * Shows {@code goal} without loading it. This can be called again with another goal, which is
+     * how list rows reuse their view model.
+     */
     public void setGoal(Goal goal) {
         mGoalObservable.set(goal);
+        notifyChange(); // For the @Bindable properties
     }
 
     @Bindable
@@ -104,9 +134,24 @@ public abstract class GoalViewModel extends BaseObservable
 
     @Bindable
     public String getTouchedDateString() {
-        SimpleDateFormat fmt = new SimpleDateFormat("EEE, d MMM yyyy, hh:mm aaa");
-        Date touched = new Date(mTouched.get());
-        return fmt.format(touched);
+        Goal goal = mGoalObservable.get();
+        return goal == null ? "" : dateFormatter().formatTouched(goal);
+    }
+
+    @Bindable
+    public String getTouchedAgoString() {
+        Goal goal = mGoalObservable.get();
+        return goal == null ? "" : dateFormatter().formatTouchedAgo(goal);
+    }
+
+    @Bindable
+    public String getDueString() {
+        Goal goal = mGoalObservable.get();
+        return goal == null ? "" : dateFormatter().formatDue(goal);
+    }
+
+    private TouchedDateFormatter dateFormatter() {
+        return TouchedDateFormatter.getInstance(mContext);
     }
 
     // "archived" is two-way bound, so in order to intercept the new value, use a
@@ -172,22 +217,27 @@ public abstract class GoalViewModel extends BaseObservable
     }
 
 
-    public void touchGoal() {
+    /**
+     * Marks the goal as done now.
+     *
+     * @return the touched goal.
+     */
+    public Goal touchGoal() {
         Goal goal = mGoalObservable.get();
-        Goal newGoal = new Goal.Builder(goal.getId())
-                .setTitle(goal.getTitle())
-                .setInterval(goal.getInterval())
-                .setPolarity(goal.getPolarity())
-                .setArchived(goal.isArchived())
+        Goal newGoal = new Goal.Builder(goal)
                 .setTouched(System.currentTimeMillis())
                 .build();
         mGoalObservable.set(newGoal);
         mGoalsRepository.saveGoal(newGoal);
+        mGoalsRepository.saveTouches(Collections.singletonList(GoalTouch.of(newGoal)));
+        return newGoal;
     }
 
     public void onRefresh() {
         if (mGoalObservable.get() != null) {
-            start(mGoalObservable.get().getId());
+            String goalId = mGoalObservable.get().getId();
+            stop();
+            start(goalId);
         }
     }
 
@@ -200,4 +250,15 @@ public abstract class GoalViewModel extends BaseObservable
     protected String getGoalId() {
         return mGoalObservable.get().getId();
     }
+
+    /**
+     * Returns the Application Context.
+     */
+    protected Context getContext() {
+        return mContext;
+    }
+
+    protected GoalsRepository getGoalsRepository() {
+        return mGoalsRepository;
+    }
 }
\ No newline at end of file
@@ -62,6 +62,9 @@ public class AddEditGoalViewModel implements GoalsDataSource.GetGoalCallback {
 
     private AddEditGoalNavigator mAddEditGoalNavigator;
 
+    @Nullable
+    private GoalsDataSource.Subscription mGoalSubscription;
+
     AddEditGoalViewModel(Context context, GoalsRepository goalsRepository) {
         mContext = context.getApplicationContext(); // Force use of Application Context.
         mGoalsRepository = goalsRepository;
@@ -74,6 +77,10 @@ public class AddEditGoalViewModel implements GoalsDataSource.GetGoalCallback {
     void onActivityDestroyed() {
         // Clear references to avoid potential memory leaks.
         mAddEditGoalNavigator = null;
+        if (mGoalSubscription != null) {
+            mGoalSubscription.unsubscribe();
+            mGoalSubscription = null;
+        }
     }
 
     public void start(String goalId) {
@@ -93,7 +100,7 @@ public class AddEditGoalViewModel implements GoalsDataSource.GetGoalCallback {
         }
         mIsNewGoal = false;
         dataLoading.set(true);
-        mGoalsRepository.getGoal(goalId, this);
+        mGoalSubscription = mGoalsRepository.observeGoal(goalId, this);
     }
 
     public int getInterval() {
@@ -122,6 +129,12 @@ public class AddEditGoalViewModel implements GoalsDataSource.GetGoalCallback {
 
     @Override
     public void onGoalLoaded(Goal goal) {
+        if (mIsDataLoaded) {
+            // Don't overwrite what the user is typing; only reflect changes made elsewhere to
+            // fields this screen does not edit.
+            archived.set(goal.isArchived());
+            return;
+        }
         title.set(goal.getTitle());
         interval.set(goal.getInterval());
         polarity.set(goal.getPolarity());
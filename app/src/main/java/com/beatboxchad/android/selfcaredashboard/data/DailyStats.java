@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+
+import com.google.common.base.Objects;
+
+/**
+ * Immutable rollup of the touches of all goals on one day, counted the way {@link GoalStats}
+ * counts them, so that a range of days can be charted without reading the touch history.
+ */
+@Entity(tableName = "daily_stats")
+public final class DailyStats {
+
+    @PrimaryKey
+    @ColumnInfo(name = "day")
+    private final long mDay;
+
+    @ColumnInfo(name = "touches")
+    private final int mTouches;
+
+    @ColumnInfo(name = "on_time")
+    private final int mOnTime;
+
+    @ColumnInfo(name = "overrun_days")
+    private final long mOverrunDays;
+
+    public DailyStats(long day, int touches, int onTime, long overrunDays) {
+        mDay = day;
+        mTouches = touches;
+        mOnTime = onTime;
+        mOverrunDays = overrunDays;
+    }
+
+    /**
+     * Returns the day, counted from the epoch in UTC.
+     */
+    public long getDay() {
+        return mDay;
+    }
+
+    /**
+     * Returns the number of goals touched on the day.
+     */
+    public int getTouches() {
+        return mTouches;
+    }
+
+    /**
+     * Returns the number of those touches that kept their goal on time.
+     */
+    public int getOnTime() {
+        return mOnTime;
+    }
+
+    /**
+     * Returns the total number of days by which the intervals ending on the day missed.
+     */
+    public long getOverrunDays() {
+        return mOverrunDays;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DailyStats stats = (DailyStats) o;
+        return mDay == stats.mDay
+                && mTouches == stats.mTouches
+                && mOnTime == stats.mOnTime
+                && mOverrunDays == stats.mOverrunDays;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(mDay, mTouches, mOnTime, mOverrunDays);
+    }
+
+    @Override
+    public String toString() {
+        return "Stats of day " + mDay + ": " + mTouches + " touches, " + mOnTime + " on time";
+    }
+}
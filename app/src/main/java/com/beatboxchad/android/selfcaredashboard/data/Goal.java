@@ -16,8 +16,12 @@
 
 package com.beatboxchad.android.selfcaredashboard.data;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -25,18 +29,40 @@ import android.support.annotation.Nullable;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Immutable model class for a Goal.
  */
-@Entity(tableName = "goals")
+@Entity(tableName = "goals", indices = {
+        @Index({"archived", "entryid"}),
+        @Index({"due_at", "entryid"}),
+        @Index({"archived", "due_at", "entryid"})})
 public final class Goal {
 
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    /**
+     * Orders goals by when they are due, the most overdue first. Goals to avoid are never due, so
+     * they come after all the others. Goals due at the same time are ordered by id, like the
+     * {@code due_at} indexes.
+     */
+    public static final Comparator<Goal> DUE_ORDER = new Comparator<Goal>() {
+        @Override
+        public int compare(Goal goal1, Goal goal2) {
+            if (goal1.mDueAt != goal2.mDueAt) {
+                return goal1.mDueAt < goal2.mDueAt ? -1 : 1;
+            }
+            return goal1.mGoalId.compareTo(goal2.mGoalId);
+        }
+    };
+
     @PrimaryKey
     @NonNull
     @ColumnInfo(name = "entryid")
-    private final String mId;
+    private final GoalId mGoalId;
 
     @Nullable
     @ColumnInfo(name = "title")
@@ -58,6 +84,43 @@ public final class Goal {
     @ColumnInfo(name = "archived")
     private final boolean mArchived;
 
+    /**
+     * Derived from {@link #mTouched} and {@link #mInterval}, and only stored so that goals can be
+     * ordered by it in SQL.
+     */
+    @ColumnInfo(name = "due_at")
+    private final long mDueAt;
+
+    /**
+     * Used by Room. {@code dueAt} is derived from the other fields, so the stored value is
+     * ignored.
+     */
+    public Goal(@NonNull GoalId goalId,
+                @Nullable String title,
+                @Nullable boolean polarity,
+                @Nullable int interval,
+                @Nullable long touched,
+                @Nullable boolean archived,
+                long dueAt) {
+        this(goalId, title, polarity, interval, touched, archived);
+    }
+
+    @Ignore
+    public Goal(@NonNull GoalId goalId,
+                @Nullable String title,
+                @Nullable boolean polarity,
+                @Nullable int interval,
+                @Nullable long touched,
+                @Nullable boolean archived) {
+        this(new Goal.Builder(goalId)
+                .setTitle(title)
+                .setPolarity(polarity)
+                .setInterval(interval)
+                .setTouched(touched)
+                .setArchived(archived));
+    }
+
+    @Ignore
     public Goal(@NonNull String id,
                 @Nullable String title,
                 @Nullable boolean polarity,
@@ -73,7 +136,7 @@ public final class Goal {
     }
 
     public static class Builder {
-        private final String mId;
+        private final GoalId mGoalId;
         private String mTitle;
         private int mInterval;
         private boolean mPolarity;
@@ -81,15 +144,24 @@ public final class Goal {
         private long mTouched;
 
 
-        public Builder() {this.mId = UUID.randomUUID().toString();}
+        public Builder() {this.mGoalId = GoalId.random();}
+
+        /**
+         * Reads {@code id} with {@link GoalId#fromAnyString}, so ids that are not UUIDs give the
+         * id the database migration gave that goal.
+         */
         public Builder(String id) {
-            this.mId = id;
+            this.mGoalId = GoalId.fromAnyString(id);
         }
 
-        public Builder(UUID id) {this.mId = id.toString();}
+        public Builder(UUID id) {this.mGoalId = GoalId.fromUuid(id);}
+
+        public Builder(GoalId goalId) {
+            this.mGoalId = checkNotNull(goalId);
+        }
 
         public Builder(Goal goal) {
-            this.mId = goal.getId();
+            this.mGoalId = goal.getGoalId();
             this.mInterval = goal.getInterval();
             this.mPolarity = goal.getPolarity();
             this.mTouched = goal.getTouched();
@@ -129,18 +201,40 @@ public final class Goal {
     }
 
     private Goal(Builder builder) {
-        mId = builder.mId;
+        mGoalId = builder.mGoalId;
         mTitle = builder.mTitle;
         mPolarity = builder.mPolarity;
         mTouched = builder.mTouched;
         mInterval = builder.mInterval;
         mArchived = builder.mArchived;
+        mDueAt = dueAt(mPolarity, mInterval, mTouched);
+    }
+
+    /**
+     * A goal to avoid is only ever clear once its interval has passed, never overdue, so it is
+     * due at {@link Long#MAX_VALUE}. Any other goal is due its interval after it was touched, and
+     * always due if the interval is not positive, like the {@code UrgencyEngine} takes it.
+     * {@code SelfCareDatabase} stores the same with SQL.
+     */
+    private static long dueAt(boolean polarity, int interval, long touched) {
+        if (!polarity) {
+            return Long.MAX_VALUE;
+        }
+        return touched + Math.max(0, interval) * DAY_MILLIS;
     }
 
 
+    /**
+     * Returns the id in its string form, for the data sources and the UI.
+     */
     @NonNull
     public String getId() {
-        return mId;
+        return mGoalId.toString();
+    }
+
+    @NonNull
+    public GoalId getGoalId() {
+        return mGoalId;
     }
 
     @Nullable
@@ -178,17 +272,58 @@ public final class Goal {
         return mTouched;
     }
 
+    /**
+     * Returns when the goal is next due: {@link #getInterval()} days after it was last touched,
+     * or {@link Long#MAX_VALUE} for a goal to avoid.
+     */
+    public long getDueAt() {
+        return mDueAt;
+    }
+
 
     public boolean isEmpty() {
         return Strings.isNullOrEmpty(mTitle);
     }
 
+    /**
+     * Unlike {@link #equals(Object)}, which identifies a goal by what it is, this compares every
+     * persisted field, including when it was last touched and whether it is archived.
+     */
+    public boolean hasSameContent(@Nullable Goal goal) {
+        return goal != null &&
+                mPolarity == goal.mPolarity &&
+                mInterval == goal.mInterval &&
+                mTouched == goal.mTouched &&
+                mArchived == goal.mArchived &&
+                Objects.equal(mGoalId, goal.mGoalId) &&
+                Objects.equal(mTitle, goal.mTitle);
+    }
+
+    /**
+     * Compares two lists of goals element by element with {@link #hasSameContent(Goal)}.
+     */
+    public static boolean haveSameContent(@Nullable List<Goal> goals1,
+                                          @Nullable List<Goal> goals2) {
+        if (goals1 == null || goals2 == null) {
+            return goals1 == goals2;
+        }
+        if (goals1.size() != goals2.size()) {
+            return false;
+        }
+        for (int i = 0; i < goals1.size(); i++) {
+            if (!goals1.get(i).hasSameContent(goals2.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Goal goal = (Goal) o;
-        return Objects.equal(mId, goal.mId) &&
+        return Objects.equal(mGoalId, goal.mGoalId) &&
                 Objects.equal(mTitle, goal.mTitle) &&
                 Objects.equal(mPolarity, goal.mPolarity) &&
                 Objects.equal(mInterval, goal.mInterval);
@@ -196,7 +331,7 @@ public final class Goal {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(mId, mTitle, mPolarity, mInterval);
+        return Objects.hashCode(mGoalId, mTitle, mPolarity, mInterval);
     }
 
     @Override
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * Immutable 128-bit id of a {@link Goal}.
+ * <p>
+ * Ids are stored as 16 bytes and compared as numbers. The string form is the canonical UUID
+ * form, and is only used where ids leave the app or come back into it.
+ */
+public final class GoalId implements Comparable<GoalId> {
+
+    public static final int BYTES = 16;
+
+    private static final int STRING_LENGTH = 36;
+
+    private final long mMostSignificantBits;
+
+    private final long mLeastSignificantBits;
+
+    public GoalId(long mostSignificantBits, long leastSignificantBits) {
+        mMostSignificantBits = mostSignificantBits;
+        mLeastSignificantBits = leastSignificantBits;
+    }
+
+    @NonNull
+    public static GoalId random() {
+        return fromUuid(UUID.randomUUID());
+    }
+
+    @NonNull
+    public static GoalId fromUuid(@NonNull UUID uuid) {
+        return new GoalId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Parses an id in the canonical UUID form, 32 hexadecimal digits in groups of 8-4-4-4-12.
+     * Digits may be in either case.
+     *
+     * @throws IllegalArgumentException if {@code id} is not in that form.
+     */
+    @NonNull
+    public static GoalId fromString(@NonNull String id) {
+        GoalId goalId = parse(checkNotNull(id));
+        checkArgument(goalId != null, "Not a goal id: %s", id);
+        return goalId;
+    }
+
+    /**
+     * Parses an id like {@link #fromString}, except that any other string is taken for an id from
+     * before goal ids were UUIDs and gives the name-based UUID that the database migration gave
+     * that goal. This is for ids coming into the app, which may be older than the migration.
+     */
+    @NonNull
+    public static GoalId fromAnyString(@NonNull String id) {
+        GoalId goalId = parse(checkNotNull(id));
+        return goalId != null
+                ? goalId : fromUuid(UUID.nameUUIDFromBytes(id.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    @Nullable
+    private static GoalId parse(String id) {
+        if (id.length() != STRING_LENGTH) {
+            return null;
+        }
+        long mostSignificantBits = 0;
+        long leastSignificantBits = 0;
+        int digits = 0;
+        for (int i = 0; i < STRING_LENGTH; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return null;
+                }
+                continue;
+            }
+            int value = Character.digit(c, 16);
+            if (value < 0) {
+                return null;
+            }
+            if (digits++ < 16) {
+                mostSignificantBits = (mostSignificantBits << 4) | value;
+            } else {
+                leastSignificantBits = (leastSignificantBits << 4) | value;
+            }
+        }
+        return new GoalId(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * Reads an id written by {@link #toBytes()}.
+     *
+     * @throws IllegalArgumentException if {@code bytes} is not {@link #BYTES} long.
+     */
+    @NonNull
+    public static GoalId fromBytes(@NonNull byte[] bytes) {
+        checkArgument(bytes.length == BYTES, "Goal ids are %s bytes long", BYTES);
+        return new GoalId(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    public long getMostSignificantBits() {
+        return mMostSignificantBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return mLeastSignificantBits;
+    }
+
+    /**
+     * Returns the id as 16 big-endian bytes, so that comparing the bytes one by one, as SQLite
+     * does for blobs, gives the same order as {@link #compareTo(GoalId)}.
+     */
+    @NonNull
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BYTES];
+        writeLong(bytes, 0, mMostSignificantBits);
+        writeLong(bytes, 8, mLeastSignificantBits);
+        return bytes;
+    }
+
+    /**
+     * Orders ids as unsigned 128-bit numbers.
+     */
+    @Override
+    public int compareTo(@NonNull GoalId other) {
+        int result = compareUnsigned(mMostSignificantBits, other.mMostSignificantBits);
+        return result != 0
+                ? result : compareUnsigned(mLeastSignificantBits, other.mLeastSignificantBits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GoalId goalId = (GoalId) o;
+        return mMostSignificantBits == goalId.mMostSignificantBits &&
+                mLeastSignificantBits == goalId.mLeastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = mMostSignificantBits ^ mLeastSignificantBits;
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    /**
+     * Returns the id in the canonical UUID form, in lower case.
+     */
+    @Override
+    public String toString() {
+        return new UUID(mMostSignificantBits, mLeastSignificantBits).toString();
+    }
+
+    private static int compareUnsigned(long a, long b) {
+        // Long.compareUnsigned needs API level 26, and Long.compare API level 19.
+        long x = a + Long.MIN_VALUE;
+        long y = b + Long.MIN_VALUE;
+        return x < y ? -1 : (x == y ? 0 : 1);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = offset + 7; i >= offset; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Objects;
+
+/**
+ * Immutable rollup of how well a goal has been kept, updated as it is touched so that reading it
+ * does not depend on the length of its touch history.
+ * <p>
+ * Touches are counted by day: only the first touch of a goal on each day counts, and intervals
+ * are measured in whole days. A goal is kept on time when it is touched again within its interval
+ * or, for goals to avoid, when it is not touched again before its interval has passed. The streak
+ * is the number of touches in a row, the first included, that kept the goal on time.
+ */
+@Entity(tableName = "goal_stats")
+public final class GoalStats {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "goal_id")
+    private final GoalId mGoalId;
+
+    @ColumnInfo(name = "days_touched")
+    private final int mDaysTouched;
+
+    @ColumnInfo(name = "on_time")
+    private final int mOnTime;
+
+    @ColumnInfo(name = "current_streak")
+    private final int mCurrentStreak;
+
+    @ColumnInfo(name = "longest_streak")
+    private final int mLongestStreak;
+
+    @ColumnInfo(name = "overrun_days")
+    private final long mOverrunDays;
+
+    @ColumnInfo(name = "last_touched_day")
+    private final long mLastTouchedDay;
+
+    public GoalStats(@NonNull GoalId goalId, int daysTouched, int onTime, int currentStreak,
+                     int longestStreak, long overrunDays, long lastTouchedDay) {
+        mGoalId = checkNotNull(goalId);
+        mDaysTouched = daysTouched;
+        mOnTime = onTime;
+        mCurrentStreak = currentStreak;
+        mLongestStreak = longestStreak;
+        mOverrunDays = overrunDays;
+        mLastTouchedDay = lastTouchedDay;
+    }
+
+    /**
+     * Returns the stats of a goal that was never touched.
+     */
+    @NonNull
+    public static GoalStats empty(@NonNull GoalId goalId) {
+        return new GoalStats(goalId, 0, 0, 0, 0, 0, 0);
+    }
+
+    @NonNull
+    public GoalId getGoalId() {
+        return mGoalId;
+    }
+
+    /**
+     * Returns the number of days the goal was touched on.
+     */
+    public int getDaysTouched() {
+        return mDaysTouched;
+    }
+
+    /**
+     * Returns the number of intervals, from one touch to the next, that kept the goal on time.
+     */
+    public int getOnTime() {
+        return mOnTime;
+    }
+
+    public int getCurrentStreak() {
+        return mCurrentStreak;
+    }
+
+    public int getLongestStreak() {
+        return mLongestStreak;
+    }
+
+    /**
+     * Returns the total number of days by which intervals missed, summed over every interval.
+     */
+    public long getOverrunDays() {
+        return mOverrunDays;
+    }
+
+    /**
+     * Returns the day, counted from the epoch in UTC, of the last touch counted.
+     */
+    public long getLastTouchedDay() {
+        return mLastTouchedDay;
+    }
+
+    /**
+     * Returns the number of intervals from one touch to the next.
+     */
+    public int getIntervals() {
+        return Math.max(0, mDaysTouched - 1);
+    }
+
+    /**
+     * Returns the share of intervals that kept the goal on time, from 0 to 1, or 0 before the
+     * goal was touched twice.
+     */
+    public float getOnTimeRatio() {
+        int intervals = getIntervals();
+        return intervals == 0 ? 0f : (float) mOnTime / intervals;
+    }
+
+    /**
+     * Returns by how many days an interval missed on average, or 0 before the goal was touched
+     * twice.
+     */
+    public float getMeanOverrunDays() {
+        int intervals = getIntervals();
+        return intervals == 0 ? 0f : (float) mOverrunDays / intervals;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GoalStats stats = (GoalStats) o;
+        return mDaysTouched == stats.mDaysTouched
+                && mOnTime == stats.mOnTime
+                && mCurrentStreak == stats.mCurrentStreak
+                && mLongestStreak == stats.mLongestStreak
+                && mOverrunDays == stats.mOverrunDays
+                && mLastTouchedDay == stats.mLastTouchedDay
+                && mGoalId.equals(stats.mGoalId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(mGoalId, mDaysTouched, mOnTime, mCurrentStreak, mLongestStreak,
+                mOverrunDays, mLastTouchedDay);
+    }
+
+    @Override
+    public String toString() {
+        return "Stats of " + mGoalId + ": " + mDaysTouched + " days touched, " + mOnTime
+                + " on time, streak " + mCurrentStreak + " of " + mLongestStreak;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Objects;
+
+/**
+ * Immutable record of one touch of a goal, kept in the touch history.
+ * <p>
+ * A goal itself only remembers when it was last touched. Every touch is also appended here, to a
+ * table of its own, so that recording a touch never rewrites the goal and the history can grow
+ * without widening the goals table. The key orders touches by goal and then by time, so reading
+ * a goal's touches within a time window is a single range of the key.
+ */
+@Entity(tableName = "goal_touches", primaryKeys = {"goal_id", "touched_at"})
+public final class GoalTouch {
+
+    @NonNull
+    @ColumnInfo(name = "goal_id")
+    private final GoalId mGoalId;
+
+    @ColumnInfo(name = "touched_at")
+    private final long mTouchedAt;
+
+    public GoalTouch(@NonNull GoalId goalId, long touchedAt) {
+        mGoalId = checkNotNull(goalId);
+        mTouchedAt = touchedAt;
+    }
+
+    /**
+     * Returns the touch that made {@code goal} last touched.
+     */
+    @NonNull
+    public static GoalTouch of(@NonNull Goal goal) {
+        return new GoalTouch(goal.getGoalId(), goal.getTouched());
+    }
+
+    @NonNull
+    public GoalId getGoalId() {
+        return mGoalId;
+    }
+
+    public long getTouchedAt() {
+        return mTouchedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GoalTouch touch = (GoalTouch) o;
+        return mTouchedAt == touch.mTouchedAt && mGoalId.equals(touch.mGoalId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(mGoalId, mTouchedAt);
+    }
+
+    @Override
+    public String toString() {
+        return "Touch of " + mGoalId + " at " + mTouchedAt;
+    }
+}
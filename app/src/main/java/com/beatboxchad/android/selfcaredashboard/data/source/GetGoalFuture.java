@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.google.common.util.concurrent.AbstractFuture;
+
+/**
+ * The single goal counterpart of {@link LoadGoalsFuture}.
+ */
+public final class GetGoalFuture extends AbstractFuture<Goal>
+        implements GoalsDataSource.GetGoalCallback {
+
+    @Override
+    public void onGoalLoaded(Goal goal) {
+        set(goal);
+    }
+
+    @Override
+    public void onDataNotAvailable() {
+        setException(new DataNotAvailableException());
+    }
+}
@@ -0,0 +1,659 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory cache of goals used by {@link GoalsRepository}.
+ * <p>
+ * The cache publishes immutable {@link Snapshot}s. Readers on any thread get a consistent view
+ * without locking or copying, and writers build a new snapshot and swap it in atomically.
+ * <p>
+ * A snapshot keeps one view per {@link GoalsFilterType} and remembers which of them are complete,
+ * so loading only the active goals from the database is enough to answer the next request for
+ * active goals without ever materializing the archive.
+ * <p>
+ * Memory use is bounded by a byte budget split over two tiers:
+ * <ul>
+ * <li>the summary tier is the snapshot holding the list views, stored in columns by a
+ * {@link GoalsColumnStore}. When a snapshot outgrows its share of the budget it is not kept, and
+ * lists are read from the local data source instead.</li>
+ * <li>the hot tier keeps the goals most recently loaded or written one at a time, such as the
+ * goal on the detail screen, in least recently used order. It survives the summary tier being
+ * dropped.</li>
+ * </ul>
+ * Sizes are estimates of the retained heap, not exact measurements. Both tiers shrink on
+ * {@link #trimMemory(int)}.
+ */
+final class GoalsCache {
+
+    /**
+     * The budget used when none is given, enough for a few thousand goals.
+     */
+    static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    /**
+     * An estimate of the heap held by a goal in the hot tier besides its title characters: the
+     * goal, its id and title objects, and the map entry pointing at it.
+     */
+    private static final int GOAL_OVERHEAD_BYTES = 160;
+
+    /**
+     * How many of the goals read from a snapshot it keeps, so that rebinding a visible row hands
+     * out the same goal. Each row has a slot, shared with the rows this many apart, so the goals
+     * kept are those of the last stretch of rows read.
+     */
+    @VisibleForTesting
+    static final int RECENT_GOALS = 64;
+
+    /**
+     * An estimate of the heap held by a recent goal besides the goal: its holder and slot.
+     */
+    private static final int RECENT_GOAL_OVERHEAD_BYTES = 32;
+
+    private final AtomicReference<Snapshot> mSnapshot = new AtomicReference<>(null);
+
+    private final long mSummaryMaxBytes;
+
+    private final HotGoals mHotGoals;
+
+    GoalsCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes the budget for both tiers. A quarter of it goes to the hot tier.
+     */
+    GoalsCache(long maxBytes) {
+        checkArgument(maxBytes > 0);
+        long hotMaxBytes = maxBytes / 4;
+        mSummaryMaxBytes = maxBytes - hotMaxBytes;
+        mHotGoals = new HotGoals(hotMaxBytes);
+    }
+
+    /**
+     * Returns the current snapshot, or {@code null} if nothing has been cached yet.
+     */
+    @Nullable
+    Snapshot snapshot() {
+        return mSnapshot.get();
+    }
+
+    @Nullable
+    Goal get(@NonNull String goalId) {
+        return get(GoalId.fromAnyString(goalId));
+    }
+
+    /**
+     * Returns the goal with {@code goalId} from either tier, without parsing a string id.
+     */
+    @Nullable
+    Goal get(@NonNull GoalId goalId) {
+        Snapshot snapshot = mSnapshot.get();
+        Goal goal = snapshot == null ? null : snapshot.get(goalId);
+        return goal != null ? goal : mHotGoals.get(goalId);
+    }
+
+    boolean containsKey(@NonNull String goalId) {
+        return get(goalId) != null;
+    }
+
+    /**
+     * Returns the number of distinct goals held by both tiers.
+     */
+    int size() {
+        Snapshot snapshot = mSnapshot.get();
+        if (snapshot == null) {
+            return mHotGoals.goalIds().size();
+        }
+        int size = snapshot.mStore.size();
+        for (GoalId goalId : mHotGoals.goalIds()) {
+            if (snapshot.mStore.indexOf(goalId) < 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated heap held by the snapshot, which is the summary tier.
+     */
+    long summaryBytes() {
+        Snapshot snapshot = mSnapshot.get();
+        return snapshot == null ? 0 : snapshot.mBytes;
+    }
+
+    long hotBytes() {
+        return mHotGoals.bytes();
+    }
+
+    /**
+     * Replaces the whole content of the cache with {@code goals}.
+     *
+     * @return the new snapshot. It is not kept if it is over budget, but is still complete, so
+     * callers can answer the request that loaded {@code goals} from it.
+     */
+    @NonNull
+    Snapshot replaceAll(@NonNull Iterable<Goal> goals) {
+        GoalsColumnStore.Builder store = new GoalsColumnStore.Builder();
+        for (Goal goal : goals) {
+            store.put(goal);
+        }
+        Snapshot snapshot = new Snapshot(store.build(), EnumSet.allOf(GoalsFilterType.class));
+        mSnapshot.set(retained(snapshot));
+        mHotGoals.refresh(snapshot.mStore, null);
+        return snapshot;
+    }
+
+    /**
+     * Replaces the cached goals matching {@code filtering} with {@code goals}, which must be the
+     * complete result of that filter, and marks the view for {@code filtering} as complete.
+     *
+     * @return the new snapshot, which like for {@link #replaceAll(Iterable)} may not be kept
+     */
+    @NonNull
+    Snapshot replaceFiltered(@NonNull final GoalsFilterType filtering,
+                             @NonNull final Iterable<Goal> goals) {
+        checkNotNull(filtering);
+        checkNotNull(goals);
+        if (filtering == GoalsFilterType.ALL_GOALS) {
+            return replaceAll(goals);
+        }
+        Snapshot snapshot = update(new Mutation() {
+            @Override
+            public void apply(GoalsColumnStore.Builder cachedGoals,
+                              Set<GoalsFilterType> complete) {
+                cachedGoals.removeMatching(filtering);
+                for (Goal goal : goals) {
+                    cachedGoals.put(goal);
+                }
+                complete.add(filtering);
+            }
+        });
+        mHotGoals.refresh(snapshot.mStore, filtering);
+        return snapshot;
+    }
+
+    void put(@NonNull final Goal goal) {
+        checkNotNull(goal);
+        update(new Mutation() {
+            @Override
+            public void apply(GoalsColumnStore.Builder goals, Set<GoalsFilterType> complete) {
+                goals.put(goal);
+            }
+        });
+        mHotGoals.put(goal);
+    }
+
+    /**
+     * Caches {@code goals} in the summary tier. Bulk writes are not individual accesses, so goals
+     * that are not already in the hot tier are not added to it.
+     */
+    void putAll(@NonNull final Collection<Goal> goals) {
+        checkNotNull(goals);
+        update(new Mutation() {
+            @Override
+            public void apply(GoalsColumnStore.Builder cachedGoals,
+                              Set<GoalsFilterType> complete) {
+                for (Goal goal : goals) {
+                    cachedGoals.put(goal);
+                }
+            }
+        });
+        for (Goal goal : goals) {
+            mHotGoals.replace(goal);
+        }
+    }
+
+    /**
+     * Sets the archived flag of every cached goal in {@code goalIds}. Ids that are not cached are
+     * ignored.
+     */
+    void setArchived(@NonNull Collection<String> goalIds, final boolean archived) {
+        final List<GoalId> ids = toGoalIds(goalIds);
+        update(new Mutation() {
+            @Override
+            public void apply(GoalsColumnStore.Builder goals, Set<GoalsFilterType> complete) {
+                for (GoalId goalId : ids) {
+                    goals.setArchived(goalId, archived);
+                }
+            }
+        });
+        for (GoalId goalId : ids) {
+            Goal goal = mHotGoals.get(goalId);
+            if (goal != null) {
+                mHotGoals.replace(new Goal.Builder(goal).setArchived(archived).build());
+            }
+        }
+    }
+
+    void remove(@NonNull String goalId) {
+        final GoalId id = GoalId.fromAnyString(goalId);
+        update(new Mutation() {
+            @Override
+            public void apply(GoalsColumnStore.Builder goals, Set<GoalsFilterType> complete) {
+                goals.remove(id);
+            }
+        });
+        mHotGoals.remove(id);
+    }
+
+    void removeAll(@NonNull Collection<String> goalIds) {
+        final List<GoalId> ids = toGoalIds(goalIds);
+        update(new Mutation() {
+            @Override
+            public void apply(GoalsColumnStore.Builder goals, Set<GoalsFilterType> complete) {
+                for (GoalId goalId : ids) {
+                    goals.remove(goalId);
+                }
+            }
+        });
+        for (GoalId goalId : ids) {
+            mHotGoals.remove(goalId);
+        }
+    }
+
+    void removeArchived() {
+        Snapshot snapshot = update(new Mutation() {
+            @Override
+            public void apply(GoalsColumnStore.Builder goals, Set<GoalsFilterType> complete) {
+                goals.removeMatching(GoalsFilterType.ARCHIVED_GOALS);
+                // There are no archived goals left anywhere, so that view is known to be empty.
+                complete.add(GoalsFilterType.ARCHIVED_GOALS);
+            }
+        });
+        mHotGoals.refresh(snapshot.mStore, GoalsFilterType.ARCHIVED_GOALS);
+    }
+
+    void clear() {
+        mSnapshot.set(new Snapshot(GoalsColumnStore.EMPTY, EnumSet.allOf(GoalsFilterType.class)));
+        mHotGoals.trimToSize(0);
+    }
+
+    /**
+     * Gives memory back according to a {@link android.content.ComponentCallbacks2} trim level.
+     * <p>
+     * While the app is in the foreground and memory runs low, and once it is in the background,
+     * the summary tier is dropped and the hot tier halved, as the lists can be read from the
+     * database again. When the app is next in line to be killed, everything is dropped. Other
+     * levels, including the UI being hidden, only halve the hot tier.
+     */
+    void trimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            mSnapshot.set(null);
+            mHotGoals.trimToSize(0);
+        } else if (level >= TRIM_MEMORY_BACKGROUND
+                || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mSnapshot.set(null);
+            mHotGoals.trimToSize(mHotGoals.bytes() / 2);
+        } else {
+            mHotGoals.trimToSize(mHotGoals.bytes() / 2);
+        }
+    }
+
+    @VisibleForTesting
+    static long estimateBytes(@NonNull Goal goal) {
+        String title = goal.getTitle();
+        return GOAL_OVERHEAD_BYTES + 2L * (title == null ? 0 : title.length());
+    }
+
+    /**
+     * Ids reach the cache in their string form, like everywhere above the data sources.
+     */
+    private static List<GoalId> toGoalIds(Collection<String> goalIds) {
+        checkNotNull(goalIds);
+        List<GoalId> ids = new ArrayList<>(goalIds.size());
+        for (String goalId : goalIds) {
+            ids.add(GoalId.fromAnyString(goalId));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns {@code snapshot} if it is worth keeping, or {@code null} if it is over budget or has
+     * no complete view, in which case its goals are only useful one at a time and those are in
+     * the hot tier.
+     */
+    @Nullable
+    private Snapshot retained(Snapshot snapshot) {
+        return snapshot.mBytes <= mSummaryMaxBytes && !snapshot.mComplete.isEmpty()
+                ? snapshot : null;
+    }
+
+    /**
+     * Copy-on-write update. Concurrent writers retry until their snapshot wins the swap, so no
+     * update is ever lost and readers never see a half-applied change.
+     */
+    private Snapshot update(Mutation mutation) {
+        while (true) {
+            Snapshot current = mSnapshot.get();
+            GoalsColumnStore.Builder goals;
+            Set<GoalsFilterType> complete;
+            if (current == null) {
+                goals = new GoalsColumnStore.Builder();
+                complete = EnumSet.noneOf(GoalsFilterType.class);
+            } else {
+                goals = current.mStore.toBuilder();
+                complete = EnumSet.noneOf(GoalsFilterType.class);
+                complete.addAll(current.mComplete);
+            }
+            mutation.apply(goals, complete);
+            Snapshot next = new Snapshot(goals.build(), complete);
+            if (mSnapshot.compareAndSet(current, retained(next))) {
+                return next;
+            }
+        }
+    }
+
+    private interface Mutation {
+        void apply(GoalsColumnStore.Builder goals, Set<GoalsFilterType> complete);
+    }
+
+    /**
+     * The hot tier: goals in least recently used order, evicted from the eldest once their
+     * estimated size is over budget.
+     */
+    private static final class HotGoals {
+
+        private final long mMaxBytes;
+
+        private final LinkedHashMap<GoalId, Goal> mGoals = new LinkedHashMap<>(16, 0.75f, true);
+
+        private long mBytes;
+
+        HotGoals(long maxBytes) {
+            mMaxBytes = maxBytes;
+        }
+
+        synchronized long bytes() {
+            return mBytes;
+        }
+
+        synchronized Set<GoalId> goalIds() {
+            return new HashSet<>(mGoals.keySet());
+        }
+
+        @Nullable
+        synchronized Goal get(GoalId goalId) {
+            return mGoals.get(goalId);
+        }
+
+        synchronized void put(Goal goal) {
+            Goal previous = mGoals.put(goal.getGoalId(), goal);
+            if (previous != null) {
+                mBytes -= estimateBytes(previous);
+            }
+            mBytes += estimateBytes(goal);
+            trimToSize(mMaxBytes);
+        }
+
+        /**
+         * Updates {@code goal} if it is cached. Goals that are not cached are ignored.
+         */
+        synchronized void replace(Goal goal) {
+            if (mGoals.containsKey(goal.getGoalId())) {
+                put(goal);
+            }
+        }
+
+        synchronized void remove(GoalId goalId) {
+            Goal previous = mGoals.remove(goalId);
+            if (previous != null) {
+                mBytes -= estimateBytes(previous);
+            }
+        }
+
+        /**
+         * Brings the cached goals in line with {@code fresh}, the complete result of
+         * {@code filtering}, or of every goal if {@code filtering} is null. Goals in the result
+         * are updated and goals it should have contained but does not are removed.
+         */
+        synchronized void refresh(GoalsColumnStore fresh, @Nullable GoalsFilterType filtering) {
+            Iterator<Map.Entry<GoalId, Goal>> it = mGoals.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<GoalId, Goal> entry = it.next();
+                Goal cached = entry.getValue();
+                Goal freshGoal = fresh.get(entry.getKey());
+                mBytes -= estimateBytes(cached);
+                if (freshGoal != null) {
+                    // Setting the value does not change the access order.
+                    entry.setValue(freshGoal);
+                    mBytes += estimateBytes(freshGoal);
+                } else if (filtering == null || filtering.matches(cached)) {
+                    it.remove();
+                } else {
+                    mBytes += estimateBytes(cached);
+                }
+            }
+            trimToSize(mMaxBytes);
+        }
+
+        synchronized void trimToSize(long maxBytes) {
+            Iterator<Goal> it = mGoals.values().iterator();
+            while (mBytes > maxBytes && it.hasNext()) {
+                mBytes -= estimateBytes(it.next());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * An immutable, insertion-ordered view of the cached goals.
+     * <p>
+     * The goals are kept in a {@link GoalsColumnStore}, and the lists handed out create each
+     * {@link Goal} when it is read. The snapshot keeps the last {@link #RECENT_GOALS} of them, so
+     * reading a visible goal again, as a list row does every time it is bound, neither copies nor
+     * allocates, while a scroll through the whole list does not keep a goal per row.
+     */
+    static final class Snapshot {
+
+        private final GoalsColumnStore mStore;
+
+        // The goals read last, in the slot of their row. Racing readers may both create one,
+        // which is harmless.
+        private final AtomicReferenceArray<RecentGoal> mRecentGoals;
+
+        private final ImmutableSet<GoalsFilterType> mComplete;
+
+        private final List<Goal> mAllGoals;
+
+        private final List<Goal> mActiveGoals;
+
+        private final List<Goal> mArchivedGoals;
+
+        private final long mBytes;
+
+        // Built by the first search, as most snapshots are never searched.
+        @Nullable
+        private volatile GoalsSearchIndex mSearchIndex;
+
+        private Snapshot(GoalsColumnStore store, Set<GoalsFilterType> complete) {
+            mStore = store;
+            int recentGoals = Math.min(store.size(), RECENT_GOALS);
+            mRecentGoals = new AtomicReferenceArray<>(recentGoals);
+            mAllGoals = new RowList(this, null);
+
+            int archivedCount = 0;
+            for (int row = 0; row < store.size(); row++) {
+                if (store.isArchived(row)) {
+                    archivedCount++;
+                }
+            }
+            int[] activeRows = new int[store.size() - archivedCount];
+            int[] archivedRows = new int[archivedCount];
+            int active = 0;
+            int archived = 0;
+            for (int row = 0; row < store.size(); row++) {
+                if (store.isArchived(row)) {
+                    archivedRows[archived++] = row;
+                } else {
+                    activeRows[active++] = row;
+                }
+            }
+            mActiveGoals = new RowList(this, activeRows);
+            mArchivedGoals = new RowList(this, archivedRows);
+            // The row lists, and the recent goals as if each slot held a goal of average size.
+            mBytes = store.estimateBytes() + 4L * store.size()
+                    + recentGoals * (RECENT_GOAL_OVERHEAD_BYTES + GOAL_OVERHEAD_BYTES
+                    + 2L * store.averageTitleLength());
+
+            // Knowing both halves means knowing everything, and the other way around.
+            Set<GoalsFilterType> normalized = EnumSet.noneOf(GoalsFilterType.class);
+            normalized.addAll(complete);
+            if (normalized.contains(GoalsFilterType.ALL_GOALS)
+                    || (normalized.contains(GoalsFilterType.ACTIVE_GOALS)
+                    && normalized.contains(GoalsFilterType.ARCHIVED_GOALS))) {
+                normalized = EnumSet.allOf(GoalsFilterType.class);
+            }
+            mComplete = Sets.immutableEnumSet(normalized);
+        }
+
+        boolean isComplete(@NonNull GoalsFilterType filtering) {
+            return mComplete.contains(filtering);
+        }
+
+        /**
+         * Returns the cached goals for {@code filtering}, or {@code null} if that view is not
+         * known to be complete. The list cannot be modified.
+         */
+        @Nullable
+        List<Goal> goals(@NonNull GoalsFilterType filtering) {
+            if (!isComplete(filtering)) {
+                return null;
+            }
+            switch (filtering) {
+                case ACTIVE_GOALS:
+                    return mActiveGoals;
+                case ARCHIVED_GOALS:
+                    return mArchivedGoals;
+                default:
+                    return mAllGoals;
+            }
+        }
+
+        @Nullable
+        Goal get(@NonNull GoalId goalId) {
+            int row = mStore.indexOf(goalId);
+            return row < 0 ? null : goal(row);
+        }
+
+        private Goal goal(int row) {
+            int slot = row % mRecentGoals.length();
+            RecentGoal recent = mRecentGoals.get(slot);
+            if (recent != null && recent.mRow == row) {
+                return recent.mGoal;
+            }
+            Goal goal = mStore.goal(row);
+            mRecentGoals.set(slot, new RecentGoal(row, goal));
+            return goal;
+        }
+
+        /**
+         * Returns up to {@code limit} goals matching {@code filtering} where every one of
+         * {@code prefixes} starts a word of the title. The list cannot be modified.
+         */
+        @NonNull
+        List<Goal> search(@NonNull GoalsFilterType filtering, @NonNull List<String> prefixes,
+                          int limit) {
+            GoalsSearchIndex searchIndex = mSearchIndex;
+            if (searchIndex == null) {
+                // Racing searches may both build it, which is harmless.
+                searchIndex = GoalsSearchIndex.build(mStore);
+                mSearchIndex = searchIndex;
+            }
+            return new RowList(this, searchIndex.search(filtering, prefixes, limit));
+        }
+    }
+
+    /**
+     * A goal read from a snapshot, with its row. Its fields are final, so a reader that finds it
+     * in a slot sees both.
+     */
+    private static final class RecentGoal {
+
+        final int mRow;
+
+        final Goal mGoal;
+
+        RecentGoal(int row, Goal goal) {
+            mRow = row;
+            mGoal = goal;
+        }
+    }
+
+    /**
+     * A read-only list over some rows of a snapshot, or all of them.
+     */
+    private static final class RowList extends AbstractList<Goal> implements RandomAccess {
+
+        private final Snapshot mSnapshot;
+
+        @Nullable
+        private final int[] mRows;
+
+        RowList(Snapshot snapshot, @Nullable int[] rows) {
+            mSnapshot = snapshot;
+            mRows = rows;
+        }
+
+        @Override
+        public Goal get(int index) {
+            if (mRows == null) {
+                checkElementIndex(index, mSnapshot.mStore.size());
+                return mSnapshot.goal(index);
+            }
+            return mSnapshot.goal(mRows[index]);
+        }
+
+        @Override
+        public int size() {
+            return mRows == null ? mSnapshot.mStore.size() : mRows.length;
+        }
+    }
+}
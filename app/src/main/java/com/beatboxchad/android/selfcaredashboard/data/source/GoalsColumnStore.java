@@ -0,0 +1,456 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, insertion-ordered set of goals stored column by column in primitive arrays.
+ * <p>
+ * A {@link Goal} costs a handful of objects: the goal, its id and title strings and their
+ * character arrays, plus whatever collection holds it. Here each field is one slot of a shared
+ * array instead. Ids are kept as the two longs of their {@link GoalId}, and titles are ranges of
+ * a single character buffer. {@link Goal} objects are created only when a row is read.
+ * <p>
+ * Stores are built, and derived from one another, with a {@link Builder}.
+ */
+final class GoalsColumnStore {
+
+    private static final int FLAG_POLARITY = 1;
+
+    private static final int FLAG_ARCHIVED = 1 << 1;
+
+    /**
+     * Set on builder rows that were removed. Built stores never contain such rows.
+     */
+    private static final int FLAG_REMOVED = 1 << 2;
+
+    /**
+     * Rough size of an array object besides its elements.
+     */
+    private static final int ARRAY_OVERHEAD_BYTES = 16;
+
+    static final GoalsColumnStore EMPTY = new Builder().build();
+
+    private final int mSize;
+
+    private final long[] mIdHighBits;
+
+    private final long[] mIdLowBits;
+
+    private final char[] mTitleChars;
+
+    /**
+     * Start of each title in {@link #mTitleChars}, or -1 for a null title.
+     */
+    private final int[] mTitleStarts;
+
+    private final int[] mTitleLengths;
+
+    private final int[] mIntervals;
+
+    private final long[] mTouched;
+
+    private final byte[] mFlags;
+
+    /**
+     * Open addressing hash table from id to row + 1, with 0 marking an empty slot.
+     */
+    private final int[] mIndex;
+
+    private GoalsColumnStore(Builder builder) {
+        int size = 0;
+        int titleChars = 0;
+        for (int row = 0; row < builder.mRows; row++) {
+            if ((builder.mFlags[row] & FLAG_REMOVED) == 0) {
+                size++;
+                titleChars += Math.max(builder.mTitleLengths[row], 0);
+            }
+        }
+        mSize = size;
+        mIdHighBits = new long[size];
+        mIdLowBits = new long[size];
+        mTitleChars = new char[titleChars];
+        mTitleStarts = new int[size];
+        mTitleLengths = new int[size];
+        mIntervals = new int[size];
+        mTouched = new long[size];
+        mFlags = new byte[size];
+        mIndex = new int[tableSize(size)];
+
+        int row = 0;
+        int titleEnd = 0;
+        for (int from = 0; from < builder.mRows; from++) {
+            if ((builder.mFlags[from] & FLAG_REMOVED) != 0) {
+                continue;
+            }
+            mIdHighBits[row] = builder.mIdHighBits[from];
+            mIdLowBits[row] = builder.mIdLowBits[from];
+            int length = builder.mTitleLengths[from];
+            if (length < 0) {
+                mTitleStarts[row] = -1;
+            } else {
+                System.arraycopy(builder.mTitleChars, builder.mTitleStarts[from],
+                        mTitleChars, titleEnd, length);
+                mTitleStarts[row] = titleEnd;
+                titleEnd += length;
+            }
+            mTitleLengths[row] = length;
+            mIntervals[row] = builder.mIntervals[from];
+            mTouched[row] = builder.mTouched[from];
+            mFlags[row] = builder.mFlags[from];
+            insertIntoIndex(mIndex, row, hash(mIdHighBits[row], mIdLowBits[row]));
+            row++;
+        }
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Creates a {@link Goal} for {@code row}.
+     */
+    @NonNull
+    Goal goal(int row) {
+        return newGoal(mIdHighBits[row], mIdLowBits[row],
+                mTitleChars, mTitleStarts[row], mTitleLengths[row],
+                mIntervals[row], mTouched[row], mFlags[row]);
+    }
+
+    /**
+     * Returns the average number of characters of a title, for size estimates.
+     */
+    int averageTitleLength() {
+        return mSize == 0 ? 0 : mTitleChars.length / mSize;
+    }
+
+    /**
+     * Returns the title of {@code row} without creating its {@link Goal}.
+     */
+    @Nullable
+    String title(int row) {
+        int start = mTitleStarts[row];
+        return start < 0 ? null : new String(mTitleChars, start, mTitleLengths[row]);
+    }
+
+    boolean isArchived(int row) {
+        return (mFlags[row] & FLAG_ARCHIVED) != 0;
+    }
+
+    /**
+     * Returns the row of {@code goalId}, or -1 if it is not stored.
+     */
+    int indexOf(@NonNull GoalId goalId) {
+        long highBits = goalId.getMostSignificantBits();
+        long lowBits = goalId.getLeastSignificantBits();
+        int mask = mIndex.length - 1;
+        for (int slot = hash(highBits, lowBits) & mask; mIndex[slot] != 0;
+             slot = (slot + 1) & mask) {
+            int row = mIndex[slot] - 1;
+            if (mIdHighBits[row] == highBits && mIdLowBits[row] == lowBits) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    @Nullable
+    Goal get(@NonNull GoalId goalId) {
+        int row = indexOf(goalId);
+        return row < 0 ? null : goal(row);
+    }
+
+    /**
+     * Returns an estimate of the heap held by this store.
+     */
+    long estimateBytes() {
+        return 10 * ARRAY_OVERHEAD_BYTES
+                + mSize * (8L + 8L + 4L + 4L + 4L + 8L + 1L)
+                + 2L * mTitleChars.length
+                + 4L * mIndex.length;
+    }
+
+    /**
+     * Returns a builder holding the goals of this store, which stays unchanged.
+     */
+    @NonNull
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    private static Goal newGoal(long highBits, long lowBits,
+                                char[] titleChars, int titleStart, int titleLength,
+                                int interval, long touched, byte flags) {
+        return new Goal.Builder(new GoalId(highBits, lowBits))
+                .setTitle(titleStart < 0 ? null : new String(titleChars, titleStart, titleLength))
+                .setPolarity((flags & FLAG_POLARITY) != 0)
+                .setInterval(interval)
+                .setTouched(touched)
+                .setArchived((flags & FLAG_ARCHIVED) != 0)
+                .build();
+    }
+
+    /**
+     * Returns a power of two at least twice {@code size}, so probe chains stay short.
+     */
+    private static int tableSize(int size) {
+        int tableSize = 8;
+        while (tableSize < size * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private static int hash(long highBits, long lowBits) {
+        long bits = highBits ^ lowBits;
+        return mix((int) (bits ^ (bits >>> 32)));
+    }
+
+    private static int mix(int hash) {
+        // Spreads the bits so that neighbouring ids do not land in neighbouring slots.
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static void insertIntoIndex(int[] index, int row, int hash) {
+        int mask = index.length - 1;
+        int slot = hash & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = row + 1;
+    }
+
+    /**
+     * Collects goals for a new {@link GoalsColumnStore}. Putting a goal that is already there
+     * updates it in place, and removing and putting it again moves it to the end, like a
+     * {@link java.util.LinkedHashMap}.
+     */
+    static final class Builder {
+
+        private int mRows;
+
+        private long[] mIdHighBits;
+
+        private long[] mIdLowBits;
+
+        private char[] mTitleChars;
+
+        private int mTitleEnd;
+
+        private int[] mTitleStarts;
+
+        private int[] mTitleLengths;
+
+        private int[] mIntervals;
+
+        private long[] mTouched;
+
+        private byte[] mFlags;
+
+        /**
+         * Like the index of a store, but a slot keeps pointing at a removed row until the id is
+         * put again. Lookups skip removed rows.
+         */
+        private int[] mIndex;
+
+        Builder() {
+            this(16);
+        }
+
+        private Builder(int capacity) {
+            mIdHighBits = new long[capacity];
+            mIdLowBits = new long[capacity];
+            mTitleChars = new char[capacity * 16];
+            mTitleStarts = new int[capacity];
+            mTitleLengths = new int[capacity];
+            mIntervals = new int[capacity];
+            mTouched = new long[capacity];
+            mFlags = new byte[capacity];
+            mIndex = new int[tableSize(capacity)];
+        }
+
+        private Builder(GoalsColumnStore store) {
+            mRows = store.mSize;
+            int capacity = Math.max(16, store.mSize + store.mSize / 8);
+            mIdHighBits = Arrays.copyOf(store.mIdHighBits, capacity);
+            mIdLowBits = Arrays.copyOf(store.mIdLowBits, capacity);
+            mTitleChars = Arrays.copyOf(store.mTitleChars,
+                    Math.max(store.mTitleChars.length + 256, 16));
+            mTitleEnd = store.mTitleChars.length;
+            mTitleStarts = Arrays.copyOf(store.mTitleStarts, capacity);
+            mTitleLengths = Arrays.copyOf(store.mTitleLengths, capacity);
+            mIntervals = Arrays.copyOf(store.mIntervals, capacity);
+            mTouched = Arrays.copyOf(store.mTouched, capacity);
+            mFlags = Arrays.copyOf(store.mFlags, capacity);
+            if (store.mIndex.length >= tableSize(capacity)) {
+                mIndex = store.mIndex.clone();
+            } else {
+                rebuildIndex(tableSize(capacity));
+            }
+        }
+
+        @Nullable
+        Goal get(@NonNull GoalId goalId) {
+            int row = find(goalId);
+            return row < 0 ? null : build(row);
+        }
+
+        void put(@NonNull Goal goal) {
+            checkNotNull(goal);
+            GoalId goalId = goal.getGoalId();
+            int row = find(goalId);
+            if (row < 0) {
+                row = appendRow(goalId);
+            }
+            String title = goal.getTitle();
+            if (title == null) {
+                mTitleStarts[row] = -1;
+                mTitleLengths[row] = -1;
+            } else {
+                ensureTitleCapacity(title.length());
+                title.getChars(0, title.length(), mTitleChars, mTitleEnd);
+                mTitleStarts[row] = mTitleEnd;
+                mTitleLengths[row] = title.length();
+                mTitleEnd += title.length();
+            }
+            mIntervals[row] = goal.getInterval();
+            mTouched[row] = goal.getTouched();
+            mFlags[row] = (byte) ((goal.getPolarity() ? FLAG_POLARITY : 0)
+                    | (goal.isArchived() ? FLAG_ARCHIVED : 0));
+        }
+
+        void remove(@NonNull GoalId goalId) {
+            int row = find(goalId);
+            if (row >= 0) {
+                mFlags[row] |= FLAG_REMOVED;
+            }
+        }
+
+        /**
+         * Removes every goal that passes {@code filtering}.
+         */
+        void removeMatching(@NonNull GoalsFilterType filtering) {
+            for (int row = 0; row < mRows; row++) {
+                if ((mFlags[row] & FLAG_REMOVED) == 0
+                        && filtering.matchesArchived((mFlags[row] & FLAG_ARCHIVED) != 0)) {
+                    mFlags[row] |= FLAG_REMOVED;
+                }
+            }
+        }
+
+        void setArchived(@NonNull GoalId goalId, boolean archived) {
+            int row = find(goalId);
+            if (row >= 0) {
+                mFlags[row] = (byte) (archived
+                        ? mFlags[row] | FLAG_ARCHIVED : mFlags[row] & ~FLAG_ARCHIVED);
+            }
+        }
+
+        @NonNull
+        GoalsColumnStore build() {
+            return new GoalsColumnStore(this);
+        }
+
+        private Goal build(int row) {
+            return newGoal(mIdHighBits[row], mIdLowBits[row],
+                    mTitleChars, mTitleStarts[row], mTitleLengths[row],
+                    mIntervals[row], mTouched[row], mFlags[row]);
+        }
+
+        /**
+         * Returns the live row of {@code goalId}, or -1.
+         */
+        private int find(GoalId goalId) {
+            int slot = findSlot(goalId);
+            if (mIndex[slot] == 0) {
+                return -1;
+            }
+            int row = mIndex[slot] - 1;
+            return (mFlags[row] & FLAG_REMOVED) == 0 ? row : -1;
+        }
+
+        /**
+         * Returns the slot holding {@code goalId}, or the empty slot where it would go.
+         */
+        private int findSlot(GoalId goalId) {
+            long highBits = goalId.getMostSignificantBits();
+            long lowBits = goalId.getLeastSignificantBits();
+            int mask = mIndex.length - 1;
+            int slot = hash(highBits, lowBits) & mask;
+            while (mIndex[slot] != 0) {
+                int row = mIndex[slot] - 1;
+                if (mIdHighBits[row] == highBits && mIdLowBits[row] == lowBits) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int appendRow(GoalId goalId) {
+            if (mRows == mFlags.length) {
+                grow();
+            }
+            int row = mRows++;
+            mIdHighBits[row] = goalId.getMostSignificantBits();
+            mIdLowBits[row] = goalId.getLeastSignificantBits();
+            mFlags[row] = 0;
+            // A removed row with the same id may still own the slot, which now moves over here.
+            mIndex[findSlot(goalId)] = row + 1;
+            return row;
+        }
+
+        private void grow() {
+            int capacity = mFlags.length * 2;
+            mIdHighBits = Arrays.copyOf(mIdHighBits, capacity);
+            mIdLowBits = Arrays.copyOf(mIdLowBits, capacity);
+            mTitleStarts = Arrays.copyOf(mTitleStarts, capacity);
+            mTitleLengths = Arrays.copyOf(mTitleLengths, capacity);
+            mIntervals = Arrays.copyOf(mIntervals, capacity);
+            mTouched = Arrays.copyOf(mTouched, capacity);
+            mFlags = Arrays.copyOf(mFlags, capacity);
+            rebuildIndex(tableSize(capacity));
+        }
+
+        private void rebuildIndex(int tableSize) {
+            mIndex = new int[tableSize];
+            for (int row = 0; row < mRows; row++) {
+                if ((mFlags[row] & FLAG_REMOVED) == 0) {
+                    insertIntoIndex(mIndex, row, hash(mIdHighBits[row], mIdLowBits[row]));
+                }
+            }
+        }
+
+        private void ensureTitleCapacity(int length) {
+            if (mTitleEnd + length > mTitleChars.length) {
+                mTitleChars = Arrays.copyOf(mTitleChars,
+                        Math.max(mTitleChars.length * 2, mTitleEnd + length));
+            }
+        }
+    }
+}
@@ -17,8 +17,15 @@
 package com.beatboxchad.android.selfcaredashboard.data.source;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
 
@@ -34,6 +41,34 @@ public interface GoalsDataSource {
         void onDataNotAvailable();
     }
 
+    /**
+     * A {@link LoadGoalsCallback} that can tell goals that are possibly stale from fresh ones.
+     * See {@link RefreshPolicy#STALE_WHILE_REVALIDATE}.
+     */
+    interface RevalidatingLoadGoalsCallback extends LoadGoalsCallback {
+
+        /**
+         * Passed as the age when the goals were not fetched from the remote data source since
+         * the app started.
+         */
+        long AGE_UNKNOWN = -1;
+
+        /**
+         * Called first with the goals held locally.
+         *
+         * @param ageMillis how long ago they were last fetched from the remote data source, or
+         *                  {@link #AGE_UNKNOWN}
+         */
+        void onStaleGoalsLoaded(List<Goal> goals, long ageMillis);
+
+        /**
+         * Called once the remote data source has answered, after
+         * {@link #onGoalsLoaded(List)} if the goals changed. If the remote data source fails
+         * the stale goals stand and {@code changed} is false.
+         */
+        void onRevalidationFinished(boolean changed);
+    }
+
     interface GetGoalCallback {
 
         void onGoalLoaded(Goal goal);
@@ -41,12 +76,165 @@ public interface GoalsDataSource {
         void onDataNotAvailable();
     }
 
+    interface GetGoalsCountCallback {
+
+        void onGoalsCounted(int count);
+
+        void onDataNotAvailable();
+    }
+
+    interface LoadTouchesCallback {
+
+        void onTouchesLoaded(List<GoalTouch> touches);
+
+        void onDataNotAvailable();
+    }
+
+    interface GetGoalStatsCallback {
+
+        void onGoalStatsLoaded(GoalStats stats);
+
+        void onDataNotAvailable();
+    }
+
+    interface LoadDailyStatsCallback {
+
+        void onDailyStatsLoaded(List<DailyStats> dailyStats);
+
+        void onDataNotAvailable();
+    }
+
+    /**
+     * Returned by the observe methods. Callbacks stop once {@link #unsubscribe()} is called.
+     */
+    interface Subscription {
+
+        void unsubscribe();
+    }
+
     void getGoals(@NonNull LoadGoalsCallback callback);
 
+    void getGoals(@NonNull GoalsFilterType filtering, @NonNull LoadGoalsCallback callback);
+
     void getGoal(@NonNull String goalId, @NonNull GetGoalCallback callback);
 
+    /**
+     * Like {@link #getGoals(GoalsFilterType, LoadGoalsCallback)}, but the goals are delivered
+     * through a future, which fails with a {@link DataNotAvailableException} instead of calling
+     * {@code onDataNotAvailable()}. Cancelling it drops the load if it has not started yet, so a
+     * caller that no longer needs the goals does not keep the disk or network busy.
+     */
+    @NonNull
+    ListenableFuture<List<Goal>> loadGoals(@NonNull GoalsFilterType filtering);
+
+    /**
+     * Like {@link #getGoal(String, GetGoalCallback)}, with a cancellable future as described in
+     * {@link #loadGoals(GoalsFilterType)}.
+     */
+    @NonNull
+    ListenableFuture<Goal> loadGoal(@NonNull String goalId);
+
+    void getGoalsCount(@NonNull GoalsFilterType filtering,
+                       @NonNull GetGoalsCountCallback callback);
+
+    /**
+     * Gets up to {@code pageSize} goals matching {@code filtering} in id order, starting right
+     * after {@code afterGoalId}, or at the first goal if it is null. Past the end the callback
+     * receives an empty list.
+     */
+    void getGoalsPage(@NonNull GoalsFilterType filtering, @Nullable GoalId afterGoalId,
+                      int pageSize, @NonNull LoadGoalsCallback callback);
+
+    /**
+     * Gets up to {@code pageSize} goals matching {@code filtering} in id order, starting at
+     * position {@code offset}. Prefer {@link #getGoalsPage} when the preceding id is known.
+     */
+    void getGoalsPageAt(@NonNull GoalsFilterType filtering, int offset, int pageSize,
+                        @NonNull LoadGoalsCallback callback);
+
+    /**
+     * Gets up to {@code pageSize} goals matching {@code filtering} in {@link Goal#DUE_ORDER},
+     * the most overdue first, starting at position {@code offset}.
+     */
+    void getGoalsInDueOrderAt(@NonNull GoalsFilterType filtering, int offset, int pageSize,
+                              @NonNull LoadGoalsCallback callback);
+
+    /**
+     * Gets up to {@code limit} goals matching {@code filtering} whose titles have a word starting
+     * with each word of {@code query}, so that results show up while the user types. A query
+     * without words matches nothing.
+     */
+    void searchGoals(@NonNull GoalsFilterType filtering, @NonNull String query, int limit,
+                     @NonNull LoadGoalsCallback callback);
+
+    /**
+     * Like {@link #getGoals(GoalsFilterType, LoadGoalsCallback)}, but the callback is called
+     * again every time the matching goals change, until the subscription is cancelled. An empty
+     * result is delivered as an empty list.
+     */
+    @NonNull
+    Subscription observeGoals(@NonNull GoalsFilterType filtering,
+                              @NonNull LoadGoalsCallback callback);
+
+    /**
+     * Like {@link #getGoal(String, GetGoalCallback)}, but the callback is called again every time
+     * the goal changes, until the subscription is cancelled. Deleting the goal is reported with
+     * {@link GetGoalCallback#onDataNotAvailable()}.
+     */
+    @NonNull
+    Subscription observeGoal(@NonNull String goalId, @NonNull GetGoalCallback callback);
+
+    /**
+     * Like {@link #getGoalsCount(GoalsFilterType, GetGoalsCountCallback)}, but the callback is
+     * called again every time the goals change, until the subscription is cancelled. The count
+     * may be the same as before, when goals were only edited.
+     */
+    @NonNull
+    Subscription observeGoalsCount(@NonNull GoalsFilterType filtering,
+                                   @NonNull GetGoalsCountCallback callback);
+
     void saveGoal(@NonNull Goal goal);
 
+    /**
+     * Makes the data source hold exactly {@code goals}, writing only what changed.
+     */
+    void syncGoals(@NonNull List<Goal> goals);
+
+    /**
+     * Saves several goals as one batch.
+     */
+    void saveGoals(@NonNull List<Goal> goals);
+
+    /**
+     * Appends touches to the touch history of their goals. Unlike saving a goal, this never
+     * rewrites the goal, and touches already recorded are ignored.
+     */
+    void saveTouches(@NonNull List<GoalTouch> touches);
+
+    /**
+     * Gets the touches of a goal from {@code fromMillis}, inclusive, to {@code toMillis},
+     * exclusive, oldest first. Old touches may have been thinned to one per day.
+     */
+    void getTouches(@NonNull String goalId, long fromMillis, long toMillis,
+                    @NonNull LoadTouchesCallback callback);
+
+    /**
+     * Gets how well a goal has been kept, counted as it was touched. A goal that was never
+     * touched gets {@link GoalStats#empty}.
+     */
+    void getGoalStats(@NonNull String goalId, @NonNull GetGoalStatsCallback callback);
+
+    /**
+     * Gets the stats of all goals for each day from {@code fromMillis}, inclusive, to
+     * {@code toMillis}, exclusive. Days without touches are left out.
+     */
+    void getDailyStats(long fromMillis, long toMillis, @NonNull LoadDailyStatsCallback callback);
+
+    /**
+     * Recounts the stats from the touch history.
+     */
+    void rebuildStats();
+
     void archiveGoal(@NonNull Goal goal);
 
     void archiveGoal(@NonNull String goalId);
@@ -55,6 +243,10 @@ public interface GoalsDataSource {
 
     void activateGoal(@NonNull String goalId);
 
+    void archiveGoals(@NonNull List<String> goalIds);
+
+    void activateGoals(@NonNull List<String> goalIds);
+
     void clearArchivedGoals();
 
     void refreshGoals();
@@ -62,4 +254,6 @@ public interface GoalsDataSource {
     void deleteAllGoals();
 
     void deleteGoal(@NonNull String goalId);
+
+    void deleteGoals(@NonNull List<String> goalIds);
 }
@@ -18,16 +18,27 @@ package com.beatboxchad.android.selfcaredashboard.data.source;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * Concrete implementation to load goals from the data sources into a cache.
@@ -35,8 +46,13 @@ import java.util.Map;
  * For simplicity, this implements a dumb synchronisation between locally persisted data and data
  * obtained from the server, by using the remote data source only if the local database doesn't
  * exist or is empty.
+ * <p>
+ * The in-memory cache is bounded. Register the repository with
+ * {@link android.content.Context#registerComponentCallbacks(android.content.ComponentCallbacks)}
+ * so that it shrinks when the system is low on memory, and so that buffered saves are written
+ * out when the app goes to the background.
  */
-public class GoalsRepository implements GoalsDataSource {
+public class GoalsRepository implements GoalsDataSource, ComponentCallbacks2 {
 
     private static GoalsRepository INSTANCE = null;
 
@@ -47,19 +63,45 @@ public class GoalsRepository implements GoalsDataSource {
     /**
      * This variable has package local visibility so it can be accessed from tests.
      */
-    Map<String, Goal> mCachedGoals;
+    final GoalsCache mCachedGoals;
 
     /**
      * Marks the cache as invalid, to force an update the next time data is requested. This variable
      * has package local visibility so it can be accessed from tests.
      */
-    boolean mCacheIsDirty = false;
+    volatile boolean mCacheIsDirty = false;
+
+    /**
+     * When the goals were last fetched from the remote data source, or 0 if they were not yet.
+     */
+    private volatile long mLastRemoteRefreshMillis = 0;
+
+    /**
+     * The remote data source always returns every goal, so there is a single remote load key.
+     */
+    private static final String REMOTE_GOALS_LOAD = "remote";
+
+    private final InFlightRequests<GoalsFilterType, LoadGoalsCallback> mLocalGoalsRequests =
+            new InFlightRequests<>();
+
+    private final InFlightRequests<String, FilteredLoad> mRemoteGoalsRequests =
+            new InFlightRequests<>();
+
+    private final InFlightRequests<String, GetGoalCallback> mGoalRequests =
+            new InFlightRequests<>();
+
+    private final GoalsWriteBuffer mWriteBuffer;
 
     // Prevent direct instantiation.
     private GoalsRepository(@NonNull GoalsDataSource goalsRemoteDataSource,
-                            @NonNull GoalsDataSource goalsLocalDataSource) {
+                            @NonNull GoalsDataSource goalsLocalDataSource,
+                            long maxCacheBytes,
+                            @NonNull GoalsWriteBuffer.Scheduler writeScheduler) {
         mGoalsRemoteDataSource = checkNotNull(goalsRemoteDataSource);
         mGoalsLocalDataSource = checkNotNull(goalsLocalDataSource);
+        mCachedGoals = new GoalsCache(maxCacheBytes);
+        mWriteBuffer = new GoalsWriteBuffer(goalsRemoteDataSource, goalsLocalDataSource,
+                writeScheduler);
     }
 
     /**
@@ -71,8 +113,40 @@ public class GoalsRepository implements GoalsDataSource {
      */
     public static GoalsRepository getInstance(GoalsDataSource goalsRemoteDataSource,
                                               GoalsDataSource goalsLocalDataSource) {
+        return getInstance(goalsRemoteDataSource, goalsLocalDataSource,
+                GoalsCache.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Returns the single instance of this class, creating it if necessary.
+     *
+     * @param goalsRemoteDataSource the backend data source
+     * @param goalsLocalDataSource  the device storage data source
+     * @param maxCacheBytes         the memory budget of the goals cache, used only when the
+     *                              instance is created
+     * @return the {@link GoalsRepository} instance
+     */
+    public static GoalsRepository getInstance(GoalsDataSource goalsRemoteDataSource,
+                                              GoalsDataSource goalsLocalDataSource,
+                                              long maxCacheBytes) {
         if (INSTANCE == null) {
-            INSTANCE = new GoalsRepository(goalsRemoteDataSource, goalsLocalDataSource);
+            INSTANCE = new GoalsRepository(goalsRemoteDataSource, goalsLocalDataSource,
+                    maxCacheBytes, new GoalsWriteBuffer.MainThreadScheduler());
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the single instance of this class, creating it with buffered saves flushed by
+     * {@code writeScheduler} if necessary.
+     */
+    @VisibleForTesting
+    static GoalsRepository getInstance(GoalsDataSource goalsRemoteDataSource,
+                                       GoalsDataSource goalsLocalDataSource,
+                                       GoalsWriteBuffer.Scheduler writeScheduler) {
+        if (INSTANCE == null) {
+            INSTANCE = new GoalsRepository(goalsRemoteDataSource, goalsLocalDataSource,
+                    GoalsCache.DEFAULT_MAX_BYTES, writeScheduler);
         }
         return INSTANCE;
     }
@@ -91,53 +165,330 @@ public class GoalsRepository implements GoalsDataSource {
      * <p>
      * Note: {@link LoadGoalsCallback#onDataNotAvailable()} is fired if all data sources fail to
      * get the data.
+     * <p>
+     * Concurrent calls made while a load is already pending attach to that load instead of
+     * starting their own.
      */
     @Override
     public void getGoals(@NonNull final LoadGoalsCallback callback) {
+        getGoals(GoalsFilterType.ALL_GOALS, callback);
+    }
+
+    /**
+     * Gets the goals matching {@code filtering}. The cache keeps a separate view per filter, so a
+     * filtered request is answered from memory once that filter has been loaded, and otherwise
+     * only the matching rows are read from the local data source.
+     */
+    @Override
+    public void getGoals(@NonNull GoalsFilterType filtering,
+                         @NonNull final LoadGoalsCallback callback) {
+        checkNotNull(filtering);
         checkNotNull(callback);
 
         // Respond immediately with cache if available and not dirty
-        if (mCachedGoals != null && !mCacheIsDirty) {
-            callback.onGoalsLoaded(new ArrayList<>(mCachedGoals.values()));
+        GoalsCache.Snapshot snapshot = mCachedGoals.snapshot();
+        if (snapshot != null && snapshot.isComplete(filtering) && !mCacheIsDirty) {
+            callback.onGoalsLoaded(snapshot.goals(filtering));
             return;
         }
 
         if (mCacheIsDirty) {
             // If the cache is dirty we need to fetch new data from the network.
-            getGoalsFromRemoteDataSource(callback);
+            getGoalsFromRemoteDataSource(filtering, callback);
         } else {
-            // Query the local storage if available. If not, query the network.
-            mGoalsLocalDataSource.getGoals(new LoadGoalsCallback() {
+            getGoalsFromLocalDataSource(filtering, callback);
+        }
+    }
+
+    /**
+     * Gets the goals matching {@code filtering} according to {@code policy}.
+     * <p>
+     * With {@link RefreshPolicy#STALE_WHILE_REVALIDATE} the cached or local goals are delivered
+     * right away, even if the cache is dirty, and the remote data source is asked in the
+     * background. Its goals are delivered again only if they differ. A
+     * {@link RevalidatingLoadGoalsCallback} is told which delivery is which, and when the
+     * revalidation is over; a plain callback simply gets {@code onGoalsLoaded} once or twice.
+     */
+    public void getGoals(@NonNull GoalsFilterType filtering, @NonNull RefreshPolicy policy,
+                         @NonNull LoadGoalsCallback callback) {
+        checkNotNull(filtering);
+        checkNotNull(policy);
+        checkNotNull(callback);
+
+        switch (policy) {
+            case STALE_WHILE_REVALIDATE:
+                getGoalsStaleWhileRevalidate(filtering, callback);
+                break;
+            case FORCE_REMOTE:
+                refreshGoals();
+                getGoals(filtering, callback);
+                break;
+            default:
+                getGoals(filtering, callback);
+                break;
+        }
+    }
+
+    /**
+     * Counts the goals matching {@code filtering} without loading them, unless the cache already
+     * holds them. A dirty cache is refreshed from the remote data source first, so the count and
+     * the pages read afterwards agree with the server.
+     */
+    @Override
+    public void getGoalsCount(@NonNull GoalsFilterType filtering,
+                              @NonNull final GetGoalsCountCallback callback) {
+        checkNotNull(filtering);
+        checkNotNull(callback);
+
+        GoalsCache.Snapshot snapshot = mCachedGoals.snapshot();
+        if (snapshot != null && snapshot.isComplete(filtering) && !mCacheIsDirty) {
+            callback.onGoalsCounted(snapshot.goals(filtering).size());
+            return;
+        }
+
+        if (mCacheIsDirty) {
+            getGoalsFromRemoteDataSource(filtering, new LoadGoalsCallback() {
                 @Override
                 public void onGoalsLoaded(List<Goal> goals) {
-                    refreshCache(goals);
-                    callback.onGoalsLoaded(new ArrayList<>(mCachedGoals.values()));
+                    callback.onGoalsCounted(goals.size());
                 }
 
                 @Override
                 public void onDataNotAvailable() {
-                    getGoalsFromRemoteDataSource(callback);
+                    callback.onDataNotAvailable();
                 }
             });
+        } else {
+            flushPendingWrites();
+            mGoalsLocalDataSource.getGoalsCount(filtering, callback);
+        }
+    }
+
+    /**
+     * Pages are always read from the local data source and are not cached: holding every page in
+     * memory is exactly what paging avoids. The local data source is kept in sync with the remote
+     * one by {@link #getGoals(GoalsFilterType, LoadGoalsCallback)} and {@link #getGoalsCount}.
+     */
+    @Override
+    public void getGoalsPage(@NonNull GoalsFilterType filtering, @Nullable GoalId afterGoalId,
+                             int pageSize, @NonNull LoadGoalsCallback callback) {
+        flushPendingWrites();
+        mGoalsLocalDataSource.getGoalsPage(checkNotNull(filtering), afterGoalId, pageSize,
+                checkNotNull(callback));
+    }
+
+    @Override
+    public void getGoalsPageAt(@NonNull GoalsFilterType filtering, int offset, int pageSize,
+                               @NonNull LoadGoalsCallback callback) {
+        flushPendingWrites();
+        mGoalsLocalDataSource.getGoalsPageAt(checkNotNull(filtering), offset, pageSize,
+                checkNotNull(callback));
+    }
+
+    @Override
+    public void getGoalsInDueOrderAt(@NonNull GoalsFilterType filtering, int offset,
+                                     int pageSize, @NonNull LoadGoalsCallback callback) {
+        flushPendingWrites();
+        mGoalsLocalDataSource.getGoalsInDueOrderAt(checkNotNull(filtering), offset, pageSize,
+                checkNotNull(callback));
+    }
+
+    /**
+     * Searches the cache through its prefix index when it holds every goal, which answers
+     * within a frame even for large lists, and the local data source's full-text index
+     * otherwise.
+     */
+    @Override
+    public void searchGoals(@NonNull GoalsFilterType filtering, @NonNull String query, int limit,
+                            @NonNull LoadGoalsCallback callback) {
+        checkNotNull(filtering);
+        checkNotNull(callback);
+        List<String> prefixes = GoalsSearchIndex.tokenize(checkNotNull(query));
+        if (prefixes.isEmpty()) {
+            callback.onGoalsLoaded(new ArrayList<Goal>(0));
+            return;
+        }
+        GoalsCache.Snapshot snapshot = mCachedGoals.snapshot();
+        if (snapshot != null && snapshot.isComplete(GoalsFilterType.ALL_GOALS)
+                && !mCacheIsDirty) {
+            callback.onGoalsLoaded(snapshot.search(filtering, prefixes, limit));
+            return;
+        }
+        flushPendingWrites();
+        mGoalsLocalDataSource.searchGoals(filtering, query, limit, callback);
+    }
+
+    /**
+     * Observes the goals matching {@code filtering} in the local data source, which is the one
+     * that reports its changes. A complete cached view is delivered right away; after that only
+     * results that differ from what the subscriber last received are delivered.
+     * <p>
+     * An empty local data source is reported as an empty list and does not fall back to the
+     * remote data source; use {@link #getGoals(GoalsFilterType, LoadGoalsCallback)} for that.
+     */
+    @NonNull
+    @Override
+    public Subscription observeGoals(@NonNull GoalsFilterType filtering,
+                                     @NonNull final LoadGoalsCallback callback) {
+        checkNotNull(filtering);
+        checkNotNull(callback);
+
+        GoalsCache.Snapshot snapshot = mCachedGoals.snapshot();
+        final List<Goal> cachedGoals = snapshot != null && !mCacheIsDirty
+                ? snapshot.goals(filtering) : null;
+        if (cachedGoals != null) {
+            callback.onGoalsLoaded(cachedGoals);
         }
+        flushPendingWrites();
+        return mGoalsLocalDataSource.observeGoals(filtering, new LoadGoalsCallback() {
+
+            private List<Goal> mDelivered = cachedGoals;
+
+            @Override
+            public void onGoalsLoaded(List<Goal> goals) {
+                if (!Goal.haveSameContent(mDelivered, goals)) {
+                    mDelivered = goals;
+                    callback.onGoalsLoaded(goals);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                callback.onDataNotAvailable();
+            }
+        });
+    }
+
+    /**
+     * Observes a goal in the local data source. A cached copy is delivered right away; after that
+     * only changes are delivered.
+     */
+    @NonNull
+    @Override
+    public Subscription observeGoal(@NonNull String goalId,
+                                    @NonNull final GetGoalCallback callback) {
+        checkNotNull(goalId);
+        checkNotNull(callback);
+
+        final Goal cachedGoal = getGoalWithId(goalId);
+        if (cachedGoal != null) {
+            callback.onGoalLoaded(cachedGoal);
+        }
+        flushPendingWrites();
+        return mGoalsLocalDataSource.observeGoal(goalId, new GetGoalCallback() {
+
+            private Goal mDelivered = cachedGoal;
+
+            @Override
+            public void onGoalLoaded(Goal goal) {
+                if (!goal.hasSameContent(mDelivered)) {
+                    mDelivered = goal;
+                    callback.onGoalLoaded(goal);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                mDelivered = null;
+                callback.onDataNotAvailable();
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoalsCount(@NonNull GoalsFilterType filtering,
+                                          @NonNull GetGoalsCountCallback callback) {
+        flushPendingWrites();
+        return mGoalsLocalDataSource.observeGoalsCount(checkNotNull(filtering),
+                checkNotNull(callback));
     }
 
     @Override
     public void saveGoal(@NonNull Goal goal) {
         checkNotNull(goal);
-        mGoalsRemoteDataSource.saveGoal(goal);
-        mGoalsLocalDataSource.saveGoal(goal);
+        // Do in memory cache update to keep the app UI up to date
+        mCachedGoals.put(goal);
+
+        // Bursts of saves, such as repeated touches, are written as one batch a moment later.
+        mWriteBuffer.save(goal);
+    }
+
+    /**
+     * Writes out saves that are still buffered. They are also written out after a short delay,
+     * before any other call to a data source, and when the app goes to the background.
+     */
+    public void flushPendingWrites() {
+        mWriteBuffer.flush();
+    }
+
+    @Override
+    public void saveGoals(@NonNull List<Goal> goals) {
+        checkNotNull(goals);
+        flushPendingWrites();
+        mGoalsRemoteDataSource.saveGoals(goals);
+        mGoalsLocalDataSource.saveGoals(goals);
 
         // Do in memory cache update to keep the app UI up to date
-        if (mCachedGoals == null) {
-            mCachedGoals = new LinkedHashMap<>();
-        }
-        mCachedGoals.put(goal.getId(), goal);
+        mCachedGoals.putAll(goals);
+    }
+
+    @Override
+    public void syncGoals(@NonNull List<Goal> goals) {
+        checkNotNull(goals);
+        refreshCache(goals);
+        refreshLocalDataSource(goals);
+    }
+
+    @Override
+    public void saveTouches(@NonNull List<GoalTouch> touches) {
+        checkNotNull(touches);
+        // Touches usually come with a save of their goal, so they are written with its batch.
+        mWriteBuffer.saveTouches(touches);
+    }
+
+    /**
+     * The touch history is only kept locally.
+     */
+    @Override
+    public void getTouches(@NonNull String goalId, long fromMillis, long toMillis,
+                           @NonNull LoadTouchesCallback callback) {
+        checkNotNull(goalId);
+        checkNotNull(callback);
+        flushPendingWrites();
+        mGoalsLocalDataSource.getTouches(goalId, fromMillis, toMillis, callback);
+    }
+
+    /**
+     * Stats are counted from the touch history, so they are only kept locally too. Pending
+     * touches are written first, so the stats include them.
+     */
+    @Override
+    public void getGoalStats(@NonNull String goalId, @NonNull GetGoalStatsCallback callback) {
+        checkNotNull(goalId);
+        checkNotNull(callback);
+        flushPendingWrites();
+        mGoalsLocalDataSource.getGoalStats(goalId, callback);
+    }
+
+    @Override
+    public void getDailyStats(long fromMillis, long toMillis,
+                              @NonNull LoadDailyStatsCallback callback) {
+        checkNotNull(callback);
+        flushPendingWrites();
+        mGoalsLocalDataSource.getDailyStats(fromMillis, toMillis, callback);
+    }
+
+    @Override
+    public void rebuildStats() {
+        flushPendingWrites();
+        mGoalsLocalDataSource.rebuildStats();
     }
 
     @Override
     public void archiveGoal(@NonNull Goal goal) {
         checkNotNull(goal);
+        flushPendingWrites();
         mGoalsRemoteDataSource.archiveGoal(goal);
         mGoalsLocalDataSource.archiveGoal(goal);
 
@@ -146,55 +497,71 @@ public class GoalsRepository implements GoalsDataSource {
                 .build();
 
         // Do in memory cache update to keep the app UI up to date
-        if (mCachedGoals == null) {
-            mCachedGoals = new LinkedHashMap<>();
-        }
-        mCachedGoals.put(goal.getId(), archivedGoal);
+        mCachedGoals.put(archivedGoal);
     }
 
+    /**
+     * Works whether or not the goal is cached, so the goal on the detail screen can be archived
+     * after the cache has let it go.
+     */
     @Override
     public void archiveGoal(@NonNull String goalId) {
         checkNotNull(goalId);
-        archiveGoal(getGoalWithId(goalId));
+        archiveGoals(Collections.singletonList(goalId));
     }
 
     @Override
     public void activateGoal(@NonNull Goal goal) {
         checkNotNull(goal);
+        flushPendingWrites();
         mGoalsRemoteDataSource.activateGoal(goal);
         mGoalsLocalDataSource.activateGoal(goal);
 
         Goal activeGoal = new Goal.Builder(goal)
                 .setArchived(false).build();
         // Do in memory cache update to keep the app UI up to date
-        if (mCachedGoals == null) {
-            mCachedGoals = new LinkedHashMap<>();
-        }
-        mCachedGoals.put(goal.getId(), activeGoal);
+        mCachedGoals.put(activeGoal);
     }
 
+    /**
+     * Like {@link #archiveGoal(String)}, works whether or not the goal is cached.
+     */
     @Override
     public void activateGoal(@NonNull String goalId) {
         checkNotNull(goalId);
-        activateGoal(getGoalWithId(goalId));
+        activateGoals(Collections.singletonList(goalId));
+    }
+
+    @Override
+    public void archiveGoals(@NonNull List<String> goalIds) {
+        checkNotNull(goalIds);
+        flushPendingWrites();
+        mGoalsRemoteDataSource.archiveGoals(goalIds);
+        mGoalsLocalDataSource.archiveGoals(goalIds);
+
+        // Do in memory cache update to keep the app UI up to date
+        mCachedGoals.setArchived(goalIds, true);
+    }
+
+    @Override
+    public void activateGoals(@NonNull List<String> goalIds) {
+        checkNotNull(goalIds);
+        flushPendingWrites();
+        mGoalsRemoteDataSource.activateGoals(goalIds);
+        mGoalsLocalDataSource.activateGoals(goalIds);
+
+        // Do in memory cache update to keep the app UI up to date
+        mCachedGoals.setArchived(goalIds, false);
     }
 
     @Override
     public void clearArchivedGoals() {
+        flushPendingWrites();
         mGoalsRemoteDataSource.clearArchivedGoals();
         mGoalsLocalDataSource.clearArchivedGoals();
 
         // Do in memory cache update to keep the app UI up to date
-        if (mCachedGoals == null) {
-            mCachedGoals = new LinkedHashMap<>();
-        }
-        Iterator<Map.Entry<String, Goal>> it = mCachedGoals.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, Goal> entry = it.next();
-            if (entry.getValue().isArchived()) {
-                it.remove();
-            }
-        }
+        mCachedGoals.removeArchived();
     }
 
     /**
@@ -202,7 +569,7 @@ public class GoalsRepository implements GoalsDataSource {
      * uses the network data source. This is done to simplify the sample.
      * <p>
      * Note: {@link GetGoalCallback#onDataNotAvailable()} is fired if both data sources fail to
-     * get the data.
+     * get the data. Concurrent requests for the same goal share a single load.
      */
     @Override
     public void getGoal(@NonNull final String goalId, @NonNull final GetGoalCallback callback) {
@@ -217,18 +584,21 @@ public class GoalsRepository implements GoalsDataSource {
             return;
         }
 
-        // Load from server/persisted if needed.
+        // Load from server/persisted if needed, unless a load for this goal is already pending.
+        if (!mGoalRequests.join(goalId, callback)) {
+            return;
+        }
 
         // Is the goal in the local data source? If not, query the network.
+        flushPendingWrites();
         mGoalsLocalDataSource.getGoal(goalId, new GetGoalCallback() {
             @Override
             public void onGoalLoaded(Goal goal) {
                 // Do in memory cache update to keep the app UI up to date
-                if (mCachedGoals == null) {
-                    mCachedGoals = new LinkedHashMap<>();
+                mCachedGoals.put(goal);
+                for (GetGoalCallback waiter : mGoalRequests.complete(goalId)) {
+                    waiter.onGoalLoaded(goal);
                 }
-                mCachedGoals.put(goal.getId(), goal);
-                callback.onGoalLoaded(goal);
             }
 
             @Override
@@ -237,87 +607,388 @@ public class GoalsRepository implements GoalsDataSource {
                     @Override
                     public void onGoalLoaded(Goal goal) {
                         // Do in memory cache update to keep the app UI up to date
-                        if (mCachedGoals == null) {
-                            mCachedGoals = new LinkedHashMap<>();
+                        mCachedGoals.put(goal);
+                        for (GetGoalCallback waiter : mGoalRequests.complete(goalId)) {
+                            waiter.onGoalLoaded(goal);
                         }
-                        mCachedGoals.put(goal.getId(), goal);
-                        callback.onGoalLoaded(goal);
                     }
 
                     @Override
                     public void onDataNotAvailable() {
-                        callback.onDataNotAvailable();
+                        for (GetGoalCallback waiter : mGoalRequests.complete(goalId)) {
+                            waiter.onDataNotAvailable();
+                        }
                     }
                 });
             }
         });
     }
 
+    /**
+     * Loads the goals like {@link #getGoals(GoalsFilterType, LoadGoalsCallback)}. Cancelling the
+     * future cancels the data source load it is waiting on, so an abandoned load is dropped from
+     * the disk queue, or no longer waits for the network.
+     * <p>
+     * Unlike callback loads, concurrent future loads are not shared, so that cancelling one never
+     * cancels work another caller is waiting for.
+     */
+    @NonNull
+    @Override
+    public ListenableFuture<List<Goal>> loadGoals(@NonNull GoalsFilterType filtering) {
+        checkNotNull(filtering);
+        LoadGoalsFuture result = new LoadGoalsFuture();
+        GoalsCache.Snapshot snapshot = mCachedGoals.snapshot();
+        if (snapshot != null && snapshot.isComplete(filtering) && !mCacheIsDirty) {
+            result.onGoalsLoaded(snapshot.goals(filtering));
+        } else if (mCacheIsDirty) {
+            loadGoalsFromRemoteDataSource(filtering, result);
+        } else {
+            loadGoalsFromLocalDataSource(filtering, result);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the goal like {@link #getGoal(String, GetGoalCallback)}, cancellable as described in
+     * {@link #loadGoals(GoalsFilterType)}.
+     */
+    @NonNull
+    @Override
+    public ListenableFuture<Goal> loadGoal(@NonNull final String goalId) {
+        checkNotNull(goalId);
+        final GetGoalFuture result = new GetGoalFuture();
+        Goal cachedGoal = getGoalWithId(goalId);
+        if (cachedGoal != null) {
+            result.onGoalLoaded(cachedGoal);
+            return result;
+        }
+
+        flushPendingWrites();
+        ListenableFuture<Goal> load = mGoalsLocalDataSource.loadGoal(goalId);
+        cancelWith(result, load);
+        Futures.addCallback(load, new FutureCallback<Goal>() {
+            @Override
+            public void onSuccess(Goal goal) {
+                mCachedGoals.put(goal);
+                result.onGoalLoaded(goal);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // Anything else means the load was cancelled, along with the result.
+                if (t instanceof DataNotAvailableException) {
+                    loadGoalFromRemoteDataSource(goalId, result);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
     @Override
     public void refreshGoals() {
         mCacheIsDirty = true;
     }
 
+    /**
+     * Writes out buffered saves and shrinks the cache. Whatever is dropped is read from the local
+     * data source again when next needed.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        // Trimming comes with the UI being hidden or with memory pressure, and either may be
+        // followed by the process being killed.
+        flushPendingWrites();
+        mCachedGoals.trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        flushPendingWrites();
+        mCachedGoals.trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // The cache does not depend on the configuration.
+    }
+
     @Override
     public void deleteAllGoals() {
+        flushPendingWrites();
         mGoalsRemoteDataSource.deleteAllGoals();
         mGoalsLocalDataSource.deleteAllGoals();
 
-        if (mCachedGoals == null) {
-            mCachedGoals = new LinkedHashMap<>();
-        }
         mCachedGoals.clear();
     }
 
     @Override
     public void deleteGoal(@NonNull String goalId) {
+        flushPendingWrites();
         mGoalsRemoteDataSource.deleteGoal(checkNotNull(goalId));
         mGoalsLocalDataSource.deleteGoal(checkNotNull(goalId));
 
         mCachedGoals.remove(goalId);
     }
 
-    private void getGoalsFromRemoteDataSource(@NonNull final LoadGoalsCallback callback) {
+    @Override
+    public void deleteGoals(@NonNull List<String> goalIds) {
+        checkNotNull(goalIds);
+        flushPendingWrites();
+        mGoalsRemoteDataSource.deleteGoals(goalIds);
+        mGoalsLocalDataSource.deleteGoals(goalIds);
+
+        mCachedGoals.removeAll(goalIds);
+    }
+
+    private void getGoalsFromLocalDataSource(@NonNull final GoalsFilterType filtering,
+                                             @NonNull LoadGoalsCallback callback) {
+        if (!mLocalGoalsRequests.join(filtering, callback)) {
+            return;
+        }
+        // Query the local storage if available. If not, query the network.
+        flushPendingWrites();
+        mGoalsLocalDataSource.getGoals(filtering, new LoadGoalsCallback() {
+            @Override
+            public void onGoalsLoaded(List<Goal> goals) {
+                List<Goal> cachedGoals =
+                        mCachedGoals.replaceFiltered(filtering, goals).goals(filtering);
+                for (LoadGoalsCallback waiter : mLocalGoalsRequests.complete(filtering)) {
+                    waiter.onGoalsLoaded(cachedGoals);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                for (LoadGoalsCallback waiter : mLocalGoalsRequests.complete(filtering)) {
+                    getGoalsFromRemoteDataSource(filtering, waiter);
+                }
+            }
+        });
+    }
+
+    private void getGoalsFromRemoteDataSource(@NonNull GoalsFilterType filtering,
+                                              @NonNull LoadGoalsCallback callback) {
+        if (!mRemoteGoalsRequests.join(REMOTE_GOALS_LOAD, new FilteredLoad(filtering, callback))) {
+            return;
+        }
+        flushPendingWrites();
         mGoalsRemoteDataSource.getGoals(new LoadGoalsCallback() {
             @Override
             public void onGoalsLoaded(List<Goal> goals) {
-                refreshCache(goals);
+                mLastRemoteRefreshMillis = System.currentTimeMillis();
+                GoalsCache.Snapshot snapshot = refreshCache(goals);
                 refreshLocalDataSource(goals);
-                callback.onGoalsLoaded(new ArrayList<>(mCachedGoals.values()));
+                for (FilteredLoad waiter : mRemoteGoalsRequests.complete(REMOTE_GOALS_LOAD)) {
+                    waiter.mCallback.onGoalsLoaded(snapshot.goals(waiter.mFiltering));
+                }
             }
 
             @Override
             public void onDataNotAvailable() {
-                callback.onDataNotAvailable();
+                for (FilteredLoad waiter : mRemoteGoalsRequests.complete(REMOTE_GOALS_LOAD)) {
+                    waiter.mCallback.onDataNotAvailable();
+                }
             }
         });
     }
 
-    private void refreshCache(List<Goal> goals) {
-        if (mCachedGoals == null) {
-            mCachedGoals = new LinkedHashMap<>();
+    private void loadGoalsFromLocalDataSource(@NonNull final GoalsFilterType filtering,
+                                              @NonNull final LoadGoalsFuture result) {
+        flushPendingWrites();
+        ListenableFuture<List<Goal>> load = mGoalsLocalDataSource.loadGoals(filtering);
+        cancelWith(result, load);
+        Futures.addCallback(load, new FutureCallback<List<Goal>>() {
+            @Override
+            public void onSuccess(List<Goal> goals) {
+                result.onGoalsLoaded(
+                        mCachedGoals.replaceFiltered(filtering, goals).goals(filtering));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // Anything else means the load was cancelled, along with the result.
+                if (t instanceof DataNotAvailableException) {
+                    loadGoalsFromRemoteDataSource(filtering, result);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void loadGoalsFromRemoteDataSource(@NonNull final GoalsFilterType filtering,
+                                               @NonNull final LoadGoalsFuture result) {
+        flushPendingWrites();
+        ListenableFuture<List<Goal>> load =
+                mGoalsRemoteDataSource.loadGoals(GoalsFilterType.ALL_GOALS);
+        cancelWith(result, load);
+        Futures.addCallback(load, new FutureCallback<List<Goal>>() {
+            @Override
+            public void onSuccess(List<Goal> goals) {
+                mLastRemoteRefreshMillis = System.currentTimeMillis();
+                GoalsCache.Snapshot snapshot = refreshCache(goals);
+                refreshLocalDataSource(goals);
+                result.onGoalsLoaded(snapshot.goals(filtering));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (t instanceof DataNotAvailableException) {
+                    result.onDataNotAvailable();
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void loadGoalFromRemoteDataSource(@NonNull String goalId,
+                                              @NonNull final GetGoalFuture result) {
+        ListenableFuture<Goal> load = mGoalsRemoteDataSource.loadGoal(goalId);
+        cancelWith(result, load);
+        Futures.addCallback(load, new FutureCallback<Goal>() {
+            @Override
+            public void onSuccess(Goal goal) {
+                mCachedGoals.put(goal);
+                result.onGoalLoaded(goal);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (t instanceof DataNotAvailableException) {
+                    result.onDataNotAvailable();
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Cancels {@code load} once {@code result} is cancelled, right away if it already is.
+     */
+    private static void cancelWith(@NonNull final ListenableFuture<?> result,
+                                   @NonNull final Future<?> load) {
+        result.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (result.isCancelled()) {
+                    load.cancel(false);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void getGoalsStaleWhileRevalidate(@NonNull final GoalsFilterType filtering,
+                                              @NonNull final LoadGoalsCallback callback) {
+        GoalsCache.Snapshot snapshot = mCachedGoals.snapshot();
+        if (snapshot != null && snapshot.isComplete(filtering)) {
+            List<Goal> staleGoals = snapshot.goals(filtering);
+            deliverStaleGoals(staleGoals, callback);
+            revalidate(filtering, staleGoals, callback);
+            return;
         }
-        mCachedGoals.clear();
-        for (Goal goal : goals) {
-            mCachedGoals.put(goal.getId(), goal);
+
+        flushPendingWrites();
+        mGoalsLocalDataSource.getGoals(filtering, new LoadGoalsCallback() {
+            @Override
+            public void onGoalsLoaded(List<Goal> goals) {
+                List<Goal> staleGoals =
+                        mCachedGoals.replaceFiltered(filtering, goals).goals(filtering);
+                deliverStaleGoals(staleGoals, callback);
+                revalidate(filtering, staleGoals, callback);
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                // Nothing stale to show, so this is an ordinary remote load.
+                revalidate(filtering, null, callback);
+            }
+        });
+    }
+
+    private void deliverStaleGoals(List<Goal> goals, LoadGoalsCallback callback) {
+        if (callback instanceof RevalidatingLoadGoalsCallback) {
+            long lastRefresh = mLastRemoteRefreshMillis;
+            long age = lastRefresh == 0 ? RevalidatingLoadGoalsCallback.AGE_UNKNOWN
+                    : System.currentTimeMillis() - lastRefresh;
+            ((RevalidatingLoadGoalsCallback) callback).onStaleGoalsLoaded(goals, age);
+        } else {
+            callback.onGoalsLoaded(goals);
+        }
+    }
+
+    /**
+     * @param staleGoals the goals already delivered, or null if none were
+     */
+    private void revalidate(@NonNull GoalsFilterType filtering,
+                            @Nullable final List<Goal> staleGoals,
+                            @NonNull final LoadGoalsCallback callback) {
+        getGoalsFromRemoteDataSource(filtering, new LoadGoalsCallback() {
+            @Override
+            public void onGoalsLoaded(List<Goal> goals) {
+                boolean changed = staleGoals == null || !haveSameGoals(staleGoals, goals);
+                if (changed) {
+                    callback.onGoalsLoaded(goals);
+                }
+                if (callback instanceof RevalidatingLoadGoalsCallback) {
+                    ((RevalidatingLoadGoalsCallback) callback).onRevalidationFinished(changed);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                if (staleGoals == null) {
+                    callback.onDataNotAvailable();
+                } else if (callback instanceof RevalidatingLoadGoalsCallback) {
+                    ((RevalidatingLoadGoalsCallback) callback).onRevalidationFinished(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Compares two lists of goals regardless of order, since the local and remote data sources
+     * do not return goals in the same order.
+     */
+    private static boolean haveSameGoals(List<Goal> goals1, List<Goal> goals2) {
+        if (goals1.size() != goals2.size()) {
+            return false;
         }
+        Map<GoalId, Goal> byId = new HashMap<>();
+        for (Goal goal : goals1) {
+            byId.put(goal.getGoalId(), goal);
+        }
+        for (Goal goal : goals2) {
+            if (!goal.hasSameContent(byId.get(goal.getGoalId()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private GoalsCache.Snapshot refreshCache(List<Goal> goals) {
+        GoalsCache.Snapshot snapshot = mCachedGoals.replaceAll(goals);
         mCacheIsDirty = false;
+        return snapshot;
     }
 
     private void refreshLocalDataSource(List<Goal> goals) {
-        mGoalsLocalDataSource.deleteAllGoals();
-        for (Goal goal : goals) {
-            mGoalsLocalDataSource.saveGoal(goal);
-        }
+        mGoalsLocalDataSource.syncGoals(goals);
     }
 
     @Nullable
     private Goal getGoalWithId(@NonNull String id) {
         checkNotNull(id);
-        if (mCachedGoals == null || mCachedGoals.isEmpty()) {
-            return null;
-        } else {
-            return mCachedGoals.get(id);
+        return mCachedGoals.get(id);
+    }
+
+    /**
+     * A caller waiting on the shared remote load, together with the filter it asked for.
+     */
+    private static final class FilteredLoad {
+
+        final GoalsFilterType mFiltering;
+
+        final LoadGoalsCallback mCallback;
+
+        FilteredLoad(GoalsFilterType filtering, LoadGoalsCallback callback) {
+            mFiltering = filtering;
+            mCallback = callback;
         }
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A prefix index over the words of the titles of a {@link GoalsColumnStore}, so that cached goals
+ * can be searched as the user types without scanning every title.
+ * <p>
+ * Every word of every title is kept once, with its row, in a single sorted array. The words that
+ * start with a prefix are then a contiguous range, found by binary search: a search costs
+ * O(log n) per word of the query plus the number of matching words.
+ * <p>
+ * Words are split the way the local data source's full-text index splits them, so cached and
+ * stored results agree.
+ */
+public final class GoalsSearchIndex {
+
+    private final GoalsColumnStore mStore;
+
+    // Sorted, with the row of each word at the same position of mRows.
+    private final String[] mWords;
+
+    private final int[] mRows;
+
+    private GoalsSearchIndex(GoalsColumnStore store, String[] words, int[] rows) {
+        mStore = store;
+        mWords = words;
+        mRows = rows;
+    }
+
+    static GoalsSearchIndex build(@NonNull GoalsColumnStore store) {
+        final List<String> words = new ArrayList<>();
+        final List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < store.size(); row++) {
+            for (String word : tokenize(store.title(row))) {
+                words.add(word);
+                rows.add(row);
+            }
+        }
+        Integer[] order = new Integer[words.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return words.get(i1).compareTo(words.get(i2));
+            }
+        });
+        String[] sortedWords = new String[order.length];
+        int[] sortedRows = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedWords[i] = words.get(order[i]);
+            sortedRows[i] = rows.get(order[i]);
+        }
+        return new GoalsSearchIndex(store, sortedWords, sortedRows);
+    }
+
+    /**
+     * Splits {@code text} into lower case words of letters and digits.
+     */
+    @NonNull
+    public static List<String> tokenize(@Nullable String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns true if every one of {@code prefixes} starts a word of {@code title}. Lets data
+     * sources without an index match titles the same way.
+     */
+    public static boolean matches(@Nullable String title, @NonNull List<String> prefixes) {
+        List<String> words = tokenize(title);
+        for (String prefix : prefixes) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the rows, in store order, of up to {@code limit} goals matching {@code filtering}
+     * where every one of {@code prefixes} starts a word of the title.
+     */
+    @NonNull
+    int[] search(@NonNull GoalsFilterType filtering, @NonNull List<String> prefixes, int limit) {
+        if (prefixes.isEmpty()) {
+            return new int[0];
+        }
+        BitSet matches = null;
+        for (String prefix : prefixes) {
+            BitSet rows = new BitSet(mStore.size());
+            for (int i = lowerBound(prefix); i < mWords.length && mWords[i].startsWith(prefix);
+                 i++) {
+                rows.set(mRows[i]);
+            }
+            if (matches == null) {
+                matches = rows;
+            } else {
+                matches.and(rows);
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        int[] result = new int[Math.min(limit, matches.cardinality())];
+        int count = 0;
+        for (int row = matches.nextSetBit(0); row >= 0 && count < result.length;
+             row = matches.nextSetBit(row + 1)) {
+            if (filtering.matchesArchived(mStore.isArchived(row))) {
+                result[count++] = row;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = mWords.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mWords[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-behind buffer for saved goals, used by {@link GoalsRepository}.
+ * <p>
+ * Saves are held for a short while and written to both data sources in one batch. Saving a goal
+ * that is already pending replaces the pending version, so a burst of touches on the same goal
+ * costs a single write. Touches are appended to the touch history with the same batch, every one
+ * of them, as one bulk insert.
+ * <p>
+ * Pending writes must reach the data sources before anything else does, or a later write could
+ * be overtaken and a read could miss them. The repository calls {@link #flush()} before every
+ * other call to a data source.
+ */
+final class GoalsWriteBuffer {
+
+    /**
+     * How long a save may wait for more saves to batch with.
+     */
+    static final long FLUSH_DELAY_MILLIS = 1000;
+
+    /**
+     * Runs the delayed flush.
+     */
+    interface Scheduler {
+
+        void schedule(@NonNull Runnable task, long delayMillis);
+    }
+
+    private final GoalsDataSource mGoalsRemoteDataSource;
+
+    private final GoalsDataSource mGoalsLocalDataSource;
+
+    private final Scheduler mScheduler;
+
+    // Guarded by this, as is the flag below.
+    private final Map<GoalId, Goal> mPendingGoals = new LinkedHashMap<>();
+
+    private final List<GoalTouch> mPendingTouches = new ArrayList<>();
+
+    private boolean mFlushScheduled;
+
+    private final Runnable mScheduledFlush = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (GoalsWriteBuffer.this) {
+                mFlushScheduled = false;
+                flush();
+            }
+        }
+    };
+
+    GoalsWriteBuffer(@NonNull GoalsDataSource goalsRemoteDataSource,
+                     @NonNull GoalsDataSource goalsLocalDataSource,
+                     @NonNull Scheduler scheduler) {
+        mGoalsRemoteDataSource = checkNotNull(goalsRemoteDataSource);
+        mGoalsLocalDataSource = checkNotNull(goalsLocalDataSource);
+        mScheduler = checkNotNull(scheduler);
+    }
+
+    synchronized void save(@NonNull Goal goal) {
+        checkNotNull(goal);
+        // Moved to the end, so the batch keeps the order of the latest saves.
+        mPendingGoals.remove(goal.getGoalId());
+        mPendingGoals.put(goal.getGoalId(), goal);
+        scheduleFlush();
+    }
+
+    synchronized void saveTouches(@NonNull List<GoalTouch> touches) {
+        mPendingTouches.addAll(checkNotNull(touches));
+        scheduleFlush();
+    }
+
+    synchronized boolean hasPendingWrites() {
+        return !mPendingGoals.isEmpty() || !mPendingTouches.isEmpty();
+    }
+
+    private void scheduleFlush() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mScheduler.schedule(mScheduledFlush, FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Hands the pending goals to the data sources as one batch. Data sources queue their work in
+     * call order, so anything asked of them after this sees the batch.
+     */
+    synchronized void flush() {
+        if (!mPendingGoals.isEmpty()) {
+            List<Goal> goals = new ArrayList<>(mPendingGoals.values());
+            mPendingGoals.clear();
+            mGoalsRemoteDataSource.saveGoals(goals);
+            mGoalsLocalDataSource.saveGoals(goals);
+        }
+        if (!mPendingTouches.isEmpty()) {
+            List<GoalTouch> touches = new ArrayList<>(mPendingTouches);
+            mPendingTouches.clear();
+            mGoalsRemoteDataSource.saveTouches(touches);
+            mGoalsLocalDataSource.saveTouches(touches);
+        }
+    }
+
+    /**
+     * Schedules flushes on the main thread, where the repository is used.
+     */
+    static final class MainThreadScheduler implements Scheduler {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void schedule(@NonNull Runnable task, long delayMillis) {
+            mHandler.postDelayed(task, delayMillis);
+        }
+    }
+}
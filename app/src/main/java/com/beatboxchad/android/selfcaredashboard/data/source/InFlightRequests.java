@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks pending loads so that concurrent requests for the same key share a single load.
+ * <p>
+ * The first caller to {@link #join(Object, Object)} a key is told to start the load. Later callers
+ * are parked until the load finishes and {@link #complete(Object)} hands back every waiter.
+ *
+ * @param <K> the key identifying an operation, e.g. a goal id
+ * @param <C> the callback type waiting on the operation
+ */
+final class InFlightRequests<K, C> {
+
+    private final Map<K, List<C>> mWaiters = new HashMap<>();
+
+    /**
+     * Registers {@code callback} as waiting on {@code key}.
+     *
+     * @return true if no load was pending for {@code key} and the caller must start one
+     */
+    synchronized boolean join(@NonNull K key, @NonNull C callback) {
+        List<C> waiters = mWaiters.get(key);
+        if (waiters != null) {
+            waiters.add(callback);
+            return false;
+        }
+        waiters = new ArrayList<>();
+        waiters.add(callback);
+        mWaiters.put(key, waiters);
+        return true;
+    }
+
+    /**
+     * Ends the pending load for {@code key}.
+     *
+     * @return the callbacks that were waiting on it, in arrival order
+     */
+    @NonNull
+    synchronized List<C> complete(@NonNull K key) {
+        List<C> waiters = mWaiters.remove(key);
+        return waiters == null ? Collections.<C>emptyList() : waiters;
+    }
+}
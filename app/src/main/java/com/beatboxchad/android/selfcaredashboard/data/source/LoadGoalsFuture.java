@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.google.common.util.concurrent.AbstractFuture;
+
+import java.util.List;
+
+/**
+ * A future that is also the callback completing it, so that a data source can hand it to its
+ * callback methods and check {@link #isCancelled()} before doing any work for it.
+ * <p>
+ * {@link #onDataNotAvailable()} fails it with a {@link DataNotAvailableException}.
+ */
+public final class LoadGoalsFuture extends AbstractFuture<List<Goal>>
+        implements GoalsDataSource.LoadGoalsCallback {
+
+    @Override
+    public void onGoalsLoaded(List<Goal> goals) {
+        set(goals);
+    }
+
+    @Override
+    public void onDataNotAvailable() {
+        setException(new DataNotAvailableException());
+    }
+}
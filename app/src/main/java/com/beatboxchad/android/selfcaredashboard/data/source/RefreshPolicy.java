@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+/**
+ * How {@link GoalsRepository} balances speed against freshness when loading goals.
+ */
+public enum RefreshPolicy {
+    /**
+     * Use the cache or the local data source, and only go to the remote data source when they
+     * have nothing or the cache was marked dirty with {@link GoalsRepository#refreshGoals()}.
+     */
+    CACHE_FIRST,
+
+    /**
+     * Deliver the cached or local goals right away, then ask the remote data source in the
+     * background and deliver its goals again only if they differ.
+     */
+    STALE_WHILE_REVALIDATE,
+
+    /**
+     * Wait for the remote data source.
+     */
+    FORCE_REMOTE
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source.local;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
+
+/**
+ * What touches no longer in the history counted on one day: those compaction dropped and those
+ * of deleted goals. Rebuilding the daily stats starts from it, so that they keep counting those
+ * touches. It is read back as a {@link DailyStats}.
+ */
+@Entity(tableName = "daily_stats_baseline")
+final class DailyStatsBaseline {
+
+    @PrimaryKey
+    @ColumnInfo(name = "day")
+    final long mDay;
+
+    @ColumnInfo(name = "touches")
+    final int mTouches;
+
+    @ColumnInfo(name = "on_time")
+    final int mOnTime;
+
+    @ColumnInfo(name = "overrun_days")
+    final long mOverrunDays;
+
+    DailyStatsBaseline(long day, int touches, int onTime, long overrunDays) {
+        mDay = day;
+        mTouches = touches;
+        mOnTime = onTime;
+        mOverrunDays = overrunDays;
+    }
+
+    @NonNull
+    static DailyStatsBaseline of(@NonNull DailyStats stats) {
+        return new DailyStatsBaseline(stats.getDay(), stats.getTouches(), stats.getOnTime(),
+                stats.getOverrunDays());
+    }
+}
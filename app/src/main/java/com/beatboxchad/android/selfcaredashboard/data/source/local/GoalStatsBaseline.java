@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source.local;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+
+/**
+ * The stats of a goal as they stood after the touches that compaction dropped from its history.
+ * Rebuilding the stats folds the touches left from here instead of from nothing, so that the
+ * dropped touches stay counted. It is read back as a {@link GoalStats}.
+ */
+@Entity(tableName = "goal_stats_baseline")
+final class GoalStatsBaseline {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "goal_id")
+    final GoalId mGoalId;
+
+    @ColumnInfo(name = "days_touched")
+    final int mDaysTouched;
+
+    @ColumnInfo(name = "on_time")
+    final int mOnTime;
+
+    @ColumnInfo(name = "current_streak")
+    final int mCurrentStreak;
+
+    @ColumnInfo(name = "longest_streak")
+    final int mLongestStreak;
+
+    @ColumnInfo(name = "overrun_days")
+    final long mOverrunDays;
+
+    @ColumnInfo(name = "last_touched_day")
+    final long mLastTouchedDay;
+
+    GoalStatsBaseline(@NonNull GoalId goalId, int daysTouched, int onTime, int currentStreak,
+                      int longestStreak, long overrunDays, long lastTouchedDay) {
+        mGoalId = goalId;
+        mDaysTouched = daysTouched;
+        mOnTime = onTime;
+        mCurrentStreak = currentStreak;
+        mLongestStreak = longestStreak;
+        mOverrunDays = overrunDays;
+        mLastTouchedDay = lastTouchedDay;
+    }
+
+    @NonNull
+    static GoalStatsBaseline of(@NonNull GoalStats stats) {
+        return new GoalStatsBaseline(stats.getGoalId(), stats.getDaysTouched(),
+                stats.getOnTime(), stats.getCurrentStreak(), stats.getLongestStreak(),
+                stats.getOverrunDays(), stats.getLastTouchedDay());
+    }
+}
@@ -18,19 +18,68 @@ package com.beatboxchad.android.selfcaredashboard.data.source.local;
 
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.InvalidationTracker;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.SkipQueryVerification;
+import android.arch.persistence.room.Transaction;
 import android.arch.persistence.room.Update;
 
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
 
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Data Access Object for the goals table.
+ * Data Access Object for the goals table, the touch history and the rollups of it.
  */
 @Dao
-public interface GoalsDao {
+public abstract class GoalsDao {
+
+    /**
+     * SQLite refuses statements with more than 999 bound arguments, so id lists are bound in
+     * chunks of this size inside a single transaction.
+     */
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
+    private static final Comparator<GoalTouch> TIME_ORDER = new Comparator<GoalTouch>() {
+        @Override
+        public int compare(GoalTouch touch1, GoalTouch touch2) {
+            // Long.compare needs API level 19.
+            long time1 = touch1.getTouchedAt();
+            long time2 = touch2.getTouchedAt();
+            return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
+        }
+    };
+
+    private final RoomDatabase mDatabase;
+
+    public GoalsDao(RoomDatabase database) {
+        mDatabase = database;
+    }
+
+    /**
+     * Starts notifying {@code observer} of changes to the goals table. Room reports a change once
+     * the transaction that made it commits, so a bulk write is reported once, not once per row.
+     */
+    public void addObserver(InvalidationTracker.Observer observer) {
+        mDatabase.getInvalidationTracker().addObserver(observer);
+    }
+
+    public void removeObserver(InvalidationTracker.Observer observer) {
+        mDatabase.getInvalidationTracker().removeObserver(observer);
+    }
 
     /**
      * Select all goals from the goals table.
@@ -38,7 +87,140 @@ public interface GoalsDao {
      * @return all goals.
      */
     @Query("SELECT * FROM goals")
-    List<Goal> getGoals();
+    public abstract List<Goal> getGoals();
+
+    /**
+     * Select the goals with the given archived status. This is served by the index on
+     * (archived, entryid).
+     *
+     * @param archived true for archived goals, false for active ones.
+     * @return the matching goals.
+     */
+    @Query("SELECT * FROM goals WHERE archived = :archived")
+    public abstract List<Goal> getGoalsByArchived(boolean archived);
+
+    /**
+     * Count the goals in the table.
+     *
+     * @return the number of goals.
+     */
+    @Query("SELECT COUNT(*) FROM goals")
+    public abstract int countGoals();
+
+    /**
+     * Count the goals with the given archived status.
+     *
+     * @param archived true for archived goals, false for active ones.
+     * @return the number of matching goals.
+     */
+    @Query("SELECT COUNT(*) FROM goals WHERE archived = :archived")
+    public abstract int countGoalsByArchived(boolean archived);
+
+    /**
+     * Select a page of goals in id order, starting right after {@code afterGoalId}. Seeking on the
+     * primary key keeps the cost of a page independent of how deep into the list it is. The first
+     * page is read with {@link #getGoalsAt(int, int)}.
+     *
+     * @param afterGoalId the id of the last goal of the previous page.
+     * @param limit       the page size.
+     * @return at most {@code limit} goals.
+     */
+    @Query("SELECT * FROM goals WHERE entryid > :afterGoalId ORDER BY entryid LIMIT :limit")
+    public abstract List<Goal> getGoalsAfter(GoalId afterGoalId, int limit);
+
+    /**
+     * Select a page of goals with the given archived status in id order, starting right after
+     * {@code afterGoalId}. This is served by the index on (archived, entryid). The first page is
+     * read with {@link #getGoalsByArchivedAt(boolean, int, int)}.
+     *
+     * @param archived    true for archived goals, false for active ones.
+     * @param afterGoalId the id of the last goal of the previous page.
+     * @param limit       the page size.
+     * @return at most {@code limit} goals.
+     */
+    @Query("SELECT * FROM goals WHERE archived = :archived AND entryid > :afterGoalId"
+            + " ORDER BY entryid LIMIT :limit")
+    public abstract List<Goal> getGoalsByArchivedAfter(boolean archived, GoalId afterGoalId,
+                                                       int limit);
+
+    /**
+     * Select a page of goals in id order by position. SQLite still walks the skipped rows, so
+     * this is only used to jump to a page whose preceding id is not known yet.
+     *
+     * @param offset the position of the first goal of the page.
+     * @param limit  the page size.
+     * @return at most {@code limit} goals.
+     */
+    @Query("SELECT * FROM goals ORDER BY entryid LIMIT :limit OFFSET :offset")
+    public abstract List<Goal> getGoalsAt(int offset, int limit);
+
+    /**
+     * Select a page of goals with the given archived status in id order by position.
+     *
+     * @param archived true for archived goals, false for active ones.
+     * @param offset   the position of the first goal of the page.
+     * @param limit    the page size.
+     * @return at most {@code limit} goals.
+     */
+    @Query("SELECT * FROM goals WHERE archived = :archived ORDER BY entryid"
+            + " LIMIT :limit OFFSET :offset")
+    public abstract List<Goal> getGoalsByArchivedAt(boolean archived, int offset, int limit);
+
+    /**
+     * Select a page of goals in due order, the most overdue first, by position. This is served
+     * by the index on (due_at, entryid).
+     *
+     * @param offset the position of the first goal of the page.
+     * @param limit  the page size.
+     * @return at most {@code limit} goals.
+     */
+    @Query("SELECT * FROM goals ORDER BY due_at, entryid LIMIT :limit OFFSET :offset")
+    public abstract List<Goal> getGoalsInDueOrderAt(int offset, int limit);
+
+    /**
+     * Select a page of goals with the given archived status in due order, the most overdue
+     * first, by position. This is served by the index on (archived, due_at, entryid).
+     *
+     * @param archived true for archived goals, false for active ones.
+     * @param offset   the position of the first goal of the page.
+     * @param limit    the page size.
+     * @return at most {@code limit} goals.
+     */
+    @Query("SELECT * FROM goals WHERE archived = :archived ORDER BY due_at, entryid"
+            + " LIMIT :limit OFFSET :offset")
+    public abstract List<Goal> getGoalsByArchivedInDueOrderAt(boolean archived, int offset,
+                                                              int limit);
+
+    /**
+     * Select the goals whose title matches a full-text query, in the order they were stored. This
+     * is served by the goals_fts and goals_fts_keys tables, which Room does not know about, hence
+     * the skipped verification.
+     *
+     * @param match a full-text query, such as {@code "wat* pla*"}.
+     * @param limit the maximum number of goals.
+     * @return the matching goals.
+     */
+    @SkipQueryVerification
+    @Query("SELECT goals.* FROM goals_fts"
+            + " JOIN goals_fts_keys ON goals_fts_keys.docid = goals_fts.docid"
+            + " JOIN goals ON goals.entryid = goals_fts_keys.goal_id"
+            + " WHERE goals_fts MATCH :match LIMIT :limit")
+    public abstract List<Goal> searchGoals(String match, int limit);
+
+    /**
+     * Select the goals with the given archived status whose title matches a full-text query.
+     *
+     * @param archived true for archived goals, false for active ones.
+     * @param match    a full-text query, such as {@code "wat* pla*"}.
+     * @param limit    the maximum number of goals.
+     * @return the matching goals.
+     */
+    @SkipQueryVerification
+    @Query("SELECT goals.* FROM goals_fts"
+            + " JOIN goals_fts_keys ON goals_fts_keys.docid = goals_fts.docid"
+            + " JOIN goals ON goals.entryid = goals_fts_keys.goal_id"
+            + " WHERE goals_fts MATCH :match AND goals.archived = :archived LIMIT :limit")
+    public abstract List<Goal> searchGoalsByArchived(boolean archived, String match, int limit);
 
     /**
      * Select a goal by id.
@@ -47,7 +229,7 @@ public interface GoalsDao {
      * @return the goal with goalId.
      */
     @Query("SELECT * FROM goals WHERE entryid = :goalId")
-    Goal getGoalById(String goalId);
+    public abstract Goal getGoalById(GoalId goalId);
 
     /**
      * Insert a goal in the database. If the goal already exists, replace it.
@@ -55,7 +237,16 @@ public interface GoalsDao {
      * @param goal the goal to be inserted.
      */
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertGoal(Goal goal);
+    public abstract void insertGoal(Goal goal);
+
+    /**
+     * Insert goals in the database in a single transaction. Goals that already exist are
+     * replaced.
+     *
+     * @param goals the goals to be inserted.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertGoals(List<Goal> goals);
 
     /**
      * Update a goal.
@@ -64,7 +255,16 @@ public interface GoalsDao {
      * @return the number of goals updated. This should always be 1.
      */
     @Update
-    int updateGoal(Goal goal);
+    public abstract int updateGoal(Goal goal);
+
+    /**
+     * Update goals in a single transaction.
+     *
+     * @param goals goals to be updated
+     * @return the number of goals updated.
+     */
+    @Update
+    public abstract int updateGoals(List<Goal> goals);
 
     /**
      * Update the Archived status of a goal
@@ -73,27 +273,417 @@ public interface GoalsDao {
      * @param archived status to be updated
      */
     @Query("UPDATE goals SET archived = :archived WHERE entryid = :goalId")
-    void updateArchived(String goalId, boolean archived);
+    public abstract void updateArchived(GoalId goalId, boolean archived);
 
     /**
-     * Delete a goal by id.
+     * Update the Archived status of several goals in a single transaction.
+     *
+     * @param goalIds  ids of the goals
+     * @param archived status to be updated
+     */
+    @Transaction
+    public void updateArchived(List<GoalId> goalIds, boolean archived) {
+        for (List<GoalId> chunk : Lists.partition(goalIds, MAX_IDS_PER_STATEMENT)) {
+            updateArchivedChunk(chunk, archived);
+        }
+    }
+
+    @Query("UPDATE goals SET archived = :archived WHERE entryid IN (:goalIds)")
+    abstract void updateArchivedChunk(List<GoalId> goalIds, boolean archived);
+
+    /**
+     * Delete a goal by id, with its touch history, in a single transaction. What the history
+     * counted stays in the daily stats.
      *
      * @return the number of goals deleted. This should always be 1.
      */
+    @Transaction
+    public int deleteGoalById(GoalId goalId) {
+        Goal goal = getGoalById(goalId);
+        if (goal != null) {
+            retireGoals(Collections.singletonList(goal));
+        }
+        return deleteGoalRow(goalId);
+    }
+
     @Query("DELETE FROM goals WHERE entryid = :goalId")
-    int deleteGoalById(String goalId);
+    abstract int deleteGoalRow(GoalId goalId);
 
     /**
-     * Delete all goals.
+     * Delete several goals by id, with their touch histories, in a single transaction.
+     *
+     * @return the number of goals deleted.
      */
+    @Transaction
+    public int deleteGoalsByIds(List<GoalId> goalIds) {
+        int deleted = 0;
+        for (List<GoalId> chunk : Lists.partition(goalIds, MAX_IDS_PER_STATEMENT)) {
+            retireGoals(getGoalsByIdsChunk(chunk));
+            deleted += deleteGoalsByIdsChunk(chunk);
+        }
+        return deleted;
+    }
+
+    @Query("SELECT * FROM goals WHERE entryid IN (:goalIds)")
+    abstract List<Goal> getGoalsByIdsChunk(List<GoalId> goalIds);
+
+    @Query("DELETE FROM goals WHERE entryid IN (:goalIds)")
+    abstract int deleteGoalsByIdsChunk(List<GoalId> goalIds);
+
+    /**
+     * Delete all goals, with their touch histories, in a single transaction.
+     */
+    @Transaction
+    public void deleteGoals() {
+        retireGoals(getGoals());
+        deleteGoalRows();
+    }
+
     @Query("DELETE FROM goals")
-    void deleteGoals();
+    abstract void deleteGoalRows();
 
     /**
-     * Delete all archived goals from the table.
+     * Delete all archived goals from the table, with their touch histories, in a single
+     * transaction.
      *
      * @return the number of goals deleted.
      */
+    @Transaction
+    public int deleteArchivedGoals() {
+        retireGoals(getGoalsByArchived(true));
+        return deleteArchivedGoalRows();
+    }
+
     @Query("DELETE FROM goals WHERE archived = 1")
-    int deleteArchivedGoals();
+    abstract int deleteArchivedGoalRows();
+
+    /**
+     * Append touches to the touch history in a single transaction. Touches already recorded are
+     * ignored, so a batch can safely be written twice.
+     *
+     * @param touches the touches to be appended.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    public abstract void insertTouches(List<GoalTouch> touches);
+
+    /**
+     * Append touches to the touch history and count them into the rollups, in a single
+     * transaction. Each touch updates the stats of its goal and of its day in place. A touch
+     * older than the last one counted for its goal cannot be counted that way, so the history of
+     * that goal alone is counted again: what it counted before is taken out of the daily stats
+     * and what it counts now is put in.
+     *
+     * @param touches the touches to be appended.
+     */
+    @Transaction
+    public void appendTouches(List<GoalTouch> touches) {
+        List<GoalTouch> byTime = new ArrayList<>(touches);
+        Collections.sort(byTime, TIME_ORDER);
+        Map<GoalId, Goal> goals = new HashMap<>();
+        Map<GoalId, GoalStats> goalStats = new HashMap<>();
+        Map<GoalId, Goal> recounted = new HashMap<>();
+        for (GoalTouch touch : byTime) {
+            GoalId goalId = touch.getGoalId();
+            if (goals.containsKey(goalId)) {
+                continue;
+            }
+            Goal goal = getGoalById(goalId);
+            goals.put(goalId, goal);
+            if (goal == null) {
+                continue; // Deleted, its touches go with the next compaction.
+            }
+            GoalStats stats = getGoalStats(goalId);
+            if (stats == null) {
+                stats = GoalStats.empty(goalId);
+            }
+            goalStats.put(goalId, stats);
+            // The oldest touch of the goal comes first, so it alone decides.
+            if (StatsRollup.add(stats, goal, touch.getTouchedAt()) == null) {
+                recounted.put(goalId, goal);
+            }
+        }
+
+        Map<GoalId, GoalStats> updated = new HashMap<>();
+        Map<Long, DailyStats> dailyStats = new HashMap<>();
+        for (Goal goal : recounted.values()) {
+            Map<Long, DailyStats> counted = new HashMap<>();
+            foldHistory(goal, counted);
+            combineDailyStats(dailyStats, counted, -1);
+        }
+        insertTouches(touches);
+        for (Goal goal : recounted.values()) {
+            Map<Long, DailyStats> counted = new HashMap<>();
+            updated.put(goal.getGoalId(), foldHistory(goal, counted));
+            combineDailyStats(dailyStats, counted, 1);
+        }
+
+        for (GoalTouch touch : byTime) {
+            GoalId goalId = touch.getGoalId();
+            Goal goal = goals.get(goalId);
+            if (goal == null || recounted.containsKey(goalId)) {
+                continue;
+            }
+            GoalStats before = goalStats.get(goalId);
+            GoalStats after = StatsRollup.add(before, goal, touch.getTouchedAt());
+            if (after == before) {
+                continue;
+            }
+            goalStats.put(goalId, after);
+            updated.put(goalId, after);
+            long day = after.getLastTouchedDay();
+            dailyStats.put(day,
+                    StatsRollup.addToDay(dailyStatsOn(day, dailyStats), before, after));
+        }
+        insertGoalStats(new ArrayList<>(updated.values()));
+        insertDailyStats(new ArrayList<>(dailyStats.values()));
+    }
+
+    /**
+     * Recount the rollups from the touch history of every goal, in a single transaction.
+     * <p>
+     * Each goal's history is folded from its baseline, and the daily stats start from theirs, so
+     * touches dropped by {@link #compactTouches} and touches of deleted goals stay counted: a
+     * rebuild gives the rollups that appending the touches built.
+     */
+    @Transaction
+    public void rebuildStats() {
+        deleteAllGoalStats();
+        deleteAllDailyStats();
+        List<GoalStats> goalStats = new ArrayList<>();
+        Map<Long, DailyStats> dailyStats = new HashMap<>();
+        for (DailyStats baseline : getDailyStatsBaselines()) {
+            dailyStats.put(baseline.getDay(), baseline);
+        }
+        for (Goal goal : getGoals()) {
+            GoalStats stats = foldHistory(goal, dailyStats);
+            if (stats.getDaysTouched() > 0) {
+                goalStats.add(stats);
+            }
+        }
+        insertGoalStats(goalStats);
+        insertDailyStats(new ArrayList<>(dailyStats.values()));
+    }
+
+    /**
+     * Folds the touch history of {@code goal} from its baseline, adding every touch counted to
+     * {@code dailyStats}.
+     */
+    private GoalStats foldHistory(Goal goal, Map<Long, DailyStats> dailyStats) {
+        GoalId goalId = goal.getGoalId();
+        return StatsRollup.fold(goalStatsBaselineOf(goalId), goal,
+                getTouches(goalId, Long.MIN_VALUE, Long.MAX_VALUE), dailyStats);
+    }
+
+    private GoalStats goalStatsBaselineOf(GoalId goalId) {
+        GoalStats baseline = getGoalStatsBaseline(goalId);
+        return baseline != null ? baseline : GoalStats.empty(goalId);
+    }
+
+    /**
+     * Returns the stats of {@code day} in {@code dailyStats}, reading them the first time.
+     */
+    private DailyStats dailyStatsOn(long day, Map<Long, DailyStats> dailyStats) {
+        DailyStats daily = dailyStats.get(day);
+        return daily != null ? daily : getDailyStatsOn(day);
+    }
+
+    /**
+     * Adds, or subtracts when {@code sign} is negative, {@code counted} to {@code dailyStats}.
+     */
+    private void combineDailyStats(Map<Long, DailyStats> dailyStats,
+                                   Map<Long, DailyStats> counted, int sign) {
+        for (DailyStats daily : counted.values()) {
+            long day = daily.getDay();
+            dailyStats.put(day, StatsRollup.combine(dailyStatsOn(day, dailyStats), daily, sign));
+        }
+    }
+
+    /**
+     * Moves what the touch histories of {@code goals} counted into the baseline of the daily
+     * stats, and drops the histories with their stats, so that the goals can be deleted without
+     * a rebuild forgetting the days they were touched on. The daily stats do not change.
+     */
+    private void retireGoals(List<Goal> goals) {
+        Map<Long, DailyStats> counted = new HashMap<>();
+        for (Goal goal : goals) {
+            GoalId goalId = goal.getGoalId();
+            foldHistory(goal, counted);
+            deleteTouchesOf(goalId);
+            deleteGoalStatsOf(goalId);
+            deleteGoalStatsBaselineOf(goalId);
+        }
+        addToDailyStatsBaselines(counted);
+    }
+
+    private void addToDailyStatsBaselines(Map<Long, DailyStats> counted) {
+        List<DailyStatsBaseline> baselines = new ArrayList<>();
+        for (DailyStats daily : counted.values()) {
+            DailyStats baseline = getDailyStatsBaselineOn(daily.getDay());
+            baselines.add(DailyStatsBaseline.of(StatsRollup.combine(baseline, daily, 1)));
+        }
+        insertDailyStatsBaselines(baselines);
+    }
+
+    /**
+     * Select the stats of a goal.
+     *
+     * @param goalId the goal id.
+     * @return the stats of the goal, or null if it has no touches counted.
+     */
+    @Query("SELECT * FROM goal_stats WHERE goal_id = :goalId")
+    public abstract GoalStats getGoalStats(GoalId goalId);
+
+    /**
+     * Select the stats of a range of days, counted from the epoch in UTC. Days without touches
+     * have no stats.
+     *
+     * @param fromDay the first day, inclusive.
+     * @param toDay   the last day, exclusive.
+     * @return the stats of the days in the range, in order.
+     */
+    @Query("SELECT * FROM daily_stats WHERE day >= :fromDay AND day < :toDay ORDER BY day")
+    public abstract List<DailyStats> getDailyStats(long fromDay, long toDay);
+
+    /**
+     * Whether a goal has touches but no stats, as after the rollups were first added.
+     */
+    @Query("SELECT EXISTS (SELECT 1 FROM goal_touches WHERE goal_id IN (SELECT entryid FROM goals)"
+            + " AND goal_id NOT IN (SELECT goal_id FROM goal_stats))")
+    public abstract boolean hasTouchesWithoutStats();
+
+    @Query("SELECT * FROM daily_stats WHERE day = :day")
+    abstract DailyStats getDailyStatsOn(long day);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertGoalStats(List<GoalStats> goalStats);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertDailyStats(List<DailyStats> dailyStats);
+
+    @Query("DELETE FROM goal_stats")
+    abstract void deleteAllGoalStats();
+
+    @Query("DELETE FROM daily_stats")
+    abstract void deleteAllDailyStats();
+
+    @Query("DELETE FROM goal_stats WHERE goal_id = :goalId")
+    abstract void deleteGoalStatsOf(GoalId goalId);
+
+    @Query("SELECT * FROM goal_stats_baseline WHERE goal_id = :goalId")
+    abstract GoalStats getGoalStatsBaseline(GoalId goalId);
+
+    @Query("SELECT * FROM daily_stats_baseline")
+    abstract List<DailyStats> getDailyStatsBaselines();
+
+    @Query("SELECT * FROM daily_stats_baseline WHERE day = :day")
+    abstract DailyStats getDailyStatsBaselineOn(long day);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertGoalStatsBaselines(List<GoalStatsBaseline> baselines);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract void insertDailyStatsBaselines(List<DailyStatsBaseline> baselines);
+
+    @Query("DELETE FROM goal_stats_baseline WHERE goal_id = :goalId")
+    abstract void deleteGoalStatsBaselineOf(GoalId goalId);
+
+    /**
+     * Select the touches of a goal within a time window, oldest first. This is one range of the
+     * primary key, so it does not depend on the length of the history.
+     *
+     * @param goalId     the goal id.
+     * @param fromMillis the start of the window, inclusive.
+     * @param toMillis   the end of the window, exclusive.
+     * @return the touches of the goal in the window.
+     */
+    @Query("SELECT * FROM goal_touches WHERE goal_id = :goalId"
+            + " AND touched_at >= :fromMillis AND touched_at < :toMillis ORDER BY touched_at")
+    public abstract List<GoalTouch> getTouches(GoalId goalId, long fromMillis, long toMillis);
+
+    /**
+     * Shrinks the touch history in a single transaction. Touches before {@code thinBefore} are
+     * thinned to the first touch of each goal on each day, touches before {@code dropBefore} are
+     * deleted, and so are the touches and stats of goals that no longer exist. Thinning does not
+     * change what a rebuild of the stats counts, as they only count the first touch of each day,
+     * and the touches dropped are folded into the baselines of their goal and days first.
+     *
+     * @return the number of touches deleted.
+     */
+    @Transaction
+    public int compactTouches(long thinBefore, long dropBefore) {
+        Map<Long, DailyStats> dropped = new HashMap<>();
+        List<GoalStatsBaseline> baselines = new ArrayList<>();
+        for (Goal goal : getGoalsTouchedBefore(dropBefore)) {
+            GoalId goalId = goal.getGoalId();
+            baselines.add(GoalStatsBaseline.of(StatsRollup.fold(goalStatsBaselineOf(goalId),
+                    goal, getTouches(goalId, Long.MIN_VALUE, dropBefore), dropped)));
+        }
+        insertGoalStatsBaselines(baselines);
+        addToDailyStatsBaselines(dropped);
+
+        deleteOrphanedGoalStats();
+        return deleteTouchesBefore(dropBefore)
+                + thinTouchesBefore(thinBefore, StatsRollup.DAY_MILLIS)
+                + deleteOrphanedTouches();
+    }
+
+    @Query("SELECT * FROM goals WHERE entryid IN"
+            + " (SELECT goal_id FROM goal_touches WHERE touched_at < :beforeMillis)")
+    abstract List<Goal> getGoalsTouchedBefore(long beforeMillis);
+
+    @Query("DELETE FROM goal_touches WHERE goal_id = :goalId")
+    abstract void deleteTouchesOf(GoalId goalId);
+
+    @Query("DELETE FROM goal_touches WHERE touched_at < :beforeMillis")
+    abstract int deleteTouchesBefore(long beforeMillis);
+
+    @Query("DELETE FROM goal_touches WHERE touched_at < :beforeMillis AND EXISTS ("
+            + "SELECT 1 FROM goal_touches AS earlier"
+            + " WHERE earlier.goal_id = goal_touches.goal_id"
+            + " AND earlier.touched_at >= goal_touches.touched_at"
+            + " - goal_touches.touched_at % :dayMillis"
+            + " AND earlier.touched_at < goal_touches.touched_at)")
+    abstract int thinTouchesBefore(long beforeMillis, long dayMillis);
+
+    @Query("DELETE FROM goal_touches WHERE goal_id NOT IN (SELECT entryid FROM goals)")
+    abstract int deleteOrphanedTouches();
+
+    @Query("DELETE FROM goal_stats WHERE goal_id NOT IN (SELECT entryid FROM goals)")
+    abstract int deleteOrphanedGoalStats();
+
+    /**
+     * Makes the goals table hold exactly {@code goals}, in a single transaction.
+     * <p>
+     * Rows are matched by id. Only new goals are inserted, only goals whose content changed are
+     * updated, and only goals missing from {@code goals} are deleted, so an unchanged set costs no
+     * writes and the table is never observed empty halfway through.
+     *
+     * @param goals the complete set of goals the table should contain.
+     */
+    @Transaction
+    public void syncGoals(List<Goal> goals) {
+        Map<GoalId, Goal> localGoals = new HashMap<>();
+        for (Goal goal : getGoals()) {
+            localGoals.put(goal.getGoalId(), goal);
+        }
+        List<Goal> insertions = new ArrayList<>();
+        List<Goal> updates = new ArrayList<>();
+        for (Goal goal : goals) {
+            Goal localGoal = localGoals.remove(goal.getGoalId());
+            if (localGoal == null) {
+                insertions.add(goal);
+            } else if (!localGoal.hasSameContent(goal)) {
+                updates.add(goal);
+            }
+        }
+        if (!insertions.isEmpty()) {
+            insertGoals(insertions);
+        }
+        if (!updates.isEmpty()) {
+            updateGoals(updates);
+        }
+        if (!localGoals.isEmpty()) {
+            deleteGoalsByIds(new ArrayList<>(localGoals.keySet()));
+        }
+    }
 }
@@ -19,13 +19,28 @@ package com.beatboxchad.android.selfcaredashboard.data.source.local;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+import com.beatboxchad.android.selfcaredashboard.data.source.GetGoalFuture;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsSearchIndex;
+import com.beatboxchad.android.selfcaredashboard.data.source.LoadGoalsFuture;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
 import com.beatboxchad.android.selfcaredashboard.util.AppExecutors;
+import com.beatboxchad.android.selfcaredashboard.util.DiskIOThreadExecutor;
+import com.beatboxchad.android.selfcaredashboard.util.DiskIOThreadExecutor.Priority;
+import com.beatboxchad.android.selfcaredashboard.util.InstrumentedExecutor;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 
 /**
@@ -33,12 +48,46 @@ import java.util.List;
  */
 public class GoalsLocalDataSource implements GoalsDataSource {
 
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    /**
+     * Touches older than this are thinned to the first touch of each day.
+     */
+    @VisibleForTesting
+    static final long TOUCH_DETAIL_MILLIS = 90 * DAY_MILLIS;
+
+    /**
+     * Touches older than this are deleted.
+     */
+    @VisibleForTesting
+    static final long TOUCH_RETENTION_MILLIS = 2 * 365 * DAY_MILLIS;
+
+    /**
+     * The touch history is compacted on the first write of each run, and again after this many
+     * touches, so that compaction costs little per touch.
+     */
+    @VisibleForTesting
+    static final int TOUCHES_PER_COMPACTION = 1000;
+
     private static volatile GoalsLocalDataSource INSTANCE;
 
     private GoalsDao mGoalsDao;
 
     private AppExecutors mAppExecutors;
 
+    // Only used on the disk IO executor, which runs one task at a time, as is the flag below.
+    private int mTouchesSinceCompaction = TOUCHES_PER_COMPACTION;
+
+    private boolean mStatsChecked;
+
+    /**
+     * List reads submitted while a sync is queued or running, which must see its result. Guarded
+     * by itself, as is the count below.
+     */
+    private final List<Runnable> mReadsAfterSync = new ArrayList<>();
+
+    private int mPendingSyncs;
+
     // Prevent direct instantiation.
     private GoalsLocalDataSource(@NonNull AppExecutors appExecutors,
             @NonNull GoalsDao goalsDao) {
@@ -64,14 +113,31 @@ public class GoalsLocalDataSource implements GoalsDataSource {
      */
     @Override
     public void getGoals(@NonNull final LoadGoalsCallback callback) {
+        getGoals(GoalsFilterType.ALL_GOALS, callback);
+    }
+
+    /**
+     * Active and archived goals are read with an indexed query instead of loading the whole table.
+     * <p>
+     * Note: {@link LoadGoalsCallback#onDataNotAvailable()} is only fired if the table is empty, an
+     * empty filtered result is delivered as an empty list.
+     */
+    @Override
+    public void getGoals(@NonNull final GoalsFilterType filtering,
+                         @NonNull final LoadGoalsCallback callback) {
         Runnable runnable = new Runnable() {
             @Override
             public void run() {
-                final List<Goal> goals = mGoalsDao.getGoals();
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final List<Goal> goals = queryGoals(filtering);
+                final boolean tableIsEmpty = goals.isEmpty()
+                        && (filtering == GoalsFilterType.ALL_GOALS || mGoalsDao.countGoals() == 0);
                 mAppExecutors.mainThread().execute(new Runnable() {
                     @Override
                     public void run() {
-                        if (goals.isEmpty()) {
+                        if (tableIsEmpty) {
                             // This will be called if the table is new or just empty.
                             callback.onDataNotAvailable();
                         } else {
@@ -82,7 +148,7 @@ public class GoalsLocalDataSource implements GoalsDataSource {
             }
         };
 
-        mAppExecutors.diskIO().execute(runnable);
+        runListReadOnDiskIO("getGoals", runnable);
     }
 
     /**
@@ -90,11 +156,15 @@ public class GoalsLocalDataSource implements GoalsDataSource {
      * found.
      */
     @Override
-    public void getGoal(@NonNull final String goalId, @NonNull final GetGoalCallback callback) {
+    public void getGoal(@NonNull String goalId, @NonNull final GetGoalCallback callback) {
+        final GoalId id = GoalId.fromAnyString(goalId);
         Runnable runnable = new Runnable() {
             @Override
             public void run() {
-                final Goal goal = mGoalsDao.getGoalById(goalId);
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final Goal goal = mGoalsDao.getGoalById(id);
 
                 mAppExecutors.mainThread().execute(new Runnable() {
                     @Override
@@ -109,7 +179,331 @@ public class GoalsLocalDataSource implements GoalsDataSource {
             }
         };
 
-        mAppExecutors.diskIO().execute(runnable);
+        runOnDiskIO("getGoal", Priority.INTERACTIVE_READ, runnable);
+    }
+
+    /**
+     * Loads queued before the future is cancelled are skipped when their turn comes.
+     */
+    @NonNull
+    @Override
+    public ListenableFuture<List<Goal>> loadGoals(@NonNull GoalsFilterType filtering) {
+        LoadGoalsFuture future = new LoadGoalsFuture();
+        getGoals(filtering, future);
+        return future;
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<Goal> loadGoal(@NonNull String goalId) {
+        GetGoalFuture future = new GetGoalFuture();
+        getGoal(goalId, future);
+        return future;
+    }
+
+    @Override
+    public void getGoalsCount(@NonNull final GoalsFilterType filtering,
+                              @NonNull final GetGoalsCountCallback callback) {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final int count = countGoals(filtering);
+                mAppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onGoalsCounted(count);
+                    }
+                });
+            }
+        };
+
+        runListReadOnDiskIO("getGoalsCount", runnable);
+    }
+
+    @Override
+    public void getGoalsPage(@NonNull final GoalsFilterType filtering,
+                             @Nullable final GoalId afterGoalId, final int pageSize,
+                             @NonNull final LoadGoalsCallback callback) {
+        if (afterGoalId == null) {
+            getGoalsPageAt(filtering, 0, pageSize, callback);
+            return;
+        }
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final List<Goal> goals;
+                switch (filtering) {
+                    case ACTIVE_GOALS:
+                        goals = mGoalsDao.getGoalsByArchivedAfter(false, afterGoalId, pageSize);
+                        break;
+                    case ARCHIVED_GOALS:
+                        goals = mGoalsDao.getGoalsByArchivedAfter(true, afterGoalId, pageSize);
+                        break;
+                    default:
+                        goals = mGoalsDao.getGoalsAfter(afterGoalId, pageSize);
+                        break;
+                }
+                deliverPage(goals, callback);
+            }
+        };
+
+        runListReadOnDiskIO("getGoalsPage", runnable);
+    }
+
+    @Override
+    public void getGoalsPageAt(@NonNull final GoalsFilterType filtering, final int offset,
+                               final int pageSize, @NonNull final LoadGoalsCallback callback) {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final List<Goal> goals;
+                switch (filtering) {
+                    case ACTIVE_GOALS:
+                        goals = mGoalsDao.getGoalsByArchivedAt(false, offset, pageSize);
+                        break;
+                    case ARCHIVED_GOALS:
+                        goals = mGoalsDao.getGoalsByArchivedAt(true, offset, pageSize);
+                        break;
+                    default:
+                        goals = mGoalsDao.getGoalsAt(offset, pageSize);
+                        break;
+                }
+                deliverPage(goals, callback);
+            }
+        };
+
+        runListReadOnDiskIO("getGoalsPageAt", runnable);
+    }
+
+    @Override
+    public void getGoalsInDueOrderAt(@NonNull final GoalsFilterType filtering, final int offset,
+                                     final int pageSize,
+                                     @NonNull final LoadGoalsCallback callback) {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final List<Goal> goals;
+                switch (filtering) {
+                    case ACTIVE_GOALS:
+                        goals = mGoalsDao.getGoalsByArchivedInDueOrderAt(false, offset, pageSize);
+                        break;
+                    case ARCHIVED_GOALS:
+                        goals = mGoalsDao.getGoalsByArchivedInDueOrderAt(true, offset, pageSize);
+                        break;
+                    default:
+                        goals = mGoalsDao.getGoalsInDueOrderAt(offset, pageSize);
+                        break;
+                }
+                deliverPage(goals, callback);
+            }
+        };
+
+        runListReadOnDiskIO("getGoalsInDueOrderAt", runnable);
+    }
+
+    @Override
+    public void searchGoals(@NonNull final GoalsFilterType filtering, @NonNull String query,
+                            final int limit, @NonNull final LoadGoalsCallback callback) {
+        List<String> prefixes = GoalsSearchIndex.tokenize(checkNotNull(query));
+        if (prefixes.isEmpty()) {
+            deliverPage(new ArrayList<Goal>(0), callback);
+            return;
+        }
+        final String match = toMatchQuery(prefixes);
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final List<Goal> goals;
+                switch (filtering) {
+                    case ACTIVE_GOALS:
+                        goals = mGoalsDao.searchGoalsByArchived(false, match, limit);
+                        break;
+                    case ARCHIVED_GOALS:
+                        goals = mGoalsDao.searchGoalsByArchived(true, match, limit);
+                        break;
+                    default:
+                        goals = mGoalsDao.searchGoals(match, limit);
+                        break;
+                }
+                deliverPage(goals, callback);
+            }
+        };
+
+        runOnDiskIO("searchGoals", Priority.INTERACTIVE_READ, runnable);
+    }
+
+    /**
+     * Turns words into a full-text query matching titles with a word starting with each of them.
+     * The words only hold letters and digits, so they cannot be read as query operators.
+     */
+    @VisibleForTesting
+    static String toMatchQuery(List<String> prefixes) {
+        StringBuilder match = new StringBuilder();
+        for (String prefix : prefixes) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(prefix).append('*');
+        }
+        return match.toString();
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoals(@NonNull final GoalsFilterType filtering,
+                                     @NonNull final LoadGoalsCallback callback) {
+        GoalsQueryObserver<List<Goal>> observer =
+                new GoalsQueryObserver<List<Goal>>(mAppExecutors, mGoalsDao) {
+            @Override
+            List<Goal> query() {
+                return queryGoals(filtering);
+            }
+
+            @Override
+            boolean hasSameContent(List<Goal> oldGoals, List<Goal> newGoals) {
+                return Goal.haveSameContent(oldGoals, newGoals);
+            }
+
+            @Override
+            void deliver(List<Goal> goals) {
+                callback.onGoalsLoaded(goals);
+            }
+        };
+        observer.start();
+        return observer;
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoal(@NonNull String goalId,
+                                    @NonNull final GetGoalCallback callback) {
+        final GoalId id = GoalId.fromAnyString(goalId);
+        GoalsQueryObserver<Goal> observer = new GoalsQueryObserver<Goal>(mAppExecutors, mGoalsDao) {
+            @Override
+            Goal query() {
+                return mGoalsDao.getGoalById(id);
+            }
+
+            @Override
+            boolean hasSameContent(Goal oldGoal, Goal newGoal) {
+                return oldGoal == null ? newGoal == null : oldGoal.hasSameContent(newGoal);
+            }
+
+            @Override
+            void deliver(Goal goal) {
+                if (goal != null) {
+                    callback.onGoalLoaded(goal);
+                } else {
+                    callback.onDataNotAvailable();
+                }
+            }
+        };
+        observer.start();
+        return observer;
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoalsCount(@NonNull final GoalsFilterType filtering,
+                                          @NonNull final GetGoalsCountCallback callback) {
+        GoalsQueryObserver<Integer> observer =
+                new GoalsQueryObserver<Integer>(mAppExecutors, mGoalsDao) {
+            @Override
+            Integer query() {
+                return countGoals(filtering);
+            }
+
+            @Override
+            boolean hasSameContent(Integer oldCount, Integer newCount) {
+                // The table changed, even if the count did not: edits are delivered too.
+                return false;
+            }
+
+            @Override
+            void deliver(Integer count) {
+                callback.onGoalsCounted(count);
+            }
+        };
+        observer.start();
+        return observer;
+    }
+
+    /**
+     * Runs {@code task} on the disk IO executor with {@code priority}, attributed to
+     * {@code operation} in its metrics.
+     */
+    private void runOnDiskIO(String operation, Priority priority, Runnable task) {
+        mAppExecutors.diskIO().execute(InstrumentedExecutor.tag("GoalsLocalDataSource." + operation,
+                DiskIOThreadExecutor.prioritize(priority, task)));
+    }
+
+    /**
+     * Runs a read of the goal list, or of a count or page of it, as an interactive read. While a
+     * sync is pending, the read is only submitted once the sync has run: the count and pages read
+     * after a refresh must agree with it. Other reads, such as a single goal for the detail
+     * screen, do not wait for syncs.
+     */
+    private void runListReadOnDiskIO(String operation, Runnable task) {
+        Runnable read = InstrumentedExecutor.tag("GoalsLocalDataSource." + operation,
+                DiskIOThreadExecutor.prioritize(Priority.INTERACTIVE_READ, task));
+        synchronized (mReadsAfterSync) {
+            if (mPendingSyncs > 0) {
+                mReadsAfterSync.add(read);
+                return;
+            }
+        }
+        mAppExecutors.diskIO().execute(read);
+    }
+
+    /**
+     * Submits the list reads that waited for the syncs, once the last of them has run.
+     */
+    private void onSyncDone() {
+        List<Runnable> reads;
+        synchronized (mReadsAfterSync) {
+            if (--mPendingSyncs > 0) {
+                return;
+            }
+            reads = new ArrayList<>(mReadsAfterSync);
+            mReadsAfterSync.clear();
+        }
+        for (Runnable read : reads) {
+            mAppExecutors.diskIO().execute(read);
+        }
+    }
+
+    /**
+     * Whether {@code callback} is a future its caller cancelled, so its load can be skipped.
+     */
+    private static boolean isCancelled(Object callback) {
+        return callback instanceof Future && ((Future<?>) callback).isCancelled();
+    }
+
+    /**
+     * Pages are always delivered, even when empty: an empty page just means the end of the list.
+     */
+    private void deliverPage(final List<Goal> goals, final LoadGoalsCallback callback) {
+        mAppExecutors.mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onGoalsLoaded(goals);
+            }
+        });
     }
 
     @Override
@@ -121,7 +515,171 @@ public class GoalsLocalDataSource implements GoalsDataSource {
                 mGoalsDao.insertGoal(goal);
             }
         };
-        mAppExecutors.diskIO().execute(saveRunnable);
+        runOnDiskIO("saveGoal", Priority.INTERACTIVE_WRITE, saveRunnable);
+    }
+
+    @Override
+    public void saveGoals(@NonNull final List<Goal> goals) {
+        checkNotNull(goals);
+        Runnable saveRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mGoalsDao.insertGoals(goals);
+            }
+        };
+        runOnDiskIO("saveGoals", Priority.INTERACTIVE_WRITE, saveRunnable);
+    }
+
+    @Override
+    public void syncGoals(@NonNull final List<Goal> goals) {
+        checkNotNull(goals);
+        Runnable syncRunnable = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mGoalsDao.syncGoals(goals);
+                } finally {
+                    onSyncDone();
+                }
+            }
+        };
+        synchronized (mReadsAfterSync) {
+            mPendingSyncs++;
+        }
+        runOnDiskIO("syncGoals", Priority.BACKGROUND_WRITE, syncRunnable);
+    }
+
+    @Override
+    public void saveTouches(@NonNull final List<GoalTouch> touches) {
+        checkNotNull(touches);
+        Runnable saveRunnable = new Runnable() {
+            @Override
+            public void run() {
+                checkStats();
+                mGoalsDao.appendTouches(touches);
+                mTouchesSinceCompaction += touches.size();
+                if (mTouchesSinceCompaction >= TOUCHES_PER_COMPACTION) {
+                    mTouchesSinceCompaction = 0;
+                    compactTouches();
+                }
+            }
+        };
+        runOnDiskIO("saveTouches", Priority.INTERACTIVE_WRITE, saveRunnable);
+    }
+
+    /**
+     * Compacts the touch history once nothing more urgent is waiting for the disk.
+     */
+    private void compactTouches() {
+        Runnable compactRunnable = new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                mGoalsDao.compactTouches(now - TOUCH_DETAIL_MILLIS, now - TOUCH_RETENTION_MILLIS);
+            }
+        };
+        runOnDiskIO("compactTouches", Priority.MAINTENANCE, compactRunnable);
+    }
+
+    /**
+     * Note: touches are always delivered, a goal without touches in the window gets an empty
+     * list.
+     */
+    @Override
+    public void getTouches(@NonNull String goalId, final long fromMillis, final long toMillis,
+                           @NonNull final LoadTouchesCallback callback) {
+        final GoalId id = GoalId.fromAnyString(goalId);
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                final List<GoalTouch> touches = mGoalsDao.getTouches(id, fromMillis, toMillis);
+                mAppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onTouchesLoaded(touches);
+                    }
+                });
+            }
+        };
+
+        runOnDiskIO("getTouches", Priority.INTERACTIVE_READ, runnable);
+    }
+
+    @Override
+    public void getGoalStats(@NonNull String goalId,
+                             @NonNull final GetGoalStatsCallback callback) {
+        final GoalId id = GoalId.fromAnyString(goalId);
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                checkStats();
+                GoalStats stats = mGoalsDao.getGoalStats(id);
+                final GoalStats goalStats = stats != null ? stats : GoalStats.empty(id);
+                mAppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onGoalStatsLoaded(goalStats);
+                    }
+                });
+            }
+        };
+
+        runOnDiskIO("getGoalStats", Priority.INTERACTIVE_READ, runnable);
+    }
+
+    @Override
+    public void getDailyStats(final long fromMillis, final long toMillis,
+                              @NonNull final LoadDailyStatsCallback callback) {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (isCancelled(callback)) {
+                    return;
+                }
+                checkStats();
+                final List<DailyStats> dailyStats = mGoalsDao.getDailyStats(
+                        StatsRollup.dayOf(fromMillis), StatsRollup.dayOf(toMillis));
+                mAppExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onDailyStatsLoaded(dailyStats);
+                    }
+                });
+            }
+        };
+
+        runOnDiskIO("getDailyStats", Priority.INTERACTIVE_READ, runnable);
+    }
+
+    @Override
+    public void rebuildStats() {
+        Runnable rebuildRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mStatsChecked = true;
+                mGoalsDao.rebuildStats();
+            }
+        };
+        runOnDiskIO("rebuildStats", Priority.MAINTENANCE, rebuildRunnable);
+    }
+
+    /**
+     * Builds the stats from the touch history if they were never built, once per run. Must be
+     * called on the disk IO executor.
+     */
+    private void checkStats() {
+        if (!mStatsChecked) {
+            mStatsChecked = true;
+            if (mGoalsDao.hasTouchesWithoutStats()) {
+                mGoalsDao.rebuildStats();
+            }
+        }
     }
 
     @Override
@@ -129,11 +687,11 @@ public class GoalsLocalDataSource implements GoalsDataSource {
         Runnable archiveRunnable = new Runnable() {
             @Override
             public void run() {
-                mGoalsDao.updateArchived(goal.getId(), true);
+                mGoalsDao.updateArchived(goal.getGoalId(), true);
             }
         };
 
-        mAppExecutors.diskIO().execute(archiveRunnable);
+        runOnDiskIO("archiveGoal", Priority.INTERACTIVE_WRITE, archiveRunnable);
     }
 
     @Override
@@ -147,10 +705,10 @@ public class GoalsLocalDataSource implements GoalsDataSource {
         Runnable activateRunnable = new Runnable() {
             @Override
             public void run() {
-                mGoalsDao.updateArchived(goal.getId(), false);
+                mGoalsDao.updateArchived(goal.getGoalId(), false);
             }
         };
-        mAppExecutors.diskIO().execute(activateRunnable);
+        runOnDiskIO("activateGoal", Priority.INTERACTIVE_WRITE, activateRunnable);
     }
 
     @Override
@@ -159,6 +717,30 @@ public class GoalsLocalDataSource implements GoalsDataSource {
         // converting from a {@code goalId} to a {@link goal} using its cached data.
     }
 
+    @Override
+    public void archiveGoals(@NonNull List<String> goalIds) {
+        final List<GoalId> ids = toGoalIds(goalIds);
+        Runnable archiveRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mGoalsDao.updateArchived(ids, true);
+            }
+        };
+        runOnDiskIO("archiveGoals", Priority.INTERACTIVE_WRITE, archiveRunnable);
+    }
+
+    @Override
+    public void activateGoals(@NonNull List<String> goalIds) {
+        final List<GoalId> ids = toGoalIds(goalIds);
+        Runnable activateRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mGoalsDao.updateArchived(ids, false);
+            }
+        };
+        runOnDiskIO("activateGoals", Priority.INTERACTIVE_WRITE, activateRunnable);
+    }
+
     @Override
     public void clearArchivedGoals() {
         Runnable clearGoalsRunnable = new Runnable() {
@@ -169,7 +751,7 @@ public class GoalsLocalDataSource implements GoalsDataSource {
             }
         };
 
-        mAppExecutors.diskIO().execute(clearGoalsRunnable);
+        runOnDiskIO("clearArchivedGoals", Priority.INTERACTIVE_WRITE, clearGoalsRunnable);
     }
 
     @Override
@@ -187,19 +769,68 @@ public class GoalsLocalDataSource implements GoalsDataSource {
             }
         };
 
-        mAppExecutors.diskIO().execute(deleteRunnable);
+        runOnDiskIO("deleteAllGoals", Priority.INTERACTIVE_WRITE, deleteRunnable);
     }
 
     @Override
-    public void deleteGoal(@NonNull final String goalId) {
+    public void deleteGoal(@NonNull String goalId) {
+        final GoalId id = GoalId.fromAnyString(goalId);
         Runnable deleteRunnable = new Runnable() {
             @Override
             public void run() {
-                mGoalsDao.deleteGoalById(goalId);
+                mGoalsDao.deleteGoalById(id);
             }
         };
 
-        mAppExecutors.diskIO().execute(deleteRunnable);
+        runOnDiskIO("deleteGoal", Priority.INTERACTIVE_WRITE, deleteRunnable);
+    }
+
+    @Override
+    public void deleteGoals(@NonNull List<String> goalIds) {
+        final List<GoalId> ids = toGoalIds(goalIds);
+        Runnable deleteRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mGoalsDao.deleteGoalsByIds(ids);
+            }
+        };
+
+        runOnDiskIO("deleteGoals", Priority.INTERACTIVE_WRITE, deleteRunnable);
+    }
+
+    /**
+     * Converts ids from their string form, which is what the data source API uses, to the form
+     * stored in the database.
+     */
+    private static List<GoalId> toGoalIds(List<String> goalIds) {
+        checkNotNull(goalIds);
+        List<GoalId> ids = new ArrayList<>(goalIds.size());
+        for (String goalId : goalIds) {
+            ids.add(GoalId.fromAnyString(goalId));
+        }
+        return ids;
+    }
+
+    private List<Goal> queryGoals(GoalsFilterType filtering) {
+        switch (filtering) {
+            case ACTIVE_GOALS:
+                return mGoalsDao.getGoalsByArchived(false);
+            case ARCHIVED_GOALS:
+                return mGoalsDao.getGoalsByArchived(true);
+            default:
+                return mGoalsDao.getGoals();
+        }
+    }
+
+    private int countGoals(GoalsFilterType filtering) {
+        switch (filtering) {
+            case ACTIVE_GOALS:
+                return mGoalsDao.countGoalsByArchived(false);
+            case ARCHIVED_GOALS:
+                return mGoalsDao.countGoalsByArchived(true);
+            default:
+                return mGoalsDao.countGoals();
+        }
     }
 
     @VisibleForTesting
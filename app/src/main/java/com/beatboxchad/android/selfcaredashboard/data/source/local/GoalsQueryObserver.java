@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source.local;
+
+import android.arch.persistence.room.InvalidationTracker;
+import android.support.annotation.NonNull;
+
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
+import com.beatboxchad.android.selfcaredashboard.util.AppExecutors;
+import com.beatboxchad.android.selfcaredashboard.util.DiskIOThreadExecutor;
+import com.beatboxchad.android.selfcaredashboard.util.DiskIOThreadExecutor.Priority;
+import com.beatboxchad.android.selfcaredashboard.util.InstrumentedExecutor;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A query over the goals table that runs once when started and again whenever Room's
+ * {@link InvalidationTracker} reports that the table changed.
+ * <p>
+ * Queries run on the disk IO executor and results are delivered on the main thread, only when
+ * they differ from the last result delivered. Invalidations that arrive while a re-query is
+ * already queued are folded into it, and so are results that arrive while a delivery is still
+ * waiting for the main thread: only the newest is delivered.
+ *
+ * @param <T> the query result
+ */
+abstract class GoalsQueryObserver<T> extends InvalidationTracker.Observer
+        implements GoalsDataSource.Subscription {
+
+    private final AppExecutors mAppExecutors;
+
+    private final GoalsDao mGoalsDao;
+
+    private final AtomicBoolean mQueryPending = new AtomicBoolean(false);
+
+    private volatile boolean mUnsubscribed;
+
+    // Only touched on the disk IO executor, which runs one task at a time.
+    private boolean mHasResult;
+
+    private T mLastResult;
+
+    // Guarded by mDelivery, as is the flag below.
+    private T mPendingResult;
+
+    private boolean mDeliveryPending;
+
+    private final Runnable mDelivery = new Runnable() {
+        @Override
+        public void run() {
+            T result;
+            synchronized (this) {
+                result = mPendingResult;
+                mPendingResult = null;
+                mDeliveryPending = false;
+            }
+            if (!mUnsubscribed) {
+                deliver(result);
+            }
+        }
+    };
+
+    GoalsQueryObserver(@NonNull AppExecutors appExecutors, @NonNull GoalsDao goalsDao) {
+        super("goals");
+        mAppExecutors = appExecutors;
+        mGoalsDao = goalsDao;
+    }
+
+    /**
+     * Runs the query on the disk IO executor.
+     */
+    abstract T query();
+
+    abstract boolean hasSameContent(T oldResult, T newResult);
+
+    /**
+     * Hands a changed result to the subscriber on the main thread.
+     */
+    abstract void deliver(T result);
+
+    void start() {
+        mGoalsDao.addObserver(this);
+        scheduleQuery();
+    }
+
+    @Override
+    public void onInvalidated(@NonNull Set<String> tables) {
+        scheduleQuery();
+    }
+
+    @Override
+    public void unsubscribe() {
+        mUnsubscribed = true;
+        mGoalsDao.removeObserver(this);
+    }
+
+    /**
+     * Hands {@code result} to the main thread, replacing any result still waiting there.
+     */
+    private void postDelivery(T result) {
+        synchronized (mDelivery) {
+            mPendingResult = result;
+            if (mDeliveryPending) {
+                return;
+            }
+            mDeliveryPending = true;
+        }
+        mAppExecutors.mainThread().execute(mDelivery);
+    }
+
+    private void scheduleQuery() {
+        if (mUnsubscribed || !mQueryPending.compareAndSet(false, true)) {
+            return;
+        }
+        mAppExecutors.diskIO().execute(InstrumentedExecutor.tag("GoalsQueryObserver.query",
+                DiskIOThreadExecutor.prioritize(Priority.INTERACTIVE_READ, new Runnable() {
+            @Override
+            public void run() {
+                // Cleared before querying, so a change committed during the query is not lost.
+                mQueryPending.set(false);
+                if (mUnsubscribed) {
+                    return;
+                }
+                T result = query();
+                if (mHasResult && hasSameContent(mLastResult, result)) {
+                    return;
+                }
+                mHasResult = true;
+                mLastResult = result;
+                postDelivery(result);
+            }
+        })));
+    }
+}
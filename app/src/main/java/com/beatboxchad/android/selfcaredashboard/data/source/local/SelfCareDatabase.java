@@ -16,17 +16,31 @@
 
 package com.beatboxchad.android.selfcaredashboard.data.source.local;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.TypeConverters;
+import android.arch.persistence.room.migration.Migration;
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.VisibleForTesting;
 
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
 
 /**
- * The Room Database that contains the Goal table.
+ * The Room Database that contains the Goal table, the touch history and its rollups.
  */
-@Database(entities = {Goal.class}, version = 2)
+@Database(entities = {Goal.class, GoalTouch.class, GoalStats.class, DailyStats.class,
+        GoalStatsBaseline.class, DailyStatsBaseline.class},
+        version = 9)
+@TypeConverters(GoalIdConverter.class)
 public abstract class SelfCareDatabase extends RoomDatabase {
 
     private static SelfCareDatabase INSTANCE;
@@ -35,11 +49,206 @@ public abstract class SelfCareDatabase extends RoomDatabase {
 
     private static final Object sLock = new Object();
 
+    /**
+     * Adds the index that lets active and archived goals be queried without a table scan.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL(
+                    "CREATE INDEX IF NOT EXISTS `index_goals_archived` ON `goals` (`archived`)");
+        }
+    };
+
+    /**
+     * Widens the archived index with the primary key, so paging through active or archived goals
+     * in id order reads the index in order instead of sorting every matching row.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("DROP INDEX IF EXISTS `index_goals_archived`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_goals_archived_entryid`"
+                    + " ON `goals` (`archived`, `entryid`)");
+        }
+    };
+
+    /**
+     * Turns the primary key from a UUID string into the 16 bytes of a {@link GoalId}. SQLite
+     * cannot change the type of a column, so the table is copied. Ids that are not UUIDs, which
+     * older versions accepted, are replaced by a name-based UUID derived from them, as
+     * {@link GoalId#fromAnyString} does for ids coming into the app.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `goals_new` (`entryid` BLOB NOT NULL,"
+                    + " `title` TEXT, `polarity` INTEGER NOT NULL, `interval` INTEGER NOT NULL,"
+                    + " `touched` INTEGER NOT NULL, `archived` INTEGER NOT NULL,"
+                    + " PRIMARY KEY(`entryid`))");
+            Cursor cursor = database.query("SELECT `entryid`, `title`, `polarity`, `interval`,"
+                    + " `touched`, `archived` FROM `goals`");
+            try {
+                while (cursor.moveToNext()) {
+                    ContentValues values = new ContentValues();
+                    values.put("entryid", GoalId.fromAnyString(cursor.getString(0)).toBytes());
+                    values.put("title", cursor.getString(1));
+                    values.put("polarity", cursor.getInt(2));
+                    values.put("interval", cursor.getInt(3));
+                    values.put("touched", cursor.getLong(4));
+                    values.put("archived", cursor.getInt(5));
+                    database.insert("goals_new", SQLiteDatabase.CONFLICT_REPLACE, values);
+                }
+            } finally {
+                cursor.close();
+            }
+            database.execSQL("DROP TABLE `goals`");
+            database.execSQL("ALTER TABLE `goals_new` RENAME TO `goals`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_goals_archived_entryid`"
+                    + " ON `goals` (`archived`, `entryid`)");
+        }
+    };
+
+    /**
+     * Adds the due time of every goal, with the indexes that list goals in due order, so that the
+     * most overdue goals can be read first without sorting the table. Goals to avoid are never
+     * due, and goals without a positive interval are due when they were touched, as
+     * {@link Goal#getDueAt()} gives them.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `goals` ADD COLUMN `due_at` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("UPDATE `goals` SET `due_at` = CASE WHEN `polarity` = 0"
+                    + " THEN " + Long.MAX_VALUE
+                    + " ELSE `touched` + MAX(0, `interval`) * 86400000 END");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_goals_due_at_entryid`"
+                    + " ON `goals` (`due_at`, `entryid`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_goals_archived_due_at_entryid`"
+                    + " ON `goals` (`archived`, `due_at`, `entryid`)");
+        }
+    };
+
+    /**
+     * Adds the full-text index over goal titles, keyed by goal id rather than by the rowid of the
+     * goals table, which a REPLACE or a VACUUM can change.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            createSearchIndex(database);
+            database.execSQL("INSERT INTO `goals_fts_keys` (`goal_id`)"
+                    + " SELECT `entryid` FROM `goals`");
+            database.execSQL("INSERT INTO `goals_fts` (`docid`, `title`)"
+                    + " SELECT `goals_fts_keys`.`docid`, `goals`.`title` FROM `goals_fts_keys`"
+                    + " JOIN `goals` ON `goals`.`entryid` = `goals_fts_keys`.`goal_id`");
+        }
+    };
+
+    /**
+     * Adds the touch history. Only the last touch of each goal was kept before, so the history of
+     * existing goals starts with it.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `goal_touches` (`goal_id` BLOB NOT NULL,"
+                    + " `touched_at` INTEGER NOT NULL, PRIMARY KEY(`goal_id`, `touched_at`))");
+            database.execSQL("INSERT INTO `goal_touches` (`goal_id`, `touched_at`)"
+                    + " SELECT `entryid`, `touched` FROM `goals` WHERE `touched` > 0");
+        }
+    };
+
+    /**
+     * Adds the rollups of the touch history, and the baselines that keep touches counted once
+     * they leave the history. The rollups are left empty here: the local data source rebuilds
+     * them from the history the first time it finds them missing. Nothing was dropped from the
+     * history before, so the baselines start empty.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `goal_stats` (`goal_id` BLOB NOT NULL,"
+                    + " `days_touched` INTEGER NOT NULL, `on_time` INTEGER NOT NULL,"
+                    + " `current_streak` INTEGER NOT NULL, `longest_streak` INTEGER NOT NULL,"
+                    + " `overrun_days` INTEGER NOT NULL, `last_touched_day` INTEGER NOT NULL,"
+                    + " PRIMARY KEY(`goal_id`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `daily_stats` (`day` INTEGER NOT NULL,"
+                    + " `touches` INTEGER NOT NULL, `on_time` INTEGER NOT NULL,"
+                    + " `overrun_days` INTEGER NOT NULL, PRIMARY KEY(`day`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `goal_stats_baseline`"
+                    + " (`goal_id` BLOB NOT NULL, `days_touched` INTEGER NOT NULL,"
+                    + " `on_time` INTEGER NOT NULL, `current_streak` INTEGER NOT NULL,"
+                    + " `longest_streak` INTEGER NOT NULL, `overrun_days` INTEGER NOT NULL,"
+                    + " `last_touched_day` INTEGER NOT NULL, PRIMARY KEY(`goal_id`))");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `daily_stats_baseline`"
+                    + " (`day` INTEGER NOT NULL, `touches` INTEGER NOT NULL,"
+                    + " `on_time` INTEGER NOT NULL, `overrun_days` INTEGER NOT NULL,"
+                    + " PRIMARY KEY(`day`))");
+        }
+    };
+
+    /**
+     * Room 1.0 has no full-text entities, so the goals_fts table is created by hand, on new
+     * databases and by {@link #MIGRATION_6_7}. It holds the titles of the goals under a docid
+     * that goals_fts_keys gives each goal id once, and triggers keep both in step with every
+     * write to the goals table.
+     */
+    @VisibleForTesting
+    static final Callback SEARCH_INDEX_CALLBACK = new Callback() {
+        @Override
+        public void onCreate(SupportSQLiteDatabase database) {
+            createSearchIndex(database);
+        }
+    };
+
+    private static void createSearchIndex(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TABLE IF NOT EXISTS `goals_fts_keys`"
+                + " (`docid` INTEGER PRIMARY KEY, `goal_id` BLOB NOT NULL UNIQUE)");
+        database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `goals_fts` USING fts4(`title`)");
+        // A REPLACE does not fire the delete trigger, so inserting also clears any row the goal
+        // id already had. Its conflict clause would also apply to an OR IGNORE in here, hence the
+        // explicit check for an existing key.
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS `goals_fts_insert` AFTER INSERT ON `goals`"
+                + " BEGIN"
+                + " INSERT INTO `goals_fts_keys` (`goal_id`) SELECT NEW.`entryid` WHERE NOT EXISTS"
+                + " (SELECT 1 FROM `goals_fts_keys` WHERE `goal_id` = NEW.`entryid`);"
+                + " DELETE FROM `goals_fts` WHERE `docid` ="
+                + " (SELECT `docid` FROM `goals_fts_keys` WHERE `goal_id` = NEW.`entryid`);"
+                + " INSERT INTO `goals_fts` (`docid`, `title`)"
+                + " SELECT `docid`, NEW.`title` FROM `goals_fts_keys`"
+                + " WHERE `goal_id` = NEW.`entryid`;"
+                + " END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS `goals_fts_update`"
+                + " AFTER UPDATE OF `title` ON `goals`"
+                + " BEGIN"
+                + " UPDATE `goals_fts` SET `title` = NEW.`title` WHERE `docid` ="
+                + " (SELECT `docid` FROM `goals_fts_keys` WHERE `goal_id` = NEW.`entryid`);"
+                + " END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS `goals_fts_delete` AFTER DELETE ON `goals`"
+                + " BEGIN"
+                + " DELETE FROM `goals_fts` WHERE `docid` ="
+                + " (SELECT `docid` FROM `goals_fts_keys` WHERE `goal_id` = OLD.`entryid`);"
+                + " DELETE FROM `goals_fts_keys` WHERE `goal_id` = OLD.`entryid`;"
+                + " END");
+    }
+
     public static SelfCareDatabase getInstance(Context context) {
         synchronized (sLock) {
             if (INSTANCE == null) {
                 INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                         SelfCareDatabase.class, "Goals.db")
+                        .addMigrations(MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                                MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8,
+                                MIGRATION_8_9)
+                        .addCallback(SEARCH_INDEX_CALLBACK)
                         .build();
             }
             return INSTANCE;
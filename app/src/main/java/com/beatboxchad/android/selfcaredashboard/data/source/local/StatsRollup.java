@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source.local;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts touches into {@link GoalStats} and {@link DailyStats}.
+ * <p>
+ * {@link GoalsDao} counts each new touch as it is appended and, when rebuilding, folds the whole
+ * history of each goal. Both go through {@link #add}, one touch at a time and oldest first, so a
+ * rebuild ends with the rollups the appends built, as long as the touches and the goals'
+ * intervals are the same. Touches that leave the history are folded into baselines first, and a
+ * fold can resume from one: folding a history in two parts counts the same as folding it whole.
+ */
+final class StatsRollup {
+
+    static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    private StatsRollup() {
+    }
+
+    /**
+     * Returns the day of {@code millis}, counted from the epoch in UTC.
+     */
+    static long dayOf(long millis) {
+        return millis >= 0 ? millis / DAY_MILLIS : (millis + 1) / DAY_MILLIS - 1;
+    }
+
+    /**
+     * Counts a touch of {@code goal} at {@code touchedAt}.
+     *
+     * @return the new stats, {@code stats} itself if the goal was already touched that day, or
+     * null if the touch falls on a day before the last one counted, which only a rebuild can
+     * count.
+     */
+    @Nullable
+    static GoalStats add(@NonNull GoalStats stats, @NonNull Goal goal, long touchedAt) {
+        long day = dayOf(touchedAt);
+        if (stats.getDaysTouched() == 0) {
+            return new GoalStats(stats.getGoalId(), 1, 0, 1, 1, 0, day);
+        }
+        long lastDay = stats.getLastTouchedDay();
+        if (day == lastDay) {
+            return stats;
+        }
+        if (day < lastDay) {
+            return null;
+        }
+        long elapsedDays = day - lastDay;
+        long overrunDays = goal.getPolarity()
+                ? elapsedDays - goal.getInterval()
+                : goal.getInterval() - elapsedDays;
+        boolean onTime = overrunDays <= 0;
+        int streak = onTime ? stats.getCurrentStreak() + 1 : 1;
+        return new GoalStats(stats.getGoalId(),
+                stats.getDaysTouched() + 1,
+                stats.getOnTime() + (onTime ? 1 : 0),
+                streak,
+                Math.max(stats.getLongestStreak(), streak),
+                stats.getOverrunDays() + Math.max(0, overrunDays),
+                day);
+    }
+
+    /**
+     * Adds the touch that turned {@code before} into {@code after} to the stats of its day.
+     *
+     * @param daily the stats of the day so far, or null if nothing was counted on it yet
+     */
+    @NonNull
+    static DailyStats addToDay(@Nullable DailyStats daily, @NonNull GoalStats before,
+                               @NonNull GoalStats after) {
+        long day = after.getLastTouchedDay();
+        int onTime = after.getOnTime() - before.getOnTime();
+        long overrunDays = after.getOverrunDays() - before.getOverrunDays();
+        if (daily == null) {
+            return new DailyStats(day, 1, onTime, overrunDays);
+        }
+        return new DailyStats(day, daily.getTouches() + 1, daily.getOnTime() + onTime,
+                daily.getOverrunDays() + overrunDays);
+    }
+
+    /**
+     * Adds the counts of {@code other} to those of {@code daily}, or subtracts them when
+     * {@code sign} is negative.
+     *
+     * @param daily the stats of the day so far, or null if nothing was counted on it yet
+     */
+    @NonNull
+    static DailyStats combine(@Nullable DailyStats daily, @NonNull DailyStats other, int sign) {
+        int factor = sign < 0 ? -1 : 1;
+        if (daily == null) {
+            daily = new DailyStats(other.getDay(), 0, 0, 0);
+        }
+        return new DailyStats(daily.getDay(),
+                daily.getTouches() + factor * other.getTouches(),
+                daily.getOnTime() + factor * other.getOnTime(),
+                daily.getOverrunDays() + factor * other.getOverrunDays());
+    }
+
+    /**
+     * Counts the whole history of {@code goal}, adding every touch counted to {@code dailyStats}.
+     *
+     * @param touches the touches of the goal, oldest first
+     */
+    @NonNull
+    static GoalStats fold(@NonNull Goal goal, @NonNull List<GoalTouch> touches,
+                          @NonNull Map<Long, DailyStats> dailyStats) {
+        return fold(GoalStats.empty(goal.getGoalId()), goal, touches, dailyStats);
+    }
+
+    /**
+     * Counts {@code touches} on top of {@code stats}, the stats of the touches before them,
+     * adding every touch counted to {@code dailyStats}. Touches on days before the last one
+     * counted in {@code stats} are skipped.
+     *
+     * @param touches the touches of the goal, oldest first
+     */
+    @NonNull
+    static GoalStats fold(@NonNull GoalStats stats, @NonNull Goal goal,
+                          @NonNull List<GoalTouch> touches,
+                          @NonNull Map<Long, DailyStats> dailyStats) {
+        for (GoalTouch touch : touches) {
+            GoalStats next = add(stats, goal, touch.getTouchedAt());
+            if (next != null && next != stats) {
+                long day = next.getLastTouchedDay();
+                dailyStats.put(day, addToDay(dailyStats.get(day), stats, next));
+                stats = next;
+            }
+        }
+        return stats;
+    }
+}
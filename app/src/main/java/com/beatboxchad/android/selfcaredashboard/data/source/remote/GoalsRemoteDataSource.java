@@ -18,13 +18,26 @@ package com.beatboxchad.android.selfcaredashboard.data.source.remote;
 
 import android.os.Handler;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+import com.beatboxchad.android.selfcaredashboard.data.source.GetGoalFuture;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsSearchIndex;
+import com.beatboxchad.android.selfcaredashboard.data.source.LoadGoalsFuture;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -39,6 +52,13 @@ public class GoalsRemoteDataSource implements GoalsDataSource {
 
     private final static Map<String, Goal> GOALS_SERVICE_DATA;
 
+    private static final Subscription NO_UPDATES = new Subscription() {
+        @Override
+        public void unsubscribe() {
+            // Nothing is pushed after the first delivery, so there is nothing to stop.
+        }
+    };
+
     static {
         long DAY_IN_MS = 1000 * 60 * 60 * 24;
         long A_WEEK = System.currentTimeMillis() - (7 * DAY_IN_MS);
@@ -82,16 +102,189 @@ public class GoalsRemoteDataSource implements GoalsDataSource {
      */
     @Override
     public void getGoals(final @NonNull LoadGoalsCallback callback) {
+        deliverLater(callback, new Runnable() {
+            @Override
+            public void run() {
+                callback.onGoalsLoaded(Lists.newArrayList(GOALS_SERVICE_DATA.values()));
+            }
+        });
+    }
+
+    @Override
+    public void getGoals(@NonNull final GoalsFilterType filtering,
+                         final @NonNull LoadGoalsCallback callback) {
+        deliverLater(callback, new Runnable() {
+            @Override
+            public void run() {
+                callback.onGoalsLoaded(filterGoals(filtering));
+            }
+        });
+    }
+
+    @Override
+    public void getGoalsCount(@NonNull final GoalsFilterType filtering,
+                              @NonNull final GetGoalsCountCallback callback) {
         // Simulate network by delaying the execution.
         Handler handler = new Handler();
         handler.postDelayed(new Runnable() {
             @Override
             public void run() {
-                callback.onGoalsLoaded(Lists.newArrayList(GOALS_SERVICE_DATA.values()));
+                callback.onGoalsCounted(filterGoals(filtering).size());
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    @Override
+    public void getGoalsPage(@NonNull final GoalsFilterType filtering,
+                             @Nullable final GoalId afterGoalId, final int pageSize,
+                             @NonNull final LoadGoalsCallback callback) {
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler();
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.onGoalsLoaded(pageAfter(filtering, afterGoalId, pageSize));
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    @Override
+    public void getGoalsPageAt(@NonNull final GoalsFilterType filtering, final int offset,
+                               final int pageSize, @NonNull final LoadGoalsCallback callback) {
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler();
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.onGoalsLoaded(pageAt(sortedGoals(filtering), offset, pageSize));
             }
         }, SERVICE_LATENCY_IN_MILLIS);
     }
 
+    @Override
+    public void getGoalsInDueOrderAt(@NonNull final GoalsFilterType filtering, final int offset,
+                                     final int pageSize,
+                                     @NonNull final LoadGoalsCallback callback) {
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler();
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.onGoalsLoaded(pageAt(goalsInDueOrder(filtering), offset, pageSize));
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    @Override
+    public void searchGoals(@NonNull final GoalsFilterType filtering, @NonNull final String query,
+                            final int limit, @NonNull final LoadGoalsCallback callback) {
+        // Simulate network by delaying the execution.
+        Handler handler = new Handler();
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.onGoalsLoaded(search(filtering, query, limit));
+            }
+        }, SERVICE_LATENCY_IN_MILLIS);
+    }
+
+    /**
+     * The remote service cannot push changes, so observing it delivers the current data once.
+     */
+    @NonNull
+    @Override
+    public Subscription observeGoals(@NonNull GoalsFilterType filtering,
+                                     @NonNull LoadGoalsCallback callback) {
+        getGoals(filtering, callback);
+        return NO_UPDATES;
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoal(@NonNull String goalId, @NonNull GetGoalCallback callback) {
+        getGoal(goalId, callback);
+        return NO_UPDATES;
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoalsCount(@NonNull GoalsFilterType filtering,
+                                          @NonNull GetGoalsCountCallback callback) {
+        getGoalsCount(filtering, callback);
+        return NO_UPDATES;
+    }
+
+    /**
+     * Returns the goals matching {@code filtering} in id order, the order pages are served in.
+     */
+    private static List<Goal> sortedGoals(GoalsFilterType filtering) {
+        List<Goal> goals = new ArrayList<>();
+        for (Goal goal : GOALS_SERVICE_DATA.values()) {
+            if (filtering.matches(goal)) {
+                goals.add(goal);
+            }
+        }
+        Collections.sort(goals, new Comparator<Goal>() {
+            @Override
+            public int compare(Goal goal1, Goal goal2) {
+                return goal1.getGoalId().compareTo(goal2.getGoalId());
+            }
+        });
+        return goals;
+    }
+
+    private static List<Goal> pageAfter(GoalsFilterType filtering, @Nullable GoalId afterGoalId,
+                                        int pageSize) {
+        List<Goal> goals = sortedGoals(filtering);
+        int start = 0;
+        if (afterGoalId != null) {
+            while (start < goals.size()
+                    && goals.get(start).getGoalId().compareTo(afterGoalId) <= 0) {
+                start++;
+            }
+        }
+        return pageAt(goals, start, pageSize);
+    }
+
+    private static List<Goal> goalsInDueOrder(GoalsFilterType filtering) {
+        List<Goal> goals = sortedGoals(filtering);
+        Collections.sort(goals, Goal.DUE_ORDER);
+        return goals;
+    }
+
+    private static List<Goal> search(GoalsFilterType filtering, String query, int limit) {
+        List<String> prefixes = GoalsSearchIndex.tokenize(query);
+        List<Goal> goals = new ArrayList<>();
+        if (prefixes.isEmpty()) {
+            return goals;
+        }
+        for (Goal goal : filterGoals(filtering)) {
+            if (goals.size() == limit) {
+                break;
+            }
+            if (GoalsSearchIndex.matches(goal.getTitle(), prefixes)) {
+                goals.add(goal);
+            }
+        }
+        return goals;
+    }
+
+    private static List<Goal> pageAt(List<Goal> goals, int offset, int pageSize) {
+        int from = Math.min(offset, goals.size());
+        int to = Math.min(from + pageSize, goals.size());
+        return new ArrayList<>(goals.subList(from, to));
+    }
+
+    private static List<Goal> filterGoals(GoalsFilterType filtering) {
+        List<Goal> goals = new ArrayList<>();
+        for (Goal goal : GOALS_SERVICE_DATA.values()) {
+            if (filtering.matches(goal)) {
+                goals.add(goal);
+            }
+        }
+        return goals;
+    }
+
     /**
      * Note: {@link GetGoalCallback#onDataNotAvailable()} is never fired. In a real remote data
      * source implementation, this would be fired if the server can't be contacted or the server
@@ -101,14 +294,49 @@ public class GoalsRemoteDataSource implements GoalsDataSource {
     public void getGoal(@NonNull String goalId, final @NonNull GetGoalCallback callback) {
         final Goal goal = GOALS_SERVICE_DATA.get(goalId);
 
-        // Simulate network by delaying the execution.
-        Handler handler = new Handler();
-        handler.postDelayed(new Runnable() {
+        deliverLater(callback, new Runnable() {
             @Override
             public void run() {
                 callback.onGoalLoaded(goal);
             }
-        }, SERVICE_LATENCY_IN_MILLIS);
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<List<Goal>> loadGoals(@NonNull GoalsFilterType filtering) {
+        LoadGoalsFuture future = new LoadGoalsFuture();
+        getGoals(filtering, future);
+        return future;
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<Goal> loadGoal(@NonNull String goalId) {
+        GetGoalFuture future = new GetGoalFuture();
+        getGoal(goalId, future);
+        return future;
+    }
+
+    /**
+     * Simulates the network by running {@code delivery} after a delay. If {@code callback} is a
+     * future that gets cancelled meanwhile, the delivery is dropped, as a real client would abort
+     * the request.
+     */
+    private static void deliverLater(Object callback, final Runnable delivery) {
+        final Handler handler = new Handler();
+        handler.postDelayed(delivery, SERVICE_LATENCY_IN_MILLIS);
+        if (callback instanceof ListenableFuture) {
+            final ListenableFuture<?> future = (ListenableFuture<?>) callback;
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.isCancelled()) {
+                        handler.removeCallbacks(delivery);
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+        }
     }
 
     @Override
@@ -116,6 +344,47 @@ public class GoalsRemoteDataSource implements GoalsDataSource {
         GOALS_SERVICE_DATA.put(goal.getId(), goal);
     }
 
+    @Override
+    public void saveGoals(@NonNull List<Goal> goals) {
+        for (Goal goal : goals) {
+            GOALS_SERVICE_DATA.put(goal.getId(), goal);
+        }
+    }
+
+    @Override
+    public void syncGoals(@NonNull List<Goal> goals) {
+        // Not required for the remote data source because it is the source of truth that the
+        // {@link GoalsRepository} syncs the other data sources from.
+    }
+
+    @Override
+    public void saveTouches(@NonNull List<GoalTouch> touches) {
+        // Not required because the service does not keep a touch history, only the last touch of
+        // each goal.
+    }
+
+    @Override
+    public void getTouches(@NonNull String goalId, long fromMillis, long toMillis,
+                           @NonNull LoadTouchesCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public void getGoalStats(@NonNull String goalId, @NonNull GetGoalStatsCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public void getDailyStats(long fromMillis, long toMillis,
+                              @NonNull LoadDailyStatsCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public void rebuildStats() {
+        // Not required because the service does not keep a touch history to count.
+    }
+
     @Override
     public void archiveGoal(@NonNull Goal goal) {
         Goal archivedGoal = new Goal(goal.getId(),
@@ -151,6 +420,26 @@ public class GoalsRemoteDataSource implements GoalsDataSource {
         // converting from a {@code goalId} to a {@link goal} using its cached data.
     }
 
+    @Override
+    public void archiveGoals(@NonNull List<String> goalIds) {
+        setArchived(goalIds, true);
+    }
+
+    @Override
+    public void activateGoals(@NonNull List<String> goalIds) {
+        setArchived(goalIds, false);
+    }
+
+    private void setArchived(List<String> goalIds, boolean archived) {
+        for (String goalId : goalIds) {
+            Goal goal = GOALS_SERVICE_DATA.get(goalId);
+            if (goal != null) {
+                GOALS_SERVICE_DATA.put(goalId,
+                        new Goal.Builder(goal).setArchived(archived).build());
+            }
+        }
+    }
+
     @Override
     public void clearArchivedGoals() {
         Iterator<Map.Entry<String, Goal>> it = GOALS_SERVICE_DATA.entrySet().iterator();
@@ -177,4 +466,11 @@ public class GoalsRemoteDataSource implements GoalsDataSource {
     public void deleteGoal(@NonNull String goalId) {
         GOALS_SERVICE_DATA.remove(goalId);
     }
+
+    @Override
+    public void deleteGoals(@NonNull List<String> goalIds) {
+        for (String goalId : goalIds) {
+            GOALS_SERVICE_DATA.remove(goalId);
+        }
+    }
 }
@@ -17,9 +17,15 @@
 package com.beatboxchad.android.selfcaredashboard.goaldetail;
 
 import android.content.Context;
+import android.databinding.Bindable;
 import android.support.annotation.Nullable;
 
+import com.beatboxchad.android.selfcaredashboard.BR;
 import com.beatboxchad.android.selfcaredashboard.GoalViewModel;
+import com.beatboxchad.android.selfcaredashboard.R;
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsRepository;
 import com.beatboxchad.android.selfcaredashboard.goals.GoalsFragment;
 
@@ -33,10 +39,72 @@ public class GoalDetailViewModel extends GoalViewModel {
     @Nullable
     private GoalDetailNavigator mGoalDetailNavigator;
 
+    @Nullable
+    private GoalStats mStats;
+
+    /**
+     * The goal the stats were last loaded for, and when it had been touched then.
+     */
+    @Nullable
+    private String mStatsGoalId;
+
+    private long mStatsTouched;
+
     public GoalDetailViewModel(Context context, GoalsRepository goalsRepository) {
         super(context, goalsRepository);
     }
 
+    /**
+     * Reloads the stats when the goal was touched since they were loaded, so they include the
+     * touch. Other edits to the goal leave them as they are.
+     */
+    @Override
+    public void onGoalLoaded(Goal goal) {
+        super.onGoalLoaded(goal);
+        final String goalId = goal.getId();
+        if (goalId.equals(mStatsGoalId) && goal.getTouched() == mStatsTouched) {
+            return;
+        }
+        mStatsGoalId = goalId;
+        mStatsTouched = goal.getTouched();
+        getGoalsRepository().getGoalStats(goalId, new GoalsDataSource.GetGoalStatsCallback() {
+            @Override
+            public void onGoalStatsLoaded(GoalStats stats) {
+                if (isDataAvailable() && goalId.equals(getGoalId())) {
+                    mStats = stats;
+                    notifyPropertyChanged(BR.statsString);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                if (isDataAvailable() && goalId.equals(getGoalId())) {
+                    mStats = null;
+                    notifyPropertyChanged(BR.statsString);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reloads the stats too, even if the goal was not touched since.
+     */
+    @Override
+    public void onRefresh() {
+        mStatsGoalId = null;
+        super.onRefresh();
+    }
+
+    @Bindable
+    public String getStatsString() {
+        if (mStats == null || mStats.getDaysTouched() == 0) {
+            return "";
+        }
+        return getContext().getString(R.string.goal_stats, mStats.getCurrentStreak(),
+                mStats.getLongestStreak(), Math.round(mStats.getOnTimeRatio() * 100),
+                mStats.getMeanOverrunDays());
+    }
+
     public void setNavigator(GoalDetailNavigator goalDetailNavigator) {
         mGoalDetailNavigator = goalDetailNavigator;
     }
@@ -44,6 +112,7 @@ public class GoalDetailViewModel extends GoalViewModel {
     public void onActivityDestroyed() {
         // Clear references to avoid potential memory leaks.
         mGoalDetailNavigator = null;
+        stop();
     }
 
     /**
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Goals kept in {@link Goal#DUE_ORDER} as they change. Touching, editing, archiving or deleting a
+ * goal moves only that goal, in O(log n), instead of sorting the whole list again.
+ * <p>
+ * Not thread safe. It is only used on the main thread.
+ */
+final class DueIndex {
+
+    private final TreeSet<Goal> mGoalsByDue = new TreeSet<>(Goal.DUE_ORDER);
+
+    private final Map<GoalId, Goal> mGoalsById = new HashMap<>();
+
+    int size() {
+        return mGoalsById.size();
+    }
+
+    /**
+     * Adds {@code goal}, or moves it if it is indexed with different content.
+     *
+     * @return true if the index changed.
+     */
+    boolean put(Goal goal) {
+        Goal previous = mGoalsById.get(goal.getGoalId());
+        if (previous != null) {
+            if (previous.hasSameContent(goal)) {
+                return false;
+            }
+            mGoalsByDue.remove(previous);
+        }
+        mGoalsById.put(goal.getGoalId(), goal);
+        mGoalsByDue.add(goal);
+        return true;
+    }
+
+    /**
+     * @return true if the goal was indexed.
+     */
+    boolean remove(GoalId goalId) {
+        Goal previous = mGoalsById.remove(goalId);
+        if (previous == null) {
+            return false;
+        }
+        mGoalsByDue.remove(previous);
+        return true;
+    }
+
+    /**
+     * Makes the index hold exactly {@code goals}. Only the goals that were added, changed or
+     * removed are moved.
+     *
+     * @return true if the index changed.
+     */
+    boolean replaceAll(List<Goal> goals) {
+        boolean changed = false;
+        Set<GoalId> goalIds = new HashSet<>();
+        for (Goal goal : goals) {
+            goalIds.add(goal.getGoalId());
+            changed |= put(goal);
+        }
+        Iterator<Map.Entry<GoalId, Goal>> entries = mGoalsById.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<GoalId, Goal> entry = entries.next();
+            if (!goalIds.contains(entry.getKey())) {
+                mGoalsByDue.remove(entry.getValue());
+                entries.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    void clear() {
+        mGoalsByDue.clear();
+        mGoalsById.clear();
+    }
+
+    /**
+     * Returns the indexed goals, the most overdue first.
+     */
+    List<Goal> goals() {
+        return new ArrayList<>(mGoalsByDue);
+    }
+}
@@ -18,16 +18,15 @@ package com.beatboxchad.android.selfcaredashboard.goals;
 
 import android.content.Context;
 import android.databinding.Bindable;
-import android.databinding.ObservableField;
-import android.graphics.Color;
+import android.support.annotation.ColorInt;
 import android.support.annotation.Nullable;
 import android.view.View;
 
 import com.beatboxchad.android.selfcaredashboard.GoalViewModel;
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsRepository;
 
 import java.lang.ref.WeakReference;
-import java.sql.Date;
 
 
 /**
@@ -37,7 +36,9 @@ import java.sql.Date;
 public class GoalItemViewModel extends GoalViewModel {
 
 
-    public final ObservableField<Integer> mColor = new ObservableField<>();
+    // Computed by the UrgencyEngine for the whole list, not by the row.
+    @ColorInt
+    private int mColor;
 
     // This navigator is s wrapped in a WeakReference to avoid leaks because it has references to an
     // activity. There's no straightforward way to clear it for each item in a list adapter.
@@ -52,6 +53,14 @@ public class GoalItemViewModel extends GoalViewModel {
         mNavigator = new WeakReference<>(navigator);
     }
 
+    /**
+     * Shows {@code goal} in the urgency {@code color} computed for it.
+     */
+    public void setGoal(Goal goal, @ColorInt int color) {
+        mColor = color;
+        setGoal(goal);
+    }
+
     /**
      * Called by the Data Binding library when the row is clicked.
      */
@@ -67,23 +76,16 @@ public class GoalItemViewModel extends GoalViewModel {
     }
 
     public boolean goalLongClicked(View view) {
-        touchGoal();
-        calcColor();
+        Goal goal = touchGoal();
+        // A goal that was just touched is as calm as it gets, whatever the time.
+        mColor = UrgencyEngine.colorAt(goal, goal.getTouched());
+        notifyChange();
         return true;
     }
 
-    private void calcColor() {
-            long diff = new Date(System.currentTimeMillis()).getTime() - mTouched.get();
-            float diffInDays = diff / 1000 / 60 / 60 / 24;
-            float percent = (diffInDays / mInterval.get());
-            float hue = mPolarity.get() ? 120 - (120 * percent) : 120 * percent;
-            mColor.set(Color.HSVToColor(new float[]{hue, 1, 1}));
-            notifyChange();
-    }
-
     @Bindable
+    @ColorInt
     public int getColor() {
-        calcColor();
-        return mColor.get();
+        return mColor;
     }
 }
@@ -27,6 +27,7 @@ import android.support.v4.widget.DrawerLayout;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
+import android.util.Log;
 import android.view.MenuItem;
 
 import com.beatboxchad.android.selfcaredashboard.Injection;
@@ -35,11 +36,24 @@ import com.beatboxchad.android.selfcaredashboard.ViewModelHolder;
 import com.beatboxchad.android.selfcaredashboard.addeditgoal.AddEditGoalActivity;
 import com.beatboxchad.android.selfcaredashboard.goaldetail.GoalDetailActivity;
 import com.beatboxchad.android.selfcaredashboard.util.ActivityUtils;
+import com.beatboxchad.android.selfcaredashboard.util.AppExecutors;
+import com.beatboxchad.android.selfcaredashboard.util.DiskIOThreadExecutor;
+import com.beatboxchad.android.selfcaredashboard.util.DiskIOThreadExecutor.Priority;
 import com.beatboxchad.android.selfcaredashboard.util.EspressoIdlingResource;
+import com.beatboxchad.android.selfcaredashboard.util.InstrumentedExecutor;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 
 
 public class GoalsActivity extends AppCompatActivity implements GoalItemNavigator, GoalsNavigator {
 
+    private static final String TAG = "GoalsActivity";
+
+    private static final String EXECUTOR_METRICS_FILE = "executor_metrics.txt";
+
     private DrawerLayout mDrawerLayout;
 
     public static final String GOALS_VIEWMODEL_TAG = "GOALS_VIEWMODEL_TAG";
@@ -70,6 +84,42 @@ public class GoalsActivity extends AppCompatActivity implements GoalItemNavigato
         super.onDestroy();
     }
 
+    /**
+     * Adds the executor metrics to {@code adb shell dumpsys activity top}, which tells a stalled
+     * main thread from a backlog of disk work.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.println("Executors:");
+        AppExecutors.getInstance().dumpMetrics(prefix + "  ", writer);
+    }
+
+    /**
+     * Keeps the executor metrics in a file when the app goes to the background, so that they can
+     * be collected with a bug report.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            final AppExecutors appExecutors = AppExecutors.getInstance();
+            final File file = new File(getCacheDir(), EXECUTOR_METRICS_FILE);
+            appExecutors.diskIO().execute(InstrumentedExecutor.tag("GoalsActivity.dumpMetrics",
+                    DiskIOThreadExecutor.prioritize(Priority.MAINTENANCE, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        appExecutors.dumpMetrics(file);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Could not write " + file, e);
+                    }
+                }
+            })));
+        }
+    }
+
     private GoalsViewModel findOrCreateViewModel() {
         // In a configuration change we might have a ViewModel present. It's retained using the
         // Fragment Manager.
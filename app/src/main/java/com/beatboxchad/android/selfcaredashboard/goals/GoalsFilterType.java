@@ -16,6 +16,8 @@
 
 package com.beatboxchad.android.selfcaredashboard.goals;
 
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+
 /**
  * Used with the filter spinner in the goals list.
  */
@@ -33,5 +35,27 @@ public enum GoalsFilterType {
     /**
      * Filters only the archived goals.
      */
-    ARCHIVED_GOALS
+    ARCHIVED_GOALS;
+
+    /**
+     * Returns true if {@code goal} passes this filter.
+     */
+    public boolean matches(Goal goal) {
+        return matchesArchived(goal.isArchived());
+    }
+
+    /**
+     * Returns true if a goal that is archived, or not, passes this filter. Lets stores that do not
+     * keep {@link Goal} objects filter without creating them.
+     */
+    public boolean matchesArchived(boolean archived) {
+        switch (this) {
+            case ACTIVE_GOALS:
+                return !archived;
+            case ARCHIVED_GOALS:
+                return archived;
+            default:
+                return true;
+        }
+    }
 }
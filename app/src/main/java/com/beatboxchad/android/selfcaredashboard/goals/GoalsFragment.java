@@ -16,31 +16,42 @@
 
 package com.beatboxchad.android.selfcaredashboard.goals;
 
-import android.databinding.DataBindingUtil;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import android.databinding.Observable;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.PopupMenu;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
-import android.widget.ListView;
 
 import com.beatboxchad.android.selfcaredashboard.Injection;
 import com.beatboxchad.android.selfcaredashboard.R;
 import com.beatboxchad.android.selfcaredashboard.ScrollChildSwipeRefreshLayout;
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsRepository;
 import com.beatboxchad.android.selfcaredashboard.databinding.GoalItemBinding;
 import com.beatboxchad.android.selfcaredashboard.databinding.GoalsFragBinding;
+import com.beatboxchad.android.selfcaredashboard.goals.UrgencyEngine.Urgencies;
+import com.beatboxchad.android.selfcaredashboard.util.AppExecutors;
+import com.beatboxchad.android.selfcaredashboard.util.Clock;
+import com.beatboxchad.android.selfcaredashboard.util.EspressoIdlingResource;
 import com.beatboxchad.android.selfcaredashboard.util.SnackbarUtils;
+import com.beatboxchad.android.selfcaredashboard.util.TouchedDateFormatter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -70,6 +81,13 @@ public class GoalsFragment extends Fragment {
     public void onResume() {
         super.onResume();
         mGoalsViewModel.start();
+        mListAdapter.setUrgencyUpdatesEnabled(true);
+    }
+
+    @Override
+    public void onPause() {
+        mListAdapter.setUrgencyUpdatesEnabled(false);
+        super.onPause();
     }
 
     @Nullable
@@ -101,6 +119,12 @@ public class GoalsFragment extends Fragment {
             case R.id.menu_refresh:
                 mGoalsViewModel.loadGoals(true);
                 break;
+            case R.id.menu_sort_overdue:
+                item.setChecked(!item.isChecked());
+                mGoalsViewModel.setSorting(item.isChecked()
+                        ? GoalsSortType.MOST_OVERDUE_FIRST : GoalsSortType.STORED_ORDER);
+                mGoalsViewModel.loadGoals(false);
+                break;
         }
         return true;
     }
@@ -108,6 +132,24 @@ public class GoalsFragment extends Fragment {
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         inflater.inflate(R.menu.goals_fragment_menu, menu);
+        menu.findItem(R.id.menu_sort_overdue).setChecked(
+                mGoalsViewModel.getSorting() == GoalsSortType.MOST_OVERDUE_FIRST);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.menu_search).getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                mGoalsViewModel.setSearchQuery(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                // Collapsing the search view clears the text, which shows every goal again.
+                mGoalsViewModel.setSearchQuery(newText);
+                return true;
+            }
+        });
     }
 
     public void setViewModel(GoalsViewModel viewModel) {
@@ -185,18 +227,22 @@ public class GoalsFragment extends Fragment {
     }
 
     private void setupListAdapter() {
-        ListView listView =  mGoalsFragBinding.goalsList;
+        RecyclerView recyclerView = mGoalsFragBinding.goalsList;
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
 
         mListAdapter = new GoalsAdapter(
                 new ArrayList<Goal>(0),
                 (GoalsActivity) getActivity(),
                 Injection.provideGoalsRepository(getContext().getApplicationContext()),
-                mGoalsViewModel);
-        listView.setAdapter(mListAdapter);
+                mGoalsViewModel,
+                new UrgencyEngine(Clock.SYSTEM),
+                TouchedDateFormatter.getInstance(getContext()),
+                AppExecutors.getInstance());
+        recyclerView.setAdapter(mListAdapter);
     }
 
     private void setupRefreshLayout() {
-        ListView listView =  mGoalsFragBinding.goalsList;
+        RecyclerView recyclerView = mGoalsFragBinding.goalsList;
         final ScrollChildSwipeRefreshLayout swipeRefreshLayout = mGoalsFragBinding.refreshLayout;
         swipeRefreshLayout.setColorSchemeColors(
                 ContextCompat.getColor(getActivity(), R.color.colorPrimary),
@@ -204,67 +250,255 @@ public class GoalsFragment extends Fragment {
                 ContextCompat.getColor(getActivity(), R.color.colorPrimaryDark)
         );
         // Set the scrolling view in the custom SwipeRefreshLayout.
-        swipeRefreshLayout.setScrollUpChild(listView);
+        swipeRefreshLayout.setScrollUpChild(recyclerView);
     }
 
-    public static class GoalsAdapter extends BaseAdapter {
+    public static class GoalsAdapter extends RecyclerView.Adapter<GoalsAdapter.ViewHolder> {
+
+        private static final int VIEW_TYPE_GOAL = 0;
+
+        private static final int VIEW_TYPE_PLACEHOLDER = 1;
 
         @Nullable private GoalItemNavigator mGoalItemNavigator;
 
         private final GoalsViewModel mGoalsViewModel;
 
+        private final AppExecutors mAppExecutors;
+
+        /**
+         * The goals on screen. Lists handed to {@link #replaceData(List)} only replace this once
+         * their diff against it is applied.
+         */
         private List<Goal> mGoals;
 
+        private final UrgencyEngine mUrgencyEngine;
+
+        private final TouchedDateFormatter mDateFormatter;
+
+        // The urgencies of mGoals, by position. Replaced together with mGoals.
+        private Urgencies mUrgencies = Urgencies.EMPTY;
+
+        // The time the colors of paged rows are computed for.
+        private long mPagedTime;
+
+        // Knows when the urgency of a goal of mGoals changes next.
+        private final UrgencyScheduler mUrgencyScheduler = new UrgencyScheduler();
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        private final Runnable mUrgencyTick = new Runnable() {
+            @Override
+            public void run() {
+                onUrgencyTick();
+            }
+        };
+
+        private boolean mUrgencyUpdatesEnabled;
+
+        // Bumped by every change of data, so that diffs computed for older data are dropped.
+        private int mGeneration;
+
+        // When set, rows are read from this window instead of mGoals.
+        @Nullable private GoalsPagedList mPagedGoals;
+
         private GoalsRepository mGoalsRepository;
 
         public GoalsAdapter(List<Goal> goals, GoalsActivity goalItemNavigator,
                             GoalsRepository goalsRepository,
-                            GoalsViewModel goalsViewModel) {
+                            GoalsViewModel goalsViewModel, UrgencyEngine urgencyEngine,
+                            TouchedDateFormatter dateFormatter, AppExecutors appExecutors) {
             mGoalItemNavigator = goalItemNavigator;
             mGoalsRepository = goalsRepository;
             mGoalsViewModel = goalsViewModel;
-            setList(goals);
-
+            mAppExecutors = checkNotNull(appExecutors);
+            mUrgencyEngine = checkNotNull(urgencyEngine);
+            mDateFormatter = checkNotNull(dateFormatter);
+            List<Goal> initialGoals = new ArrayList<>(goals);
+            setGoals(initialGoals, mUrgencyEngine.compute(initialGoals));
+            setHasStableIds(true);
         }
 
         public void onDestroy() {
             mGoalItemNavigator = null;
+            mGeneration++;
+            mHandler.removeCallbacks(mUrgencyTick);
+            if (mPagedGoals != null) {
+                mPagedGoals.setCallback(null);
+            }
         }
 
-        public void replaceData(List<Goal> goals) {
-            setList(goals);
+        /**
+         * Shows {@code goals}. The diff against the goals on screen is computed on a background
+         * thread and applied as granular notifications, so only the rows that changed are bound
+         * again. The urgency colors and due dates are computed with the diff, and a row whose
+         * color or due date moved on since it was shown counts as changed. Must be called on the
+         * main thread.
+         */
+        public void replaceData(@Nullable List<Goal> goals) {
+            // The view model updates its list in place, so the diff needs a copy.
+            final List<Goal> newGoals =
+                    goals == null ? new ArrayList<Goal>(0) : new ArrayList<>(goals);
+            final List<Goal> oldGoals = mGoals;
+            final Urgencies oldUrgencies = mUrgencies;
+            final int generation = ++mGeneration;
+            if (mPagedGoals != null) {
+                // Nothing on screen comes from the list. Its urgencies are computed when it is.
+                setGoals(newGoals, Urgencies.EMPTY);
+                return;
+            }
+            if (oldGoals.isEmpty()) {
+                setGoals(newGoals, mUrgencyEngine.compute(newGoals));
+                notifyItemRangeInserted(0, newGoals.size());
+                return;
+            }
+            EspressoIdlingResource.increment(); // The list is not final until the diff is in.
+            mAppExecutors.computation().execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Urgencies newUrgencies = mUrgencyEngine.compute(newGoals);
+                    mDateFormatter.refresh(newGoals);
+                    final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                            new GoalsDiffCallback(oldGoals, oldUrgencies, newGoals, newUrgencies));
+                    mAppExecutors.mainThread().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            EspressoIdlingResource.decrement();
+                            if (generation != mGeneration) {
+                                return;
+                            }
+                            setGoals(newGoals, newUrgencies);
+                            result.dispatchUpdatesTo(GoalsAdapter.this);
+                        }
+                    });
+                }
+            });
+        }
+
+        public void replacePagedData(@Nullable GoalsPagedList pagedGoals) {
+            if (mPagedGoals != null) {
+                mPagedGoals.setCallback(null);
+            }
+            mGeneration++;
+            mPagedGoals = pagedGoals;
+            if (pagedGoals != null) {
+                mHandler.removeCallbacks(mUrgencyTick);
+                mPagedTime = mUrgencyEngine.now();
+                final int pageSize = pagedGoals.getPageSize();
+                pagedGoals.setCallback(new GoalsPagedList.Callback() {
+                    @Override
+                    public void onPageLoaded(int page) {
+                        int start = page * pageSize;
+                        notifyItemRangeChanged(start,
+                                Math.min(pageSize, getItemCount() - start));
+                    }
+                });
+            } else {
+                // Back from paged mode, where the list was not kept up to date.
+                setGoals(mGoals, mUrgencyEngine.compute(mGoals));
+            }
+            notifyDataSetChanged();
+        }
+
+        /**
+         * Starts or stops refreshing rows as their urgency changes with time. Rows are only
+         * refreshed while the list is on screen.
+         */
+        public void setUrgencyUpdatesEnabled(boolean enabled) {
+            mUrgencyUpdatesEnabled = enabled;
+            if (enabled) {
+                // Catches up with whatever changed while the list was hidden.
+                onUrgencyTick();
+            } else {
+                mHandler.removeCallbacks(mUrgencyTick);
+            }
+        }
+
+        private void setGoals(List<Goal> goals, Urgencies urgencies) {
+            mGoals = goals;
+            mUrgencies = urgencies;
+            mUrgencyScheduler.reset(goals, urgencies.getTime());
+            scheduleUrgencyTick();
+        }
+
+        /**
+         * Refreshes the rows whose urgency changed, and only those, then sleeps until the next
+         * change.
+         */
+        private void onUrgencyTick() {
+            if (mPagedGoals != null || mUrgencies.size() != mGoals.size()) {
+                return;
+            }
+            List<Integer> positions = mUrgencyScheduler.pollChanged(mUrgencyEngine.now());
+            if (!positions.isEmpty()) {
+                mUrgencies = mUrgencyEngine.update(mUrgencies, mGoals, positions);
+                for (int position : positions) {
+                    notifyItemChanged(position);
+                }
+            }
+            scheduleUrgencyTick();
+        }
+
+        private void scheduleUrgencyTick() {
+            mHandler.removeCallbacks(mUrgencyTick);
+            long nextChangeAt = mUrgencyScheduler.nextChangeAt();
+            if (!mUrgencyUpdatesEnabled || mPagedGoals != null
+                    || nextChangeAt == Long.MAX_VALUE) {
+                return;
+            }
+            mHandler.postDelayed(mUrgencyTick,
+                    Math.max(0, nextChangeAt - mUrgencyEngine.now()));
         }
 
         @Override
-        public int getCount() {
-            return mGoals != null ? mGoals.size() : 0;
+        public int getItemCount() {
+            if (mPagedGoals != null) {
+                return mPagedGoals.size();
+            }
+            return mGoals.size();
+        }
+
+        /**
+         * In paged mode this returns null for rows whose page is still loading.
+         */
+        @Nullable
+        public Goal getItem(int position) {
+            if (mPagedGoals != null) {
+                return mPagedGoals.get(position);
+            }
+            return mGoals.get(position);
         }
 
         @Override
-        public Goal getItem(int i) {
-            return mGoals.get(i);
+        public int getItemViewType(int position) {
+            return getItem(position) == null ? VIEW_TYPE_PLACEHOLDER : VIEW_TYPE_GOAL;
         }
 
+        /**
+         * Folds the 128-bit goal id into a stable 64-bit item id. In paged mode a row starts as a
+         * placeholder and becomes a goal when its page loads, and a reloaded page may hold other
+         * goals, so rows are keyed by position there: the id of a row survives its page loading.
+         * Pages only ever change in place, and switching modes rebinds everything.
+         */
         @Override
-        public long getItemId(int i) {
-            return i;
+        public long getItemId(int position) {
+            if (mPagedGoals != null) {
+                return position;
+            }
+            GoalId goalId = mGoals.get(position).getGoalId();
+            return goalId.getMostSignificantBits() ^ goalId.getLeastSignificantBits();
         }
 
         @Override
-        public View getView(int i, View view, ViewGroup viewGroup) {
-            Goal goal = getItem(i);
-            GoalItemBinding binding;
-            if (view == null) {
-                // Inflate
-                LayoutInflater inflater = LayoutInflater.from(viewGroup.getContext());
-
-                // Create the binding
-                binding = GoalItemBinding.inflate(inflater, viewGroup, false);
-            } else {
-                // Recycling view
-                binding = DataBindingUtil.getBinding(view);
+        public ViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
+            LayoutInflater inflater = LayoutInflater.from(viewGroup.getContext());
+            if (viewType == VIEW_TYPE_PLACEHOLDER) {
+                return new ViewHolder(
+                        inflater.inflate(R.layout.goal_item_placeholder, viewGroup, false), null);
             }
+            GoalItemBinding binding = GoalItemBinding.inflate(inflater, viewGroup, false);
 
+            // Each row keeps its view model for as long as the holder lives, so binding a row
+            // only swaps the goal and registers nothing.
             final GoalItemViewModel viewmodel = new GoalItemViewModel(
                     viewGroup.getContext().getApplicationContext(),
                     mGoalsRepository
@@ -272,7 +506,6 @@ public class GoalsFragment extends Fragment {
 
             viewmodel.setNavigator(mGoalItemNavigator);
 
-
             binding.setViewmodel(viewmodel);
             // To save on PropertyChangedCallbacks, wire the item's snackbar text observable to the
             // fragment's.
@@ -283,15 +516,80 @@ public class GoalsFragment extends Fragment {
                     mGoalsViewModel.snackbarText.set(viewmodel.getSnackbarText());
                 }
             });
-            viewmodel.setGoal(goal);
+            return new ViewHolder(binding.getRoot(), binding);
+        }
 
-            return binding.getRoot();
+        @Override
+        public void onBindViewHolder(ViewHolder holder, int position) {
+            Goal goal = getItem(position);
+            if (goal == null || holder.mBinding == null) {
+                return;
+            }
+            int color = mPagedGoals != null
+                    ? UrgencyEngine.colorAt(goal, mPagedTime)
+                    : mUrgencies.colorAt(position);
+            holder.mBinding.getViewmodel().setGoal(goal, color);
+            // Bind now rather than on the next frame, so the row is measured with its content.
+            holder.mBinding.executePendingBindings();
         }
 
+        static class ViewHolder extends RecyclerView.ViewHolder {
 
-        private void setList(List<Goal> goals) {
-            mGoals = goals;
-            notifyDataSetChanged();
+            // Null for placeholder rows.
+            @Nullable private final GoalItemBinding mBinding;
+
+            ViewHolder(View itemView, @Nullable GoalItemBinding binding) {
+                super(itemView);
+                mBinding = binding;
+            }
+        }
+    }
+
+    /**
+     * Matches goals by id, and compares them by every field shown in a row, including the
+     * urgency color and due date.
+     */
+    private static class GoalsDiffCallback extends DiffUtil.Callback {
+
+        private final List<Goal> mOldGoals;
+
+        private final Urgencies mOldUrgencies;
+
+        private final List<Goal> mNewGoals;
+
+        private final Urgencies mNewUrgencies;
+
+        GoalsDiffCallback(List<Goal> oldGoals, Urgencies oldUrgencies, List<Goal> newGoals,
+                          Urgencies newUrgencies) {
+            mOldGoals = oldGoals;
+            mOldUrgencies = oldUrgencies;
+            mNewGoals = newGoals;
+            mNewUrgencies = newUrgencies;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldGoals.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewGoals.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldGoals.get(oldItemPosition).getGoalId()
+                    .equals(mNewGoals.get(newItemPosition).getGoalId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldUrgencies.colorAt(oldItemPosition) == mNewUrgencies.colorAt(newItemPosition)
+                    && mOldUrgencies.elapsedDaysAt(oldItemPosition)
+                            == mNewUrgencies.elapsedDaysAt(newItemPosition)
+                    && mOldGoals.get(oldItemPosition).hasSameContent(
+                            mNewGoals.get(newItemPosition));
         }
     }
 }
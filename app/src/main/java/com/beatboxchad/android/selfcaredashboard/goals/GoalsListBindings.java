@@ -17,7 +17,7 @@
 package com.beatboxchad.android.selfcaredashboard.goals;
 
 import android.databinding.BindingAdapter;
-import android.widget.ListView;
+import android.support.v7.widget.RecyclerView;
 import android.widget.TextView;
 
 import com.beatboxchad.android.selfcaredashboard.GoalViewModel;
@@ -32,14 +32,25 @@ public class GoalsListBindings {
 
     @SuppressWarnings("unchecked")
     @BindingAdapter("app:items")
-    public static void setItems(ListView listView, List<Goal> items) {
-        GoalsFragment.GoalsAdapter adapter = (GoalsFragment.GoalsAdapter) listView.getAdapter();
+    public static void setItems(RecyclerView recyclerView, List<Goal> items) {
+        GoalsFragment.GoalsAdapter adapter =
+                (GoalsFragment.GoalsAdapter) recyclerView.getAdapter();
         if (adapter != null)
         {
             adapter.replaceData(items);
         }
     }
 
+    @BindingAdapter("app:pagedItems")
+    public static void setPagedItems(RecyclerView recyclerView, GoalsPagedList pagedItems) {
+        GoalsFragment.GoalsAdapter adapter =
+                (GoalsFragment.GoalsAdapter) recyclerView.getAdapter();
+        if (adapter != null)
+        {
+            adapter.replacePagedData(pagedItems);
+        }
+    }
+
     @BindingAdapter("android:backgroundColor")
     public static void customGoalColor(TextView textView, int color) {
         textView.setBackgroundColor(color);
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A window over a large list of goals that is loaded page by page as positions are read.
+ * <p>
+ * Only the pages closest to the last position read are kept, so memory use does not grow with
+ * the number of goals. In id order, pages are fetched with keyset queries whenever the id
+ * preceding the page is known, which is always the case when scrolling, and by offset only after
+ * a jump. In due order they are always fetched by offset, from the due time index.
+ * <p>
+ * All methods must be called on the main thread, where the data source delivers its results.
+ */
+public class GoalsPagedList {
+
+    /**
+     * Notified on the main thread whenever a page has been loaded.
+     */
+    public interface Callback {
+
+        void onPageLoaded(int page);
+    }
+
+    private final GoalsDataSource mDataSource;
+
+    private final GoalsFilterType mFiltering;
+
+    private final GoalsSortType mSorting;
+
+    private final int mSize;
+
+    private final int mPageSize;
+
+    private final int mMaxLoadedPages;
+
+    private final int mPrefetchDistance;
+
+    private final Map<Integer, List<Goal>> mPages = new HashMap<>();
+
+    /**
+     * The id of the last goal before each page, which is the seek key for loading that page.
+     */
+    private final Map<Integer, GoalId> mPageKeys = new HashMap<>();
+
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+
+    private int mLastAccessedPage;
+
+    /**
+     * Bumped by {@link #invalidate()}, so that loads started before it are dropped.
+     */
+    private int mGeneration;
+
+    private boolean mDetached;
+
+    @Nullable
+    private Callback mCallback;
+
+    /**
+     * @param dataSource     where pages are read from
+     * @param filtering      the filter applied to every page
+     * @param size           the number of goals matching {@code filtering}
+     * @param pageSize       the number of goals per page
+     * @param maxLoadedPages the number of pages kept in memory, at least 3 so the pages on both
+     *                       sides of the viewport fit
+     */
+    public GoalsPagedList(@NonNull GoalsDataSource dataSource,
+                          @NonNull GoalsFilterType filtering,
+                          int size, int pageSize, int maxLoadedPages) {
+        this(dataSource, filtering, GoalsSortType.STORED_ORDER, size, pageSize, maxLoadedPages);
+    }
+
+    /**
+     * @param sorting the order of the goals
+     * @see #GoalsPagedList(GoalsDataSource, GoalsFilterType, int, int, int)
+     */
+    public GoalsPagedList(@NonNull GoalsDataSource dataSource,
+                          @NonNull GoalsFilterType filtering,
+                          @NonNull GoalsSortType sorting,
+                          int size, int pageSize, int maxLoadedPages) {
+        checkArgument(size >= 0);
+        checkArgument(pageSize > 0);
+        checkArgument(maxLoadedPages >= 3);
+        mDataSource = checkNotNull(dataSource);
+        mFiltering = checkNotNull(filtering);
+        mSorting = checkNotNull(sorting);
+        mSize = size;
+        mPageSize = pageSize;
+        mMaxLoadedPages = maxLoadedPages;
+        mPrefetchDistance = Math.max(1, pageSize / 4);
+    }
+
+    public void setCallback(@Nullable Callback callback) {
+        mCallback = callback;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public GoalsFilterType getFiltering() {
+        return mFiltering;
+    }
+
+    public GoalsSortType getSorting() {
+        return mSorting;
+    }
+
+    /**
+     * Returns the goal at {@code position}, or null if its page is not loaded yet. Reading a
+     * position loads its page and, close to a page boundary, prefetches the neighbouring page.
+     */
+    @Nullable
+    public Goal get(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+        }
+        int page = position / mPageSize;
+        int indexInPage = position % mPageSize;
+        mLastAccessedPage = page;
+
+        loadPage(page);
+        if (indexInPage >= mPageSize - mPrefetchDistance) {
+            loadPage(page + 1);
+        } else if (indexInPage < mPrefetchDistance && page > 0) {
+            loadPage(page - 1);
+        }
+
+        List<Goal> goals = mPages.get(page);
+        if (goals == null || indexInPage >= goals.size()) {
+            return null;
+        }
+        return goals.get(indexInPage);
+    }
+
+    /**
+     * Stops loading. Results of pages still in flight are dropped.
+     */
+    public void detach() {
+        mDetached = true;
+        mCallback = null;
+        mPages.clear();
+    }
+
+    /**
+     * Loads the pages in memory again, after goals changed without changing their number. The
+     * goals loaded before stay readable until their page arrives, and loads already in flight
+     * are dropped, as they may have read the goals before the change.
+     */
+    public void invalidate() {
+        if (mDetached) {
+            return;
+        }
+        mGeneration++;
+        mLoadingPages.clear();
+        // Goals may have moved between pages, so the seek keys are learnt again.
+        mPageKeys.clear();
+        for (int page : new ArrayList<>(mPages.keySet())) {
+            mLoadingPages.add(page);
+            fetchPage(page);
+        }
+    }
+
+    boolean isPageLoaded(int page) {
+        return mPages.containsKey(page);
+    }
+
+    int getLoadedPageCount() {
+        return mPages.size();
+    }
+
+    private void loadPage(int page) {
+        if (mDetached || page * mPageSize >= mSize
+                || mPages.containsKey(page) || !mLoadingPages.add(page)) {
+            return;
+        }
+        fetchPage(page);
+    }
+
+    private void fetchPage(final int page) {
+        final int generation = mGeneration;
+        GoalsDataSource.LoadGoalsCallback callback = new GoalsDataSource.LoadGoalsCallback() {
+            @Override
+            public void onGoalsLoaded(List<Goal> goals) {
+                if (generation == mGeneration) {
+                    onPageLoaded(page, goals);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                if (generation == mGeneration) {
+                    // Let the next read of this page try again.
+                    mLoadingPages.remove(page);
+                }
+            }
+        };
+        if (mSorting == GoalsSortType.MOST_OVERDUE_FIRST) {
+            mDataSource.getGoalsInDueOrderAt(mFiltering, page * mPageSize, mPageSize, callback);
+        } else if (page == 0) {
+            mDataSource.getGoalsPage(mFiltering, null, mPageSize, callback);
+        } else if (mPageKeys.containsKey(page)) {
+            mDataSource.getGoalsPage(mFiltering, mPageKeys.get(page), mPageSize, callback);
+        } else {
+            mDataSource.getGoalsPageAt(mFiltering, page * mPageSize, mPageSize, callback);
+        }
+    }
+
+    private void onPageLoaded(int page, List<Goal> goals) {
+        mLoadingPages.remove(page);
+        if (mDetached) {
+            return;
+        }
+        mPages.put(page, goals);
+        if (!goals.isEmpty()) {
+            // Seek keys are a single id per page, so they are kept even for dropped pages.
+            mPageKeys.put(page + 1, goals.get(goals.size() - 1).getGoalId());
+        }
+        dropFarPages();
+        if (mCallback != null) {
+            mCallback.onPageLoaded(page);
+        }
+    }
+
+    private void dropFarPages() {
+        while (mPages.size() > mMaxLoadedPages) {
+            int farthest = mLastAccessedPage;
+            for (int page : mPages.keySet()) {
+                if (Math.abs(page - mLastAccessedPage) > Math.abs(farthest - mLastAccessedPage)) {
+                    farthest = page;
+                }
+            }
+            if (farthest == mLastAccessedPage) {
+                return;
+            }
+            mPages.remove(farthest);
+        }
+    }
+}
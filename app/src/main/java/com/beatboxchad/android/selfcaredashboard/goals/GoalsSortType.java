@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+
+/**
+ * Used with the sort menu item in the goals list.
+ */
+public enum GoalsSortType {
+    /**
+     * Keeps the order the goals are stored in.
+     */
+    STORED_ORDER,
+
+    /**
+     * Shows the goals that have been due for the longest first, see {@link Goal#DUE_ORDER}.
+     */
+    MOST_OVERDUE_FIRST
+}
@@ -24,6 +24,10 @@ import android.databinding.ObservableBoolean;
 import android.databinding.ObservableField;
 import android.databinding.ObservableList;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import com.beatboxchad.android.selfcaredashboard.BR;
 import com.beatboxchad.android.selfcaredashboard.R;
@@ -31,10 +35,15 @@ import com.beatboxchad.android.selfcaredashboard.addeditgoal.AddEditGoalActivity
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsRepository;
+import com.beatboxchad.android.selfcaredashboard.data.source.LoadGoalsFuture;
+import com.beatboxchad.android.selfcaredashboard.data.source.RefreshPolicy;
 import com.beatboxchad.android.selfcaredashboard.goaldetail.GoalDetailActivity;
 import com.beatboxchad.android.selfcaredashboard.util.EspressoIdlingResource;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -46,9 +55,33 @@ import java.util.List;
  */
 public class GoalsViewModel extends BaseObservable {
 
+    /**
+     * Above this many goals the list is loaded page by page instead of all at once.
+     */
+    @VisibleForTesting
+    static final int PAGED_LIST_THRESHOLD = 500;
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int MAX_LOADED_PAGES = 5;
+
+    /**
+     * How long typing has to pause before a search runs, so that a burst of keystrokes costs a
+     * single query.
+     */
+    @VisibleForTesting
+    static final long SEARCH_DEBOUNCE_MILLIS = 150;
+
+    private static final int SEARCH_LIMIT = 200;
+
     // These observable fields will update Views automatically
     public final ObservableList<Goal> items = new ObservableArrayList<>();
 
+    /**
+     * Set instead of {@link #items} when there are too many goals to hold in memory at once.
+     */
+    public final ObservableField<GoalsPagedList> pagedItems = new ObservableField<>();
+
     public final ObservableBoolean dataLoading = new ObservableBoolean(false);
 
     public final ObservableField<String> currentFilteringLabel = new ObservableField<>();
@@ -63,6 +96,11 @@ public class GoalsViewModel extends BaseObservable {
 
     private GoalsFilterType mCurrentFiltering = GoalsFilterType.ALL_GOALS;
 
+    private GoalsSortType mCurrentSorting = GoalsSortType.STORED_ORDER;
+
+    // Holds the goals in due order while they are shown most overdue first.
+    private final DueIndex mDueIndex = new DueIndex();
+
     private final GoalsRepository mGoalsRepository;
 
     private final ObservableBoolean mIsDataLoadingError = new ObservableBoolean(false);
@@ -71,11 +109,49 @@ public class GoalsViewModel extends BaseObservable {
 
     private GoalsNavigator mNavigator;
 
+    // Keeps the shown goals up to date between loads.
+    @Nullable
+    private GoalsDataSource.Subscription mGoalsSubscription;
+
+    // The load of all goals in flight, cancelled when another load or the end of the screen
+    // makes it pointless.
+    @Nullable
+    private ListenableFuture<List<Goal>> mGoalsLoad;
+
+    // Bumped by every load and search, so that counts answered for older loads are dropped.
+    private int mLoadGeneration;
+
+    // The search typed so far, or empty when the goals are not being searched.
+    private String mSearchQuery = "";
+
+    // The search in flight, cancelled as soon as it is typed over, so that the local data source
+    // skips it if it has not run yet and its results are dropped if it has.
+    @Nullable
+    private LoadGoalsFuture mSearch;
+
+    // Created by the first search, so that view models that never search need no looper.
+    @Nullable
+    private Handler mSearchHandler;
+
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            searchGoals();
+        }
+    };
+
     public GoalsViewModel(
             GoalsRepository repository,
             Context context) {
+        this(repository, context, null);
+    }
+
+    @VisibleForTesting
+    GoalsViewModel(GoalsRepository repository, Context context,
+            @Nullable Handler searchHandler) {
         mContext = context.getApplicationContext(); // Force use of Application Context.
         mGoalsRepository = repository;
+        mSearchHandler = searchHandler;
 
         // Set initial state
         setFiltering(GoalsFilterType.ALL_GOALS);
@@ -88,21 +164,71 @@ public class GoalsViewModel extends BaseObservable {
     void onActivityDestroyed() {
         // Clear references to avoid potential memory leaks.
         mNavigator = null;
+        unsubscribeFromGoals();
+        cancelGoalsLoad();
+        cancelSearch();
+        if (mSearchHandler != null) {
+            mSearchHandler.removeCallbacks(mSearchRunnable);
+        }
     }
 
+    /**
+     * Loads the goals unless they are already being observed, in which case they are current.
+     */
     public void start() {
-        loadGoals(false);
+        if (isSearching()) {
+            searchGoals();
+        } else if (mGoalsSubscription == null) {
+            loadGoals(false);
+        }
     }
 
     @Bindable
     public boolean isEmpty() {
-        return items.isEmpty();
+        return items.isEmpty() && pagedItems.get() == null;
     }
 
     public void loadGoals(boolean forceUpdate) {
+        if (isSearching()) {
+            if (forceUpdate) {
+                mGoalsRepository.refreshGoals();
+            }
+            searchGoals();
+            return;
+        }
         loadGoals(forceUpdate, true);
     }
 
+    /**
+     * Shows the goals whose titles have a word starting with each word of {@code query}, or all
+     * goals again once it is empty. The search runs once typing pauses for
+     * {@link #SEARCH_DEBOUNCE_MILLIS}, and a search that was typed over is cancelled. Must be
+     * called on the main thread.
+     */
+    public void setSearchQuery(@Nullable String query) {
+        String searchQuery = query == null ? "" : query.trim();
+        if (searchQuery.equals(mSearchQuery)) {
+            return;
+        }
+        boolean wasSearching = isSearching();
+        mSearchQuery = searchQuery;
+        cancelSearch();
+        if (mSearchHandler == null) {
+            mSearchHandler = new Handler(Looper.getMainLooper());
+        }
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        if (isSearching()) {
+            mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
+        } else if (wasSearching) {
+            // Back to the whole list, observed again.
+            loadGoals(false, false);
+        }
+    }
+
+    public boolean isSearching() {
+        return !mSearchQuery.isEmpty();
+    }
+
     /**
      * Sets the current goal filtering type.
      *
@@ -139,10 +265,24 @@ public class GoalsViewModel extends BaseObservable {
         }
     }
 
+    /**
+     * Sets the order of the goals. Takes effect on the next load.
+     */
+    public void setSorting(GoalsSortType sorting) {
+        mCurrentSorting = sorting;
+        mDueIndex.clear();
+    }
+
+    public GoalsSortType getSorting() {
+        return mCurrentSorting;
+    }
+
     public void clearArchivedGoals() {
         mGoalsRepository.clearArchivedGoals();
         snackbarText.set(mContext.getString(R.string.archived_goals_cleared));
-        loadGoals(false, false);
+        if (mGoalsSubscription == null) {
+            loadGoals(false, false);
+        }
     }
 
     public String getSnackbarText() {
@@ -177,11 +317,53 @@ public class GoalsViewModel extends BaseObservable {
         }
     }
 
+    private void searchGoals() {
+        // The observed goals would replace the results as soon as any goal changed, and so would
+        // a load still in flight once it ended.
+        unsubscribeFromGoals();
+        cancelGoalsLoad();
+        ++mLoadGeneration;
+        cancelSearch();
+        EspressoIdlingResource.increment(); // App is busy until further notice
+
+        final LoadGoalsFuture search = new LoadGoalsFuture();
+        mSearch = search;
+        Futures.addCallback(search, new FutureCallback<List<Goal>>() {
+            @Override
+            public void onSuccess(List<Goal> goals) {
+                setIdleIfBusy();
+                mIsDataLoadingError.set(false);
+                setPagedItems(null);
+                showGoals(goals);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                setIdleIfBusy();
+                if (!search.isCancelled()) {
+                    mIsDataLoadingError.set(true);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        mGoalsRepository.searchGoals(mCurrentFiltering, mSearchQuery, SEARCH_LIMIT, search);
+    }
+
+    private void cancelSearch() {
+        if (mSearch != null) {
+            mSearch.cancel(false);
+            mSearch = null;
+        }
+    }
+
     /**
      * @param forceUpdate   Pass in true to refresh the data in the {@link GoalsDataSource}
      * @param showLoadingUI Pass in true to display a loading icon in the UI
      */
     private void loadGoals(boolean forceUpdate, final boolean showLoadingUI) {
+        if (forceUpdate && !items.isEmpty()) {
+            revalidateGoals(showLoadingUI);
+            return;
+        }
         if (showLoadingUI) {
             dataLoading.set(true);
         }
@@ -189,59 +371,246 @@ public class GoalsViewModel extends BaseObservable {
 
             mGoalsRepository.refreshGoals();
         }
+        // The filter may have changed, so stop observing the old one until this load is done,
+        // and drop any load still running for it.
+        unsubscribeFromGoals();
+        cancelGoalsLoad();
+        final int generation = ++mLoadGeneration;
 
         // The network request might be handled in a different thread so make sure Espresso knows
         // that the app is busy until the response is handled.
         EspressoIdlingResource.increment(); // App is busy until further notice
 
-        mGoalsRepository.getGoals(new GoalsDataSource.LoadGoalsCallback() {
+        final GoalsFilterType filtering = mCurrentFiltering;
+        mGoalsRepository.getGoalsCount(filtering, new GoalsDataSource.GetGoalsCountCallback() {
+            @Override
+            public void onGoalsCounted(int count) {
+                if (generation != mLoadGeneration) {
+                    setIdleIfBusy();
+                    return;
+                }
+                if (count > PAGED_LIST_THRESHOLD) {
+                    showPagedGoals(filtering, count, showLoadingUI);
+                } else {
+                    loadAllGoals(filtering, showLoadingUI);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                if (generation != mLoadGeneration) {
+                    setIdleIfBusy();
+                    return;
+                }
+                loadAllGoals(filtering, showLoadingUI);
+            }
+        });
+    }
+
+    /**
+     * Refreshes the goals on screen from the remote data source without blanking them: the
+     * current goals stay visible, with the loading indicator, until the remote data source
+     * answers, and are only replaced if something changed.
+     */
+    private void revalidateGoals(final boolean showLoadingUI) {
+        if (showLoadingUI) {
+            dataLoading.set(true);
+        }
+        EspressoIdlingResource.increment(); // App is busy until further notice
+
+        // A search started meanwhile owns the list.
+        final int generation = mLoadGeneration;
+        mGoalsRepository.getGoals(mCurrentFiltering, RefreshPolicy.STALE_WHILE_REVALIDATE,
+                new GoalsDataSource.RevalidatingLoadGoalsCallback() {
+            @Override
+            public void onStaleGoalsLoaded(List<Goal> goals, long ageMillis) {
+                if (generation == mLoadGeneration) {
+                    showGoalsIfChanged(goals);
+                }
+            }
+
             @Override
             public void onGoalsLoaded(List<Goal> goals) {
-                List<Goal> goalsToShow = new ArrayList<Goal>();
+                if (generation == mLoadGeneration) {
+                    showGoalsIfChanged(goals);
+                }
+            }
 
-                // This callback may be called twice, once for the cache and once for loading
-                // the data from the server API, so we check before decrementing, otherwise
-                // it throws "Counter has been corrupted!" exception.
-                if (!EspressoIdlingResource.getIdlingResource().isIdleNow()) {
-                    EspressoIdlingResource.decrement(); // Set app as idle.
+            @Override
+            public void onRevalidationFinished(boolean changed) {
+                setIdleIfBusy();
+                if (showLoadingUI) {
+                    dataLoading.set(false);
                 }
+                mIsDataLoadingError.set(false);
+            }
 
-                // We filter the goals based on the requestType
-                for (Goal goal : goals) {
-                    switch (mCurrentFiltering) {
-                        case ALL_GOALS:
-                            goalsToShow.add(goal);
-                            break;
-                        case ACTIVE_GOALS:
-                            if (goal.isActive()) {
-                                goalsToShow.add(goal);
-                            }
-                            break;
-                        case ARCHIVED_GOALS:
-                            if (goal.isArchived()) {
-                                goalsToShow.add(goal);
-                            }
-                            break;
-                        default:
-                            goalsToShow.add(goal);
-                            break;
-                    }
+            @Override
+            public void onDataNotAvailable() {
+                setIdleIfBusy();
+                if (showLoadingUI) {
+                    dataLoading.set(false);
                 }
+                mIsDataLoadingError.set(true);
+            }
+        });
+    }
+
+    private void loadAllGoals(final GoalsFilterType filtering, final boolean showLoadingUI) {
+        final ListenableFuture<List<Goal>> load = mGoalsRepository.loadGoals(filtering);
+        mGoalsLoad = load;
+        Futures.addCallback(load, new FutureCallback<List<Goal>>() {
+            @Override
+            public void onSuccess(List<Goal> goals) {
+                setIdleIfBusy();
+
+                // The repository already filtered the goals based on the requestType
                 if (showLoadingUI) {
                     dataLoading.set(false);
                 }
                 mIsDataLoadingError.set(false);
 
-                items.clear();
-                items.addAll(goalsToShow);
-                notifyPropertyChanged(BR.empty); // It's a @Bindable so update manually
+                setPagedItems(null);
+                showGoals(goals);
+                if (mGoalsSubscription == null) {
+                    observeGoals(filtering);
+                }
             }
 
             @Override
-            public void onDataNotAvailable() {
+            public void onFailure(Throwable t) {
+                if (load.isCancelled()) {
+                    // A newer load took over, or the screen is gone.
+                    setIdleIfBusy();
+                    return;
+                }
                 mIsDataLoadingError.set(true);
             }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void cancelGoalsLoad() {
+        if (mGoalsLoad != null) {
+            mGoalsLoad.cancel(false);
+            mGoalsLoad = null;
+        }
+    }
+
+    /**
+     * Loads overlap, and not every one of them ends with a result, so this checks before
+     * decrementing, otherwise it throws "Counter has been corrupted!" exception.
+     */
+    private static void setIdleIfBusy() {
+        if (!EspressoIdlingResource.getIdlingResource().isIdleNow()) {
+            EspressoIdlingResource.decrement(); // Set app as idle.
+        }
+    }
+
+    private void observeGoals(GoalsFilterType filtering) {
+        mGoalsSubscription = mGoalsRepository.observeGoals(filtering,
+                new GoalsDataSource.LoadGoalsCallback() {
+            @Override
+            public void onGoalsLoaded(List<Goal> goals) {
+                showGoalsIfChanged(goals);
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                // Keep showing what was loaded last.
+            }
         });
     }
 
+    private void showGoals(List<Goal> goals) {
+        setItems(inDisplayOrder(goals));
+    }
+
+    private void showGoalsIfChanged(List<Goal> goals) {
+        List<Goal> orderedGoals = inDisplayOrder(goals);
+        if (!Goal.haveSameContent(items, orderedGoals)) {
+            setItems(orderedGoals);
+        }
+    }
+
+    /**
+     * Orders {@code goals}, which come in stored order, as the current sorting asks. The due
+     * index only moves the goals that changed since the last list, which is usually one.
+     */
+    private List<Goal> inDisplayOrder(List<Goal> goals) {
+        if (mCurrentSorting != GoalsSortType.MOST_OVERDUE_FIRST) {
+            return goals;
+        }
+        mDueIndex.replaceAll(goals);
+        return mDueIndex.goals();
+    }
+
+    private void setItems(List<Goal> goals) {
+        items.clear();
+        items.addAll(goals);
+        notifyPropertyChanged(BR.empty); // It's a @Bindable so update manually
+    }
+
+    private void showPagedGoals(GoalsFilterType filtering, int count, boolean showLoadingUI) {
+        setIdleIfBusy();
+        if (showLoadingUI) {
+            dataLoading.set(false);
+        }
+        mIsDataLoadingError.set(false);
+
+        items.clear();
+        mDueIndex.clear();
+        setPagedItems(new GoalsPagedList(mGoalsRepository, filtering, mCurrentSorting, count,
+                PAGE_SIZE, MAX_LOADED_PAGES));
+        notifyPropertyChanged(BR.empty); // It's a @Bindable so update manually
+        if (mGoalsSubscription == null) {
+            observeGoalsCount(filtering);
+        }
+    }
+
+    /**
+     * Observing every row of a paged list would load them all, so only the count is observed. The
+     * window is rebuilt when the count changes, and otherwise its loaded pages are read again, so
+     * that edited rows show their changes and, in due order, move to their new position.
+     */
+    private void observeGoalsCount(final GoalsFilterType filtering) {
+        mGoalsSubscription = mGoalsRepository.observeGoalsCount(filtering,
+                new GoalsDataSource.GetGoalsCountCallback() {
+            @Override
+            public void onGoalsCounted(int count) {
+                GoalsPagedList pagedList = pagedItems.get();
+                if (pagedList != null && pagedList.size() == count) {
+                    pagedList.invalidate();
+                    return;
+                }
+                if (count > PAGED_LIST_THRESHOLD) {
+                    setPagedItems(new GoalsPagedList(mGoalsRepository, filtering,
+                            mCurrentSorting, count, PAGE_SIZE, MAX_LOADED_PAGES));
+                } else {
+                    // Few enough goals to hold them all again.
+                    loadGoals(false, false);
+                }
+            }
+
+            @Override
+            public void onDataNotAvailable() {
+                // Keep showing what was loaded last.
+            }
+        });
+    }
+
+    private void unsubscribeFromGoals() {
+        if (mGoalsSubscription != null) {
+            mGoalsSubscription.unsubscribe();
+            mGoalsSubscription = null;
+        }
+    }
+
+    private void setPagedItems(@Nullable GoalsPagedList pagedList) {
+        GoalsPagedList previous = pagedItems.get();
+        if (previous != null) {
+            previous.detach();
+        }
+        pagedItems.set(pagedList);
+    }
+
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.util.Clock;
+
+import java.util.List;
+
+/**
+ * Works out how urgent goals are, and the color that shows it.
+ * <p>
+ * A goal's urgency is the fraction of its interval that has passed since it was last touched,
+ * counted in whole days and capped at 1. Goals with a positive polarity go from green to red as
+ * their interval runs out, and goals with a negative polarity from red to green.
+ * <p>
+ * Lists are computed in one pass for a single clock reading into an {@link Urgencies}, so that
+ * binding a row only reads a precomputed color.
+ */
+public final class UrgencyEngine {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    /**
+     * The hue of a goal that needs no attention. Urgent goals are at hue 0, red.
+     */
+    private static final float CALM_HUE = 120;
+
+    private final Clock mClock;
+
+    public UrgencyEngine(@NonNull Clock clock) {
+        mClock = checkNotNull(clock);
+    }
+
+    public long now() {
+        return mClock.currentTimeMillis();
+    }
+
+    /**
+     * Computes the urgency of every goal in {@code goals} at the current time.
+     */
+    @NonNull
+    public Urgencies compute(@NonNull List<Goal> goals) {
+        long now = now();
+        int size = goals.size();
+        int[] elapsedDays = new int[size];
+        float[] fractions = new float[size];
+        int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            Goal goal = goals.get(i);
+            elapsedDays[i] = elapsedDays(goal, now);
+            fractions[i] = elapsedFraction(goal, now);
+            colors[i] = hueToColor(hue(goal.getPolarity(), fractions[i]));
+        }
+        return new Urgencies(now, elapsedDays, fractions, colors);
+    }
+
+    /**
+     * Computes the color of a single goal at {@code now}, for goals that are not part of a
+     * computed list.
+     */
+    @ColorInt
+    public static int colorAt(@NonNull Goal goal, long now) {
+        return hueToColor(hue(goal.getPolarity(), elapsedFraction(goal, now)));
+    }
+
+    /**
+     * Recomputes the goals of {@code goals} at {@code positions}, whose urgency changed since
+     * {@code urgencies} was computed for the same list. The other goals keep theirs.
+     */
+    @NonNull
+    public Urgencies update(@NonNull Urgencies urgencies, @NonNull List<Goal> goals,
+                            @NonNull List<Integer> positions) {
+        checkArgument(urgencies.size() == goals.size());
+        long now = now();
+        int[] elapsedDays = urgencies.mElapsedDays.clone();
+        float[] fractions = urgencies.mFractions.clone();
+        int[] colors = urgencies.mColors.clone();
+        for (int position : positions) {
+            Goal goal = goals.get(position);
+            elapsedDays[position] = elapsedDays(goal, now);
+            fractions[position] = elapsedFraction(goal, now);
+            colors[position] = hueToColor(hue(goal.getPolarity(), fractions[position]));
+        }
+        return new Urgencies(now, elapsedDays, fractions, colors);
+    }
+
+    /**
+     * Returns the next time after {@code now} at which the urgency of {@code goal} changes. Both
+     * its color and its due date move on with every whole day since it was touched.
+     */
+    public static long nextChangeAt(@NonNull Goal goal, long now) {
+        return goal.getTouched() + (elapsedDays(goal, now) + 1) * DAY_MILLIS;
+    }
+
+    private static int elapsedDays(Goal goal, long now) {
+        return (int) (Math.max(0, now - goal.getTouched()) / DAY_MILLIS);
+    }
+
+    @VisibleForTesting
+    static float elapsedFraction(Goal goal, long now) {
+        if (goal.getInterval() <= 0) {
+            return 1;
+        }
+        return Math.min(1, (float) elapsedDays(goal, now) / goal.getInterval());
+    }
+
+    @VisibleForTesting
+    static float hue(boolean polarity, float fraction) {
+        return polarity ? CALM_HUE * (1 - fraction) : CALM_HUE * fraction;
+    }
+
+    /**
+     * Converts a hue in [0, 360) at full saturation and value to an opaque ARGB color, like
+     * {@link android.graphics.Color#HSVToColor(float[])} but without a native call or an array.
+     */
+    @VisibleForTesting
+    @ColorInt
+    static int hueToColor(float hue) {
+        return 0xFF000000 | channel(5, hue) << 16 | channel(3, hue) << 8 | channel(1, hue);
+    }
+
+    private static int channel(int n, float hue) {
+        float k = (n + hue / 60) % 6;
+        return Math.round(255 * (1 - Math.max(0, Math.min(Math.min(k, 4 - k), 1))));
+    }
+
+    /**
+     * The urgency of each goal of a list, by position, at one point in time.
+     */
+    public static final class Urgencies {
+
+        static final Urgencies EMPTY = new Urgencies(0, new int[0], new float[0], new int[0]);
+
+        private final long mTime;
+
+        private final int[] mElapsedDays;
+
+        private final float[] mFractions;
+
+        private final int[] mColors;
+
+        private Urgencies(long time, int[] elapsedDays, float[] fractions, int[] colors) {
+            mTime = time;
+            mElapsedDays = elapsedDays;
+            mFractions = fractions;
+            mColors = colors;
+        }
+
+        /**
+         * Returns the time the urgencies were computed for.
+         */
+        public long getTime() {
+            return mTime;
+        }
+
+        public int size() {
+            return mColors.length;
+        }
+
+        /**
+         * Returns the whole days since the goal at {@code position} was touched, which is what
+         * its due date text is worked out from.
+         */
+        public int elapsedDaysAt(int position) {
+            return mElapsedDays[position];
+        }
+
+        public float fractionAt(int position) {
+            return mFractions[position];
+        }
+
+        @ColorInt
+        public int colorAt(int position) {
+            return mColors[position];
+        }
+    }
+}
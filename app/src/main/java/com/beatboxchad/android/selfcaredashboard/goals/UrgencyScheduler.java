@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import android.support.annotation.NonNull;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Knows when the urgency of each goal of a list changes next, so that the list can wake up
+ * exactly then and refresh only those rows.
+ * <p>
+ * Goals are kept in a min-heap keyed by {@link UrgencyEngine#nextChangeAt(Goal, long)}: the next
+ * wake-up is read in O(1), and each goal that changes is rescheduled in O(log n). Nothing runs
+ * between changes, which for goals counted in days is most of the time.
+ * <p>
+ * Not thread safe. It is only used on the main thread.
+ */
+final class UrgencyScheduler {
+
+    private List<Goal> mGoals = Collections.emptyList();
+
+    private PriorityQueue<Change> mChanges = new PriorityQueue<>();
+
+    /**
+     * Schedules the goals of {@code goals}, whose urgencies were computed at {@code now}.
+     * Whatever was scheduled before is dropped.
+     */
+    void reset(@NonNull List<Goal> goals, long now) {
+        mGoals = goals;
+        List<Change> changes = new ArrayList<>(goals.size());
+        for (int i = 0, size = goals.size(); i < size; i++) {
+            changes.add(new Change(i, UrgencyEngine.nextChangeAt(goals.get(i), now)));
+        }
+        // Built from a collection, the heap is made in O(n) rather than by n insertions.
+        mChanges = new PriorityQueue<>(changes);
+    }
+
+    /**
+     * Returns the time of the next change, or {@link Long#MAX_VALUE} if nothing is scheduled.
+     */
+    long nextChangeAt() {
+        Change next = mChanges.peek();
+        return next == null ? Long.MAX_VALUE : next.mTime;
+    }
+
+    /**
+     * Takes the goals whose urgency changed by {@code now} and schedules their next change.
+     *
+     * @return their positions in the list passed to {@link #reset(List, long)}.
+     */
+    @NonNull
+    List<Integer> pollChanged(long now) {
+        List<Integer> positions = new ArrayList<>();
+        while (!mChanges.isEmpty() && mChanges.peek().mTime <= now) {
+            Change change = mChanges.poll();
+            positions.add(change.mPosition);
+            change.mTime = UrgencyEngine.nextChangeAt(mGoals.get(change.mPosition), now);
+            mChanges.add(change);
+        }
+        return positions;
+    }
+
+    private static final class Change implements Comparable<Change> {
+
+        private final int mPosition;
+
+        private long mTime;
+
+        Change(int position, long time) {
+            mPosition = position;
+            mTime = time;
+        }
+
+        @Override
+        public int compareTo(@NonNull Change other) {
+            return mTime < other.mTime ? -1 : (mTime == other.mTime ? 0 : 1);
+        }
+    }
+}
@@ -16,11 +16,17 @@
 
 package com.beatboxchad.android.selfcaredashboard.util;
 
-import android.os.Handler;
-import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.VisibleForTesting;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -29,27 +35,50 @@ import java.util.concurrent.Executors;
  * <p>
  * Grouping goals like this avoids the effects of goal starvation (e.g. disk reads don't wait behind
  * webservice requests).
+ * <p>
+ * Main thread tasks run in batches, one per frame, so that a burst of results is bound at once.
+ * <p>
+ * Each executor is instrumented, so that a backlog, such as disk reads queued behind a slow
+ * write, shows up in {@link #getMetrics()}.
  */
 public class AppExecutors {
 
     private static final int THREAD_COUNT = 3;
 
+    private static AppExecutors INSTANCE;
+
     private final Executor diskIO;
 
     private final Executor networkIO;
 
     private final Executor mainThread;
 
+    private final Executor computation;
+
     @VisibleForTesting
-    AppExecutors(Executor diskIO, Executor networkIO, Executor mainThread) {
+    AppExecutors(Executor diskIO, Executor networkIO, Executor mainThread,
+                 Executor computation) {
         this.diskIO = diskIO;
         this.networkIO = networkIO;
         this.mainThread = mainThread;
+        this.computation = computation;
     }
 
     public AppExecutors() {
-        this(new DiskIOThreadExecutor(), Executors.newFixedThreadPool(THREAD_COUNT),
-                new MainThreadExecutor());
+        this(new InstrumentedExecutor("diskIO", new DiskIOThreadExecutor()),
+                new InstrumentedExecutor("networkIO", Executors.newFixedThreadPool(THREAD_COUNT)),
+                new InstrumentedExecutor("mainThread", new FrameBatchingExecutor()),
+                new InstrumentedExecutor("computation", Executors.newSingleThreadExecutor()));
+    }
+
+    /**
+     * Returns the executors shared by the whole app, so that their metrics cover all of it.
+     */
+    public static synchronized AppExecutors getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new AppExecutors();
+        }
+        return INSTANCE;
     }
 
     public Executor diskIO() {
@@ -64,12 +93,49 @@ public class AppExecutors {
         return mainThread;
     }
 
-    private static class MainThreadExecutor implements Executor {
-        private Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Returns the executor for work that only keeps the CPU busy, such as diffing lists, so that
+     * it neither blocks the main thread nor waits behind disk or network work. It has a single
+     * thread: its work is only ever superseded by newer work of the same kind.
+     */
+    public Executor computation() {
+        return computation;
+    }
 
-        @Override
-        public void execute(@NonNull Runnable command) {
-            mainThreadHandler.post(command);
+    /**
+     * Returns the metrics of the instrumented executors, which are all of them unless they were
+     * passed in for testing.
+     */
+    public List<ExecutorMetrics> getMetrics() {
+        List<ExecutorMetrics> metrics = new ArrayList<>(4);
+        for (Executor executor : new Executor[] {diskIO, networkIO, mainThread, computation}) {
+            if (executor instanceof InstrumentedExecutor) {
+                metrics.add(((InstrumentedExecutor) executor).getMetrics());
+            }
+        }
+        return metrics;
+    }
+
+    public void dumpMetrics(@NonNull String prefix, @NonNull PrintWriter writer) {
+        for (ExecutorMetrics metrics : getMetrics()) {
+            metrics.dump(prefix, writer);
+        }
+    }
+
+    /**
+     * Writes the metrics to {@code file}, replacing it. This writes to disk, so it should not be
+     * called on the main thread.
+     */
+    public void dumpMetrics(@NonNull File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), Charset.forName("UTF-8")));
+        try {
+            dumpMetrics("", writer);
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()) {
+            throw new IOException("Could not write " + file);
         }
     }
 }
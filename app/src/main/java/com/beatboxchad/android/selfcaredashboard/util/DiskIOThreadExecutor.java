@@ -1,23 +1,231 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
 package com.beatboxchad.android.selfcaredashboard.util;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 
+import com.google.common.base.Ticker;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Executor that runs a goal on a new background thread.
+ * Executor that runs disk work on a single background thread, the most urgent first.
+ * <p>
+ * Each task has a {@link Priority}, given with {@link #prioritize(Priority, Runnable)}. The
+ * thread runs the most urgent task it may, so a read for the screen does not wait behind a bulk
+ * sync. Tasks gain urgency as they wait, one class per {@link #AGING_STEP_MILLIS}, so that none
+ * starves.
+ * <p>
+ * Reordering never changes what callers observe of their own work:
+ * <ul>
+ * <li>interactive and background writes run in the order they were submitted;</li>
+ * <li>reads never run ahead of an interactive write submitted before them, so a read sees every
+ * change the user made before it. They may run ahead of background writes, which only mirror data
+ * the repository already holds, and see the state before them. A read that must see a sync is
+ * submitted once the sync has run;</li>
+ * <li>tasks of the same class run in the order they were submitted.</li>
+ * </ul>
  */
 public class DiskIOThreadExecutor implements Executor {
 
-    private final Executor mDiskIO;
+    /**
+     * The classes of disk work, the most urgent first.
+     */
+    public enum Priority {
+        /** Reads the user is waiting for. */
+        INTERACTIVE_READ,
+        /** Writes of changes the user made. The priority of tasks that do not give one. */
+        INTERACTIVE_WRITE,
+        /** Writes that bring local data in line with data fetched elsewhere. */
+        BACKGROUND_WRITE,
+        /** Work nobody waits for, such as compaction. */
+        MAINTENANCE
+    }
+
+    /**
+     * Implemented by tasks that carry a priority, including wrappers of such tasks.
+     */
+    public interface Prioritized {
+
+        @NonNull
+        Priority getPriority();
+    }
+
+    /**
+     * How long a task waits to become as urgent as the class above its own.
+     */
+    static final long AGING_STEP_MILLIS = 250;
+
+    private static final long AGING_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(AGING_STEP_MILLIS);
+
+    private final Executor mThread;
+
+    private final Ticker mTicker;
+
+    // Guarded by itself, as is the sequence below.
+    private final Map<Priority, ArrayDeque<Task>> mQueues = new EnumMap<>(Priority.class);
+
+    private long mNextSequence;
+
+    /**
+     * Submitted to the thread once per task, so it runs exactly as many tasks as were queued, but
+     * picks which one only when it gets to run.
+     */
+    private final Runnable mRunNext = new Runnable() {
+        @Override
+        public void run() {
+            Task task;
+            synchronized (mQueues) {
+                task = next();
+            }
+            task.mCommand.run();
+        }
+    };
 
     public DiskIOThreadExecutor() {
-        mDiskIO = Executors.newSingleThreadExecutor();
+        this(Executors.newSingleThreadExecutor(), Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DiskIOThreadExecutor(@NonNull Executor thread, @NonNull Ticker ticker) {
+        mThread = checkNotNull(thread);
+        mTicker = checkNotNull(ticker);
+        for (Priority priority : Priority.values()) {
+            mQueues.put(priority, new ArrayDeque<Task>());
+        }
+    }
+
+    /**
+     * Gives {@code task} a priority on a {@link DiskIOThreadExecutor}. Other executors just run
+     * it.
+     */
+    @NonNull
+    public static Runnable prioritize(@NonNull Priority priority, @NonNull Runnable task) {
+        return new PrioritizedTask(checkNotNull(priority), checkNotNull(task));
+    }
+
+    /**
+     * Returns the priority of {@code task}, {@link Priority#INTERACTIVE_WRITE} if it has none.
+     */
+    @NonNull
+    public static Priority priorityOf(@NonNull Runnable task) {
+        return task instanceof Prioritized
+                ? ((Prioritized) task).getPriority()
+                : Priority.INTERACTIVE_WRITE;
     }
 
     @Override
     public void execute(@NonNull Runnable command) {
-        mDiskIO.execute(command);
+        checkNotNull(command);
+        Priority priority = priorityOf(command);
+        synchronized (mQueues) {
+            mQueues.get(priority).add(
+                    new Task(command, priority, mNextSequence++, mTicker.read()));
+        }
+        mThread.execute(mRunNext);
+    }
+
+    /**
+     * Removes and returns the task to run now. The oldest task queued may always run, so there
+     * is one whenever the queues are not empty.
+     */
+    private Task next() {
+        long now = mTicker.read();
+        Task best = null;
+        long bestRank = 0;
+        for (ArrayDeque<Task> queue : mQueues.values()) {
+            Task head = queue.peek();
+            if (head == null || !mayRun(head)) {
+                continue;
+            }
+            long rank = head.mPriority.ordinal() - (now - head.mQueuedAt) / AGING_STEP_NANOS;
+            if (best == null || rank < bestRank
+                    || (rank == bestRank && head.mSequence < best.mSequence)) {
+                best = head;
+                bestRank = rank;
+            }
+        }
+        mQueues.get(best.mPriority).poll();
+        return best;
+    }
+
+    private boolean mayRun(Task task) {
+        switch (task.mPriority) {
+            case INTERACTIVE_READ:
+            case BACKGROUND_WRITE:
+                return !hasQueuedBefore(Priority.INTERACTIVE_WRITE, task);
+            case INTERACTIVE_WRITE:
+                return !hasQueuedBefore(Priority.BACKGROUND_WRITE, task);
+            default:
+                return true;
+        }
+    }
+
+    private boolean hasQueuedBefore(Priority priority, Task task) {
+        Task head = mQueues.get(priority).peek();
+        return head != null && head.mSequence < task.mSequence;
+    }
+
+    private static final class Task {
+
+        private final Runnable mCommand;
+
+        private final Priority mPriority;
+
+        private final long mSequence;
+
+        private final long mQueuedAt;
+
+        Task(Runnable command, Priority priority, long sequence, long queuedAt) {
+            mCommand = command;
+            mPriority = priority;
+            mSequence = sequence;
+            mQueuedAt = queuedAt;
+        }
+    }
+
+    private static final class PrioritizedTask implements Runnable, Prioritized {
+
+        private final Priority mPriority;
+
+        private final Runnable mTask;
+
+        PrioritizedTask(Priority priority, Runnable task) {
+            mPriority = priority;
+            mTask = task;
+        }
+
+        @NonNull
+        @Override
+        public Priority getPriority() {
+            return mPriority;
+        }
+
+        @Override
+        public void run() {
+            mTask.run();
+        }
     }
 }
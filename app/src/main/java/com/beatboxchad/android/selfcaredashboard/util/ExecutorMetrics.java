@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How busy an {@link InstrumentedExecutor} has been: how many tasks wait, how long they waited
+ * to start and how long they ran, in total and for each tag tasks were submitted with.
+ * <p>
+ * Every method is thread safe and reads the live values, so they can be queried while tasks run.
+ */
+public final class ExecutorMetrics {
+
+    private final String mName;
+
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    private final AtomicLong mSubmitted = new AtomicLong();
+
+    private final AtomicLong mFailed = new AtomicLong();
+
+    private final LatencyHistogram mWaitTimes = new LatencyHistogram();
+
+    private final LatencyHistogram mRunTimes = new LatencyHistogram();
+
+    private final ConcurrentMap<String, Tag> mTags = new ConcurrentHashMap<>();
+
+    ExecutorMetrics(@NonNull String name) {
+        mName = checkNotNull(name);
+    }
+
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Returns the number of tasks submitted that have not started yet.
+     */
+    public int getQueueDepth() {
+        return mQueueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    public long getSubmitted() {
+        return mSubmitted.get();
+    }
+
+    /**
+     * Returns the number of tasks that threw.
+     */
+    public long getFailed() {
+        return mFailed.get();
+    }
+
+    /**
+     * Returns how long tasks waited from being submitted to starting.
+     */
+    @NonNull
+    public LatencyHistogram getWaitTimes() {
+        return mWaitTimes;
+    }
+
+    @NonNull
+    public LatencyHistogram getRunTimes() {
+        return mRunTimes;
+    }
+
+    /**
+     * Returns the tags tasks were submitted with, the busiest first.
+     */
+    @NonNull
+    public List<Tag> getTags() {
+        List<Tag> tags = new ArrayList<>(mTags.values());
+        Collections.sort(tags, Tag.BUSIEST_FIRST);
+        return tags;
+    }
+
+    void onSubmitted() {
+        mSubmitted.incrementAndGet();
+        int depth = mQueueDepth.incrementAndGet();
+        int max;
+        do {
+            max = mMaxQueueDepth.get();
+        } while (depth > max && !mMaxQueueDepth.compareAndSet(max, depth));
+    }
+
+    void onRejected() {
+        mSubmitted.decrementAndGet();
+        mQueueDepth.decrementAndGet();
+    }
+
+    void onStarted(long waitNanos) {
+        mQueueDepth.decrementAndGet();
+        mWaitTimes.record(waitNanos);
+    }
+
+    void onFinished(@NonNull String tag, long waitNanos, long runNanos, boolean failed) {
+        mRunTimes.record(runNanos);
+        if (failed) {
+            mFailed.incrementAndGet();
+        }
+        Tag tagMetrics = mTags.get(tag);
+        if (tagMetrics == null) {
+            Tag newTag = new Tag(tag);
+            tagMetrics = mTags.putIfAbsent(tag, newTag);
+            if (tagMetrics == null) {
+                tagMetrics = newTag;
+            }
+        }
+        tagMetrics.record(waitNanos, runNanos);
+    }
+
+    /**
+     * Writes the metrics in a human readable form.
+     */
+    public void dump(@NonNull String prefix, @NonNull PrintWriter writer) {
+        writer.print(prefix);
+        writer.print(mName);
+        writer.print(": submitted=");
+        writer.print(getSubmitted());
+        writer.print(" failed=");
+        writer.print(getFailed());
+        writer.print(" queued=");
+        writer.print(getQueueDepth());
+        writer.print(" maxQueued=");
+        writer.println(getMaxQueueDepth());
+        dumpHistogram(prefix + "  ", "wait", mWaitTimes, writer);
+        dumpHistogram(prefix + "  ", "run", mRunTimes, writer);
+        for (Tag tag : getTags()) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(tag.getName());
+            writer.print(": count=");
+            writer.print(tag.getCount());
+            writer.print(" meanWaitUs=");
+            writer.print(toMicros(tag.getMeanWaitNanos()));
+            writer.print(" meanRunUs=");
+            writer.print(toMicros(tag.getMeanRunNanos()));
+            writer.print(" maxRunUs=");
+            writer.println(toMicros(tag.getMaxRunNanos()));
+        }
+    }
+
+    private static void dumpHistogram(String prefix, String name, LatencyHistogram histogram,
+                                      PrintWriter writer) {
+        writer.print(prefix);
+        writer.print(name);
+        writer.print(": meanUs=");
+        writer.print(toMicros(histogram.getMeanNanos()));
+        writer.print(" p50Us<=");
+        writer.print(histogram.getPercentileMicros(50));
+        writer.print(" p99Us<=");
+        writer.print(histogram.getPercentileMicros(99));
+        writer.print(" maxUs=");
+        writer.println(toMicros(histogram.getMaxNanos()));
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * The share of the work of an executor done for one tag.
+     */
+    public static final class Tag {
+
+        static final Comparator<Tag> BUSIEST_FIRST = new Comparator<Tag>() {
+            @Override
+            public int compare(Tag tag1, Tag tag2) {
+                // Long.compare needs API level 19.
+                long nanos1 = tag1.getTotalRunNanos();
+                long nanos2 = tag2.getTotalRunNanos();
+                return nanos1 > nanos2 ? -1 : (nanos1 == nanos2 ? 0 : 1);
+            }
+        };
+
+        private final String mName;
+
+        private final AtomicLong mCount = new AtomicLong();
+
+        private final AtomicLong mTotalWaitNanos = new AtomicLong();
+
+        private final AtomicLong mTotalRunNanos = new AtomicLong();
+
+        private final AtomicLong mMaxRunNanos = new AtomicLong();
+
+        Tag(String name) {
+            mName = name;
+        }
+
+        void record(long waitNanos, long runNanos) {
+            mCount.incrementAndGet();
+            mTotalWaitNanos.addAndGet(waitNanos);
+            mTotalRunNanos.addAndGet(runNanos);
+            long max;
+            do {
+                max = mMaxRunNanos.get();
+            } while (runNanos > max && !mMaxRunNanos.compareAndSet(max, runNanos));
+        }
+
+        @NonNull
+        public String getName() {
+            return mName;
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getTotalRunNanos() {
+            return mTotalRunNanos.get();
+        }
+
+        public long getMeanWaitNanos() {
+            long count = mCount.get();
+            return count == 0 ? 0 : mTotalWaitNanos.get() / count;
+        }
+
+        public long getMeanRunNanos() {
+            long count = mCount.get();
+            return count == 0 ? 0 : mTotalRunNanos.get() / count;
+        }
+
+        public long getMaxRunNanos() {
+            return mMaxRunNanos.get();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that runs tasks on the main thread in batches, one per frame.
+ * <p>
+ * Tasks submitted before the next frame run together, in submission order, at the start of that
+ * frame and before it is laid out and drawn. A burst of results then costs a single binding pass
+ * instead of one per result. Tasks submitted while a batch runs wait for the following frame.
+ * <p>
+ * Before Jelly Bean, which has no {@link Choreographer}, each batch is a single handler message.
+ */
+public class FrameBatchingExecutor implements Executor {
+
+    /**
+     * Runs a batch when the next frame starts.
+     */
+    interface FrameScheduler {
+
+        void scheduleFrame(@NonNull Runnable batch);
+    }
+
+    private final FrameScheduler mScheduler;
+
+    // Guarded by itself, as is the flag below.
+    private final List<Runnable> mPending = new ArrayList<>();
+
+    private boolean mBatchScheduled;
+
+    private final Runnable mRunBatch = new Runnable() {
+        @Override
+        public void run() {
+            List<Runnable> batch;
+            synchronized (mPending) {
+                batch = new ArrayList<>(mPending);
+                mPending.clear();
+                mBatchScheduled = false;
+            }
+            for (Runnable task : batch) {
+                task.run();
+            }
+        }
+    };
+
+    public FrameBatchingExecutor() {
+        this(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                ? new ChoreographerScheduler()
+                : new HandlerScheduler());
+    }
+
+    @VisibleForTesting
+    FrameBatchingExecutor(@NonNull FrameScheduler scheduler) {
+        mScheduler = checkNotNull(scheduler);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        checkNotNull(command);
+        synchronized (mPending) {
+            mPending.add(command);
+            if (mBatchScheduled) {
+                return;
+            }
+            mBatchScheduled = true;
+        }
+        mScheduler.scheduleFrame(mRunBatch);
+    }
+
+    private static final class HandlerScheduler implements FrameScheduler {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void scheduleFrame(@NonNull Runnable batch) {
+            mHandler.post(batch);
+        }
+    }
+
+    /**
+     * The choreographer belongs to the main thread, so requests from other threads hop there
+     * first.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerScheduler implements FrameScheduler {
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void scheduleFrame(@NonNull final Runnable batch) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                postFrameCallback(batch);
+                return;
+            }
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    postFrameCallback(batch);
+                }
+            });
+        }
+
+        private static void postFrameCallback(final Runnable batch) {
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    batch.run();
+                }
+            });
+        }
+    }
+}
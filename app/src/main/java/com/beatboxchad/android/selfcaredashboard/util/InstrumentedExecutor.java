@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An executor that measures the tasks it hands to another one: how many are waiting, how long
+ * each waited to start and how long it ran. See {@link ExecutorMetrics}.
+ * <p>
+ * Tasks are attributed to the operation that submitted them when they are wrapped with
+ * {@link #tag(String, Runnable)}, and to their class otherwise.
+ */
+public class InstrumentedExecutor implements Executor {
+
+    private final Executor mDelegate;
+
+    private final Ticker mTicker;
+
+    private final ExecutorMetrics mMetrics;
+
+    public InstrumentedExecutor(@NonNull String name, @NonNull Executor delegate) {
+        this(name, delegate, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    InstrumentedExecutor(@NonNull String name, @NonNull Executor delegate,
+                         @NonNull Ticker ticker) {
+        mDelegate = checkNotNull(delegate);
+        mTicker = checkNotNull(ticker);
+        mMetrics = new ExecutorMetrics(name);
+    }
+
+    /**
+     * Attributes {@code task} to {@code operation}, such as "GoalsLocalDataSource.getGoals", when
+     * it runs on an instrumented executor. Other executors just run it.
+     */
+    @NonNull
+    public static Runnable tag(@NonNull String operation, @NonNull Runnable task) {
+        return new TaggedTask(checkNotNull(operation), checkNotNull(task));
+    }
+
+    @NonNull
+    public ExecutorMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        checkNotNull(command);
+        mMetrics.onSubmitted();
+        try {
+            mDelegate.execute(new MeasuredTask(command, mTicker.read()));
+        } catch (RejectedExecutionException e) {
+            mMetrics.onRejected();
+            throw e;
+        }
+    }
+
+    private static String tagOf(Runnable command) {
+        if (command instanceof TaggedTask) {
+            return ((TaggedTask) command).mOperation;
+        }
+        String name = command.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    // Wrappers pass on the priority of the task, for an instrumented DiskIOThreadExecutor.
+    private final class MeasuredTask implements Runnable, DiskIOThreadExecutor.Prioritized {
+
+        private final Runnable mCommand;
+
+        private final long mSubmittedAt;
+
+        MeasuredTask(Runnable command, long submittedAt) {
+            mCommand = command;
+            mSubmittedAt = submittedAt;
+        }
+
+        @NonNull
+        @Override
+        public DiskIOThreadExecutor.Priority getPriority() {
+            return DiskIOThreadExecutor.priorityOf(mCommand);
+        }
+
+        @Override
+        public void run() {
+            long startedAt = mTicker.read();
+            long waitNanos = startedAt - mSubmittedAt;
+            mMetrics.onStarted(waitNanos);
+            boolean failed = true;
+            try {
+                mCommand.run();
+                failed = false;
+            } finally {
+                mMetrics.onFinished(tagOf(mCommand), waitNanos, mTicker.read() - startedAt,
+                        failed);
+            }
+        }
+    }
+
+    private static final class TaggedTask implements Runnable, DiskIOThreadExecutor.Prioritized {
+
+        private final String mOperation;
+
+        private final Runnable mTask;
+
+        TaggedTask(String operation, Runnable task) {
+            mOperation = operation;
+            mTask = task;
+        }
+
+        @NonNull
+        @Override
+        public DiskIOThreadExecutor.Priority getPriority() {
+            return DiskIOThreadExecutor.priorityOf(mTask);
+        }
+
+        @Override
+        public void run() {
+            mTask.run();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of durations, in buckets that double in width from one microsecond up,
+ * so that recording costs a few atomic increments and no allocation.
+ * <p>
+ * Percentiles are read as the upper bound of the bucket they fall in, which is within a factor of
+ * two of the true value: enough to tell a millisecond from a second.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Bucket {@code i} holds durations below 2^i microseconds, the last one everything longer,
+     * from about 35 minutes.
+     */
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong mCount = new AtomicLong();
+
+    private final AtomicLong mTotalNanos = new AtomicLong();
+
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        long micros = TimeUnit.NANOSECONDS.toMicros(duration);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mBuckets.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(duration);
+        long max;
+        do {
+            max = mMaxNanos.get();
+        } while (duration > max && !mMaxNanos.compareAndSet(max, duration));
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotalNanos.get() / count;
+    }
+
+    /**
+     * Returns an upper bound, in microseconds, of the duration below which {@code percentile}
+     * percent of the durations recorded fall, or 0 if none were.
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT - 1; bucket++) {
+            seen += mBuckets.get(bucket);
+            if (seen >= rank) {
+                return 1L << bucket;
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMicros(mMaxNanos.get());
+    }
+}
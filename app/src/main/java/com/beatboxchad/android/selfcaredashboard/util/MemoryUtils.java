@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v4.app.ActivityManagerCompat;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * This provides methods to size in-memory caches and keep them within the app's heap.
+ */
+public class MemoryUtils {
+
+    private static final Set<ComponentCallbacks> REGISTERED_CALLBACKS =
+            Collections.newSetFromMap(new WeakHashMap<ComponentCallbacks, Boolean>());
+
+    /**
+     * Returns a cache budget of 1/32 of the app's heap limit, or 1/64 on low-RAM devices, where
+     * the heap is shared with fewer but larger other demands.
+     */
+    public static long cacheBudgetBytes(@NonNull Context context) {
+        checkNotNull(context);
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long heapBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        return ActivityManagerCompat.isLowRamDevice(activityManager)
+                ? heapBytes / 64 : heapBytes / 32;
+    }
+
+    /**
+     * Registers {@code callbacks} with the application context, once, so that it hears about
+     * memory pressure for as long as the process lives.
+     */
+    public static synchronized void registerComponentCallbacks(
+            @NonNull Context context, @NonNull ComponentCallbacks callbacks) {
+        checkNotNull(context);
+        checkNotNull(callbacks);
+        if (REGISTERED_CALLBACKS.add(callbacks)) {
+            context.getApplicationContext().registerComponentCallbacks(callbacks);
+        }
+    }
+}
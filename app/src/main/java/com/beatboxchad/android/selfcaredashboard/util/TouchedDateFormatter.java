@@ -0,0 +1,294 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.beatboxchad.android.selfcaredashboard.R;
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders when goals were touched and when they are next due.
+ * <p>
+ * Date formats are expensive to create and not thread safe, so one is kept per thread and per
+ * locale. Rendered strings are kept per goal until the goal is touched again or the locale
+ * changes, or, for the relative forms, until the minute changes. {@link #refresh(List)} renders
+ * a whole list for one clock reading on a background thread and publishes it at once, so that
+ * binding rows only reads strings, without waiting on the refresh.
+ */
+public final class TouchedDateFormatter {
+
+    private static final String PATTERN = "EEE, d MMM yyyy, hh:mm aaa";
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    /**
+     * Enough for the goals read outside of a refreshed list, such as the detail screen and rows
+     * bound before their list is refreshed.
+     */
+    private static final int MAX_RENDERED = 64;
+
+    private static final ThreadLocal<Map<Locale, DateFormat>> FORMATS =
+            new ThreadLocal<Map<Locale, DateFormat>>() {
+        @Override
+        protected Map<Locale, DateFormat> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private static TouchedDateFormatter INSTANCE;
+
+    private final Resources mResources;
+
+    private final Clock mClock;
+
+    /**
+     * The strings rendered by the last {@link #refresh(List)}, for every goal of its list, so it
+     * holds a whole unpaged list. Never changed once published, so it is read without locking.
+     */
+    private volatile Map<GoalId, Entry> mRefreshed = Collections.emptyMap();
+
+    /**
+     * The strings rendered on demand, for goals the last refresh did not render or rendered for
+     * an earlier minute. In least recently used order, so that goals read long ago are dropped
+     * first. Guarded by itself.
+     */
+    private final LinkedHashMap<GoalId, Entry> mRendered =
+            new LinkedHashMap<GoalId, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GoalId, Entry> eldest) {
+            return size() > MAX_RENDERED;
+        }
+    };
+
+    @VisibleForTesting
+    TouchedDateFormatter(@NonNull Resources resources, @NonNull Clock clock) {
+        mResources = checkNotNull(resources);
+        mClock = checkNotNull(clock);
+    }
+
+    public static synchronized TouchedDateFormatter getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            INSTANCE = new TouchedDateFormatter(
+                    context.getApplicationContext().getResources(), Clock.SYSTEM);
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Formats {@code millis} as a date and time in the default locale, with a format cached for
+     * the calling thread.
+     */
+    @NonNull
+    public static String formatDate(long millis) {
+        Locale locale = Locale.getDefault();
+        Map<Locale, DateFormat> formats = FORMATS.get();
+        DateFormat format = formats.get(locale);
+        if (format == null) {
+            format = new SimpleDateFormat(PATTERN, locale);
+            formats.put(locale, format);
+        }
+        return format.format(millis);
+    }
+
+    /**
+     * Returns the date and time {@code goal} was last touched, like "Tue, 3 Oct 2017, 09:30 pm".
+     */
+    @NonNull
+    public String formatTouched(@NonNull Goal goal) {
+        Locale locale = Locale.getDefault();
+        Entry entry = mRefreshed.get(goal.getGoalId());
+        if (entry != null && entry.isTouchedCurrent(goal, locale)) {
+            return entry.mTouchedString;
+        }
+        synchronized (mRendered) {
+            entry = mRendered.get(goal.getGoalId());
+            if (entry == null || !entry.isTouchedCurrent(goal, locale)) {
+                entry = render(goal, mClock.currentTimeMillis(), locale, entry);
+                mRendered.put(goal.getGoalId(), entry);
+            }
+            return entry.mTouchedString;
+        }
+    }
+
+    /**
+     * Returns how long ago {@code goal} was touched, like "3 days ago".
+     */
+    @NonNull
+    public String formatTouchedAgo(@NonNull Goal goal) {
+        return relativeEntryFor(goal).mAgoString;
+    }
+
+    /**
+     * Returns when {@code goal} is next due, like "Due in 2 days" or "Overdue by 3 days". Goals
+     * to avoid are clear once their interval has passed instead.
+     */
+    @NonNull
+    public String formatDue(@NonNull Goal goal) {
+        return relativeEntryFor(goal).mDueString;
+    }
+
+    /**
+     * Renders every goal in {@code goals} for one clock reading, ahead of binding them, and
+     * replaces the strings of the previous refresh with them. Reads are not held up while it
+     * renders.
+     */
+    public void refresh(@NonNull List<Goal> goals) {
+        long now = mClock.currentTimeMillis();
+        long minute = now / MINUTE_MILLIS;
+        Locale locale = Locale.getDefault();
+        Map<GoalId, Entry> previous = mRefreshed;
+        Map<GoalId, Entry> refreshed = new HashMap<>(goals.size() * 4 / 3 + 1);
+        for (int i = 0, size = goals.size(); i < size; i++) {
+            Goal goal = goals.get(i);
+            Entry entry = previous.get(goal.getGoalId());
+            if (entry == null || !entry.isCurrent(goal, minute, locale)) {
+                entry = render(goal, now, locale, entry);
+            }
+            refreshed.put(goal.getGoalId(), entry);
+        }
+        mRefreshed = refreshed;
+    }
+
+    private Entry relativeEntryFor(Goal goal) {
+        long now = mClock.currentTimeMillis();
+        long minute = now / MINUTE_MILLIS;
+        Locale locale = Locale.getDefault();
+        Entry entry = mRefreshed.get(goal.getGoalId());
+        if (entry != null && entry.isCurrent(goal, minute, locale)) {
+            return entry;
+        }
+        synchronized (mRendered) {
+            Entry rendered = mRendered.get(goal.getGoalId());
+            if (rendered == null || !rendered.isCurrent(goal, minute, locale)) {
+                rendered = render(goal, now, locale, rendered != null ? rendered : entry);
+                mRendered.put(goal.getGoalId(), rendered);
+            }
+            return rendered;
+        }
+    }
+
+    /**
+     * Renders {@code goal} at {@code now}, reusing the date and time of {@code previous} if it
+     * still holds.
+     */
+    private Entry render(Goal goal, long now, Locale locale, @Nullable Entry previous) {
+        String touchedString = previous != null && previous.isTouchedCurrent(goal, locale)
+                ? previous.mTouchedString : formatDate(goal.getTouched());
+        long elapsed = Math.max(0, now - goal.getTouched());
+        return new Entry(goal, now / MINUTE_MILLIS, locale, touchedString, formatAgo(elapsed),
+                formatDue(goal, (int) (elapsed / DAY_MILLIS)));
+    }
+
+    private String formatAgo(long elapsed) {
+        if (elapsed < MINUTE_MILLIS) {
+            return mResources.getString(R.string.touched_just_now);
+        }
+        if (elapsed < HOUR_MILLIS) {
+            return quantityString(R.plurals.touched_minutes_ago, elapsed / MINUTE_MILLIS);
+        }
+        if (elapsed < DAY_MILLIS) {
+            return quantityString(R.plurals.touched_hours_ago, elapsed / HOUR_MILLIS);
+        }
+        return quantityString(R.plurals.touched_days_ago, elapsed / DAY_MILLIS);
+    }
+
+    private String formatDue(Goal goal, int elapsedDays) {
+        int remainingDays = goal.getInterval() - elapsedDays;
+        if (!goal.getPolarity()) {
+            return remainingDays > 0
+                    ? quantityString(R.plurals.goal_avoid_for_days, remainingDays)
+                    : mResources.getString(R.string.goal_avoid_clear);
+        }
+        if (remainingDays > 0) {
+            return quantityString(R.plurals.goal_due_in_days, remainingDays);
+        }
+        if (remainingDays == 0) {
+            return mResources.getString(R.string.goal_due_today);
+        }
+        return quantityString(R.plurals.goal_overdue_by_days, -remainingDays);
+    }
+
+    private String quantityString(int id, long quantity) {
+        int count = (int) quantity;
+        return mResources.getQuantityString(id, count, count);
+    }
+
+    /**
+     * The strings rendered for one goal, in one locale, during one minute. Immutable, so that it
+     * can be shared between threads.
+     */
+    private static final class Entry {
+
+        private final long mTouched;
+
+        private final int mInterval;
+
+        private final boolean mPolarity;
+
+        private final long mMinute;
+
+        private final Locale mLocale;
+
+        private final String mTouchedString;
+
+        private final String mAgoString;
+
+        private final String mDueString;
+
+        Entry(Goal goal, long minute, Locale locale, String touchedString, String agoString,
+              String dueString) {
+            mTouched = goal.getTouched();
+            mInterval = goal.getInterval();
+            mPolarity = goal.getPolarity();
+            mMinute = minute;
+            mLocale = locale;
+            mTouchedString = touchedString;
+            mAgoString = agoString;
+            mDueString = dueString;
+        }
+
+        boolean isTouchedCurrent(Goal goal, Locale locale) {
+            return mTouched == goal.getTouched() && mLocale.equals(locale);
+        }
+
+        boolean isCurrent(Goal goal, long minute, Locale locale) {
+            return isTouchedCurrent(goal, locale) && mMinute == minute
+                    && mInterval == goal.getInterval() && mPolarity == goal.getPolarity();
+        }
+    }
+}
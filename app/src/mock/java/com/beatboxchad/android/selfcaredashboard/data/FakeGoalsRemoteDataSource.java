@@ -17,13 +17,23 @@
 package com.beatboxchad.android.selfcaredashboard.data;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 
+import com.beatboxchad.android.selfcaredashboard.data.source.GetGoalFuture;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsSearchIndex;
+import com.beatboxchad.android.selfcaredashboard.data.source.LoadGoalsFuture;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -35,6 +45,13 @@ public class FakeGoalsRemoteDataSource implements GoalsDataSource {
 
     private static final Map<String, Goal> GOALS_SERVICE_DATA = new LinkedHashMap<>();
 
+    private static final Subscription NO_UPDATES = new Subscription() {
+        @Override
+        public void unsubscribe() {
+            // Nothing is pushed after the first delivery, so there is nothing to stop.
+        }
+    };
+
     // Prevent direct instantiation.
     private FakeGoalsRemoteDataSource() {
     }
@@ -51,17 +68,198 @@ public class FakeGoalsRemoteDataSource implements GoalsDataSource {
         callback.onGoalsLoaded(Lists.newArrayList(GOALS_SERVICE_DATA.values()));
     }
 
+    @Override
+    public void getGoals(@NonNull GoalsFilterType filtering,
+                         @NonNull LoadGoalsCallback callback) {
+        List<Goal> goals = new ArrayList<>();
+        for (Goal goal : GOALS_SERVICE_DATA.values()) {
+            if (filtering.matches(goal)) {
+                goals.add(goal);
+            }
+        }
+        callback.onGoalsLoaded(goals);
+    }
+
+    @Override
+    public void getGoalsCount(@NonNull GoalsFilterType filtering,
+                              @NonNull GetGoalsCountCallback callback) {
+        callback.onGoalsCounted(sortedGoals(filtering).size());
+    }
+
+    @Override
+    public void getGoalsPage(@NonNull GoalsFilterType filtering, @Nullable GoalId afterGoalId,
+                             int pageSize, @NonNull LoadGoalsCallback callback) {
+        callback.onGoalsLoaded(pageAfter(filtering, afterGoalId, pageSize));
+    }
+
+    @Override
+    public void getGoalsPageAt(@NonNull GoalsFilterType filtering, int offset, int pageSize,
+                               @NonNull LoadGoalsCallback callback) {
+        callback.onGoalsLoaded(pageAt(sortedGoals(filtering), offset, pageSize));
+    }
+
+    @Override
+    public void getGoalsInDueOrderAt(@NonNull GoalsFilterType filtering, int offset,
+                                     int pageSize, @NonNull LoadGoalsCallback callback) {
+        callback.onGoalsLoaded(pageAt(goalsInDueOrder(filtering), offset, pageSize));
+    }
+
+    @Override
+    public void searchGoals(@NonNull GoalsFilterType filtering, @NonNull String query, int limit,
+                            @NonNull LoadGoalsCallback callback) {
+        List<String> prefixes = GoalsSearchIndex.tokenize(query);
+        List<Goal> goals = new ArrayList<>();
+        if (prefixes.isEmpty()) {
+            callback.onGoalsLoaded(goals);
+            return;
+        }
+        for (Goal goal : GOALS_SERVICE_DATA.values()) {
+            if (goals.size() == limit) {
+                break;
+            }
+            if (filtering.matches(goal) && GoalsSearchIndex.matches(goal.getTitle(), prefixes)) {
+                goals.add(goal);
+            }
+        }
+        callback.onGoalsLoaded(goals);
+    }
+
+    /**
+     * The remote service cannot push changes, so observing it delivers the current data once.
+     */
+    @NonNull
+    @Override
+    public Subscription observeGoals(@NonNull GoalsFilterType filtering,
+                                     @NonNull LoadGoalsCallback callback) {
+        getGoals(filtering, callback);
+        return NO_UPDATES;
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoal(@NonNull String goalId, @NonNull GetGoalCallback callback) {
+        getGoal(goalId, callback);
+        return NO_UPDATES;
+    }
+
+    @NonNull
+    @Override
+    public Subscription observeGoalsCount(@NonNull GoalsFilterType filtering,
+                                          @NonNull GetGoalsCountCallback callback) {
+        getGoalsCount(filtering, callback);
+        return NO_UPDATES;
+    }
+
+    /**
+     * Returns the goals matching {@code filtering} in id order, the order pages are served in.
+     */
+    private static List<Goal> sortedGoals(GoalsFilterType filtering) {
+        List<Goal> goals = new ArrayList<>();
+        for (Goal goal : GOALS_SERVICE_DATA.values()) {
+            if (filtering.matches(goal)) {
+                goals.add(goal);
+            }
+        }
+        Collections.sort(goals, new Comparator<Goal>() {
+            @Override
+            public int compare(Goal goal1, Goal goal2) {
+                return goal1.getGoalId().compareTo(goal2.getGoalId());
+            }
+        });
+        return goals;
+    }
+
+    private static List<Goal> pageAfter(GoalsFilterType filtering, @Nullable GoalId afterGoalId,
+                                        int pageSize) {
+        List<Goal> goals = sortedGoals(filtering);
+        int start = 0;
+        if (afterGoalId != null) {
+            while (start < goals.size()
+                    && goals.get(start).getGoalId().compareTo(afterGoalId) <= 0) {
+                start++;
+            }
+        }
+        return pageAt(goals, start, pageSize);
+    }
+
+    private static List<Goal> goalsInDueOrder(GoalsFilterType filtering) {
+        List<Goal> goals = sortedGoals(filtering);
+        Collections.sort(goals, Goal.DUE_ORDER);
+        return goals;
+    }
+
+    private static List<Goal> pageAt(List<Goal> goals, int offset, int pageSize) {
+        int from = Math.min(offset, goals.size());
+        int to = Math.min(from + pageSize, goals.size());
+        return new ArrayList<>(goals.subList(from, to));
+    }
+
     @Override
     public void getGoal(@NonNull String goalId, @NonNull GetGoalCallback callback) {
         Goal goal = GOALS_SERVICE_DATA.get(goalId);
         callback.onGoalLoaded(goal);
     }
 
+    @NonNull
+    @Override
+    public ListenableFuture<List<Goal>> loadGoals(@NonNull GoalsFilterType filtering) {
+        LoadGoalsFuture future = new LoadGoalsFuture();
+        getGoals(filtering, future);
+        return future;
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<Goal> loadGoal(@NonNull String goalId) {
+        GetGoalFuture future = new GetGoalFuture();
+        getGoal(goalId, future);
+        return future;
+    }
+
     @Override
     public void saveGoal(@NonNull Goal goal) {
         GOALS_SERVICE_DATA.put(goal.getId(), goal);
     }
 
+    @Override
+    public void saveGoals(@NonNull List<Goal> goals) {
+        for (Goal goal : goals) {
+            GOALS_SERVICE_DATA.put(goal.getId(), goal);
+        }
+    }
+
+    @Override
+    public void syncGoals(@NonNull List<Goal> goals) {
+        // Not required for the remote data source.
+    }
+
+    @Override
+    public void saveTouches(@NonNull List<GoalTouch> touches) {
+        // Not required for the remote data source.
+    }
+
+    @Override
+    public void getTouches(@NonNull String goalId, long fromMillis, long toMillis,
+                           @NonNull LoadTouchesCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public void getGoalStats(@NonNull String goalId, @NonNull GetGoalStatsCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public void getDailyStats(long fromMillis, long toMillis,
+                              @NonNull LoadDailyStatsCallback callback) {
+        callback.onDataNotAvailable();
+    }
+
+    @Override
+    public void rebuildStats() {
+        // Not required for the remote data source.
+    }
+
     @Override
     public void archiveGoal(@NonNull Goal goal) {
         Goal archivedGoal = new Goal(goal.getId(),
@@ -94,6 +292,26 @@ public class FakeGoalsRemoteDataSource implements GoalsDataSource {
         // Not required for the remote data source.
     }
 
+    @Override
+    public void archiveGoals(@NonNull List<String> goalIds) {
+        setArchived(goalIds, true);
+    }
+
+    @Override
+    public void activateGoals(@NonNull List<String> goalIds) {
+        setArchived(goalIds, false);
+    }
+
+    private void setArchived(List<String> goalIds, boolean archived) {
+        for (String goalId : goalIds) {
+            Goal goal = GOALS_SERVICE_DATA.get(goalId);
+            if (goal != null) {
+                GOALS_SERVICE_DATA.put(goalId,
+                        new Goal.Builder(goal).setArchived(archived).build());
+            }
+        }
+    }
+
     @Override
     public void clearArchivedGoals() {
         Iterator<Map.Entry<String, Goal>> it = GOALS_SERVICE_DATA.entrySet().iterator();
@@ -115,6 +333,13 @@ public class FakeGoalsRemoteDataSource implements GoalsDataSource {
         GOALS_SERVICE_DATA.remove(goalId);
     }
 
+    @Override
+    public void deleteGoals(@NonNull List<String> goalIds) {
+        for (String goalId : goalIds) {
+            GOALS_SERVICE_DATA.remove(goalId);
+        }
+    }
+
     @Override
     public void deleteAllGoals() {
         GOALS_SERVICE_DATA.clear();
@@ -25,6 +25,7 @@ import com.beatboxchad.android.selfcaredashboard.data.source.local.GoalsLocalDat
 import com.beatboxchad.android.selfcaredashboard.data.source.local.SelfCareDatabase;
 import com.beatboxchad.android.selfcaredashboard.data.source.remote.GoalsRemoteDataSource;
 import com.beatboxchad.android.selfcaredashboard.util.AppExecutors;
+import com.beatboxchad.android.selfcaredashboard.util.MemoryUtils;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -37,8 +38,12 @@ public class Injection {
     public static GoalsRepository provideGoalsRepository(@NonNull Context context) {
         checkNotNull(context);
         SelfCareDatabase database = SelfCareDatabase.getInstance(context);
-        return GoalsRepository.getInstance(GoalsRemoteDataSource.getInstance(),
-                GoalsLocalDataSource.getInstance(new AppExecutors(),
-                        database.goalDao()));
+        GoalsRepository repository = GoalsRepository.getInstance(
+                GoalsRemoteDataSource.getInstance(),
+                GoalsLocalDataSource.getInstance(AppExecutors.getInstance(),
+                        database.goalDao()),
+                MemoryUtils.cacheBudgetBytes(context));
+        MemoryUtils.registerComponentCallbacks(context, repository);
+        return repository;
     }
 }
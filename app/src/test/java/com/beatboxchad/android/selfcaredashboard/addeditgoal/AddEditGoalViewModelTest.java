@@ -93,7 +93,8 @@ public class AddEditGoalViewModelTest {
         mAddEditGoalViewModel.start(testGoal.getId());
 
         // Then the goal repository is queried and the view updated
-        verify(mGoalsRepository).getGoal(eq(testGoal.getId()), mGetGoalCallbackCaptor.capture());
+        verify(mGoalsRepository).observeGoal(eq(testGoal.getId()),
+                mGetGoalCallbackCaptor.capture());
 
         // Simulate callback
         mGetGoalCallbackCaptor.getValue().onGoalLoaded(testGoal);
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GoalId}.
+ */
+public class GoalIdTest {
+
+    private static final String ID = "0123abcd-4567-89ef-fedc-ba9876543210";
+
+    @Test
+    public void stringForm_isTheUuidForm() {
+        GoalId goalId = GoalId.fromString(ID.toUpperCase());
+
+        assertThat(goalId.toString(), is(ID));
+        assertThat(goalId, is(GoalId.fromUuid(UUID.fromString(ID))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromString_rejectsShortForms() {
+        // UUID.fromString accepts this and pads the groups with zeros
+        GoalId.fromString("1-2-3-4-5");
+    }
+
+    @Test
+    public void fromAnyString_readsUuidsAndMapsLegacyIdsLikeTheMigration() {
+        assertThat(GoalId.fromAnyString(ID), is(GoalId.fromString(ID)));
+        assertThat(GoalId.fromAnyString("goal-1"), is(GoalId.fromUuid(
+                UUID.nameUUIDFromBytes("goal-1".getBytes(Charset.forName("UTF-8"))))));
+    }
+
+    @Test
+    public void bytes_roundTripAndSortLikeTheIds() {
+        GoalId small = new GoalId(1L, -1L);
+        GoalId large = new GoalId(-1L, 1L);
+
+        assertThat(GoalId.fromBytes(large.toBytes()), is(large));
+        assertTrue(small.compareTo(large) < 0);
+        assertTrue(large.compareTo(small) > 0);
+        assertThat(small.compareTo(new GoalId(1L, -1L)), is(0));
+        assertTrue(compareBytes(small.toBytes(), large.toBytes()) < 0);
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int result = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import android.content.ComponentCallbacks2;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the memory bounds of {@link GoalsCache}.
+ */
+public class GoalsCacheTest {
+
+    private static final Goal GOAL = new Goal.Builder(goalId(0)).setTitle("Title").build();
+
+    private static final long GOAL_BYTES = GoalsCache.estimateBytes(GOAL);
+
+    @Test
+    public void listsOverBudget_areNotKept() {
+        // Given a cache with room for fewer goals than the list
+        GoalsCache cache = new GoalsCache(GOAL_BYTES * 8);
+
+        // When the list is cached
+        GoalsCache.Snapshot snapshot = cache.replaceAll(goals(50));
+
+        // Then it can still answer the request that loaded it, but is not kept
+        assertThat(snapshot.goals(GoalsFilterType.ALL_GOALS).size(), is(50));
+        assertThat(cache.snapshot(), is(nullValue()));
+        assertThat(cache.summaryBytes(), is(0L));
+    }
+
+    @Test
+    public void hotGoals_evictLeastRecentlyUsed() {
+        // Given a hot tier with room for two goals
+        GoalsCache cache = new GoalsCache(GOAL_BYTES * 8);
+        List<Goal> goals = goals(3);
+        cache.put(goals.get(0));
+        cache.put(goals.get(1));
+
+        // When the first goal is read and a third one is added
+        cache.get(goals.get(0).getGoalId());
+        cache.put(goals.get(2));
+
+        // Then the goal that was not read is evicted
+        assertThat(cache.get(goals.get(0).getGoalId()), is(goals.get(0)));
+        assertThat(cache.get(goals.get(1).getGoalId()), is(nullValue()));
+        assertThat(cache.get(goals.get(2).getGoalId()), is(goals.get(2)));
+        assertTrue(cache.hotBytes() <= GOAL_BYTES * 2);
+    }
+
+    @Test
+    public void trimMemory_dropsListsThenEverything() {
+        // Given a cached list and four goals in the hot tier
+        GoalsCache cache = new GoalsCache(GoalsCache.DEFAULT_MAX_BYTES);
+        List<Goal> goals = goals(4);
+        cache.replaceAll(goals(10));
+        for (Goal goal : goals) {
+            cache.put(goal);
+        }
+
+        // When the app goes to the background
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        // Then the lists are dropped and only the most recent half of the hot goals is kept
+        assertThat(cache.snapshot(), is(nullValue()));
+        assertThat(cache.get(goals.get(1).getGoalId()), is(nullValue()));
+        assertThat(cache.get(goals.get(3).getGoalId()), is(goals.get(3)));
+
+        // When the app is about to be killed
+        cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        // Then nothing is kept
+        assertThat(cache.get(goals.get(3).getGoalId()), is(nullValue()));
+        assertThat(cache.hotBytes(), is(0L));
+    }
+
+    @Test
+    public void snapshotReads_returnTheSameGoalEveryTime() {
+        // Given a cached list
+        GoalsCache cache = new GoalsCache(GoalsCache.DEFAULT_MAX_BYTES);
+        List<Goal> goals = cache.replaceAll(goals(3)).goals(GoalsFilterType.ALL_GOALS);
+
+        // When a row is read twice, and by id
+        Goal first = goals.get(1);
+
+        // Then it is not created again
+        assertThat(goals.get(1), is(sameInstance(first)));
+        assertThat(cache.get(first.getGoalId()), is(sameInstance(first)));
+    }
+
+    @Test
+    public void snapshotReads_keepOnlyTheRecentGoals() {
+        // Given a cached list longer than the goals a snapshot keeps
+        GoalsCache cache = new GoalsCache(GoalsCache.DEFAULT_MAX_BYTES);
+        List<Goal> goals = cache.replaceAll(goals(2 * GoalsCache.RECENT_GOALS))
+                .goals(GoalsFilterType.ALL_GOALS);
+        long bytes = cache.summaryBytes();
+
+        // When the list is scrolled through from its first row
+        Goal first = goals.get(0);
+        for (Goal goal : goals) {
+            assertThat(goal.getTitle(), is("Title"));
+        }
+
+        // Then the first goal was let go, and is created again with the same content
+        Goal again = goals.get(0);
+        assertThat(again, is(not(sameInstance(first))));
+        assertThat(again, is(first));
+        assertThat(cache.summaryBytes(), is(bytes));
+    }
+
+    @Test
+    public void summaryBytes_countTheGoalsASnapshotKeeps() {
+        GoalsCache cache = new GoalsCache(GoalsCache.DEFAULT_MAX_BYTES);
+
+        cache.replaceAll(goals(GoalsCache.RECENT_GOALS));
+
+        assertTrue(cache.summaryBytes() > GoalsCache.RECENT_GOALS * GOAL_BYTES);
+    }
+
+    private static List<Goal> goals(int count) {
+        List<Goal> goals = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            goals.add(new Goal.Builder(goalId(i)).setTitle("Title").build());
+        }
+        return goals;
+    }
+
+    private static String goalId(int i) {
+        return String.format("00000000-0000-0000-0000-%012d", i);
+    }
+}
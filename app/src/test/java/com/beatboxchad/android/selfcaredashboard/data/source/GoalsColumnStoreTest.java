@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link GoalsColumnStore}.
+ */
+public class GoalsColumnStoreTest {
+
+    private static final Goal GOAL = new Goal.Builder(UUID.randomUUID())
+            .setTitle("Title1")
+            .setPolarity(true)
+            .setInterval(7)
+            .setTouched(1234L)
+            .build();
+
+    private static final Goal ARCHIVED_GOAL = new Goal.Builder(new GoalId(-1L, 1L))
+            .setArchived(true)
+            .build();
+
+    @Test
+    public void goalsReadBack_equalTheGoalsPut() {
+        // When goals with and without a title are stored
+        GoalsColumnStore.Builder builder = new GoalsColumnStore.Builder();
+        builder.put(GOAL);
+        builder.put(ARCHIVED_GOAL);
+        GoalsColumnStore store = builder.build();
+
+        // Then every field reads back unchanged, in insertion order
+        assertThat(store.size(), is(2));
+        assertGoalEquals(store.goal(0), GOAL);
+        assertGoalEquals(store.get(ARCHIVED_GOAL.getGoalId()), ARCHIVED_GOAL);
+        assertThat(store.get(GoalId.random()), is(nullValue()));
+    }
+
+    @Test
+    public void putExistingGoal_updatesInPlace() {
+        // Given two goals
+        GoalsColumnStore.Builder builder = new GoalsColumnStore.Builder();
+        builder.put(GOAL);
+        builder.put(ARCHIVED_GOAL);
+
+        // When the first one is put again with a new title
+        Goal renamed = new Goal.Builder(GOAL).setTitle("Renamed").build();
+        builder.put(renamed);
+        GoalsColumnStore store = builder.build();
+
+        // Then it keeps its position
+        assertThat(store.size(), is(2));
+        assertGoalEquals(store.goal(0), renamed);
+    }
+
+    @Test
+    public void removedGoalPutAgain_movesToTheEnd() {
+        // Given two goals
+        GoalsColumnStore.Builder builder = new GoalsColumnStore.Builder();
+        builder.put(GOAL);
+        builder.put(ARCHIVED_GOAL);
+
+        // When the first one is removed and put again
+        builder.remove(GOAL.getGoalId());
+        builder.put(GOAL);
+        GoalsColumnStore store = builder.build();
+
+        // Then it comes last
+        assertThat(store.size(), is(2));
+        assertGoalEquals(store.goal(1), GOAL);
+    }
+
+    @Test
+    public void toBuilder_leavesTheStoreUnchanged() {
+        // Given a store with many goals, so that the builder grows
+        GoalsColumnStore.Builder builder = new GoalsColumnStore.Builder();
+        for (int i = 0; i < 100; i++) {
+            builder.put(new Goal.Builder().setTitle("Title" + i).build());
+        }
+        builder.put(ARCHIVED_GOAL);
+        GoalsColumnStore store = builder.build();
+
+        // When a store derived from it drops the archived goals
+        GoalsColumnStore.Builder derived = store.toBuilder();
+        derived.removeMatching(GoalsFilterType.ARCHIVED_GOALS);
+        GoalsColumnStore active = derived.build();
+
+        // Then only the derived store changed
+        assertThat(active.size(), is(100));
+        assertThat(active.get(ARCHIVED_GOAL.getGoalId()), is(nullValue()));
+        assertThat(store.size(), is(101));
+        assertGoalEquals(store.get(ARCHIVED_GOAL.getGoalId()), ARCHIVED_GOAL);
+    }
+
+    private static void assertGoalEquals(Goal actual, Goal expected) {
+        assertThat(actual, is(expected));
+        assertThat(actual.getTouched(), is(expected.getTouched()));
+        assertThat(actual.isArchived(), is(expected.isArchived()));
+    }
+}
@@ -16,29 +16,40 @@
 
 package com.beatboxchad.android.selfcaredashboard.data.source;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit tests for the implementation of the in-memory repository with cache.
@@ -62,6 +73,9 @@ public class GoalsRepositoryTest {
     @Mock
     private GoalsDataSource mGoalsLocalDataSource;
 
+    @Mock
+    private GoalsWriteBuffer.Scheduler mWriteScheduler;
+
     @Mock
     private GoalsDataSource.GetGoalCallback mGetGoalCallback;
 
@@ -74,6 +88,9 @@ public class GoalsRepositoryTest {
     @Captor
     private ArgumentCaptor<GoalsDataSource.GetGoalCallback> mGoalCallbackCaptor;
 
+    @Captor
+    private ArgumentCaptor<Runnable> mFlushCaptor;
+
     @Before
     public void setupGoalsRepository() {
         // Mockito has a very convenient way to inject mocks by using the @Mock annotation. To
@@ -82,7 +99,7 @@ public class GoalsRepositoryTest {
 
         // Get a reference to the class under test
         mGoalsRepository = GoalsRepository.getInstance(
-                mGoalsRemoteDataSource, mGoalsLocalDataSource);
+                mGoalsRemoteDataSource, mGoalsLocalDataSource, mWriteScheduler);
     }
 
     @After
@@ -106,7 +123,160 @@ public class GoalsRepositoryTest {
         mGoalsRepository.getGoals(mLoadGoalsCallback);
 
         // Then goals are loaded from the local data source
-        verify(mGoalsLocalDataSource).getGoals(any(GoalsDataSource.LoadGoalsCallback.class));
+        verify(mGoalsLocalDataSource).getGoals(eq(GoalsFilterType.ALL_GOALS),
+                any(GoalsDataSource.LoadGoalsCallback.class));
+    }
+
+    @Test
+    public void getActiveGoals_requestsOnlyActiveGoalsFromLocalDataSource() {
+        // When active goals are requested from the goals repository
+        mGoalsRepository.getGoals(GoalsFilterType.ACTIVE_GOALS, mLoadGoalsCallback);
+
+        // Then the filter is pushed down to the local data source
+        verify(mGoalsLocalDataSource).getGoals(eq(GoalsFilterType.ACTIVE_GOALS),
+                mGoalsCallbackCaptor.capture());
+        List<Goal> activeGoals = Lists.newArrayList(new Goal(GOAL_TITLE, "Some Goal Description"));
+        mGoalsCallbackCaptor.getValue().onGoalsLoaded(activeGoals);
+        verify(mLoadGoalsCallback).onGoalsLoaded(activeGoals);
+
+        // And the archived goals are still loaded separately when asked for
+        mGoalsRepository.getGoals(GoalsFilterType.ARCHIVED_GOALS, mLoadGoalsCallback);
+        verify(mGoalsLocalDataSource).getGoals(eq(GoalsFilterType.ARCHIVED_GOALS),
+                any(GoalsDataSource.LoadGoalsCallback.class));
+    }
+
+    @Test
+    public void getActiveGoals_servedFromCacheAfterAllGoalsLoaded() {
+        // Given all goals are cached
+        mGoalsRepository.getGoals(mLoadGoalsCallback);
+        setGoalsAvailable(mGoalsLocalDataSource, GOALS);
+
+        // When active goals are requested
+        GoalsDataSource.LoadGoalsCallback activeCallback =
+                mock(GoalsDataSource.LoadGoalsCallback.class);
+        mGoalsRepository.getGoals(GoalsFilterType.ACTIVE_GOALS, activeCallback);
+
+        // Then they come from the cache without another query
+        verify(mGoalsLocalDataSource).getGoals(any(GoalsFilterType.class),
+                any(GoalsDataSource.LoadGoalsCallback.class));
+        verify(activeCallback).onGoalsLoaded(GOALS);
+    }
+
+    @Test
+    public void getGoalsCount_countsInLocalDataSourceWithoutLoadingGoals() {
+        GoalsDataSource.GetGoalsCountCallback callback =
+                mock(GoalsDataSource.GetGoalsCountCallback.class);
+
+        // When goals are counted before anything is cached
+        mGoalsRepository.getGoalsCount(GoalsFilterType.ARCHIVED_GOALS, callback);
+
+        // Then the count is delegated to the local data source and no goals are loaded
+        verify(mGoalsLocalDataSource).getGoalsCount(GoalsFilterType.ARCHIVED_GOALS, callback);
+        verify(mGoalsLocalDataSource, never()).getGoals(any(GoalsFilterType.class),
+                any(GoalsDataSource.LoadGoalsCallback.class));
+    }
+
+    @Test
+    public void getGoalsCount_answeredFromCompleteCache() {
+        GoalsDataSource.GetGoalsCountCallback callback =
+                mock(GoalsDataSource.GetGoalsCountCallback.class);
+
+        // Given all goals are cached
+        mGoalsRepository.getGoals(mLoadGoalsCallback);
+        setGoalsAvailable(mGoalsLocalDataSource, GOALS);
+
+        // When goals are counted
+        mGoalsRepository.getGoalsCount(GoalsFilterType.ALL_GOALS, callback);
+
+        // Then the cached size is returned without asking the local data source
+        verify(callback).onGoalsCounted(GOALS.size());
+        verify(mGoalsLocalDataSource, never()).getGoalsCount(any(GoalsFilterType.class),
+                any(GoalsDataSource.GetGoalsCountCallback.class));
+    }
+
+    @Test
+    public void getGoalsPage_readsLocalDataSource() {
+        // When a page is requested
+        GoalId afterGoalId = new GoalId(0, 42);
+        mGoalsRepository.getGoalsPage(GoalsFilterType.ACTIVE_GOALS, afterGoalId, 20,
+                mLoadGoalsCallback);
+
+        // Then it is read from the local data source and bypasses the cache
+        verify(mGoalsLocalDataSource).getGoalsPage(GoalsFilterType.ACTIVE_GOALS, afterGoalId, 20,
+                mLoadGoalsCallback);
+        assertThat(mGoalsRepository.mCachedGoals.size(), is(0));
+    }
+
+    @Test
+    public void observeGoals_deliversCacheThenOnlyChanges() {
+        // Given all goals are cached
+        mGoalsRepository.getGoals(mLoadGoalsCallback);
+        setGoalsAvailable(mGoalsLocalDataSource, GOALS);
+        GoalsDataSource.LoadGoalsCallback observer =
+                mock(GoalsDataSource.LoadGoalsCallback.class);
+
+        // When the goals are observed
+        mGoalsRepository.observeGoals(GoalsFilterType.ALL_GOALS, observer);
+
+        // Then the cached goals are delivered right away
+        verify(observer).onGoalsLoaded(GOALS);
+
+        // And the local data source is observed
+        verify(mGoalsLocalDataSource).observeGoals(eq(GoalsFilterType.ALL_GOALS),
+                mGoalsCallbackCaptor.capture());
+
+        // When it reports the same goals, nothing is delivered again
+        mGoalsCallbackCaptor.getValue().onGoalsLoaded(Lists.newArrayList(GOALS));
+        verify(observer).onGoalsLoaded(any(List.class));
+
+        // When it reports a change, the change is delivered
+        List<Goal> changed = Lists.newArrayList(GOALS.get(0));
+        mGoalsCallbackCaptor.getValue().onGoalsLoaded(changed);
+        verify(observer).onGoalsLoaded(changed);
+    }
+
+    @Test
+    public void getGoalsStaleWhileRevalidate_deliversStaleThenOnlyChanges() {
+        // Given all goals are cached and the cache is marked dirty
+        mGoalsRepository.getGoals(mLoadGoalsCallback);
+        setGoalsAvailable(mGoalsLocalDataSource, GOALS);
+        mGoalsRepository.refreshGoals();
+        GoalsDataSource.RevalidatingLoadGoalsCallback callback =
+                mock(GoalsDataSource.RevalidatingLoadGoalsCallback.class);
+
+        // When goals are requested with stale-while-revalidate
+        mGoalsRepository.getGoals(GoalsFilterType.ALL_GOALS,
+                RefreshPolicy.STALE_WHILE_REVALIDATE, callback);
+
+        // Then the cached goals are delivered right away, even though the cache is dirty
+        verify(callback).onStaleGoalsLoaded(GOALS,
+                GoalsDataSource.RevalidatingLoadGoalsCallback.AGE_UNKNOWN);
+
+        // When the remote data source returns the same goals in another order
+        setGoalsAvailable(mGoalsRemoteDataSource, Lists.reverse(GOALS));
+
+        // Then nothing is delivered again and the revalidation is reported as unchanged
+        verify(callback, never()).onGoalsLoaded(any(List.class));
+        verify(callback).onRevalidationFinished(false);
+    }
+
+    @Test
+    public void getGoalsStaleWhileRevalidate_remoteChangeIsDelivered() {
+        // Given goals in the local data source
+        GoalsDataSource.RevalidatingLoadGoalsCallback callback =
+                mock(GoalsDataSource.RevalidatingLoadGoalsCallback.class);
+        mGoalsRepository.getGoals(GoalsFilterType.ALL_GOALS,
+                RefreshPolicy.STALE_WHILE_REVALIDATE, callback);
+        setGoalsAvailable(mGoalsLocalDataSource, GOALS);
+        verify(callback).onStaleGoalsLoaded(eq(GOALS), anyLong());
+
+        // When the remote data source has different goals
+        List<Goal> remoteGoals = Lists.newArrayList(GOALS.get(0));
+        setGoalsAvailable(mGoalsRemoteDataSource, remoteGoals);
+
+        // Then they are delivered
+        verify(callback).onGoalsLoaded(remoteGoals);
+        verify(callback).onRevalidationFinished(true);
     }
 
     @Test
@@ -117,10 +287,73 @@ public class GoalsRepositoryTest {
         // When a goal is saved to the goals repository
         mGoalsRepository.saveGoal(newGoal);
 
-        // Then the service API and persistent repository are called and the cache is updated
-        verify(mGoalsRemoteDataSource).saveGoal(newGoal);
-        verify(mGoalsLocalDataSource).saveGoal(newGoal);
+        // Then the cache is updated right away
         assertThat(mGoalsRepository.mCachedGoals.size(), is(1));
+
+        // And the service API and persistent repository are called once the flush runs
+        runScheduledFlush();
+        verify(mGoalsRemoteDataSource).saveGoals(Lists.newArrayList(newGoal));
+        verify(mGoalsLocalDataSource).saveGoals(Lists.newArrayList(newGoal));
+    }
+
+    @Test
+    public void saveGoalRepeatedly_writesLatestVersionOnce() {
+        // When the same goal is touched three times in a row
+        Goal goal = new Goal.Builder().setTitle(GOAL_TITLE).setTouched(1).build();
+        mGoalsRepository.saveGoal(goal);
+        mGoalsRepository.saveGoal(new Goal.Builder(goal).setTouched(2).build());
+        Goal latest = new Goal.Builder(goal).setTouched(3).build();
+        mGoalsRepository.saveGoal(latest);
+
+        // Then a single flush is scheduled, which writes only the latest version
+        runScheduledFlush();
+        verify(mGoalsLocalDataSource).saveGoals(Lists.newArrayList(latest));
+        verify(mGoalsLocalDataSource, never()).saveGoal(any(Goal.class));
+    }
+
+    @Test
+    public void saveTouches_appendedEveryOneWithTheNextBatch() {
+        // When a goal is touched twice and each touch is recorded
+        Goal goal = new Goal.Builder().setTitle(GOAL_TITLE).setTouched(1).build();
+        Goal latest = new Goal.Builder(goal).setTouched(2).build();
+        mGoalsRepository.saveGoal(goal);
+        mGoalsRepository.saveTouches(Lists.newArrayList(GoalTouch.of(goal)));
+        mGoalsRepository.saveGoal(latest);
+        mGoalsRepository.saveTouches(Lists.newArrayList(GoalTouch.of(latest)));
+
+        // Then the goal is written once, but both touches are appended in one bulk insert
+        runScheduledFlush();
+        verify(mGoalsLocalDataSource).saveGoals(Lists.newArrayList(latest));
+        verify(mGoalsLocalDataSource).saveTouches(
+                Lists.newArrayList(GoalTouch.of(goal), GoalTouch.of(latest)));
+    }
+
+    @Test
+    public void saveGoalThenDelete_writesSaveFirst() {
+        // Given a buffered save
+        Goal goal = new Goal.Builder().setTitle(GOAL_TITLE).build();
+        mGoalsRepository.saveGoal(goal);
+
+        // When the goal is deleted before the flush is due
+        mGoalsRepository.deleteGoal(goal.getId());
+
+        // Then the save reaches the data source before the delete
+        InOrder inOrder = inOrder(mGoalsLocalDataSource);
+        inOrder.verify(mGoalsLocalDataSource).saveGoals(Lists.newArrayList(goal));
+        inOrder.verify(mGoalsLocalDataSource).deleteGoal(goal.getId());
+    }
+
+    @Test
+    public void trimMemory_flushesPendingWrites() {
+        // Given a buffered save
+        Goal goal = new Goal.Builder().setTitle(GOAL_TITLE).build();
+        mGoalsRepository.saveGoal(goal);
+
+        // When the app goes to the background
+        mGoalsRepository.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        // Then the save is written right away
+        verify(mGoalsLocalDataSource).saveGoals(Lists.newArrayList(goal));
     }
 
     @Test
@@ -136,7 +369,7 @@ public class GoalsRepositoryTest {
         verify(mGoalsRemoteDataSource).completeGoal(newGoal);
         verify(mGoalsLocalDataSource).completeGoal(newGoal);
         assertThat(mGoalsRepository.mCachedGoals.size(), is(1));
-        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getId()).isActive(), is(false));
+        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getGoalId()).isActive(), is(false));
     }
 
     @Test
@@ -152,7 +385,7 @@ public class GoalsRepositoryTest {
         verify(mGoalsRemoteDataSource).completeGoal(newGoal);
         verify(mGoalsLocalDataSource).completeGoal(newGoal);
         assertThat(mGoalsRepository.mCachedGoals.size(), is(1));
-        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getId()).isActive(), is(false));
+        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getGoalId()).isActive(), is(false));
     }
 
     @Test
@@ -168,7 +401,7 @@ public class GoalsRepositoryTest {
         verify(mGoalsRemoteDataSource).activateGoal(newGoal);
         verify(mGoalsLocalDataSource).activateGoal(newGoal);
         assertThat(mGoalsRepository.mCachedGoals.size(), is(1));
-        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getId()).isActive(), is(true));
+        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getGoalId()).isActive(), is(true));
     }
 
     @Test
@@ -181,10 +414,31 @@ public class GoalsRepositoryTest {
         mGoalsRepository.activateGoal(newGoal.getId());
 
         // Then the service API and persistent repository are called and the cache is updated
-        verify(mGoalsRemoteDataSource).activateGoal(newGoal);
-        verify(mGoalsLocalDataSource).activateGoal(newGoal);
+        List<String> goalIds = Collections.singletonList(newGoal.getId());
+        verify(mGoalsRemoteDataSource).activateGoals(goalIds);
+        verify(mGoalsLocalDataSource).activateGoals(goalIds);
         assertThat(mGoalsRepository.mCachedGoals.size(), is(1));
-        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getId()).isActive(), is(true));
+        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getGoalId()).isActive(), is(true));
+    }
+
+    @Test
+    public void archiveAndActivateGoalId_workOnceTheCacheLetTheGoalGo() {
+        // Given a goal that was evicted from the cache
+        Goal newGoal = new Goal(GOAL_TITLE, "Some Goal Description");
+        mGoalsRepository.saveGoal(newGoal);
+        mGoalsRepository.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertThat(mGoalsRepository.mCachedGoals.get(newGoal.getGoalId()), is(nullValue()));
+
+        // When it is archived, then activated, with its id
+        mGoalsRepository.archiveGoal(newGoal.getId());
+        mGoalsRepository.activateGoal(newGoal.getId());
+
+        // Then both reach the service API and the persistent repository
+        List<String> goalIds = Collections.singletonList(newGoal.getId());
+        verify(mGoalsRemoteDataSource).archiveGoals(goalIds);
+        verify(mGoalsLocalDataSource).archiveGoals(goalIds);
+        verify(mGoalsRemoteDataSource).activateGoals(goalIds);
+        verify(mGoalsLocalDataSource).activateGoals(goalIds);
     }
 
     @Test
@@ -197,6 +451,40 @@ public class GoalsRepositoryTest {
                 GoalsDataSource.GetGoalCallback.class));
     }
 
+    @Test
+    public void loadGoals_cancellingTheResultCancelsTheLocalLoad() {
+        // Given a local load that has not finished
+        LoadGoalsFuture localLoad = new LoadGoalsFuture();
+        when(mGoalsLocalDataSource.loadGoals(GoalsFilterType.ACTIVE_GOALS)).thenReturn(localLoad);
+        ListenableFuture<List<Goal>> result =
+                mGoalsRepository.loadGoals(GoalsFilterType.ACTIVE_GOALS);
+
+        // When the caller gives up
+        result.cancel(false);
+
+        // Then the local data source is told to drop the load
+        assertTrue(localLoad.isCancelled());
+    }
+
+    @Test
+    public void loadGoals_fallsBackToRemoteAndCaches() throws Exception {
+        // Given an empty local data source
+        LoadGoalsFuture localLoad = new LoadGoalsFuture();
+        LoadGoalsFuture remoteLoad = new LoadGoalsFuture();
+        when(mGoalsLocalDataSource.loadGoals(GoalsFilterType.ALL_GOALS)).thenReturn(localLoad);
+        when(mGoalsRemoteDataSource.loadGoals(GoalsFilterType.ALL_GOALS)).thenReturn(remoteLoad);
+        ListenableFuture<List<Goal>> result = mGoalsRepository.loadGoals(GoalsFilterType.ALL_GOALS);
+        localLoad.onDataNotAvailable();
+
+        // When the remote data source answers
+        remoteLoad.onGoalsLoaded(GOALS);
+
+        // Then its goals are delivered, cached and saved locally
+        assertThat(result.get().size(), is(GOALS.size()));
+        assertThat(mGoalsRepository.mCachedGoals.size(), is(GOALS.size()));
+        verify(mGoalsLocalDataSource).syncGoals(GOALS);
+    }
+
     @Test
     public void deleteCompletedGoals_deleteCompletedGoalsToServiceAPIUpdatesCache() {
         // Given 2 stub completed goals and 1 stub active goals in the repository
@@ -216,8 +504,9 @@ public class GoalsRepositoryTest {
         verify(mGoalsLocalDataSource).clearCompletedGoals();
 
         assertThat(mGoalsRepository.mCachedGoals.size(), is(1));
-        assertTrue(mGoalsRepository.mCachedGoals.get(newGoal2.getId()).isActive());
-        assertThat(mGoalsRepository.mCachedGoals.get(newGoal2.getId()).getTitle(), is(GOAL_TITLE2));
+        assertTrue(mGoalsRepository.mCachedGoals.get(newGoal2.getGoalId()).isActive());
+        assertThat(mGoalsRepository.mCachedGoals.get(newGoal2.getGoalId()).getTitle(),
+                is(GOAL_TITLE2));
     }
 
     @Test
@@ -268,7 +557,8 @@ public class GoalsRepositoryTest {
         setGoalsAvailable(mGoalsRemoteDataSource, GOALS);
 
         // Verify the goals from the remote data source are returned, not the local
-        verify(mGoalsLocalDataSource, never()).getGoals(mLoadGoalsCallback);
+        verify(mGoalsLocalDataSource, never()).getGoals(any(GoalsFilterType.class),
+                any(GoalsDataSource.LoadGoalsCallback.class));
         verify(mLoadGoalsCallback).onGoalsLoaded(GOALS);
     }
 
@@ -331,8 +621,48 @@ public class GoalsRepositoryTest {
         // Make the remote data source return data
         setGoalsAvailable(mGoalsRemoteDataSource, GOALS);
 
-        // Verify that the data fetched from the remote data source was saved in local.
-        verify(mGoalsLocalDataSource, times(GOALS.size())).saveGoal(any(Goal.class));
+        // Verify that the data fetched from the remote data source was synced to local in one
+        // step, without wiping the local table first.
+        verify(mGoalsLocalDataSource).syncGoals(GOALS);
+        verify(mGoalsLocalDataSource, never()).deleteAllGoals();
+        verify(mGoalsLocalDataSource, never()).saveGoal(any(Goal.class));
+    }
+
+    @Test
+    public void getGoals_concurrentCallsShareOneLocalLoad() {
+        GoalsDataSource.LoadGoalsCallback secondCallback =
+                mock(GoalsDataSource.LoadGoalsCallback.class);
+
+        // When goals are requested twice before the local data source answers
+        mGoalsRepository.getGoals(mLoadGoalsCallback);
+        mGoalsRepository.getGoals(secondCallback);
+
+        // Then the local data source is only queried once
+        setGoalsAvailable(mGoalsLocalDataSource, GOALS);
+
+        // And both callers receive the goals
+        verify(mLoadGoalsCallback).onGoalsLoaded(GOALS);
+        verify(secondCallback).onGoalsLoaded(GOALS);
+    }
+
+    @Test
+    public void getGoal_concurrentCallsShareOneLoad() {
+        // Given a goal id
+        final String goalId = "123";
+        GoalsDataSource.GetGoalCallback secondCallback =
+                mock(GoalsDataSource.GetGoalCallback.class);
+
+        // When the goal is requested twice before the data sources answer
+        mGoalsRepository.getGoal(goalId, mGetGoalCallback);
+        mGoalsRepository.getGoal(goalId, secondCallback);
+
+        // Then each data source is only queried once
+        setGoalNotAvailable(mGoalsLocalDataSource, goalId);
+        setGoalNotAvailable(mGoalsRemoteDataSource, goalId);
+
+        // And both callers are notified
+        verify(mGetGoalCallback).onDataNotAvailable();
+        verify(secondCallback).onDataNotAvailable();
     }
 
     /**
@@ -343,7 +673,8 @@ public class GoalsRepositoryTest {
         mGoalsRepository.getGoals(callback); // First call to API
 
         // Use the Mockito Captor to capture the callback
-        verify(mGoalsLocalDataSource).getGoals(mGoalsCallbackCaptor.capture());
+        verify(mGoalsLocalDataSource).getGoals(eq(GoalsFilterType.ALL_GOALS),
+                mGoalsCallbackCaptor.capture());
 
         // Local data source doesn't have data yet
         mGoalsCallbackCaptor.getValue().onDataNotAvailable();
@@ -359,13 +690,30 @@ public class GoalsRepositoryTest {
     }
 
     private void setGoalsNotAvailable(GoalsDataSource dataSource) {
-        verify(dataSource).getGoals(mGoalsCallbackCaptor.capture());
-        mGoalsCallbackCaptor.getValue().onDataNotAvailable();
+        captureGoalsCallback(dataSource).onDataNotAvailable();
     }
 
     private void setGoalsAvailable(GoalsDataSource dataSource, List<Goal> goals) {
-        verify(dataSource).getGoals(mGoalsCallbackCaptor.capture());
-        mGoalsCallbackCaptor.getValue().onGoalsLoaded(goals);
+        captureGoalsCallback(dataSource).onGoalsLoaded(goals);
+    }
+
+    /**
+     * The repository pushes the filter down to the local data source, while the remote data
+     * source is always asked for everything.
+     */
+    private GoalsDataSource.LoadGoalsCallback captureGoalsCallback(GoalsDataSource dataSource) {
+        if (dataSource == mGoalsLocalDataSource) {
+            verify(dataSource).getGoals(eq(GoalsFilterType.ALL_GOALS),
+                    mGoalsCallbackCaptor.capture());
+        } else {
+            verify(dataSource).getGoals(mGoalsCallbackCaptor.capture());
+        }
+        return mGoalsCallbackCaptor.getValue();
+    }
+
+    private void runScheduledFlush() {
+        verify(mWriteScheduler).schedule(mFlushCaptor.capture(), anyLong());
+        mFlushCaptor.getValue().run();
     }
 
     private void setGoalNotAvailable(GoalsDataSource dataSource, String goalId) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.goals.GoalsFilterType;
+import com.google.common.primitives.Ints;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link GoalsSearchIndex}.
+ */
+public class GoalsSearchIndexTest {
+
+    private static final Goal WATER_THE_PLANTS = new Goal.Builder(new GoalId(0L, 1L))
+            .setTitle("Water the plants")
+            .build();
+
+    private static final Goal CALL_MOM = new Goal.Builder(new GoalId(0L, 2L))
+            .setTitle("Call Mom")
+            .build();
+
+    private static final Goal PLANT_TOMATOES = new Goal.Builder(new GoalId(0L, 3L))
+            .setTitle("Plant tomatoes")
+            .setArchived(true)
+            .build();
+
+    private static final Goal UNTITLED = new Goal.Builder(new GoalId(0L, 4L))
+            .build();
+
+    private static final Goal WALK_THEN_WATER = new Goal.Builder(new GoalId(0L, 5L))
+            .setTitle("Walk, then water")
+            .build();
+
+    private GoalsSearchIndex mIndex;
+
+    @Before
+    public void setupIndex() {
+        GoalsColumnStore.Builder builder = new GoalsColumnStore.Builder();
+        builder.put(WATER_THE_PLANTS);
+        builder.put(CALL_MOM);
+        builder.put(PLANT_TOMATOES);
+        builder.put(UNTITLED);
+        builder.put(WALK_THEN_WATER);
+        mIndex = GoalsSearchIndex.build(builder.build());
+    }
+
+    @Test
+    public void tokenize_splitsOnPunctuationAndLowersCase() {
+        assertThat(GoalsSearchIndex.tokenize("Walk, then WATER  2x!"),
+                is(Arrays.asList("walk", "then", "water", "2x")));
+        assertThat(GoalsSearchIndex.tokenize(null).isEmpty(), is(true));
+    }
+
+    @Test
+    public void search_matchesWordPrefixesInStoreOrder() {
+        assertThat(search(GoalsFilterType.ALL_GOALS, 10, "wat"), is(Arrays.asList(0, 4)));
+        assertThat(search(GoalsFilterType.ALL_GOALS, 10, "pla"), is(Arrays.asList(0, 2)));
+        assertThat(search(GoalsFilterType.ALL_GOALS, 10, "lant").isEmpty(), is(true));
+    }
+
+    @Test
+    public void search_requiresEveryPrefix() {
+        assertThat(search(GoalsFilterType.ALL_GOALS, 10, "wa", "pl"), is(Arrays.asList(0)));
+        assertThat(search(GoalsFilterType.ALL_GOALS, 10, "call", "pl").isEmpty(), is(true));
+    }
+
+    @Test
+    public void search_appliesFilterAndLimit() {
+        assertThat(search(GoalsFilterType.ACTIVE_GOALS, 10, "pla"), is(Arrays.asList(0)));
+        assertThat(search(GoalsFilterType.ARCHIVED_GOALS, 10, "pla"), is(Arrays.asList(2)));
+        assertThat(search(GoalsFilterType.ALL_GOALS, 1, "wa"), is(Arrays.asList(0)));
+    }
+
+    @Test
+    public void matches_agreesWithTheIndex() {
+        assertThat(GoalsSearchIndex.matches("Walk, then water", Arrays.asList("wat", "wa")),
+                is(true));
+        assertThat(GoalsSearchIndex.matches("Call Mom", Collections.singletonList("mop")),
+                is(false));
+    }
+
+    private List<Integer> search(GoalsFilterType filtering, int limit, String... prefixes) {
+        return Ints.asList(mIndex.search(filtering, Arrays.asList(prefixes), limit));
+    }
+}
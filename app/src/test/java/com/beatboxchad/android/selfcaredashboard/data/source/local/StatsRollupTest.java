@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.data.source.local;
+
+import com.beatboxchad.android.selfcaredashboard.data.DailyStats;
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalStats;
+import com.beatboxchad.android.selfcaredashboard.data.GoalTouch;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.beatboxchad.android.selfcaredashboard.data.source.local.StatsRollup.DAY_MILLIS;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link StatsRollup}.
+ */
+public class StatsRollupTest {
+
+    private static final Goal DO_GOAL = new Goal.Builder()
+            .setTitle("Water the plants")
+            .setPolarity(true)
+            .setInterval(2)
+            .build();
+
+    private static final Goal AVOID_GOAL = new Goal.Builder()
+            .setTitle("Doomscroll")
+            .setPolarity(false)
+            .setInterval(3)
+            .build();
+
+    @Test
+    public void goalToDo_isOnTimeWhenTouchedWithinItsInterval() {
+        // When a goal due every 2 days is touched on days 0, 2, 5 and 6
+        GoalStats stats = fold(DO_GOAL, new HashMap<Long, DailyStats>(), 0, 2, 5, 6);
+
+        // Then only the interval of 3 days was late, by a day, and it broke the streak
+        assertThat(stats.getDaysTouched(), is(4));
+        assertThat(stats.getOnTime(), is(2));
+        assertThat(stats.getOverrunDays(), is(1L));
+        assertThat(stats.getCurrentStreak(), is(2));
+        assertThat(stats.getLongestStreak(), is(2));
+        assertThat(stats.getOnTimeRatio(), is(2f / 3));
+        assertThat(stats.getLastTouchedDay(), is(6L));
+    }
+
+    @Test
+    public void goalToAvoid_isOnTimeWhenNotTouchedBeforeItsInterval() {
+        // When a goal to avoid for 3 days is touched on days 0, 1 and 5
+        GoalStats stats = fold(AVOID_GOAL, new HashMap<Long, DailyStats>(), 0, 1, 5);
+
+        // Then the touch a day later missed by 2 days, and the one 4 days later was on time
+        assertThat(stats.getOnTime(), is(1));
+        assertThat(stats.getOverrunDays(), is(2L));
+        assertThat(stats.getMeanOverrunDays(), is(1f));
+        assertThat(stats.getCurrentStreak(), is(2));
+    }
+
+    @Test
+    public void touchOnTheSameDay_isNotCounted() {
+        GoalStats stats = fold(DO_GOAL, new HashMap<Long, DailyStats>(), 3);
+
+        assertThat(StatsRollup.add(stats, DO_GOAL, 3 * DAY_MILLIS + 1000),
+                is(sameInstance(stats)));
+    }
+
+    @Test
+    public void touchOnAnEarlierDay_needsARebuild() {
+        GoalStats stats = fold(DO_GOAL, new HashMap<Long, DailyStats>(), 3);
+
+        assertThat(StatsRollup.add(stats, DO_GOAL, 2 * DAY_MILLIS), is(nullValue()));
+    }
+
+    @Test
+    public void dailyStats_sumEveryGoalTouchedThatDay() {
+        // When two goals are touched on the same days
+        Map<Long, DailyStats> dailyStats = new HashMap<>();
+        fold(DO_GOAL, dailyStats, 0, 5);
+        fold(AVOID_GOAL, dailyStats, 0, 5);
+
+        // Then each day counts both, with the late interval of the goal to do
+        assertThat(dailyStats.get(0L), is(new DailyStats(0, 2, 0, 0)));
+        assertThat(dailyStats.get(5L), is(new DailyStats(5, 2, 1, 3)));
+    }
+
+    @Test
+    public void foldFromABaseline_countsLikeTheWholeHistory() {
+        // Given a history folded whole
+        Map<Long, DailyStats> whole = new HashMap<>();
+        GoalStats stats = fold(DO_GOAL, whole, 0, 2, 5, 6);
+
+        // When its first touches are folded into a baseline and the rest folded from it
+        Map<Long, DailyStats> split = new HashMap<>();
+        GoalStats baseline = fold(DO_GOAL, split, 0, 2);
+        List<GoalTouch> rest = new ArrayList<>();
+        rest.add(new GoalTouch(DO_GOAL.getGoalId(), 5 * DAY_MILLIS));
+        rest.add(new GoalTouch(DO_GOAL.getGoalId(), 6 * DAY_MILLIS));
+
+        // Then both count the same
+        assertThat(StatsRollup.fold(baseline, DO_GOAL, rest, split), is(stats));
+        assertThat(split, is(whole));
+    }
+
+    @Test
+    public void combine_addsAndSubtractsTheCountsOfADay() {
+        DailyStats daily = new DailyStats(4, 3, 2, 5);
+        DailyStats other = new DailyStats(4, 1, 1, 2);
+
+        assertThat(StatsRollup.combine(daily, other, 1), is(new DailyStats(4, 4, 3, 7)));
+        assertThat(StatsRollup.combine(daily, other, -1), is(new DailyStats(4, 2, 1, 3)));
+        assertThat(StatsRollup.combine(null, other, 1), is(other));
+    }
+
+    @Test
+    public void dayOf_roundsDown() {
+        assertThat(StatsRollup.dayOf(DAY_MILLIS - 1), is(0L));
+        assertThat(StatsRollup.dayOf(-1), is(-1L));
+        assertThat(StatsRollup.dayOf(-DAY_MILLIS), is(-1L));
+    }
+
+    private static GoalStats fold(Goal goal, Map<Long, DailyStats> dailyStats, int... days) {
+        List<GoalTouch> touches = new ArrayList<>();
+        for (int day : days) {
+            // At noon, so that tests can touch again earlier on the same day.
+            touches.add(new GoalTouch(goal.getGoalId(), day * DAY_MILLIS + DAY_MILLIS / 2));
+        }
+        return StatsRollup.fold(goal, touches, dailyStats);
+    }
+}
@@ -149,7 +149,7 @@ public class GoalDetailViewModelTest {
         mGoalDetailViewModel.start(mGoal.getId());
 
         // Use a captor to get a reference for the callback.
-        verify(mGoalsRepository).getGoal(eq(mGoal.getId()), mGetGoalCallbackCaptor.capture());
+        verify(mGoalsRepository).observeGoal(eq(mGoal.getId()), mGetGoalCallbackCaptor.capture());
 
         // When the repository returns an error
         mGetGoalCallbackCaptor.getValue().onDataNotAvailable(); // Trigger callback error
@@ -180,7 +180,7 @@ public class GoalDetailViewModelTest {
         mGoalDetailViewModel.start(mGoal.getId());
 
         // Use a captor to get a reference for the callback.
-        verify(mGoalsRepository).getGoal(eq(mGoal.getId()), mGetGoalCallbackCaptor.capture());
+        verify(mGoalsRepository).observeGoal(eq(mGoal.getId()), mGetGoalCallbackCaptor.capture());
 
         mGetGoalCallbackCaptor.getValue().onGoalLoaded(mGoal); // Trigger callback
     }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link DueIndex}.
+ */
+public class DueIndexTest {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static final Goal SOON = new Goal.Builder("00000000-0000-0000-0000-000000000001")
+            .setTitle("Title1")
+            .setPolarity(true)
+            .setTouched(10 * DAY_MILLIS)
+            .setInterval(5)
+            .build();
+
+    private static final Goal LATER = new Goal.Builder("00000000-0000-0000-0000-000000000002")
+            .setTitle("Title2")
+            .setPolarity(true)
+            .setTouched(20 * DAY_MILLIS)
+            .setInterval(5)
+            .build();
+
+    private static final Goal OVERDUE = new Goal.Builder("00000000-0000-0000-0000-000000000003")
+            .setTitle("Title3")
+            .setPolarity(true)
+            .setTouched(0)
+            .setInterval(3)
+            .build();
+
+    private static final Goal ALWAYS_DUE = new Goal.Builder(
+            "00000000-0000-0000-0000-000000000004")
+            .setTitle("Title4")
+            .setPolarity(true)
+            .setTouched(DAY_MILLIS)
+            .setInterval(0)
+            .build();
+
+    @Test
+    public void goals_areInDueOrder() {
+        DueIndex index = new DueIndex();
+
+        index.replaceAll(Arrays.asList(LATER, SOON, OVERDUE));
+
+        assertThat(index.goals(), is(Arrays.asList(OVERDUE, SOON, LATER)));
+    }
+
+    @Test
+    public void goalsToAvoid_comeAfterEveryGoalToDo() {
+        DueIndex index = new DueIndex();
+        Goal avoidSoon = new Goal.Builder(SOON).setPolarity(false).build();
+        Goal avoidOverdue = new Goal.Builder(OVERDUE).setPolarity(false).build();
+
+        index.replaceAll(Arrays.asList(avoidOverdue, LATER, avoidSoon, ALWAYS_DUE));
+
+        // The goals to avoid are never due, so they are ordered by id only
+        assertThat(index.goals(), is(Arrays.asList(ALWAYS_DUE, LATER, avoidSoon, avoidOverdue)));
+        assertThat(avoidOverdue.getDueAt(), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void goalsWithoutAnInterval_areDueWhenTouched() {
+        Goal negative = new Goal.Builder(ALWAYS_DUE).setInterval(-2).build();
+
+        assertThat(ALWAYS_DUE.getDueAt(), is(DAY_MILLIS));
+        assertThat(negative.getDueAt(), is(DAY_MILLIS));
+    }
+
+    @Test
+    public void touchingAGoal_movesOnlyThatGoal() {
+        // Given an index of three goals
+        DueIndex index = new DueIndex();
+        index.replaceAll(Arrays.asList(LATER, SOON, OVERDUE));
+
+        // When the overdue goal is touched
+        Goal touched = new Goal.Builder(OVERDUE).setTouched(30 * DAY_MILLIS).build();
+        assertThat(index.put(touched), is(true));
+
+        // Then it moves to the end, and putting it again changes nothing
+        List<Goal> goals = index.goals();
+        assertThat(goals.get(2).getTouched(), is(30 * DAY_MILLIS));
+        assertThat(index.put(touched), is(false));
+        assertThat(index.size(), is(3));
+    }
+
+    @Test
+    public void replaceAll_removesMissingGoals() {
+        DueIndex index = new DueIndex();
+        index.replaceAll(Arrays.asList(LATER, SOON, OVERDUE));
+
+        assertThat(index.replaceAll(Arrays.asList(LATER, OVERDUE)), is(true));
+        assertThat(index.goals(), is(Arrays.asList(OVERDUE, LATER)));
+        assertThat(index.replaceAll(Arrays.asList(OVERDUE, LATER)), is(false));
+    }
+}
@@ -153,6 +153,7 @@ public class GoalItemViewModelTest {
         mGoalItemViewModel.start(mGoal.getId());
 
         // Use a captor to get a reference for the callback.
-        verify(mGoalsRepository).getGoal(eq(mGoal.getId()), mLoadGoalsCallbackCaptor.capture());
+        verify(mGoalsRepository).observeGoal(eq(mGoal.getId()),
+                mLoadGoalsCallbackCaptor.capture());
     }
 }
\ No newline at end of file
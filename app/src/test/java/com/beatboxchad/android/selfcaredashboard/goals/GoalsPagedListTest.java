@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource.LoadGoalsCallback;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for {@link GoalsPagedList}.
+ */
+public class GoalsPagedListTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int MAX_LOADED_PAGES = 3;
+
+    private static final int SIZE = 100;
+
+    @Mock
+    private GoalsDataSource mDataSource;
+
+    @Mock
+    private GoalsPagedList.Callback mCallback;
+
+    @Captor
+    private ArgumentCaptor<LoadGoalsCallback> mLoadGoalsCallbackCaptor;
+
+    private GoalsPagedList mPagedList;
+
+    @Before
+    public void setupPagedList() {
+        MockitoAnnotations.initMocks(this);
+
+        mPagedList = new GoalsPagedList(mDataSource, GoalsFilterType.ACTIVE_GOALS, SIZE,
+                PAGE_SIZE, MAX_LOADED_PAGES);
+        mPagedList.setCallback(mCallback);
+    }
+
+    @Test
+    public void get_loadsFirstPageByKey() {
+        // When the first row is read
+        assertThat(mPagedList.get(0), is(nullValue()));
+
+        // Then the first page is requested from the start of the keyset
+        verify(mDataSource).getGoalsPage(eq(GoalsFilterType.ACTIVE_GOALS), (GoalId) isNull(),
+                eq(PAGE_SIZE), mLoadGoalsCallbackCaptor.capture());
+        List<Goal> page = page(0);
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(page);
+
+        // And once loaded the row is available and the callback fired
+        assertThat(mPagedList.get(0), is(page.get(0)));
+        verify(mCallback).onPageLoaded(0);
+    }
+
+    @Test
+    public void get_nearPageEndPrefetchesNextPageAfterLastId() {
+        // Given the first page is loaded
+        List<Goal> firstPage = page(0);
+        mPagedList.get(0);
+        verify(mDataSource).getGoalsPage(any(GoalsFilterType.class), (GoalId) isNull(),
+                anyInt(), mLoadGoalsCallbackCaptor.capture());
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(firstPage);
+
+        // When reading close to the end of it
+        mPagedList.get(PAGE_SIZE - 1);
+
+        // Then the next page is requested right after the last goal of the first page
+        verify(mDataSource).getGoalsPage(eq(GoalsFilterType.ACTIVE_GOALS),
+                eq(firstPage.get(PAGE_SIZE - 1).getGoalId()), eq(PAGE_SIZE),
+                any(LoadGoalsCallback.class));
+    }
+
+    @Test
+    public void get_jumpWithoutKeyLoadsByOffset() {
+        // When reading a row far from any loaded page
+        mPagedList.get(55);
+
+        // Then the page is requested by offset
+        verify(mDataSource).getGoalsPageAt(eq(GoalsFilterType.ACTIVE_GOALS), eq(50),
+                eq(PAGE_SIZE), any(LoadGoalsCallback.class));
+        verify(mDataSource, never()).getGoalsPage(any(GoalsFilterType.class), any(GoalId.class),
+                anyInt(), any(LoadGoalsCallback.class));
+    }
+
+    @Test
+    public void get_inDueOrderLoadsByOffsetFromDueIndex() {
+        // Given a list of the most overdue goals first
+        GoalsPagedList pagedList = new GoalsPagedList(mDataSource, GoalsFilterType.ACTIVE_GOALS,
+                GoalsSortType.MOST_OVERDUE_FIRST, SIZE, PAGE_SIZE, MAX_LOADED_PAGES);
+
+        // When reading the second page
+        pagedList.get(PAGE_SIZE + 1);
+
+        // Then it is requested in due order by offset, never by id
+        verify(mDataSource).getGoalsInDueOrderAt(eq(GoalsFilterType.ACTIVE_GOALS), eq(PAGE_SIZE),
+                eq(PAGE_SIZE), any(LoadGoalsCallback.class));
+        verify(mDataSource, never()).getGoalsPage(any(GoalsFilterType.class), any(GoalId.class),
+                anyInt(), any(LoadGoalsCallback.class));
+    }
+
+    @Test
+    public void pagesFarFromViewportAreDropped() {
+        // When pages are loaded one after the other while scrolling down
+        for (int page = 0; page < 5; page++) {
+            mPagedList.get(page * PAGE_SIZE + PAGE_SIZE / 2);
+            loadPendingPage(page);
+        }
+
+        // Then only the pages around the last read position stay in memory
+        assertThat(mPagedList.getLoadedPageCount(), is(MAX_LOADED_PAGES));
+        assertThat(mPagedList.isPageLoaded(0), is(false));
+        assertThat(mPagedList.isPageLoaded(4), is(true));
+    }
+
+    @Test
+    public void detach_dropsLateResults() {
+        // Given a page request in flight
+        mPagedList.get(0);
+        verify(mDataSource).getGoalsPage(any(GoalsFilterType.class), (GoalId) isNull(),
+                anyInt(), mLoadGoalsCallbackCaptor.capture());
+
+        // When the list is detached before the page arrives
+        mPagedList.detach();
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(page(0));
+
+        // Then the page is ignored
+        assertThat(mPagedList.isPageLoaded(0), is(false));
+        verify(mCallback, never()).onPageLoaded(anyInt());
+    }
+
+    @Test
+    public void invalidate_reloadsLoadedPagesInPlace() {
+        // Given the first page is loaded
+        mPagedList.get(0);
+        loadPendingPage(0);
+
+        // When the goals change
+        mPagedList.invalidate();
+
+        // Then the page is requested again, and its goals stay readable until it arrives
+        verify(mDataSource, times(2)).getGoalsPage(eq(GoalsFilterType.ACTIVE_GOALS),
+                (GoalId) isNull(), eq(PAGE_SIZE), mLoadGoalsCallbackCaptor.capture());
+        assertThat(mPagedList.get(0), is(page(0).get(0)));
+        Goal edited = new Goal.Builder(page(0).get(0)).setTitle("Edited").build();
+        List<Goal> reloaded = page(0);
+        reloaded.set(0, edited);
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(reloaded);
+        assertThat(mPagedList.get(0).getTitle(), is("Edited"));
+        verify(mCallback, times(2)).onPageLoaded(0);
+    }
+
+    @Test
+    public void invalidate_dropsLoadsInFlight() {
+        // Given a page request in flight
+        mPagedList.get(0);
+        verify(mDataSource).getGoalsPage(any(GoalsFilterType.class), (GoalId) isNull(),
+                anyInt(), mLoadGoalsCallbackCaptor.capture());
+
+        // When the goals change before the page arrives
+        mPagedList.invalidate();
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(page(0));
+
+        // Then the page, read before the change, is ignored and the next read requests it again
+        assertThat(mPagedList.isPageLoaded(0), is(false));
+        mPagedList.get(0);
+        verify(mDataSource, times(2)).getGoalsPage(any(GoalsFilterType.class), (GoalId) isNull(),
+                anyInt(), any(LoadGoalsCallback.class));
+    }
+
+    private void loadPendingPage(int page) {
+        // The first page is loaded by key and every later one right after its predecessor.
+        if (page == 0) {
+            verify(mDataSource).getGoalsPage(any(GoalsFilterType.class), (GoalId) isNull(),
+                    anyInt(), mLoadGoalsCallbackCaptor.capture());
+        } else {
+            verify(mDataSource).getGoalsPage(any(GoalsFilterType.class),
+                    eq(lastIdOfPage(page - 1)), anyInt(), mLoadGoalsCallbackCaptor.capture());
+        }
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(page(page));
+    }
+
+    private static String lastIdOfPage(int page) {
+        return goalId(page * PAGE_SIZE + PAGE_SIZE - 1);
+    }
+
+    private static String goalId(int i) {
+        return String.format("00000000-0000-0000-0000-%012d", i);
+    }
+
+    private static List<Goal> page(int page) {
+        List<Goal> goals = new ArrayList<>();
+        for (int i = page * PAGE_SIZE; i < (page + 1) * PAGE_SIZE; i++) {
+            goals.add(new Goal.Builder(goalId(i)).setTitle("Title" + i).build());
+        }
+        return goals;
+    }
+}
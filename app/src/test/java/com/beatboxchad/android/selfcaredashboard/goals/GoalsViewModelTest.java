@@ -18,12 +18,18 @@ package com.beatboxchad.android.selfcaredashboard.goals;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.os.Handler;
 
 import com.beatboxchad.android.selfcaredashboard.R;
 import com.beatboxchad.android.selfcaredashboard.addeditgoal.AddEditGoalActivity;
 import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource.GetGoalsCountCallback;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource.LoadGoalsCallback;
+import com.beatboxchad.android.selfcaredashboard.data.source.GoalsDataSource.RevalidatingLoadGoalsCallback;
 import com.beatboxchad.android.selfcaredashboard.data.source.GoalsRepository;
+import com.beatboxchad.android.selfcaredashboard.data.source.LoadGoalsFuture;
+import com.beatboxchad.android.selfcaredashboard.data.source.RefreshPolicy;
 import com.beatboxchad.android.selfcaredashboard.goaldetail.GoalDetailActivity;
 import com.google.common.collect.Lists;
 
@@ -42,7 +48,12 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -62,9 +73,20 @@ public class GoalsViewModelTest {
     @Mock
     private GoalsActivity mGoalsNavigator;
 
+    @Mock
+    private Handler mSearchHandler;
+
     @Captor
     private ArgumentCaptor<LoadGoalsCallback> mLoadGoalsCallbackCaptor;
 
+    @Captor
+    private ArgumentCaptor<GetGoalsCountCallback> mGetGoalsCountCallbackCaptor;
+
+    @Captor
+    private ArgumentCaptor<RevalidatingLoadGoalsCallback> mRevalidatingCallbackCaptor;
+
+    private final LoadGoalsFuture mGoalsLoad = new LoadGoalsFuture();
+
     private GoalsViewModel mGoalsViewModel;
 
     private static final String SNACKBAR_TEXT = "Snackbar text";
@@ -76,10 +98,11 @@ public class GoalsViewModelTest {
         MockitoAnnotations.initMocks(this);
 
         setupContext();
+        when(mGoalsRepository.loadGoals(any(GoalsFilterType.class))).thenReturn(mGoalsLoad);
 
         // Get a reference to the class under test
         mGoalsViewModel = new GoalsViewModel(
-                mGoalsRepository, mContext);
+                mGoalsRepository, mContext, mSearchHandler);
         mGoalsViewModel.setNavigator(mGoalsNavigator);
 
         // We initialise the goals to 3, with one active and two archived
@@ -106,13 +129,16 @@ public class GoalsViewModelTest {
         mGoalsViewModel.setFiltering(GoalsFilterType.ALL_GOALS);
         mGoalsViewModel.loadGoals(true);
 
+        // The goals are counted first, and few enough to be loaded at once
+        setGoalsCount(GoalsFilterType.ALL_GOALS, GOALS.size());
+
         // Callback is captured and invoked with stubbed goals
-        verify(mGoalsRepository).getGoals(mLoadGoalsCallbackCaptor.capture());
+        verify(mGoalsRepository).loadGoals(eq(GoalsFilterType.ALL_GOALS));
 
 
         // Then progress indicator is shown
         assertTrue(mGoalsViewModel.dataLoading.get());
-        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(GOALS);
+        mGoalsLoad.onGoalsLoaded(GOALS);
 
         // Then progress indicator is hidden
         assertFalse(mGoalsViewModel.dataLoading.get());
@@ -129,9 +155,12 @@ public class GoalsViewModelTest {
         mGoalsViewModel.setFiltering(GoalsFilterType.ACTIVE_GOALS);
         mGoalsViewModel.loadGoals(true);
 
-        // Callback is captured and invoked with stubbed goals
-        verify(mGoalsRepository).getGoals(mLoadGoalsCallbackCaptor.capture());
-        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(GOALS);
+        // The goals are counted first, and few enough to be loaded at once
+        setGoalsCount(GoalsFilterType.ACTIVE_GOALS, 1);
+
+        // The filter is handed to the repository and the callback is invoked with its result
+        verify(mGoalsRepository).loadGoals(eq(GoalsFilterType.ACTIVE_GOALS));
+        mGoalsLoad.onGoalsLoaded(GOALS.subList(0, 1));
 
         // Then progress indicator is hidden
         assertFalse(mGoalsViewModel.dataLoading.get());
@@ -148,9 +177,12 @@ public class GoalsViewModelTest {
         mGoalsViewModel.setFiltering(GoalsFilterType.ARCHIVED_GOALS);
         mGoalsViewModel.loadGoals(true);
 
-        // Callback is captured and invoked with stubbed goals
-        verify(mGoalsRepository).getGoals(mLoadGoalsCallbackCaptor.capture());
-        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(GOALS);
+        // The goals are counted first, and few enough to be loaded at once
+        setGoalsCount(GoalsFilterType.ARCHIVED_GOALS, 2);
+
+        // The filter is handed to the repository and the callback is invoked with its result
+        verify(mGoalsRepository).loadGoals(eq(GoalsFilterType.ARCHIVED_GOALS));
+        mGoalsLoad.onGoalsLoaded(GOALS.subList(1, 3));
 
         // Then progress indicator is hidden
         assertFalse(mGoalsViewModel.dataLoading.get());
@@ -176,7 +208,160 @@ public class GoalsViewModelTest {
 
         // Then repository is called and the view is notified
         verify(mGoalsRepository).clearArchivedGoals();
-        verify(mGoalsRepository).getGoals(any(LoadGoalsCallback.class));
+        verify(mGoalsRepository).getGoalsCount(any(GoalsFilterType.class),
+                any(GetGoalsCountCallback.class));
+    }
+
+    @Test
+    public void loadGoals_thenObservesChanges() {
+        // Given the goals were loaded
+        mGoalsViewModel.setFiltering(GoalsFilterType.ACTIVE_GOALS);
+        mGoalsViewModel.loadGoals(true);
+        setGoalsCount(GoalsFilterType.ACTIVE_GOALS, 1);
+        verify(mGoalsRepository).loadGoals(eq(GoalsFilterType.ACTIVE_GOALS));
+        mGoalsLoad.onGoalsLoaded(GOALS.subList(0, 1));
+
+        // Then the same filter is observed
+        verify(mGoalsRepository).observeGoals(eq(GoalsFilterType.ACTIVE_GOALS),
+                mLoadGoalsCallbackCaptor.capture());
+
+        // And a change is shown without another load
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(GOALS);
+        assertThat(mGoalsViewModel.items.size(), is(GOALS.size()));
+        verify(mGoalsRepository).loadGoals(any(GoalsFilterType.class));
+    }
+
+    @Test
+    public void refreshShownGoals_keepsThemWhileRevalidating() {
+        // Given goals on screen
+        mGoalsViewModel.loadGoals(false);
+        setGoalsCount(GoalsFilterType.ALL_GOALS, GOALS.size());
+        verify(mGoalsRepository).loadGoals(eq(GoalsFilterType.ALL_GOALS));
+        mGoalsLoad.onGoalsLoaded(GOALS);
+
+        // When the user pulls to refresh
+        mGoalsViewModel.loadGoals(true);
+
+        // Then the repository revalidates in the background and the goals stay on screen
+        verify(mGoalsRepository).getGoals(eq(GoalsFilterType.ALL_GOALS),
+                eq(RefreshPolicy.STALE_WHILE_REVALIDATE),
+                mRevalidatingCallbackCaptor.capture());
+        mRevalidatingCallbackCaptor.getValue().onStaleGoalsLoaded(GOALS, 1000);
+        assertTrue(mGoalsViewModel.dataLoading.get());
+        assertThat(mGoalsViewModel.items.size(), is(GOALS.size()));
+
+        // When the remote data source has one goal less
+        mRevalidatingCallbackCaptor.getValue().onGoalsLoaded(GOALS.subList(0, 2));
+        mRevalidatingCallbackCaptor.getValue().onRevalidationFinished(true);
+
+        // Then the list is updated and the loading indicator hidden
+        assertThat(mGoalsViewModel.items.size(), is(2));
+        assertFalse(mGoalsViewModel.dataLoading.get());
+    }
+
+    @Test
+    public void loadManyGoals_showsPagedList() {
+        // When loading goals and there are more than can be held at once
+        mGoalsViewModel.setFiltering(GoalsFilterType.ACTIVE_GOALS);
+        mGoalsViewModel.loadGoals(true);
+        setGoalsCount(GoalsFilterType.ACTIVE_GOALS, GoalsViewModel.PAGED_LIST_THRESHOLD + 1);
+
+        // Then the goals are not all loaded
+        verify(mGoalsRepository, never()).loadGoals(any(GoalsFilterType.class));
+
+        // And a paged list over the filtered goals is shown instead
+        GoalsPagedList pagedList = mGoalsViewModel.pagedItems.get();
+        assertThat(pagedList.size(), is(GoalsViewModel.PAGED_LIST_THRESHOLD + 1));
+        assertThat(pagedList.getFiltering(), is(GoalsFilterType.ACTIVE_GOALS));
+        assertTrue(mGoalsViewModel.items.isEmpty());
+        assertFalse(mGoalsViewModel.isEmpty());
+        assertFalse(mGoalsViewModel.dataLoading.get());
+    }
+
+    @Test
+    public void goalEditedInPagedList_reloadsTheLoadedPages() {
+        // Given a paged list with its first page loaded
+        mGoalsViewModel.setFiltering(GoalsFilterType.ACTIVE_GOALS);
+        mGoalsViewModel.loadGoals(true);
+        setGoalsCount(GoalsFilterType.ACTIVE_GOALS, GoalsViewModel.PAGED_LIST_THRESHOLD + 1);
+        GoalsPagedList pagedList = mGoalsViewModel.pagedItems.get();
+        pagedList.get(0);
+        verify(mGoalsRepository).getGoalsPage(eq(GoalsFilterType.ACTIVE_GOALS), (GoalId) isNull(),
+                anyInt(), mLoadGoalsCallbackCaptor.capture());
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(GOALS);
+
+        // When a goal is edited, which leaves the count as it was
+        verify(mGoalsRepository).observeGoalsCount(eq(GoalsFilterType.ACTIVE_GOALS),
+                mGetGoalsCountCallbackCaptor.capture());
+        mGetGoalsCountCallbackCaptor.getValue()
+                .onGoalsCounted(GoalsViewModel.PAGED_LIST_THRESHOLD + 1);
+
+        // Then the same list reads its loaded page again
+        assertThat(mGoalsViewModel.pagedItems.get(), is(pagedList));
+        verify(mGoalsRepository, times(2)).getGoalsPage(eq(GoalsFilterType.ACTIVE_GOALS),
+                (GoalId) isNull(), anyInt(), any(LoadGoalsCallback.class));
+    }
+
+    @Test
+    public void newLoad_cancelsThePendingOne() {
+        // Given a load of the active goals in flight
+        mGoalsViewModel.setFiltering(GoalsFilterType.ACTIVE_GOALS);
+        mGoalsViewModel.loadGoals(true);
+        setGoalsCount(GoalsFilterType.ACTIVE_GOALS, 1);
+
+        // When the user switches to the archived goals before it finishes
+        mGoalsViewModel.setFiltering(GoalsFilterType.ARCHIVED_GOALS);
+        mGoalsViewModel.loadGoals(true);
+
+        // Then the first load is cancelled, and its goals are never shown
+        assertTrue(mGoalsLoad.isCancelled());
+        mGoalsLoad.onGoalsLoaded(GOALS.subList(0, 1));
+        assertTrue(mGoalsViewModel.items.isEmpty());
+    }
+
+    @Test
+    public void activityDestroyed_cancelsThePendingLoad() {
+        mGoalsViewModel.loadGoals(true);
+        setGoalsCount(GoalsFilterType.ALL_GOALS, GOALS.size());
+
+        mGoalsViewModel.onActivityDestroyed();
+
+        assertTrue(mGoalsLoad.isCancelled());
+    }
+
+    @Test
+    public void countAnsweredAfterSearchStarts_leavesTheResultsShown() {
+        // Given a load whose count has not come back yet
+        mGoalsViewModel.loadGoals(true);
+        verify(mGoalsRepository).getGoalsCount(eq(GoalsFilterType.ALL_GOALS),
+                mGetGoalsCountCallbackCaptor.capture());
+
+        // When a search finds one goal, and the count comes back afterwards
+        List<Goal> results = GOALS.subList(0, 1);
+        search("Title1", results);
+        mGetGoalsCountCallbackCaptor.getValue().onGoalsCounted(GOALS.size());
+
+        // Then the goals are neither loaded nor observed over the results
+        verify(mGoalsRepository, never()).loadGoals(any(GoalsFilterType.class));
+        verify(mGoalsRepository, never()).observeGoals(any(GoalsFilterType.class),
+                any(LoadGoalsCallback.class));
+        assertThat(mGoalsViewModel.items, is(results));
+    }
+
+    @Test
+    public void loadFinishedAfterSearchStarts_leavesTheResultsShown() {
+        // Given a load of every goal in flight
+        mGoalsViewModel.loadGoals(true);
+        setGoalsCount(GoalsFilterType.ALL_GOALS, GOALS.size());
+
+        // When a search finds one goal before the load finishes
+        List<Goal> results = GOALS.subList(0, 1);
+        search("Title1", results);
+
+        // Then the load is cancelled, and its goals are never shown
+        assertTrue(mGoalsLoad.isCancelled());
+        mGoalsLoad.onGoalsLoaded(GOALS);
+        assertThat(mGoalsViewModel.items, is(results));
     }
 
     @Test
@@ -238,4 +423,25 @@ public class GoalsViewModelTest {
         // Check that the value matches the observable's.
         assertThat("Snackbar text does not match", snackbarText, is(SNACKBAR_TEXT));
     }
+
+    /**
+     * Types {@code query}, lets the debounce delay pass, and answers the search with
+     * {@code results}.
+     */
+    private void search(String query, List<Goal> results) {
+        mGoalsViewModel.setSearchQuery(query);
+        ArgumentCaptor<Runnable> searchRunnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(mSearchHandler).postDelayed(searchRunnable.capture(),
+                eq(GoalsViewModel.SEARCH_DEBOUNCE_MILLIS));
+        searchRunnable.getValue().run();
+        verify(mGoalsRepository).searchGoals(any(GoalsFilterType.class), eq(query), anyInt(),
+                mLoadGoalsCallbackCaptor.capture());
+        mLoadGoalsCallbackCaptor.getValue().onGoalsLoaded(results);
+    }
+
+    private void setGoalsCount(GoalsFilterType filtering, int count) {
+        verify(mGoalsRepository).getGoalsCount(eq(filtering),
+                mGetGoalsCountCallbackCaptor.capture());
+        mGetGoalsCountCallbackCaptor.getValue().onGoalsCounted(count);
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.util.Clock;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link UrgencyEngine}.
+ */
+public class UrgencyEngineTest {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static final long NOW = 100 * DAY_MILLIS;
+
+    private static final int GREEN = 0xFF00FF00;
+
+    private static final int YELLOW = 0xFFFFFF00;
+
+    private static final int RED = 0xFFFF0000;
+
+    /**
+     * Due every 10 days and touched just now.
+     */
+    private static final Goal TO_DO = new Goal.Builder()
+            .setTitle("Title")
+            .setPolarity(true)
+            .setInterval(10)
+            .setTouched(NOW)
+            .build();
+
+    private static final Goal TO_DO_HALFWAY = new Goal.Builder(TO_DO)
+            .setTouched(NOW - 5 * DAY_MILLIS)
+            .build();
+
+    private static final Goal TO_DO_DUE = new Goal.Builder(TO_DO)
+            .setTouched(NOW - 10 * DAY_MILLIS)
+            .build();
+
+    private static final Goal TO_AVOID = new Goal.Builder(TO_DO)
+            .setPolarity(false)
+            .build();
+
+    private static final Goal TO_AVOID_HALFWAY = new Goal.Builder(TO_AVOID)
+            .setTouched(NOW - 5 * DAY_MILLIS)
+            .build();
+
+    private static final Goal TO_AVOID_LONG_CLEAR = new Goal.Builder(TO_AVOID)
+            .setTouched(NOW - 30 * DAY_MILLIS)
+            .build();
+
+    private static final Goal WITHOUT_INTERVAL = new Goal.Builder(TO_DO)
+            .setInterval(0)
+            .build();
+
+    private final UrgencyEngine mEngine = new UrgencyEngine(new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return NOW;
+        }
+    });
+
+    @Test
+    public void positivePolarity_goesFromGreenToRed() {
+        assertThat(UrgencyEngine.colorAt(TO_DO, NOW), is(GREEN));
+        assertThat(UrgencyEngine.colorAt(TO_DO_HALFWAY, NOW), is(YELLOW));
+        assertThat(UrgencyEngine.colorAt(TO_DO_DUE, NOW), is(RED));
+    }
+
+    @Test
+    public void negativePolarity_goesFromRedToGreenAndStaysThere() {
+        assertThat(UrgencyEngine.colorAt(TO_AVOID, NOW), is(RED));
+        assertThat(UrgencyEngine.colorAt(TO_AVOID_HALFWAY, NOW), is(YELLOW));
+        assertThat(UrgencyEngine.colorAt(TO_AVOID_LONG_CLEAR, NOW), is(GREEN));
+    }
+
+    @Test
+    public void compute_keepsListOrderAndClockReading() {
+        UrgencyEngine.Urgencies urgencies = mEngine.compute(Arrays.asList(
+                TO_DO_HALFWAY, WITHOUT_INTERVAL, TO_AVOID_HALFWAY));
+
+        assertThat(urgencies.getTime(), is(NOW));
+        assertThat(urgencies.size(), is(3));
+        assertThat(urgencies.fractionAt(0), is(0.5f));
+        // Goals without an interval are always due
+        assertThat(urgencies.fractionAt(1), is(1f));
+        assertThat(urgencies.colorAt(2), is(YELLOW));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.goals;
+
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link UrgencyScheduler}.
+ */
+public class UrgencySchedulerTest {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private static final long NOW = 100 * DAY_MILLIS;
+
+    private static final Goal TOUCHED_2_HOURS_AGO = new Goal.Builder()
+            .setTitle("Title")
+            .setPolarity(true)
+            .setInterval(10)
+            .setTouched(NOW - 2 * HOUR_MILLIS)
+            .build();
+
+    private static final Goal TOUCHED_5_HOURS_AGO = new Goal.Builder()
+            .setTitle("Title")
+            .setPolarity(true)
+            .setInterval(10)
+            .setTouched(NOW - 5 * HOUR_MILLIS)
+            .build();
+
+    @Test
+    public void nextChange_isTheFirstWholeDayBoundary() {
+        // Given goals touched 2 hours and 5 hours ago
+        UrgencyScheduler scheduler = new UrgencyScheduler();
+        scheduler.reset(Arrays.asList(TOUCHED_2_HOURS_AGO, TOUCHED_5_HOURS_AGO), NOW);
+
+        // Then the list wakes up when the older one has been touched a day ago
+        assertThat(scheduler.nextChangeAt(), is(NOW + DAY_MILLIS - 5 * HOUR_MILLIS));
+    }
+
+    @Test
+    public void pollChanged_returnsOnlyTheGoalsThatChanged() {
+        // Given goals touched 2 hours and 5 hours ago
+        UrgencyScheduler scheduler = new UrgencyScheduler();
+        scheduler.reset(Arrays.asList(TOUCHED_2_HOURS_AGO, TOUCHED_5_HOURS_AGO), NOW);
+
+        // When nothing is due yet, nothing changed
+        assertTrue(scheduler.pollChanged(NOW + HOUR_MILLIS).isEmpty());
+
+        // When the older goal crosses a day
+        long wakeUp = scheduler.nextChangeAt();
+
+        // Then only it changed, and its next change is a day later
+        assertThat(scheduler.pollChanged(wakeUp), is(Collections.singletonList(1)));
+        assertThat(scheduler.nextChangeAt(), is(NOW + DAY_MILLIS - 2 * HOUR_MILLIS));
+        scheduler.pollChanged(scheduler.nextChangeAt());
+        assertThat(scheduler.nextChangeAt(), is(wakeUp + DAY_MILLIS));
+    }
+
+    @Test
+    public void emptyList_neverWakesUp() {
+        UrgencyScheduler scheduler = new UrgencyScheduler();
+        scheduler.reset(Collections.<Goal>emptyList(), NOW);
+
+        assertThat(scheduler.nextChangeAt(), is(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import android.support.annotation.NonNull;
+
+import com.beatboxchad.android.selfcaredashboard.util.DiskIOThreadExecutor.Priority;
+import com.google.common.base.Ticker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link DiskIOThreadExecutor}.
+ */
+public class DiskIOThreadExecutorTest {
+
+    private final Queue<Runnable> mQueue = new ArrayDeque<>();
+
+    private final List<String> mRun = new ArrayList<>();
+
+    private long mNanos;
+
+    private DiskIOThreadExecutor mExecutor;
+
+    @Before
+    public void setupExecutor() {
+        Executor queueing = new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                mQueue.add(command);
+            }
+        };
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return mNanos;
+            }
+        };
+        mExecutor = new DiskIOThreadExecutor(queueing, ticker);
+    }
+
+    @Test
+    public void read_runsBeforeQueuedMaintenance() {
+        // Given compaction in progress
+        submit("compact", Priority.MAINTENANCE);
+        submit("rebuild", Priority.MAINTENANCE);
+
+        // When the detail screen reads a goal
+        submit("read", Priority.INTERACTIVE_READ);
+        runAll();
+
+        // Then the read runs first
+        assertThat(mRun, is(Arrays.asList("read", "compact", "rebuild")));
+    }
+
+    @Test
+    public void read_passesAQueuedBulkSync() {
+        // Given a large sync queued as one write per goal
+        submit("sync1", Priority.BACKGROUND_WRITE);
+        submit("sync2", Priority.BACKGROUND_WRITE);
+        submit("sync3", Priority.BACKGROUND_WRITE);
+
+        // When the detail screen reads a goal
+        submit("read", Priority.INTERACTIVE_READ);
+        runAll();
+
+        // Then the read runs first, and the sync keeps its order
+        assertThat(mRun, is(Arrays.asList("read", "sync1", "sync2", "sync3")));
+    }
+
+    @Test
+    public void read_waitsForInteractiveWritesBeforeIt() {
+        // Given a user's save queued behind a sync
+        submit("sync", Priority.BACKGROUND_WRITE);
+        submit("save", Priority.INTERACTIVE_WRITE);
+
+        // When a read and then another save are submitted
+        submit("read", Priority.INTERACTIVE_READ);
+        submit("save2", Priority.INTERACTIVE_WRITE);
+        runAll();
+
+        // Then the read sees the first save, and the writes keep their order
+        assertThat(mRun, is(Arrays.asList("sync", "save", "read", "save2")));
+    }
+
+    @Test
+    public void writes_runInSubmissionOrderWhateverTheirClass() {
+        submit("sync", Priority.BACKGROUND_WRITE);
+        submit("save", Priority.INTERACTIVE_WRITE);
+        submit("sync2", Priority.BACKGROUND_WRITE);
+        runAll();
+
+        assertThat(mRun, is(Arrays.asList("sync", "save", "sync2")));
+    }
+
+    @Test
+    public void untaggedTasks_areInteractiveWrites() {
+        submit("sync", Priority.BACKGROUND_WRITE);
+        mExecutor.execute(task("plain"));
+        submit("read", Priority.INTERACTIVE_READ);
+        runAll();
+
+        assertThat(mRun, is(Arrays.asList("sync", "plain", "read")));
+    }
+
+    @Test
+    public void waitingTasks_ageAheadOfNewerReads() {
+        // Given maintenance that has waited for three aging steps
+        submit("compact", Priority.MAINTENANCE);
+        mNanos += TimeUnit.MILLISECONDS.toNanos(3 * DiskIOThreadExecutor.AGING_STEP_MILLIS);
+
+        // When reads keep arriving
+        submit("read1", Priority.INTERACTIVE_READ);
+        submit("read2", Priority.INTERACTIVE_READ);
+        runAll();
+
+        // Then the maintenance is as urgent as them and, being older, runs first
+        assertThat(mRun, is(Arrays.asList("compact", "read1", "read2")));
+    }
+
+    @Test
+    public void instrumentedTasks_keepTheirPriority() {
+        InstrumentedExecutor instrumented = new InstrumentedExecutor("disk", mExecutor);
+        instrumented.execute(InstrumentedExecutor.tag("compact",
+                DiskIOThreadExecutor.prioritize(Priority.MAINTENANCE, task("compact"))));
+        instrumented.execute(InstrumentedExecutor.tag("read",
+                DiskIOThreadExecutor.prioritize(Priority.INTERACTIVE_READ, task("read"))));
+        runAll();
+
+        assertThat(mRun, is(Arrays.asList("read", "compact")));
+    }
+
+    private void submit(String name, Priority priority) {
+        mExecutor.execute(DiskIOThreadExecutor.prioritize(priority, task(name)));
+    }
+
+    private void runAll() {
+        while (!mQueue.isEmpty()) {
+            mQueue.remove().run();
+        }
+    }
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRun.add(name);
+            }
+        };
+    }
+}
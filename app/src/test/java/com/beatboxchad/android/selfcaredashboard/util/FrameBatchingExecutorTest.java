@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit tests for {@link FrameBatchingExecutor}.
+ */
+public class FrameBatchingExecutorTest {
+
+    private final List<Runnable> mFrames = new ArrayList<>();
+
+    private final List<String> mRun = new ArrayList<>();
+
+    private FrameBatchingExecutor mExecutor;
+
+    @Before
+    public void setupExecutor() {
+        mExecutor = new FrameBatchingExecutor(new FrameBatchingExecutor.FrameScheduler() {
+            @Override
+            public void scheduleFrame(@NonNull Runnable batch) {
+                mFrames.add(batch);
+            }
+        });
+    }
+
+    @Test
+    public void burst_runsInOneFrameInOrder() {
+        // When several tasks are submitted before a frame
+        mExecutor.execute(task("a"));
+        mExecutor.execute(task("b"));
+        mExecutor.execute(task("c"));
+
+        // Then a single frame is asked for, which runs them all in order
+        assertThat(mFrames.size(), is(1));
+        mFrames.remove(0).run();
+        assertThat(mRun, is(Arrays.asList("a", "b", "c")));
+    }
+
+    @Test
+    public void taskSubmittedDuringABatch_waitsForTheNextFrame() {
+        // Given a task that submits another one
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mRun.add("first");
+                mExecutor.execute(task("second"));
+            }
+        });
+
+        // When its frame runs
+        mFrames.remove(0).run();
+
+        // Then the other task is left for the next frame
+        assertThat(mRun, is(Arrays.asList("first")));
+        assertThat(mFrames.size(), is(1));
+        mFrames.remove(0).run();
+        assertThat(mRun, is(Arrays.asList("first", "second")));
+    }
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRun.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Ticker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link InstrumentedExecutor}.
+ */
+public class InstrumentedExecutorTest {
+
+    private final Queue<Runnable> mQueue = new ArrayDeque<>();
+
+    private long mNanos;
+
+    private InstrumentedExecutor mExecutor;
+
+    @Before
+    public void setupExecutor() {
+        Executor queueing = new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                mQueue.add(command);
+            }
+        };
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return mNanos;
+            }
+        };
+        mExecutor = new InstrumentedExecutor("test", queueing, ticker);
+    }
+
+    @Test
+    public void queuedTasks_countTowardsTheDepth() {
+        // When three tasks are submitted and one of them runs
+        mExecutor.execute(task(0));
+        mExecutor.execute(task(0));
+        mExecutor.execute(task(0));
+        mQueue.remove().run();
+
+        // Then two are left waiting, after three waited at most
+        ExecutorMetrics metrics = mExecutor.getMetrics();
+        assertThat(metrics.getSubmitted(), is(3L));
+        assertThat(metrics.getQueueDepth(), is(2));
+        assertThat(metrics.getMaxQueueDepth(), is(3));
+    }
+
+    @Test
+    public void waitAndRunTimes_areMeasuredPerTag() {
+        // Given a tagged task that waits 2 ms and runs for 5 ms
+        mExecutor.execute(InstrumentedExecutor.tag("Source.load", task(5)));
+        mNanos += TimeUnit.MILLISECONDS.toNanos(2);
+
+        // When it runs
+        mQueue.remove().run();
+
+        // Then both times are recorded, for the executor and for the tag
+        ExecutorMetrics metrics = mExecutor.getMetrics();
+        assertThat(metrics.getWaitTimes().getMaxNanos(), is(TimeUnit.MILLISECONDS.toNanos(2)));
+        assertThat(metrics.getRunTimes().getMaxNanos(), is(TimeUnit.MILLISECONDS.toNanos(5)));
+        assertThat(metrics.getRunTimes().getPercentileMicros(50), is(8192L));
+        ExecutorMetrics.Tag tag = metrics.getTags().get(0);
+        assertThat(tag.getName(), is("Source.load"));
+        assertThat(tag.getCount(), is(1L));
+        assertThat(tag.getMeanWaitNanos(), is(TimeUnit.MILLISECONDS.toNanos(2)));
+    }
+
+    @Test
+    public void failingTask_isCountedAndRethrown() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+
+        try {
+            mQueue.remove().run();
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(mExecutor.getMetrics().getFailed(), is(1L));
+            assertThat(mExecutor.getMetrics().getRunTimes().getCount(), is(1L));
+        }
+    }
+
+    /**
+     * Returns a task that advances the clock by {@code millis} while it runs.
+     */
+    private Runnable task(final long millis) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+            }
+        };
+    }
+}
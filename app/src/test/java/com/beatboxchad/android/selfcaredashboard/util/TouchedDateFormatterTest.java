@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017, Chad Cassady
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beatboxchad.android.selfcaredashboard.util;
+
+import android.content.res.Resources;
+
+import com.beatboxchad.android.selfcaredashboard.R;
+import com.beatboxchad.android.selfcaredashboard.data.Goal;
+import com.beatboxchad.android.selfcaredashboard.data.GoalId;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link TouchedDateFormatter}.
+ */
+public class TouchedDateFormatterTest {
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    private static final long DAY_MILLIS = 24 * 60 * MINUTE_MILLIS;
+
+    private static final long START = 100 * DAY_MILLIS;
+
+    /**
+     * The most goals the list shows without paging.
+     */
+    private static final int UNPAGED_GOALS = 500;
+
+    /**
+     * Due every 10 days, with 2 of them left.
+     */
+    private static final Goal DUE_IN_2_DAYS = new Goal.Builder(
+            "00000000-0000-0000-0000-000000000001")
+            .setTitle("Title")
+            .setPolarity(true)
+            .setInterval(10)
+            .setTouched(START - 8 * DAY_MILLIS)
+            .build();
+
+    private static final Goal DUE_TODAY = new Goal.Builder(DUE_IN_2_DAYS)
+            .setTouched(START - 10 * DAY_MILLIS)
+            .build();
+
+    private static final Goal OVERDUE_BY_3_DAYS = new Goal.Builder(DUE_IN_2_DAYS)
+            .setTouched(START - 13 * DAY_MILLIS)
+            .build();
+
+    private static final Goal AVOID_FOR_1_DAY = new Goal.Builder(DUE_IN_2_DAYS)
+            .setPolarity(false)
+            .setTouched(START - 9 * DAY_MILLIS)
+            .build();
+
+    private static final Goal AVOIDED_LONG_ENOUGH = new Goal.Builder(AVOID_FOR_1_DAY)
+            .setTouched(START - 12 * DAY_MILLIS)
+            .build();
+
+    @Mock
+    private Resources mResources;
+
+    private long mNow = START;
+
+    private TouchedDateFormatter mFormatter;
+
+    @Before
+    public void setupFormatter() {
+        MockitoAnnotations.initMocks(this);
+        when(mResources.getString(R.string.goal_due_today)).thenReturn("today");
+        when(mResources.getString(R.string.goal_avoid_clear)).thenReturn("clear");
+        when(mResources.getQuantityString(anyInt(), anyInt(), anyVararg())).thenAnswer(
+                new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                Object[] arguments = invocation.getArguments();
+                return quantityString((Integer) arguments[0], (Integer) arguments[1]);
+            }
+        });
+
+        mFormatter = new TouchedDateFormatter(mResources, new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return mNow;
+            }
+        });
+    }
+
+    @Test
+    public void formatDue_countsWholeDaysLeft() {
+        assertThat(mFormatter.formatDue(DUE_IN_2_DAYS),
+                is(quantityString(R.plurals.goal_due_in_days, 2)));
+        assertThat(mFormatter.formatDue(DUE_TODAY), is("today"));
+        assertThat(mFormatter.formatDue(OVERDUE_BY_3_DAYS),
+                is(quantityString(R.plurals.goal_overdue_by_days, 3)));
+        assertThat(mFormatter.formatDue(AVOID_FOR_1_DAY),
+                is(quantityString(R.plurals.goal_avoid_for_days, 1)));
+        assertThat(mFormatter.formatDue(AVOIDED_LONG_ENOUGH), is("clear"));
+    }
+
+    @Test
+    public void relativeStrings_areRenderedOncePerMinute() {
+        // Given a list refreshed in bulk
+        mFormatter.refresh(Collections.singletonList(DUE_IN_2_DAYS));
+
+        // When its goal is read twice within the same minute
+        String due = mFormatter.formatDue(DUE_IN_2_DAYS);
+        assertThat(mFormatter.formatDue(DUE_IN_2_DAYS), is(sameInstance(due)));
+
+        // Then it was only rendered once
+        verify(mResources, times(1)).getQuantityString(
+                eq(R.plurals.goal_due_in_days), anyInt(), anyVararg());
+
+        // When the next minute starts, it is rendered again
+        mNow += MINUTE_MILLIS;
+        mFormatter.formatDue(DUE_IN_2_DAYS);
+        verify(mResources, times(2)).getQuantityString(
+                eq(R.plurals.goal_due_in_days), anyInt(), anyVararg());
+    }
+
+    @Test
+    public void formatTouched_isKeptUntilTheGoalIsTouchedAgain() {
+        String touched = mFormatter.formatTouched(DUE_IN_2_DAYS);
+
+        assertThat(touched, is(TouchedDateFormatter.formatDate(DUE_IN_2_DAYS.getTouched())));
+        assertThat(mFormatter.formatTouched(DUE_IN_2_DAYS), is(sameInstance(touched)));
+
+        Goal touchedAgain = new Goal.Builder(DUE_IN_2_DAYS).setTouched(mNow).build();
+        assertThat(mFormatter.formatTouched(touchedAgain), is(not(touched)));
+    }
+
+    @Test
+    public void refresh_keepsAWholeUnpagedList() {
+        // Given the most goals the list shows without paging, refreshed in bulk
+        List<Goal> goals = new ArrayList<>();
+        for (int i = 0; i < UNPAGED_GOALS; i++) {
+            goals.add(new Goal.Builder(new GoalId(0, i + 1)).setTitle("Title")
+                    .setPolarity(true).setInterval(10).setTouched(START - 8 * DAY_MILLIS)
+                    .build());
+        }
+        mFormatter.refresh(goals);
+
+        // When every goal is read
+        for (Goal goal : goals) {
+            mFormatter.formatDue(goal);
+        }
+
+        // Then none of them was rendered again
+        verify(mResources, times(UNPAGED_GOALS)).getQuantityString(
+                eq(R.plurals.goal_due_in_days), anyInt(), anyVararg());
+    }
+
+    @Test
+    public void allStrings_areRenderedAgainWhenTheLocaleChanges() {
+        Locale locale = Locale.getDefault();
+        try {
+            // Given a refreshed goal
+            Locale.setDefault(Locale.US);
+            mFormatter.refresh(Collections.singletonList(DUE_IN_2_DAYS));
+            String touched = mFormatter.formatTouched(DUE_IN_2_DAYS);
+
+            // When the locale changes within the same minute
+            Locale.setDefault(Locale.FRANCE);
+
+            // Then its strings are rendered again
+            mFormatter.formatDue(DUE_IN_2_DAYS);
+            verify(mResources, times(2)).getQuantityString(
+                    eq(R.plurals.goal_due_in_days), anyInt(), anyVararg());
+            assertThat(mFormatter.formatTouched(DUE_IN_2_DAYS),
+                    is(TouchedDateFormatter.formatDate(DUE_IN_2_DAYS.getTouched())));
+            assertThat(mFormatter.formatTouched(DUE_IN_2_DAYS), is(not(touched)));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    private static String quantityString(int id, int quantity) {
+        return id + ":" + quantity;
+    }
+}